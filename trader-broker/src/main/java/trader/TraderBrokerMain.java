@@ -99,6 +99,7 @@ public class TraderBrokerMain {
             }
         }
         int result = currAction.execute(beansContainer, writer, StringUtil.args2kvpairs(actionProps));
+        TraderHomeUtil.closeExchangeableData();
         System.exit(result);
     }
 
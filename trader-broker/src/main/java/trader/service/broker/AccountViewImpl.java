@@ -12,8 +12,10 @@ import com.google.gson.JsonObject;
 
 import trader.common.util.ConversionUtil;
 import trader.common.util.JsonUtil;
+import trader.common.util.PriceUtil;
 import trader.service.ServiceConstants.AccountState;
 import trader.service.trade.TradeConstants;
+import trader.service.trade.TradeConstants.AccMoney;
 
 public class AccountViewImpl implements AccountView{
 
@@ -27,6 +29,13 @@ public class AccountViewImpl implements AccountView{
 
     private LinkedHashMap<String, OrderViewImpl> orders = new LinkedHashMap<>();
 
+    private LinkedHashMap<String, Map> positions = new LinkedHashMap<>();
+
+    /**
+     * 最后应用的全量/增量信息序号, 0表示未知
+     */
+    private long seq;
+
     public AccountViewImpl(Map data) {
         id = ConversionUtil.toString(data.get("id"));
         this.data = data;
@@ -45,6 +54,10 @@ public class AccountViewImpl implements AccountView{
         return money;
     }
 
+    public long getSeq() {
+        return seq;
+    }
+
     @Override
     public List<OrderView> getOrders() {
         return new ArrayList(orders.values());
@@ -68,6 +81,56 @@ public class AccountViewImpl implements AccountView{
                 orders.put(orderView.getId(), orderView);
             }
         }
+        if ( data.containsKey("positions")) {
+            positions.clear();
+            updatePositions((List)data.get("positions"));
+        }
+        if ( data.containsKey("seq") ) {
+            seq = ConversionUtil.toLong(data.get("seq"));
+        }
+    }
+
+    /**
+     * 应用增量信息, 增量的基础序号与当前序号不一致时不做修改返回false, 需要重新获取全量信息
+     */
+    public synchronized boolean applyDelta(Map delta) {
+        long baseSeq = ConversionUtil.toLong(delta.get("baseSeq"));
+        if ( seq==0 || baseSeq!=seq ) {
+            return false;
+        }
+        state = ConversionUtil.toEnum(AccountState.class, delta.get("state"));
+        data.put("state", delta.get("state"));
+        Map moneyData = (Map)delta.get("money");
+        if ( null!=moneyData ) {
+            long[] money = this.money.clone();
+            for(AccMoney m:AccMoney.values()) {
+                Object value = moneyData.get(m.name());
+                if ( null!=value ) {
+                    money[m.ordinal()] = PriceUtil.str2long(value.toString());
+                }
+            }
+            this.money = money;
+            data.put("money", TradeConstants.accMoney2json(money));
+        }
+        List<Map> orderMaps = (List)delta.get("orders");
+        if ( null!=orderMaps ) {
+            for(Map orderMap:orderMaps) {
+                updateOrder((JsonObject)JsonUtil.object2json(orderMap));
+            }
+        }
+        List<Map> positionMaps = (List)delta.get("positions");
+        if ( null!=positionMaps ) {
+            updatePositions(positionMaps);
+        }
+        seq = ConversionUtil.toLong(delta.get("seq"));
+        return true;
+    }
+
+    private void updatePositions(List<Map> positionMaps) {
+        for(Map positionMap:positionMaps) {
+            positions.put(ConversionUtil.toString(positionMap.get("instrument")), positionMap);
+        }
+        data.put("positions", new ArrayList<>(positions.values()));
     }
 
     public synchronized void updateOrder(JsonObject orderData) {
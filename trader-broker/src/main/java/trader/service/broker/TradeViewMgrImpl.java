@@ -1,6 +1,8 @@
 package trader.service.broker;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -33,14 +35,22 @@ public class TradeViewMgrImpl implements TradeViewMgr, NodeTopicListener {
     @Autowired
     private NodeService nodeService;
 
+    /**
+     * 两次请求账户全量信息的最小间隔
+     */
+    private static final long SNAPSHOT_REQ_INTERVAL = 5*1000;
+
     private Map<String, AccountViewImpl> accounts = new ConcurrentHashMap<>();
 
+    private Map<String, Long> snapshotReqTimes = new ConcurrentHashMap<>();
+
     @PostConstruct
     public void init() {
         try {
             nodeService.topicSub(new String[] {
                     NodeConstants.TOPIC_TRADE_ACCOUNT_INFO,
                     NodeConstants.TOPIC_TRADE_ACCOUNT_MONEY,
+                    NodeConstants.TOPIC_TRADE_ACCOUNT_DELTA,
                     NodeConstants.TOPIC_TRADE_ORDER,
                     NodeConstants.TOPIC_TRADE_TXN
                     }, this);
@@ -75,6 +85,9 @@ public class TradeViewMgrImpl implements TradeViewMgr, NodeTopicListener {
             case NodeConstants.TOPIC_TRADE_ACCOUNT_MONEY:
                 onAccountMoney(topicData);
                 break;
+            case NodeConstants.TOPIC_TRADE_ACCOUNT_DELTA:
+                onAccountDelta(topicData);
+                break;
             case NodeConstants.TOPIC_TRADE_ORDER:
                 onTradeOrder(topicData);
                 break;
@@ -95,6 +108,48 @@ public class TradeViewMgrImpl implements TradeViewMgr, NodeTopicListener {
             } else {
                 accView.update(accData);
             }
+            snapshotReqTimes.remove(id);
+        }
+    }
+
+    /**
+     * 应用账户增量信息, 账户未知或者序号不连续时请求全量信息
+     */
+    private void onAccountDelta(Map<String, Object> topicData) {
+        List<Map> accounts = (List)topicData.get("accounts");
+        List<String> gapAccountIds = new ArrayList<>();
+        for(Map accData:accounts) {
+            String id = ConversionUtil.toString(accData.get("id"));
+            AccountViewImpl accView = this.accounts.get(id);
+            if ( null==accView || !accView.applyDelta(accData) ) {
+                gapAccountIds.add(id);
+            }
+        }
+        if ( !gapAccountIds.isEmpty() ) {
+            requestSnapshot(gapAccountIds);
+        }
+    }
+
+    private void requestSnapshot(List<String> accountIds) {
+        long currTime = System.currentTimeMillis();
+        List<String> reqAccountIds = new ArrayList<>();
+        for(String id:accountIds) {
+            Long lastReqTime = snapshotReqTimes.get(id);
+            if ( null==lastReqTime || (currTime-lastReqTime)>=SNAPSHOT_REQ_INTERVAL ) {
+                snapshotReqTimes.put(id, currTime);
+                reqAccountIds.add(id);
+            }
+        }
+        if ( reqAccountIds.isEmpty() ) {
+            return;
+        }
+        logger.info("Request account snapshot: "+reqAccountIds);
+        try {
+            Map<String, Object> reqData = new HashMap<>();
+            reqData.put("accountIds", reqAccountIds);
+            nodeService.topicPub(NodeConstants.TOPIC_TRADE_ACCOUNT_SNAPSHOT_REQ, reqData);
+        }catch(Throwable t) {
+            logger.error("Request account snapshot failed", t);
         }
     }
 
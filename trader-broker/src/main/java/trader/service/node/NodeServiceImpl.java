@@ -1,5 +1,8 @@
 package trader.service.node;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -36,6 +39,11 @@ import trader.service.stats.StatsItem;
 public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, NodeService {
     private static final Logger logger = LoggerFactory.getLogger(NodeServiceImpl.class);
 
+    /**
+     * 分段返回数据时每段的最大字符数
+     */
+    private static final int DATA_CHUNK_SIZE = 1024*1024;
+
     @Autowired
     private StatsCollector statsCollector;
 
@@ -99,6 +107,7 @@ public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, N
         if ( null!=topicData ) {
             pushMessage.setFields(topicData);
         }
+        pushMessage.setField(NodeMessage.FIELD_TOPIC, topic);
         doTopicPub(null, pushMessage);
     }
 
@@ -168,6 +177,24 @@ public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, N
             logger.error("Parse session "+session.getId()+" message "+text+" failed: "+t, t);
             return;
         }
+        onSessionMessage(session, reqMessage);
+    }
+
+    public void onSessionMessage(NodeSessionImpl session, ByteBuffer data) {
+        NodeMessage reqMessage = null;
+        try{
+            reqMessage = NodeMessageCodec.decode(data);
+        }catch(Throwable t) {
+            logger.error("Parse session "+session.getId()+" binary message failed: "+t, t);
+            return;
+        }
+        if ( logger.isDebugEnabled() ) {
+            logger.debug("On session "+session.getId()+" message: "+reqMessage);
+        }
+        onSessionMessage(session, reqMessage);
+    }
+
+    private void onSessionMessage(NodeSessionImpl session, NodeMessage reqMessage) {
         NodeMessage reqMessage0 = reqMessage;
         NodeMessage respMessage = null;
         NodeState newState = null;
@@ -218,6 +245,8 @@ public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, N
             NodeState newState0 = doSessionSend(session, respMessage);
             if ( newState0!=null ) {
                 newState = newState0;
+            } else if ( TYPE_INIT_REP.equals(respMessage.getType()) ) {
+                session.setWireFormats((Collection)respMessage.getField(NodeMessage.FIELD_WIRE_FORMATS));
             }
         }
         if ( newState!=null ) {
@@ -254,6 +283,16 @@ public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, N
         session.init(initMessage);
         result = initMessage.createResponse();
         result.setField(NodeMessage.FIELD_NODE_ID, session.getId());
+        //协商消息格式, InitRep本身仍使用JSON文本
+        Collection<Object> wireFormats = (Collection)initMessage.getField(NodeMessage.FIELD_WIRE_FORMATS);
+        if ( null!=wireFormats && wireFormats.contains(WIRE_FORMAT_BINARY) ) {
+            List<String> acceptedFormats = new ArrayList<>();
+            acceptedFormats.add(WIRE_FORMAT_BINARY);
+            if ( wireFormats.contains(WIRE_FORMAT_DEFLATE) ) {
+                acceptedFormats.add(WIRE_FORMAT_DEFLATE);
+            }
+            result.setField(NodeMessage.FIELD_WIRE_FORMATS, acceptedFormats);
+        }
         result.setErrCode(0);
         if ( logger.isInfoEnabled()) {
             logger.info("Session "+session.getConsistentId()+"/"+session.getId()+" addr "+session.getRemoteAddress()+" is ready");
@@ -292,9 +331,10 @@ public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, N
     }
 
     /**
-     * 执行查询
+     * 执行查询, 请求允许分段返回时从数据文件流式读取, 每段最多DATA_CHUNK_SIZE字符
      */
     private void performDataQuery(NodeSessionImpl session, NodeMessage req) {
+        boolean chunked = req.hasMoreData();
         NodeMessage resp = req.createResponse();
         try {
             String exchangeable0 = ConversionUtil.toString(req.getField(NodeMessage.FIELD_EXCHANGEABLE));
@@ -304,8 +344,27 @@ public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, N
             Exchangeable exchangeable = Exchangeable.fromString(exchangeable0);
             if ( exchangeable!=null && dataInfo!=null ) {
                 ExchangeableData edata = TraderHomeUtil.getExchangeableData();
-                String data = edata.load(exchangeable, dataInfo, tradingDay);
-                resp.setField(NodeMessage.FIELD_DATA, data);
+                if ( chunked ) {
+                    try(Reader reader = edata.open(exchangeable, dataInfo, tradingDay);){
+                        char[] buf = new char[DATA_CHUNK_SIZE];
+                        String chunk = readChunk(reader, buf);
+                        while(chunk!=null) {
+                            String nextChunk = readChunk(reader, buf);
+                            if ( nextChunk!=null ) {
+                                NodeMessage part = req.createResponse();
+                                part.setField(NodeMessage.FIELD_DATA, chunk);
+                                part.setField(NodeMessage.FIELD_MORE_DATA, true);
+                                session.send(part);
+                            } else {
+                                resp.setField(NodeMessage.FIELD_DATA, chunk);
+                            }
+                            chunk = nextChunk;
+                        }
+                    }
+                } else {
+                    String data = edata.load(exchangeable, dataInfo, tradingDay);
+                    resp.setField(NodeMessage.FIELD_DATA, data);
+                }
             }
         } catch(Throwable t) {
             resp.setErrCode(1);
@@ -318,6 +377,24 @@ public class NodeServiceImpl extends AbsNodeEndpoint implements NodeConstants, N
         }
     }
 
+    /**
+     * 读取最多buf长度的字符, 没有数据返回null
+     */
+    private static String readChunk(Reader reader, char[] buf) throws IOException {
+        int len = 0;
+        while(len<buf.length) {
+            int n = reader.read(buf, len, buf.length-len);
+            if ( n<0 ) {
+                break;
+            }
+            len += n;
+        }
+        if ( len==0 ) {
+            return null;
+        }
+        return new String(buf, 0, len);
+    }
+
     protected void asyncNotifySessionAdded(NodeSession session) {
         executorService.execute(()->{
             for(NodeServiceListener listener:listeners) {
@@ -1,6 +1,7 @@
 package trader.service.node;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -8,7 +9,9 @@ import java.util.Map;
 import java.util.Set;
 
 import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.adapter.NativeWebSocketSession;
 
@@ -44,6 +47,10 @@ public class NodeSessionImpl implements NodeSession, JsonEnabled {
 
     private long totalMessagesSent;
     private long totalMessagesRecv;
+    private long totalBytesSent;
+    private long totalBytesRecv;
+    private volatile boolean binaryFormat;
+    private volatile boolean deflateFormat;
 
     NodeSessionImpl(NodeServiceImpl nodeMgmtService, WebSocketSession wsSession){
         this.nodeService = nodeMgmtService;
@@ -134,15 +141,34 @@ public class NodeSessionImpl implements NodeSession, JsonEnabled {
         attrs = (Map)initMessage.getField(NodeMessage.FIELD_NODE_ATTRS);
     }
 
+    /**
+     * InitRep发送之后切换消息格式
+     */
+    void setWireFormats(Collection<Object> wireFormats) {
+        if ( null!=wireFormats ) {
+            deflateFormat = wireFormats.contains(WIRE_FORMAT_DEFLATE);
+            binaryFormat = wireFormats.contains(WIRE_FORMAT_BINARY);
+        }
+    }
+
     public synchronized void send(NodeMessage responseMessage) throws AppException
     {
-        if (getState()!=NodeState.Ready) {
+        NodeState state = getState();
+        //初始化期间只允许发送InitRep
+        if (state!=NodeState.Ready && !(state==NodeState.Initializing && TYPE_INIT_REP.equals(responseMessage.getType()))) {
             throw new AppException(ServiceErrorConstants.ERR_NODE_STATE_NOT_READY, "Session "+getConsistentId()+"/"+getId()+" is not ready");
         }
         try{
-            wsSession.sendMessage(new TextMessage(responseMessage.toString()));
+            WebSocketMessage<?> wsMessage = null;
+            if ( binaryFormat ) {
+                wsMessage = new BinaryMessage(NodeMessageCodec.encode(responseMessage, deflateFormat));
+            } else {
+                wsMessage = new TextMessage(responseMessage.toString());
+            }
+            wsSession.sendMessage(wsMessage);
             lastSentTime = System.currentTimeMillis();
             totalMessagesSent++;
+            totalBytesSent += wsMessage.getPayloadLength();
         }catch(Throwable e) {
             close();
             throw new AppException(e, ServiceErrorConstants.ERR_NODE_SEND, "Session "+getConsistentId()+"/"+getId()+" send message failed");
@@ -152,6 +178,14 @@ public class NodeSessionImpl implements NodeSession, JsonEnabled {
     protected void onMessage(String payload) {
         lastRecvTime = System.currentTimeMillis();
         totalMessagesRecv++;
+        totalBytesRecv += payload.length();
+        nodeService.onSessionMessage(this, payload);
+    }
+
+    protected void onMessage(ByteBuffer payload) {
+        lastRecvTime = System.currentTimeMillis();
+        totalMessagesRecv++;
+        totalBytesRecv += payload.remaining();
         nodeService.onSessionMessage(this, payload);
     }
 
@@ -201,6 +235,9 @@ public class NodeSessionImpl implements NodeSession, JsonEnabled {
         json.addProperty("lastSentTime", lastSentTime);
         json.addProperty("totalMessagesSent", totalMessagesSent);
         json.addProperty("totalMessagesRecv", totalMessagesRecv);
+        json.addProperty("totalBytesSent", totalBytesSent);
+        json.addProperty("totalBytesRecv", totalBytesRecv);
+        json.addProperty("binaryFormat", binaryFormat);
         return json;
     }
 
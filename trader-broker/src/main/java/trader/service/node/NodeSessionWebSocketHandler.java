@@ -1,5 +1,6 @@
 package trader.service.node;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 import jakarta.annotation.PostConstruct;
@@ -7,13 +8,12 @@ import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 
-import trader.common.util.StringUtil;
-
 public class NodeSessionWebSocketHandler implements WebSocketHandler, NodeConstants {
     private final static Logger logger = LoggerFactory.getLogger(NodeSessionWebSocketHandler.class);
 
@@ -41,14 +41,12 @@ public class NodeSessionWebSocketHandler implements WebSocketHandler, NodeConsta
         if ( nodeSession==null ){
             nodeSession = nodeMgmtService.onSessionConnected(session);
         }
-        String text = null;
         Object payload = message.getPayload();
-        if ( payload instanceof byte[] ){
-            text = new String((byte[])payload, 0, message.getPayloadLength(), StringUtil.UTF8);
+        if ( message instanceof BinaryMessage ){
+            nodeSession.onMessage((ByteBuffer)payload);
         }else{
-            text = payload.toString();
+            nodeSession.onMessage(payload.toString());
         }
-        nodeSession.onMessage(text);
     }
 
     @Override
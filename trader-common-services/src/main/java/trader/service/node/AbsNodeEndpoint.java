@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,7 +20,12 @@ public abstract class AbsNodeEndpoint implements NodeEndpoint {
     private static final Logger logger = LoggerFactory.getLogger(AbsNodeEndpoint.class);
 
     protected static class ReqItem{
-       NodeMessage responseMsg;
+       volatile NodeMessage responseMsg;
+       /**
+        * 分段返回时处理每一段消息
+        */
+       Consumer<NodeMessage> partHandler;
+       volatile long lastRecvTime = System.currentTimeMillis();
     }
 
     protected Map<String, List<NodeTopicListener>> topicListeners = new HashMap<>();
@@ -73,9 +79,19 @@ public abstract class AbsNodeEndpoint implements NodeEndpoint {
         if ( msg.getType().endsWith(NodeConstants.TYPE_SUFFIX_REP) ) {
             ReqItem item = pendingReqs.get(msg.getReqId());
             if ( item!=null ) {
-                item.responseMsg = msg;
-                synchronized(item) {
-                    item.notify();
+                item.lastRecvTime = System.currentTimeMillis();
+                if ( null!=item.partHandler ) {
+                    try{
+                        item.partHandler.accept(msg);
+                    }catch(Throwable t) {
+                        logger.error("Process response part failed: "+msg.getType()+" reqId "+msg.getReqId(), t);
+                    }
+                }
+                if ( !msg.hasMoreData() ) {
+                    item.responseMsg = msg;
+                    synchronized(item) {
+                        item.notify();
+                    }
                 }
                 found = true;
             }
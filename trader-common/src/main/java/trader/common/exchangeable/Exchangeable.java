@@ -3,6 +3,7 @@ package trader.common.exchangeable;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.gson.JsonElement;
@@ -200,7 +201,7 @@ public abstract class Exchangeable implements Comparable<Exchangeable>, JsonEnab
         throw new RuntimeException("Unknown exchange: "+exchange);
     }
 
-    private static Map<String, Exchangeable> cachedExchangeables = new HashMap<>();
+    private static Map<String, Exchangeable> cachedExchangeables = new ConcurrentHashMap<>();
 
     /**
      * Load exchangeable from cache
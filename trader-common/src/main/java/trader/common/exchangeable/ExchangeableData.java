@@ -1,35 +1,49 @@
 package trader.common.exchangeable;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FilterReader;
 import java.io.IOException;
-import java.lang.ref.SoftReference;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.MessageFormat;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.zip.ZipEntry;
 
 import trader.common.exception.AppRuntimeException;
 import trader.common.tick.PriceLevel;
 import trader.common.util.CSVDataSet;
+import trader.common.util.CSVMarshallHelper;
 import trader.common.util.CSVUtil;
 import trader.common.util.CSVWriter;
+import trader.common.util.ConversionUtil;
 import trader.common.util.DateUtil;
 import trader.common.util.FileLocker;
 import trader.common.util.FileUtil;
@@ -38,15 +52,38 @@ import trader.common.util.StringUtil;
 import trader.common.util.TraderHomeUtil;
 import trader.common.util.ZipFileUtil;
 import trader.common.util.concurrent.LockWrapper;
+import trader.common.util.concurrent.SizedLruCache;
 import trader.service.ServiceErrorConstants;
+import trader.service.md.CSVTickCursor;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataColumnFile;
+import trader.service.md.MarketDataProducer;
+import trader.service.md.TickCursor;
 
 /**
  * 历史数据访问
+ * <BR>配置了SQL数据库时会持有一个JDBC连接, 不再使用时需要close()
  */
-public class ExchangeableData {
+public class ExchangeableData implements AutoCloseable {
 
     public static final String SUBDIR_SUM = "_sum";
 
+    /**
+     * 数据缓存的字节预算, 缺省为最大堆内存的1/8, 不超过256M
+     */
+    public static final String PROP_CACHE_MAX_BYTES = "trader.exchangeableData.cacheMaxBytes";
+
+    /**
+     * mmap打开的列式TICK文件缓存数量, 缺省1024. 映射的内存不在堆中, 不计入字节预算
+     */
+    public static final String PROP_CACHE_MAX_MAPPED_FILES = "trader.exchangeableData.cacheMaxMappedFiles";
+
+    /**
+     * MIN1/TICK数据同时保存到SQL的JDBC URL, 例如 jdbc:h2:file:/data/repository/h2/data , 为空不启用.
+     * <BR>SQL只是文件数据的镜像, 以文件为准: 每个交易日记录保存时的文件数据版本, 只有版本与当前文件一致时loadRange()才使用SQL数据
+     */
+    public static final String PROP_SQL_URL = "trader.exchangeableData.sqlUrl";
+
     /**
      * 数据分类
      */
@@ -56,13 +93,19 @@ public class ExchangeableData {
         private String[] columns;
         private PriceLevel priceLevel;
         private String provider;
+        private boolean binary;
 
         public DataInfo(String name, boolean perYear, PriceLevel priceLevel, String[] columns, String provider){
+            this(name, perYear, priceLevel, columns, provider, false);
+        }
+
+        public DataInfo(String name, boolean perYear, PriceLevel priceLevel, String[] columns, String provider, boolean binary){
             this.name = name.toLowerCase().replaceAll("_", "-");
             this.perYear = perYear;
             this.priceLevel = priceLevel;
             this.columns = columns;
             this.provider = provider;
+            this.binary = binary;
             register(this);
         }
 
@@ -90,6 +133,13 @@ public class ExchangeableData {
 			return columns;
 		};
 
+		/**
+		 * 是否二进制格式, 二进制数据不压缩存档, 不能以字符串方式加载
+		 */
+		public boolean isBinary() {
+		    return binary;
+		}
+
         @Override
         public String toString(){ return name; }
 
@@ -250,6 +300,10 @@ public class ExchangeableData {
      * 期货CTP的TICK数据
      */
     public static final DataInfo TICK_CTP = new DataInfo("TICK_CTP", true, PriceLevel.TICKET, null, "ctp");
+    /**
+     * 期货CTP的TICK数据, 列式二进制格式, 从TICK_CTP转换而来, 可mmap直接加载
+     */
+    public static final DataInfo TICK_COLUMNS = new DataInfo("TICK_COLUMNS", true, PriceLevel.TICKET, null, "ctp", true);
 
     public static final DataInfo MIN1 = new DataInfo("MIN1", true, PriceLevel.MIN1, FUTURE_MIN_COLUMNS, null);
 
@@ -281,6 +335,11 @@ public class ExchangeableData {
 
         public String read(File instrumentDir, String file) throws IOException;
 
+        /**
+         * 以流方式打开, 不存在返回null
+         */
+        public Reader open(File instrumentDir, String file) throws IOException;
+
         public void save(File instrumentDir, String file, String content) throws IOException;
 
         public boolean delete(File instrumentDir, String file) throws IOException;
@@ -302,7 +361,7 @@ public class ExchangeableData {
             if ( instrumentDir.exists() && instrumentDir.isDirectory() ) {
                 for(File f:instrumentDir.listFiles()) {
                     String fname = f.getName();
-                    if ( fname.indexOf(filter)>=0 && fname.endsWith(".csv")) {
+                    if ( fname.indexOf(filter)>=0 && (fname.endsWith(EXT_NAME) || fname.endsWith(EXT_BIN)) ) {
                         result.add(fname);
                     }
                 }
@@ -319,6 +378,14 @@ public class ExchangeableData {
             return FileUtil.load(new File(instrumentDir, file));
         }
         @Override
+        public Reader open(File instrumentDir, String file) throws IOException {
+            File f = new File(instrumentDir, file);
+            if ( !f.exists() ) {
+                return null;
+            }
+            return IOUtil.createBufferedReader(f, StringUtil.UTF8);
+        }
+        @Override
         public void save(File instrumentDir, String file, String content) throws IOException{
             instrumentDir.mkdirs();
             FileUtil.save(new File(instrumentDir, file), content);
@@ -411,6 +478,20 @@ public class ExchangeableData {
             return ZipFileUtil.archiveRead(zip, file);
         }
 
+        @Override
+        public Reader open(File instrumentDir, String file) throws IOException
+        {
+            File zip = new File(instrumentDir, getZipFileName(file));
+            if ( !zip.exists() ) {
+                return null;
+            }
+            InputStream is = ZipFileUtil.archiveOpen(zip, file);
+            if ( is==null ) {
+                return null;
+            }
+            return new BufferedReader(new InputStreamReader(is, CHARSET));
+        }
+
         @Override
         public void save(File instrumentDir, String file, String content) throws IOException
         {
@@ -452,25 +533,30 @@ public class ExchangeableData {
     }
 
     /**
-     * 基于SQL保存和加载数据
+     * 基于SQL保存和加载MIN1/TICK数据.
+     * <BR>每个合约每种数据一张表, 每行保存原始CSV行, 按(TRADING_DAY, TIME)索引, TIME格式为yyyyMMddHHmmssSSS;
+     * <BR>DATA_DAYS表保存每张表每个交易日的CSV表头, 以及对应文件的数据版本(getDataVersion).
      */
     private static class SqlDataProvide implements DataProvider{
 
+        private static final int BATCH_SIZE = 2000;
+
         private Connection conn;
-        private PreparedStatement pstmtKbarMerge;
-        private Statement stmtQuery;
+        private Set<String> createdTables = new HashSet<>();
 
         SqlDataProvide(Connection conn) throws SQLException
         {
             this.conn = conn;
-            pstmtKbarMerge = conn.prepareStatement("MERGE INTO KBAR(LEVEL,,,,,,,,) VALUES(?,?,?,?,?,?,?,?,?,?,?,?)");
+            try(Statement stmt = conn.createStatement();){
+                stmt.execute("CREATE TABLE IF NOT EXISTS DATA_DAYS(TBL VARCHAR(128) NOT NULL, TRADING_DAY INT NOT NULL, HEADER VARCHAR NOT NULL, DATA_VERSION BIGINT NOT NULL, PRIMARY KEY(TBL, TRADING_DAY))");
+            }catch(SQLException e) {
+                close();
+                throw e;
+            }
         }
 
-        public void close()
+        public synchronized void close()
         {
-            try{
-                pstmtKbarMerge.close();
-            }catch(Throwable t) {}
             try {
                 conn.close();
             }catch(Throwable t) {}
@@ -478,6 +564,9 @@ public class ExchangeableData {
 
         public boolean dataSupported(DataInfo info) {
             PriceLevel level = info.getLevel();
+            if ( info.isBinary() ) {
+                return false;
+            }
             switch( level.prefix()) {
             case PriceLevel.LEVEL_MIN:
             case PriceLevel.LEVEL_TICK:
@@ -488,48 +577,184 @@ public class ExchangeableData {
         }
 
         @Override
-        public List<String> list(File instrumentDir, String filter) throws IOException
+        public synchronized List<String> list(File instrumentDir, String filter) throws IOException
         {
-            return Collections.emptyList();
+            List<String> result = new ArrayList<>();
+            String tblPrefix = tableName(instrumentDir, "");
+            try(PreparedStatement pstmt = conn.prepareStatement("SELECT TBL, TRADING_DAY FROM DATA_DAYS WHERE TBL LIKE ?");){
+                pstmt.setString(1, tblPrefix+"%");
+                try(ResultSet rs = pstmt.executeQuery();){
+                    while(rs.next()) {
+                        String level = rs.getString(1).substring(tblPrefix.length()).toLowerCase().replaceAll("_", "-");
+                        String fname = rs.getInt(2)+"."+level+EXT_NAME;
+                        if ( fname.indexOf(filter)>=0 ) {
+                            result.add(fname);
+                        }
+                    }
+                }
+            }catch(SQLException e) {
+                throw new IOException(e);
+            }
+            return result;
         }
 
         @Override
-        public boolean exists(File instrumentDir, String file) throws IOException {
-            String instrumentId = instrumentDir.getName();
-            String []parts = StringUtil.split(file, "\\.");
-            String tradingDay = parts[0];
-            String level = parts[1];
-
-            return false;
+        public synchronized boolean exists(File instrumentDir, String file) throws IOException {
+            return readHeader(instrumentDir, file)!=null;
         }
 
         @Override
-        public String read(File instrumentDir, String file) throws IOException {
-            String instrumentId = instrumentDir.getName();
-            String []parts = StringUtil.split(file, "\\.");
-            String tradingDay = parts[0];
-            String level = parts[1];
+        public synchronized String read(File instrumentDir, String file) throws IOException {
+            String header = readHeader(instrumentDir, file);
+            if ( header==null ) {
+                return null;
+            }
+            String[] parts = StringUtil.split(file, "\\.");
+            String tbl = tableName(instrumentDir, parts[1]);
+            StringBuilder result = new StringBuilder(64*1024);
+            result.append(header).append("\n");
+            try(PreparedStatement pstmt = conn.prepareStatement("SELECT LINE FROM \""+tbl+"\" WHERE TRADING_DAY=? ORDER BY SEQ");){
+                pstmt.setInt(1, Integer.parseInt(parts[0]));
+                try(ResultSet rs = pstmt.executeQuery();){
+                    while(rs.next()) {
+                        result.append(rs.getString(1)).append("\n");
+                    }
+                }
+            }catch(SQLException e) {
+                throw new IOException(e);
+            }
+            return result.toString();
+        }
+
+        /**
+         * 一次查询加载多个交易日的数据, 只返回数据版本与文件一致的交易日
+         *
+         * @param dataVersions 交易日->当前文件的数据版本
+         * @return 交易日->CSV文本
+         */
+        public synchronized TreeMap<LocalDate, String> readRange(File instrumentDir, DataInfo dataInfo, LocalDate beginDay, LocalDate endDay, Map<LocalDate, Long> dataVersions) throws IOException {
+            TreeMap<LocalDate, StringBuilder> texts = new TreeMap<>();
+            String tbl = tableName(instrumentDir, dataInfo.name());
+            int beginDay0 = Integer.parseInt(DateUtil.date2str(beginDay)), endDay0 = Integer.parseInt(DateUtil.date2str(endDay));
+            try(PreparedStatement pstmt = conn.prepareStatement("SELECT TRADING_DAY, HEADER, DATA_VERSION FROM DATA_DAYS WHERE TBL=? AND TRADING_DAY BETWEEN ? AND ?");){
+                pstmt.setString(1, tbl);
+                pstmt.setInt(2, beginDay0);
+                pstmt.setInt(3, endDay0);
+                try(ResultSet rs = pstmt.executeQuery();){
+                    while(rs.next()) {
+                        LocalDate tradingDay = DateUtil.str2localdate(Integer.toString(rs.getInt(1)));
+                        Long dataVersion = dataVersions.get(tradingDay);
+                        if ( dataVersion==null || dataVersion!=rs.getLong(3) ) { //文件已删除或者已更新
+                            continue;
+                        }
+                        texts.put(tradingDay, new StringBuilder(64*1024).append(rs.getString(2)).append("\n"));
+                    }
+                }
+                if ( !texts.isEmpty() ) {
+                    try(PreparedStatement pstmt2 = conn.prepareStatement("SELECT TRADING_DAY, LINE FROM \""+tbl+"\" WHERE TRADING_DAY BETWEEN ? AND ? ORDER BY TRADING_DAY, SEQ");){
+                        pstmt2.setInt(1, beginDay0);
+                        pstmt2.setInt(2, endDay0);
+                        try(ResultSet rs = pstmt2.executeQuery();){
+                            int lastDay = 0;
+                            StringBuilder text = null;
+                            while(rs.next()) {
+                                int day = rs.getInt(1);
+                                if ( day!=lastDay ) {
+                                    text = texts.get(DateUtil.str2localdate(Integer.toString(day)));
+                                    lastDay = day;
+                                }
+                                if ( text!=null ) {
+                                    text.append(rs.getString(2)).append("\n");
+                                }
+                            }
+                        }
+                    }
+                }
+            }catch(SQLException e) {
+                throw new IOException(e);
+            }
+            TreeMap<LocalDate, String> result = new TreeMap<>();
+            for(Map.Entry<LocalDate, StringBuilder> entry:texts.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().toString());
+            }
+            return result;
+        }
 
-            return null;
+        @Override
+        public Reader open(File instrumentDir, String file) throws IOException {
+            String content = read(instrumentDir, file);
+            if ( content==null ) {
+                return null;
+            }
+            return new StringReader(content);
         }
 
         @Override
         public void save(File instrumentDir, String file, String content) throws IOException {
-            String instrumentId = instrumentDir.getName();
-            String []parts = StringUtil.split(file, "\\.");
-            String tradingDay = parts[0];
-            String level = parts[1];
-
+            save(instrumentDir, file, content, 0);
+        }
+
+        /**
+         * 删除交易日的已有数据后批量插入, 在一个事务中完成
+         *
+         * @param dataVersion 对应文件的数据版本
+         */
+        public synchronized void save(File instrumentDir, String file, String content, long dataVersion) throws IOException {
+            String[] parts = StringUtil.split(file, "\\.");
+            String tbl = tableName(instrumentDir, parts[1]);
+            int tradingDay = Integer.parseInt(parts[0]);
+            CSVDataSet csv = CSVUtil.parse(content);
+            try {
+                ensureTable(tbl);
+                conn.setAutoCommit(false);
+                try{
+                    delete0(tbl, tradingDay);
+                    try(PreparedStatement pstmt = conn.prepareStatement("INSERT INTO DATA_DAYS(TBL, TRADING_DAY, HEADER, DATA_VERSION) VALUES(?,?,?,?)");){
+                        pstmt.setString(1, tbl);
+                        pstmt.setInt(2, tradingDay);
+                        pstmt.setString(3, csv.getLine());
+                        pstmt.setLong(4, dataVersion);
+                        pstmt.executeUpdate();
+                    }
+                    int[] timeColumns = getTimeColumns(csv);
+                    try(PreparedStatement pstmt = conn.prepareStatement("INSERT INTO \""+tbl+"\"(TRADING_DAY, SEQ, TIME, LINE) VALUES(?,?,?,?)");){
+                        int seq = 0;
+                        while(csv.next()) {
+                            pstmt.setInt(1, tradingDay);
+                            pstmt.setInt(2, seq++);
+                            pstmt.setLong(3, getTime(csv, timeColumns));
+                            pstmt.setString(4, csv.getLine());
+                            pstmt.addBatch();
+                            if ( seq%BATCH_SIZE==0 ) {
+                                pstmt.executeBatch();
+                            }
+                        }
+                        pstmt.executeBatch();
+                    }
+                    conn.commit();
+                }catch(SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }finally {
+                    conn.setAutoCommit(true);
+                }
+            }catch(SQLException e) {
+                throw new IOException(e);
+            }
         }
 
         @Override
-        public boolean delete(File instrumentDir, String file) throws IOException {
-            String instrumentId = instrumentDir.getName();
-            String []parts = StringUtil.split(file, "\\.");
-            String tradingDay = parts[0];
-            String level = parts[1];
-
-            return false;
+        public synchronized boolean delete(File instrumentDir, String file) throws IOException {
+            if ( readHeader(instrumentDir, file)==null ) {
+                return false;
+            }
+            String[] parts = StringUtil.split(file, "\\.");
+            try {
+                delete0(tableName(instrumentDir, parts[1]), Integer.parseInt(parts[0]));
+            }catch(SQLException e) {
+                throw new IOException(e);
+            }
+            return true;
         }
 
         @Override
@@ -537,15 +762,154 @@ public class ExchangeableData {
             throw new RuntimeException("Not supported yet");
         }
 
+        private String readHeader(File instrumentDir, String file) throws IOException {
+            String[] parts = StringUtil.split(file, "\\.");
+            if ( parts.length<3 || ConversionUtil.toLong(parts[0], true)==0 ) {
+                return null;
+            }
+            try(PreparedStatement pstmt = conn.prepareStatement("SELECT HEADER FROM DATA_DAYS WHERE TBL=? AND TRADING_DAY=?");){
+                pstmt.setString(1, tableName(instrumentDir, parts[1]));
+                pstmt.setInt(2, Integer.parseInt(parts[0]));
+                try(ResultSet rs = pstmt.executeQuery();){
+                    if ( rs.next() ) {
+                        return rs.getString(1);
+                    }
+                }
+            }catch(SQLException e) {
+                throw new IOException(e);
+            }
+            return null;
+        }
+
+        private void delete0(String tbl, int tradingDay) throws SQLException {
+            try(PreparedStatement pstmt = conn.prepareStatement("DELETE FROM DATA_DAYS WHERE TBL=? AND TRADING_DAY=?");){
+                pstmt.setString(1, tbl);
+                pstmt.setInt(2, tradingDay);
+                pstmt.executeUpdate();
+            }
+            ensureTable(tbl);
+            try(PreparedStatement pstmt = conn.prepareStatement("DELETE FROM \""+tbl+"\" WHERE TRADING_DAY=?");){
+                pstmt.setInt(1, tradingDay);
+                pstmt.executeUpdate();
+            }
+        }
+
+        private void ensureTable(String tbl) throws SQLException {
+            if ( createdTables.contains(tbl) ) {
+                return;
+            }
+            try(Statement stmt = conn.createStatement();){
+                stmt.execute("CREATE TABLE IF NOT EXISTS \""+tbl+"\"(TRADING_DAY INT NOT NULL, SEQ INT NOT NULL, TIME BIGINT NOT NULL, LINE VARCHAR NOT NULL, PRIMARY KEY(TRADING_DAY, SEQ))");
+                stmt.execute("CREATE INDEX IF NOT EXISTS \""+tbl+"_TIME\" ON \""+tbl+"\"(TRADING_DAY, TIME)");
+            }
+            createdTables.add(tbl);
+        }
+
+        /**
+         * 表名: 交易所_合约_数据分类, 例如 SHFE_RU2101_MIN1
+         */
+        private static String tableName(File instrumentDir, String dataName) {
+            String tbl = instrumentDir.getParentFile().getName()+"_"+instrumentDir.getName()+"_"+dataName;
+            return tbl.toUpperCase().replaceAll("[^A-Z0-9_]", "_");
+        }
+
+        /**
+         * MIN1使用BeginTime列, TICK使用ActionDay/UpdateTime/UpdateMillisec列
+         */
+        private static int[] getTimeColumns(CSVDataSet csv) {
+            int beginTimeIdx = csv.getColumnIndex(COLUMN_BEGIN_TIME);
+            if ( beginTimeIdx>=0 ) {
+                return new int[] {beginTimeIdx};
+            }
+            int actionDayIdx = csv.getColumnIndex("ActionDay"), updateTimeIdx = csv.getColumnIndex("UpdateTime");
+            if ( actionDayIdx>=0 && updateTimeIdx>=0 ) {
+                return new int[] {actionDayIdx, updateTimeIdx, csv.getColumnIndex("UpdateMillisec")};
+            }
+            return new int[0];
+        }
+
+        private static long getTime(CSVDataSet csv, int[] timeColumns) {
+            long result = 0;
+            if ( timeColumns.length==1 ) {
+                LocalDateTime time = csv.getDateTime(timeColumns[0]);
+                if ( time!=null ) {
+                    result = (time.getYear()*10000L+time.getMonthValue()*100+time.getDayOfMonth())*1000000000L
+                            +(time.getHour()*10000+time.getMinute()*100+time.getSecond())*1000L
+                            +time.getNano()/1000000;
+                }
+            } else if ( timeColumns.length==3 ) {
+                LocalTime time = csv.getTime(timeColumns[1]);
+                result = ConversionUtil.toLong(csv.get(timeColumns[0]), true)*1000000000L;
+                if ( time!=null ) {
+                    result += (time.getHour()*10000+time.getMinute()*100+time.getSecond())*1000L;
+                }
+                if ( timeColumns[2]>=0 ) {
+                    result += ConversionUtil.toInt(csv.get(timeColumns[2]), true);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 关闭时释放读锁的Reader
+     */
+    private static class LockedReader extends FilterReader {
+        private LockWrapper lockWrapper;
+
+        LockedReader(Reader reader, LockWrapper lockWrapper){
+            super(reader);
+            this.lockWrapper = lockWrapper;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            }finally {
+                if ( lockWrapper!=null ) {
+                    lockWrapper.close();
+                    lockWrapper = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 列式二进制数据, 直接保存为文件不压缩, 以便mmap加载
+     */
+    private static class ColumnFileDataProvider{
+
+        public boolean exists(File instrumentDir, String file) {
+            return (new File(instrumentDir, file)).length()>MarketDataColumnFile.HEADER_SIZE;
+        }
+
+        public MarketDataColumnFile.Reader open(File instrumentDir, String file) throws IOException {
+            return MarketDataColumnFile.open(new File(instrumentDir, file));
+        }
+
+        public void save(File instrumentDir, String file, LocalDate tradingDay, List<MarketData> ticks) throws IOException {
+            instrumentDir.mkdirs();
+            MarketDataColumnFile.write(new File(instrumentDir, file), tradingDay, ticks);
+        }
+
+        public boolean delete(File instrumentDir, String file) {
+            return (new File(instrumentDir, file)).delete();
+        }
     }
 
     private static final String EXT_NAME = ".csv";
+    private static final String EXT_BIN = ".dat";
     private static final String CHARSET = "UTF-8";
 
     private boolean readOnly;
     private File dataDir;
-    private Map<String,Lock> workingLocks = new HashMap<>();
-    private Lock workingLock = new ReentrantLock();
+    /**
+     * 每个合约/子目录的读写锁, 读数据共享, 写入/存档独占
+     */
+    private Map<String,ReentrantReadWriteLock> workingLocks = new ConcurrentHashMap<>();
+    private AtomicLong readContentions = new AtomicLong();
+    private AtomicLong writeContentions = new AtomicLong();
     /**
      * 只写一个Provider
      */
@@ -556,8 +920,16 @@ public class ExchangeableData {
     private DataProvider[] readProviders;
     private DataProvider fsProvider;
     private DataProvider zipProvider;
-    private SqlDataProvide sqlProvier = null;
-    private static Map<String, SoftReference<String>> cachedDatas = new HashMap<>();
+    private volatile SqlDataProvide sqlProvier = null;
+    private ColumnFileDataProvider columnProvider = new ColumnFileDataProvider();
+    /**
+     * 数据文件缓存: CSV数据保存为字符串, 按堆内存字节数限制
+     */
+    private static final SizedLruCache<String, Object> cachedDatas = new SizedLruCache<>(getDefaultCacheBytes());
+    /**
+     * mmap打开的列式TICK文件, 每个文件计为1, 按文件数量限制
+     */
+    private static final SizedLruCache<String, MarketDataColumnFile.Reader> cachedColumnFiles = new SizedLruCache<>(getDefaultMappedFiles());
 
     public ExchangeableData(File dataDir){
         this(dataDir, true);
@@ -568,6 +940,26 @@ public class ExchangeableData {
         this.readOnly = readOnly;
         fsProvider = new FileSystemDataProvider(dataDir);
         zipProvider = new ZipDataProvider(dataDir);
+        String sqlUrl = System.getProperty(PROP_SQL_URL);
+        if ( !StringUtil.isEmpty(sqlUrl) ) {
+            try{
+                sqlProvier = new SqlDataProvide(DriverManager.getConnection(sqlUrl.trim()));
+            }catch(SQLException e) {
+                throw new AppRuntimeException(e, ServiceErrorConstants.ERR_DATA_LOAD_FAILED,
+                        MessageFormat.format("连接SQL数据库 {0} 失败: {1}", sqlUrl, e) );
+            }
+        }
+    }
+
+    /**
+     * 关闭SQL数据库连接, 之后只访问文件中的数据
+     */
+    @Override
+    public synchronized void close() {
+        if ( sqlProvier!=null ) {
+            sqlProvier.close();
+            sqlProvier = null;
+        }
     }
 
     public File getDataDir(){
@@ -590,8 +982,7 @@ public class ExchangeableData {
     public DataInfo detectData(Exchangeable instrument, PriceLevel level, LocalDate tradingDay)
         throws IOException
     {
-    	try (FileLocker fileLocker = getFileLock(instrument);
-                LockWrapper lockWrapper = getInternalLock(instrument);)
+    	try (LockWrapper lockWrapper = getReadLock(instrument);)
         {
     		File edir = getInstrumentDir(instrument);
     		List<DataInfo> possibleDataInfos = DataInfo.getByLevel(level);
@@ -676,7 +1067,7 @@ public class ExchangeableData {
     public boolean exists(Exchangeable instrument, DataInfo dataInfo, LocalDate tradingDay)
             throws IOException
     {
-        try (LockWrapper lockWrapper = getInternalLock(instrument);)
+        try (LockWrapper lockWrapper = getReadLock(instrument);)
         {
             File edir = getInstrumentDir(instrument);
             for(String dataFile : getDataFileName(dataInfo, tradingDay)){
@@ -688,16 +1079,44 @@ public class ExchangeableData {
         }
     }
 
-    public synchronized boolean exists(String subDir, DataInfo dataInfo, LocalDate tradingDay)
+    /**
+     * 数据版本, 根据文件修改时间和长度计算, 数据已压缩时使用ZIP文件. 数据不存在返回0
+     */
+    public long getDataVersion(Exchangeable instrument, DataInfo dataInfo, LocalDate tradingDay)
             throws IOException
     {
-        File edir = new File(dataDir, subDir);
-        for(String dataFile : getDataFileName(dataInfo, tradingDay)){
-            if ( exists0(edir, dataFile) ){
-                return true;
+        try (LockWrapper lockWrapper = getReadLock(instrument);)
+        {
+            File edir = getInstrumentDir(instrument);
+            return getDataVersion0(edir, dataInfo, getDataFileName(dataInfo, tradingDay)[0]);
+        }
+    }
+
+    private long getDataVersion0(File edir, DataInfo dataInfo, String dataFile)
+    {
+        File file = new File(edir, dataFile);
+        if ( !file.exists() && !dataInfo.isBinary() ) {
+            file = new File(edir, ((ZipDataProvider)zipProvider).getZipFileName(dataFile));
+        }
+        if ( !file.exists() ) {
+            return 0;
+        }
+        return file.lastModified()*31+file.length();
+    }
+
+    public boolean exists(String subDir, DataInfo dataInfo, LocalDate tradingDay)
+            throws IOException
+    {
+        try (LockWrapper lockWrapper = getReadLock(subDirLockKey(subDir));)
+        {
+            File edir = new File(dataDir, subDir);
+            for(String dataFile : getDataFileName(dataInfo, tradingDay)){
+                if ( exists0(edir, dataFile) ){
+                    return true;
+                }
             }
+            return false;
         }
-        return false;
     }
 
     public void saveMisc(Exchangeable instrument, String miscFile, String text)
@@ -705,7 +1124,7 @@ public class ExchangeableData {
     {
         checkReadOnly();
         try(FileLocker fileLocker = getFileLock(instrument);
-                LockWrapper lockWrapper = getInternalLock(instrument); )
+                LockWrapper lockWrapper = getWriteLock(instrument); )
         {
             File edir = getInstrumentDir(instrument);
             edir.mkdirs();
@@ -716,8 +1135,7 @@ public class ExchangeableData {
     public boolean existsMisc(Exchangeable instrument, String miscFile)
             throws IOException
     {
-        try(FileLocker fileLocker = getFileLock(instrument);
-                LockWrapper lockWrapper = getInternalLock(instrument); )
+        try(LockWrapper lockWrapper = getReadLock(instrument);)
         {
             File edir = getInstrumentDir(instrument);
             return  exists0(edir, miscFile);
@@ -727,8 +1145,7 @@ public class ExchangeableData {
     public String loadMisc(Exchangeable instrument, String miscFile)
             throws IOException
     {
-        try(FileLocker fileLocker = getFileLock(instrument);
-                LockWrapper lockWrapper = getInternalLock(instrument); )
+        try(LockWrapper lockWrapper = getReadLock(instrument);)
         {
             File edir = getInstrumentDir(instrument);
             return load0(edir, new String[]{miscFile});
@@ -740,19 +1157,26 @@ public class ExchangeableData {
     {
         checkReadOnly();
         try(FileLocker fileLocker = getFileLock(instrument);
-                LockWrapper lockWrapper = getInternalLock(instrument); )
+                LockWrapper lockWrapper = getWriteLock(instrument); )
         {
             File edir = getInstrumentDir(instrument);
             String[] dataFiles = getDataFileName(dataInfo, tradingDay);
             fsProvider.save(edir, dataFiles[0], text);
-            if ( sqlProvier!=null && sqlProvier.dataSupported(dataInfo)) {
-                sqlProvier.save(edir, dataFiles[0], text);
+            SqlDataProvide sqlProvider = sqlProvier;
+            if ( sqlProvider!=null && sqlProvider.dataSupported(dataInfo)) {
+                sqlProvider.save(edir, dataFiles[0], text, getDataVersion0(edir, dataInfo, dataFiles[0]));
+            }
+            cachedDatas.put(edir+"/"+dataFiles[0], text, textBytes(text));
+            //TICK_CTP有变化后, 从旧数据生成的列式文件已经过期, 删除后openTicks回退到CSV, 需要重新生成
+            if ( dataInfo==TICK_CTP ) {
+                String columnFile = getDataFileName(TICK_COLUMNS, tradingDay)[0];
+                columnProvider.delete(edir, columnFile);
+                cachedColumnFiles.remove(edir+"/"+columnFile);
             }
-            cachedDatas.put(edir+"/"+dataFiles[0], new SoftReference<>(text));
         }
     }
 
-    public synchronized LocalDate[] getTradingDays(Exchangeable instrument, LocalDate tradingDay, int count)
+    public LocalDate[] getTradingDays(Exchangeable instrument, LocalDate tradingDay, int count)
             throws IOException
     {
         List<LocalDate> tradingDays = new LinkedList<>();
@@ -776,28 +1200,37 @@ public class ExchangeableData {
         return tradingDays.toArray(new LocalDate[tradingDays.size()]);
     }
 
-    public synchronized void save(String subDir, DataInfo dataInfo, LocalDate tradingDay, String text )
+    public void save(String subDir, DataInfo dataInfo, LocalDate tradingDay, String text )
             throws IOException
     {
         checkReadOnly();
-        File edir = new File(dataDir, subDir);
-        String[] dataFiles = getDataFileName(dataInfo, tradingDay);
-        fsProvider.save(edir, dataFiles[0], text);
+        try (LockWrapper lockWrapper = getWriteLock(subDirLockKey(subDir));)
+        {
+            File edir = new File(dataDir, subDir);
+            String[] dataFiles = getDataFileName(dataInfo, tradingDay);
+            fsProvider.save(edir, dataFiles[0], text);
+            cachedDatas.put(edir+"/"+dataFiles[0], text, textBytes(text));
+        }
     }
 
-    public synchronized String load(String subDir, DataInfo dataInfo, LocalDate tradingDay)
+    public String load(String subDir, DataInfo dataInfo, LocalDate tradingDay)
             throws IOException
     {
-        File edir = new File(dataDir, subDir);
-        String[] dataFiles = getDataFileName(dataInfo, tradingDay);
-        return load0(edir, dataFiles);
+        try (LockWrapper lockWrapper = getReadLock(subDirLockKey(subDir));)
+        {
+            File edir = new File(dataDir, subDir);
+            String[] dataFiles = getDataFileName(dataInfo, tradingDay);
+            return load0(edir, dataFiles);
+        }
     }
 
     public String load(Exchangeable instrument, DataInfo dataInfo, LocalDate tradingDay)
             throws IOException
     {
-        try(FileLocker fileLocker = getFileLock(instrument);
-                LockWrapper lockWrapper = getInternalLock(instrument); )
+        if ( dataInfo.isBinary() ) {
+            throw new IOException("Binary data "+dataInfo+" can not be loaded as text");
+        }
+        try(LockWrapper lockWrapper = getReadLock(instrument);)
         {
             File edir = getInstrumentDir(instrument);
             String[] dataFiles = getDataFileName(dataInfo, tradingDay);
@@ -805,6 +1238,158 @@ public class ExchangeableData {
         }
     }
 
+    /**
+     * 以流方式打开文本数据, 不会一次性加载全部内容为字符串.
+     * <BR>返回的Reader在close()之前持有合约的读锁, 避免读取过程中数据文件被写入或存档, 需要在打开的线程中关闭
+     */
+    public Reader open(Exchangeable instrument, DataInfo dataInfo, LocalDate tradingDay)
+            throws IOException
+    {
+        if ( dataInfo.isBinary() ) {
+            throw new IOException("Binary data "+dataInfo+" can not be loaded as text");
+        }
+        LockWrapper lockWrapper = getReadLock(instrument);
+        try {
+            File edir = getInstrumentDir(instrument);
+            String[] dataFiles = getDataFileName(dataInfo, tradingDay);
+            Reader reader = open0(edir, dataFiles);
+            if ( reader instanceof StringReader ) { //缓存的数据不需要持有锁
+                lockWrapper.close();
+                return reader;
+            }
+            return new LockedReader(reader, lockWrapper);
+        }catch(Throwable t) {
+            lockWrapper.close();
+            throw t;
+        }
+    }
+
+    /**
+     * 是否启用了SQL数据库并且支持这种数据. 只有启用时loadRange()才有优势, 否则应该逐日load()
+     */
+    public boolean isSqlEnabled(DataInfo dataInfo) {
+        SqlDataProvide sqlProvider = sqlProvier;
+        return sqlProvider!=null && sqlProvider.dataSupported(dataInfo);
+    }
+
+    /**
+     * 加载一段交易日的数据, 会同时持有全部交易日的数据, 没有启用SQL时应该逐日load().
+     * <BR>以文件数据为准: 启用SQL时一次查询返回数据版本与文件一致的交易日, 其它交易日逐日从文件加载, 并且在非只读时重新同步到SQL.
+     * 因此与load()/open()返回的数据相同
+     *
+     * @return 交易日->CSV文本, 没有数据的交易日不包含
+     */
+    public TreeMap<LocalDate, String> loadRange(Exchangeable instrument, DataInfo dataInfo, LocalDate beginDay, LocalDate endDay)
+            throws IOException
+    {
+        TreeMap<LocalDate, String> result = new TreeMap<>();
+        try(LockWrapper lockWrapper = getReadLock(instrument);)
+        {
+            File edir = getInstrumentDir(instrument);
+            Map<LocalDate, Long> dataVersions = new HashMap<>();
+            for(LocalDate tradingDay:list(instrument, dataInfo)) {
+                if ( tradingDay.isBefore(beginDay) || tradingDay.isAfter(endDay) ) {
+                    continue;
+                }
+                dataVersions.put(tradingDay, getDataVersion0(edir, dataInfo, getDataFileName(dataInfo, tradingDay)[0]));
+            }
+            SqlDataProvide sqlProvider = sqlProvier;
+            if ( sqlProvider!=null && sqlProvider.dataSupported(dataInfo) ) {
+                result.putAll(sqlProvider.readRange(edir, dataInfo, beginDay, endDay, dataVersions));
+            } else {
+                sqlProvider = null;
+            }
+            for(Map.Entry<LocalDate, Long> entry:dataVersions.entrySet()) {
+                LocalDate tradingDay = entry.getKey();
+                if ( result.containsKey(tradingDay) ) {
+                    continue;
+                }
+                String[] dataFiles = getDataFileName(dataInfo, tradingDay);
+                String text = load0(edir, dataFiles);
+                result.put(tradingDay, text);
+                if ( sqlProvider!=null && !readOnly ) { //SQL中没有或者已经过期
+                    sqlProvider.save(edir, dataFiles[0], text, entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 加载列式二进制的TICK数据
+     */
+    public List<MarketData> loadTicks(Exchangeable instrument, DataInfo dataInfo, LocalDate tradingDay)
+            throws IOException
+    {
+        checkBinary(dataInfo);
+        try(LockWrapper lockWrapper = getReadLock(instrument);)
+        {
+            File edir = getInstrumentDir(instrument);
+            String dataFile = getDataFileName(dataInfo, tradingDay)[0];
+            if ( !columnProvider.exists(edir, dataFile) ) {
+                throw new IOException("Data not exists: "+edir+"/"+dataFile);
+            }
+            return MarketDataColumnFile.read(openColumnFile(edir, dataFile), dataInfo.provider(), instrument);
+        }
+    }
+
+    /**
+     * 保存TICK数据为列式二进制格式
+     */
+    public void saveTicks(Exchangeable instrument, DataInfo dataInfo, LocalDate tradingDay, List<MarketData> ticks)
+            throws IOException
+    {
+        checkReadOnly();
+        checkBinary(dataInfo);
+        try(FileLocker fileLocker = getFileLock(instrument);
+                LockWrapper lockWrapper = getWriteLock(instrument); )
+        {
+            File edir = getInstrumentDir(instrument);
+            String dataFile = getDataFileName(dataInfo, tradingDay)[0];
+            columnProvider.save(edir, dataFile, tradingDay, ticks);
+            cachedColumnFiles.remove(edir+"/"+dataFile);
+        }
+    }
+
+    /**
+     * 以流方式打开CSV数据, 逐行解析, 不会一次性加载全部内容为字符串.
+     * <BR>与open()相同, 返回的CSVDataSet在close()之前持有合约的读锁, 需要在打开的线程中关闭
+     */
+    public CSVDataSet openDataSet(Exchangeable instrument, DataInfo dataInfo, LocalDate tradingDay)
+            throws IOException
+    {
+        Reader reader = open(instrument, dataInfo, tradingDay);
+        try {
+            return CSVUtil.parse(reader, ',', true);
+        }catch(Throwable t) {
+            reader.close();
+            throw t;
+        }
+    }
+
+    /**
+     * 打开TICK数据游标: 优先使用列式二进制数据, 否则从CSV/ZIP流逐行解码
+     */
+    public TickCursor openTicks(Exchangeable instrument, DataInfo dataInfo, LocalDate tradingDay, MarketDataProducer mdProducer, CSVMarshallHelper csvMarshallHelper)
+            throws IOException
+    {
+        File edir = getInstrumentDir(instrument);
+        if ( dataInfo==TICK_CTP && exists(instrument, TICK_COLUMNS, tradingDay) ) {
+            dataInfo = TICK_COLUMNS;
+        }
+        if ( dataInfo.isBinary() ) {
+            try(LockWrapper lockWrapper = getReadLock(instrument);)
+            {
+                String dataFile = getDataFileName(dataInfo, tradingDay)[0];
+                if ( !columnProvider.exists(edir, dataFile) ) {
+                    throw new IOException("Data not exists: "+edir+"/"+dataFile);
+                }
+                return openColumnFile(edir, dataFile).cursor(0, dataInfo.provider(), instrument);
+            }
+        }
+        return new CSVTickCursor(openDataSet(instrument, dataInfo, tradingDay), csvMarshallHelper, mdProducer, tradingDay);
+    }
+
     public List<LocalDate> list(Exchangeable instrument, DataInfo dataInfo) throws IOException
     {
         File edir = getInstrumentDir(instrument);
@@ -823,7 +1408,7 @@ public class ExchangeableData {
         return new ArrayList<>(result);
     }
 
-    protected final Map<String, String> cachedDayStats = new HashMap<>();
+    protected final Map<String, String> cachedDayStats = new ConcurrentHashMap<>();
 
     public List<Exchangeable> getPrimaryInstrument(Exchange exchange, String contract, LocalDate tradingDay){
         if ( exchange==null ) {
@@ -872,18 +1457,50 @@ public class ExchangeableData {
     {
         String result = null;
         for(String dataFile: dataFiles){
-            SoftReference<String> dataRef = cachedDatas.get(edir+"/"+dataFile);
-            if ( dataRef!=null ) {
-                result = dataRef.get();
+            Object cachedData = cachedDatas.get(edir+"/"+dataFile);
+            if ( cachedData instanceof String ) { //get()已经调整了LRU顺序, 不需要重新放入
+                return (String)cachedData;
             }
-            if ( result==null && fsProvider.exists(edir, dataFile)){
+            if ( fsProvider.exists(edir, dataFile)){
                 result = fsProvider.read(edir, dataFile);
             }
             if ( result==null && zipProvider.exists(edir, dataFile)){
                 result = zipProvider.read(edir, dataFile);
             }
             if ( result!=null ) {
-                cachedDatas.put(edir+"/"+dataFile, new SoftReference<>(result));
+                cachedDatas.put(edir+"/"+dataFile, result, textBytes(result));
+                return result;
+            }
+        }
+        throw new IOException("Data not exists: "+edir+"/"+dataFiles[0]);
+    }
+
+    /**
+     * 打开列式TICK文件, 解码后的Reader放入缓存, 多个线程共享只读访问
+     */
+    private MarketDataColumnFile.Reader openColumnFile(File edir, String dataFile) throws IOException
+    {
+        String key = edir+"/"+dataFile;
+        MarketDataColumnFile.Reader result = cachedColumnFiles.get(key);
+        if ( result==null ) {
+            result = columnProvider.open(edir, dataFile);
+            cachedColumnFiles.put(key, result, 1);
+        }
+        return result;
+    }
+
+    private Reader open0(File edir, String[] dataFiles) throws IOException
+    {
+        for(String dataFile: dataFiles){
+            Object cachedData = cachedDatas.get(edir+"/"+dataFile);
+            if ( cachedData instanceof String ) {
+                return new StringReader((String)cachedData);
+            }
+            Reader result = fsProvider.open(edir, dataFile);
+            if ( result==null ){
+                result = zipProvider.open(edir, dataFile);
+            }
+            if ( result!=null ) {
                 return result;
             }
         }
@@ -892,8 +1509,7 @@ public class ExchangeableData {
 
     public LinkedList<TradingData> loadAll(Exchangeable instrument, DataInfo classfication, LocalDate beginDay, LocalDate endDay) throws IOException
     {
-        try(FileLocker fileLocker = getFileLock(instrument);
-                LockWrapper lockWrapper = getInternalLock(instrument); )
+        try(LockWrapper lockWrapper = getReadLock(instrument);)
         {
             LinkedList<TradingData> result = new LinkedList<>();
             LocalDate tradingDay = beginDay;
@@ -1013,7 +1629,10 @@ public class ExchangeableData {
             return;
         }
         listener.onArchiveBegin(subDir);
-        int archivedFileCount= groupAndArchiveFiles(zipper, subDir, filesToArchive);
+        try (LockWrapper lockWrapper = getWriteLock(subDirLockKey(subDir.getName()));)
+        {
+            groupAndArchiveFiles(zipper, subDir, filesToArchive);
+        }
         listener.onArchiveEnd(subDir, filesToArchive);
     }
 
@@ -1031,7 +1650,11 @@ public class ExchangeableData {
         }
         Exchangeable e = Exchangeable.fromString(exchange.name(), edir.getName());
         listener.onArchiveBegin(e, edir);
-        int archivedFileCount= groupAndArchiveFiles(zipper, edir, filesToArchive);
+        try(FileLocker fileLocker = getFileLock(e);
+                LockWrapper lockWrapper = getWriteLock(e); )
+        {
+            groupAndArchiveFiles(zipper, edir, filesToArchive);
+        }
         listener.onArchiveEnd(e, edir, filesToArchive);
     }
 
@@ -1061,25 +1684,106 @@ public class ExchangeableData {
         return archivedFileCount;
     }
 
+    /**
+     * 进程间文件锁, 只在写入/存档时使用, 读数据不加文件锁
+     */
     private FileLocker getFileLock(Exchangeable instrument) throws IOException
     {
         return new FileLocker((File)null);
     }
 
-    private LockWrapper getInternalLock(Exchangeable instrument)
+    /**
+     * 读数据使用共享锁, 多个线程可以同时读同一个合约
+     */
+    private LockWrapper getReadLock(Exchangeable instrument)
     {
-        workingLock.lock();
-        try{
-            String uniqueId = instrument.toString();
-            Lock lock = workingLocks.get(uniqueId);
-            if ( lock==null ){
-                lock = new ReentrantLock();
-                workingLocks.put(uniqueId, lock);
-            }
-            return new LockWrapper(lock);
-        }finally{
-            workingLock.unlock();
+        return getReadLock(instrument.toString());
+    }
+
+    private LockWrapper getReadLock(String key)
+    {
+        return LockWrapper.lock(getWorkingLock(key).readLock(), readContentions);
+    }
+
+    /**
+     * 写入/存档使用独占锁
+     */
+    private LockWrapper getWriteLock(Exchangeable instrument)
+    {
+        return getWriteLock(instrument.toString());
+    }
+
+    private LockWrapper getWriteLock(String key)
+    {
+        return LockWrapper.lock(getWorkingLock(key).writeLock(), writeContentions);
+    }
+
+    private ReentrantReadWriteLock getWorkingLock(String key)
+    {
+        return workingLocks.computeIfAbsent(key, (String k)->new ReentrantReadWriteLock());
+    }
+
+    private static String subDirLockKey(String subDir)
+    {
+        return "/"+subDir;
+    }
+
+    /**
+     * 读数据时需要等待其它线程释放锁的次数
+     */
+    public long getReadContentions()
+    {
+        return readContentions.get();
+    }
+
+    /**
+     * 写数据时需要等待其它线程释放锁的次数
+     */
+    public long getWriteContentions()
+    {
+        return writeContentions.get();
+    }
+
+    /**
+     * 全部ExchangeableData实例共享的数据缓存
+     */
+    public static SizedLruCache<String, Object> getDataCache()
+    {
+        return cachedDatas;
+    }
+
+    /**
+     * 全部ExchangeableData实例共享的列式TICK文件缓存
+     */
+    public static SizedLruCache<String, MarketDataColumnFile.Reader> getColumnFileCache()
+    {
+        return cachedColumnFiles;
+    }
+
+    private static long getDefaultMappedFiles()
+    {
+        String maxFiles = System.getProperty(PROP_CACHE_MAX_MAPPED_FILES);
+        if ( !StringUtil.isEmpty(maxFiles) ) {
+            return Long.parseLong(maxFiles.trim());
+        }
+        return 1024;
+    }
+
+    private static long getDefaultCacheBytes()
+    {
+        String maxBytes = System.getProperty(PROP_CACHE_MAX_BYTES);
+        if ( !StringUtil.isEmpty(maxBytes) ) {
+            return Long.parseLong(maxBytes.trim());
         }
+        return Math.min(256L*1024*1024, Runtime.getRuntime().maxMemory()/8);
+    }
+
+    /**
+     * CSV基本都是ASCII字符, 按每个字符一个字节估算
+     */
+    private static long textBytes(String text)
+    {
+        return text.length()+64;
     }
 
     private File getExchangeDir(Exchange e){
@@ -1100,7 +1804,7 @@ public class ExchangeableData {
     	if ( level!=PriceLevel.DAY && tradingDay!=null ){
             pathPrefix = DateUtil.date2str(tradingDay)+".";
     	}
-        result[0] = pathPrefix+dataInfo.name()+EXT_NAME;
+        result[0] = pathPrefix+dataInfo.name()+(dataInfo.isBinary()?EXT_BIN:EXT_NAME);
         return result;
     }
 
@@ -1111,4 +1815,11 @@ public class ExchangeableData {
         }
     }
 
+    private void checkBinary(DataInfo dataInfo) throws IOException
+    {
+        if ( !dataInfo.isBinary() ){
+            throw new IOException("Data "+dataInfo+" is not binary");
+        }
+    }
+
 }
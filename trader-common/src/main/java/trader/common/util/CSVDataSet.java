@@ -6,39 +6,38 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * 逐行解析的CSV数据, 基于CSVTokenizer.
+ * <BR>getLong/getInt/getPrice/getDouble直接从缓冲区解析数值, 不创建单元格String
+ */
 public class CSVDataSet {
     private boolean afterLast = false;
     private boolean beforeFirst=true;
     private boolean hasHeader;
-    private char delimiter;
     private String[] columns;
-    private String line;
+    private Map<String, Integer> columnIndexes = new HashMap<>();
     private int dataIndex=-1;
     private String[] row;
-    private BufferedReader reader;
+    private CSVTokenizer tokenizer;
 
     CSVDataSet(BufferedReader reader, char delimiter, boolean hasHeader) throws IOException
     {
         this.hasHeader = hasHeader;
-        this.delimiter = delimiter;
-        this.reader = reader;
+        this.tokenizer = new CSVTokenizer(reader, delimiter);
         if ( hasHeader ){
-            line = reader.readLine();
             dataIndex++;
-            columns = CSVUtil.parseLine(line, delimiter);
+            if ( tokenizer.nextLine() ) {
+                columns = getRow();
+            }
         }
     }
 
     public void close(){
-        if ( reader!=null ){
-            try {
-                reader.close();
-            } catch (IOException e) {}
-            reader = null;
-        }
+        tokenizer.close();
         row = null;
-        line = null;
         columns = null;
     }
 
@@ -66,13 +65,12 @@ public class CSVDataSet {
             if ( beforeFirst ){
                 beforeFirst = false;
             }
-            line = reader.readLine();
-            if ( line==null ){
+            row = null;
+            if ( !tokenizer.nextLine() ){
                 afterLast = true;
                 return false;
             }
             dataIndex++;
-            row = CSVUtil.parseLine(line, delimiter);
             return true;
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -84,10 +82,16 @@ public class CSVDataSet {
     }
 
     public String getLine(){
-        return line;
+        return tokenizer.getLine();
     }
 
     public String[] getRow(){
+        if ( row==null ) {
+            row = new String[tokenizer.getCellCount()];
+            for(int i=0;i<row.length;i++) {
+                row[i] = tokenizer.getCell(i);
+            }
+        }
         return row;
     }
 
@@ -96,29 +100,45 @@ public class CSVDataSet {
     }
 
     public String get(int columnIndex){
-        if ( columnIndex>=row.length ){
+        if ( columnIndex>=tokenizer.getCellCount() ){
             return null;
         }
-        return row[columnIndex];
+        return tokenizer.getCell(columnIndex);
     }
 
     public int getInt(int columnIndex, int defaultValue){
+        long v = parseLong(columnIndex);
+        if ( v!=CSVTokenizer.NOT_SIMPLE && v==(int)v ) {
+            return (int)v;
+        }
         String val = get(columnIndex);
         if ( val==null || val.trim().length()==0 ){
             return defaultValue;
         }
-        return Integer.parseInt(val.trim());
+        return ConversionUtil.toInt(val, false, defaultValue);
     }
 
     public int getInt(String column){
-        return Integer.parseInt(get(column));
+        return getInt(getColumnIndex(column));
+    }
+
+    public int getInt(int columnIndex){
+        long v = parseLong(columnIndex);
+        if ( v!=CSVTokenizer.NOT_SIMPLE && v==(int)v ) {
+            return (int)v;
+        }
+        return Integer.parseInt(get(columnIndex));
     }
 
     public long getLong(String column){
-        return Long.parseLong(get(column));
+        return getLong(getColumnIndex(column));
     }
 
     public long getLong(int columnIndex){
+        long v = parseLong(columnIndex);
+        if ( v!=CSVTokenizer.NOT_SIMPLE ) {
+            return v;
+        }
         return Long.parseLong(get(columnIndex));
     }
 
@@ -128,14 +148,16 @@ public class CSVDataSet {
     }
 
     public double getDouble(String column){
-        String str = get(column);
-        if ( str==null || str.length()==0 || StringUtil.equalsIgnoreCase("N/A", str) ) {
-            return Double.MAX_VALUE;
-        }
-        return ConversionUtil.toDouble(str);
+        return getDouble(getColumnIndex(column));
     }
 
     public double getDouble(int columnIndex){
+        if ( columnIndex>=0 && columnIndex<tokenizer.getCellCount() ) {
+            double v = tokenizer.parseDouble(columnIndex);
+            if ( !Double.isNaN(v) ) {
+                return v;
+            }
+        }
         String str = get(columnIndex);
         if ( str==null || str.length()==0 || StringUtil.equalsIgnoreCase("N/A", str) ) {
             return Double.MAX_VALUE;
@@ -143,11 +165,37 @@ public class CSVDataSet {
         return ConversionUtil.toDouble(str);
     }
 
+    /**
+     * 与PriceUtil.str2price相同: 为空返回缺省值, N/A返回Double.MAX_VALUE
+     */
+    public double getDouble(int columnIndex, double defaultValue){
+        if ( columnIndex>=0 && columnIndex<tokenizer.getCellCount() ) {
+            double v = tokenizer.parseDouble(columnIndex);
+            if ( !Double.isNaN(v) ) {
+                return v;
+            }
+            if ( tokenizer.isBlank(columnIndex) ) {
+                return defaultValue;
+            }
+        }
+        String str = get(columnIndex);
+        if ( StringUtil.isEmpty(str) ) {
+            return defaultValue;
+        }
+        return PriceUtil.str2price(str);
+    }
+
     public long getPrice(String column){
-        return PriceUtil.price2long(getDouble(column));
+        return getPrice(getColumnIndex(column));
     }
 
     public long getPrice(int columnIndex){
+        if ( columnIndex>=0 && columnIndex<tokenizer.getCellCount() ) {
+            long v = tokenizer.parsePrice(columnIndex);
+            if ( v!=CSVTokenizer.NOT_SIMPLE ) {
+                return v;
+            }
+        }
         return PriceUtil.price2long(getDouble(columnIndex));
     }
 
@@ -180,11 +228,14 @@ public class CSVDataSet {
     }
 
     public LocalDateTime getDateTime(ZoneId zoneId, int columnIndex){
+        long val = parseLong(columnIndex);
+        if ( val!=CSVTokenizer.NOT_SIMPLE && val!=0 ) {
+            return DateUtil.long2datetime(zoneId, val);
+        }
         String str = get(columnIndex);
         if ( str==null || str.length()==0 ) {
             return null;
         }
-        long val = 0;
         if ( (val=ConversionUtil.toLong(str, true))!=0 ) {
         	return DateUtil.long2datetime(zoneId, val);
         }
@@ -215,25 +266,37 @@ public class CSVDataSet {
     }
 
     public int getColumnIndex(String column){
-        for(int i=0;i<columns.length;i++){
-            if ( columns[i].equalsIgnoreCase(column) ){
-                return i;
+        Integer result = columnIndexes.get(column);
+        if ( result==null ) {
+            result = -1;
+            for(int i=0;i<columns.length;i++){
+                if ( columns[i].equalsIgnoreCase(column) ){
+                    result = i;
+                    break;
+                }
             }
+            columnIndexes.put(column, result);
         }
-        return -1;
+        return result;
     }
 
     public boolean hasValue(String column){
-        int columnIndex = getColumnIndex(column);
-        return row.length>columnIndex && row[columnIndex]!=null;
+        return hasValue(getColumnIndex(column));
     }
 
     public boolean hasValue(int columnIndex){
-        return row.length>columnIndex && row[columnIndex]!=null;
+        return columnIndex>=0 && tokenizer.getCellCount()>columnIndex;
     }
 
     public String[] getColumns(){
         return columns;
     }
 
+    private long parseLong(int columnIndex){
+        if ( columnIndex<0 || columnIndex>=tokenizer.getCellCount() ) {
+            return CSVTokenizer.NOT_SIMPLE;
+        }
+        return tokenizer.parseLong(columnIndex);
+    }
+
 }
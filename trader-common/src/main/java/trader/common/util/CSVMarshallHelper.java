@@ -6,5 +6,12 @@ public interface CSVMarshallHelper<T> {
 
 	public T unmarshall(String[] row);
 
+	/**
+	 * 从CSVDataSet的当前行解析, 实现类可以直接读取数值列, 避免创建String
+	 */
+	public default T unmarshall(CSVDataSet csvDataSet) {
+		return unmarshall(csvDataSet.getRow());
+	}
+
 	public String[] marshall(T t);
 }
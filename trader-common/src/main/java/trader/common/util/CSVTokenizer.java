@@ -0,0 +1,374 @@
+package trader.common.util;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 流式CSV分词: 从char缓冲区逐行切分, 每个单元格只记录起止位置.
+ * <BR>数值单元格直接从缓冲区解析为long/double, 不创建String; 只有需要时才创建单元格的String,
+ * 并且内容与上一行相同时复用上一行的String.
+ * <BR>引号规则与CSVUtil.parseLine一致
+ */
+public class CSVTokenizer {
+
+    /**
+     * 不是简单数字格式, 需要调用者按字符串方式解析
+     */
+    public static final long NOT_SIMPLE = Long.MIN_VALUE;
+
+    private static final int BUF_SIZE = 64*1024;
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+    private static final long[] PRICE_SCALES = {10000, 1000, 100, 10, 1};
+
+    private Reader reader;
+    private final char delimiter;
+    private final char[] buf = new char[BUF_SIZE];
+    private int bufPos;
+    private int bufLen;
+    private boolean eof;
+
+    private char[] line = new char[256];
+    private int lineLen;
+    private boolean hasLine;
+    private String lineStr;
+
+    private int cellCount;
+    private int[] cellStarts = new int[32];
+    private int[] cellEnds = new int[32];
+    /**
+     * 带引号的单元格在分词时直接转为String
+     */
+    private String[] quotedCells = new String[32];
+    private String[] cells = new String[32];
+    private String[] lastCells = new String[32];
+
+    public CSVTokenizer(Reader reader, char delimiter) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * 读取下一行
+     *
+     * @return false 如果没有更多数据
+     */
+    public boolean nextLine() throws IOException {
+        if ( bufPos>=bufLen && !fill() ) {
+            hasLine = false;
+            lineStr = null;
+            return false;
+        }
+        lineLen = 0;
+        lineStr = null;
+        hasLine = true;
+        while( bufPos<bufLen || fill() ) {
+            int start = bufPos;
+            while( bufPos<bufLen ) {
+                char c = buf[bufPos];
+                if ( c=='\n' || c=='\r' ) {
+                    break;
+                }
+                bufPos++;
+            }
+            append(start, bufPos-start);
+            if ( bufPos<bufLen ) {
+                char c = buf[bufPos++];
+                if ( c=='\r' && (bufPos<bufLen || fill()) && buf[bufPos]=='\n' ) {
+                    bufPos++;
+                }
+                break;
+            }
+        }
+        split();
+        return true;
+    }
+
+    public String getLine() {
+        if ( !hasLine ) {
+            return null;
+        }
+        if ( lineStr==null ) {
+            lineStr = new String(line, 0, lineLen);
+        }
+        return lineStr;
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    public String getCell(int index) {
+        String result = cells[index];
+        if ( result==null ) {
+            result = quotedCells[index];
+            if ( result==null ) {
+                int start = cellStarts[index], len = cellEnds[index]-start;
+                String last = lastCells[index];
+                if ( last!=null && regionEquals(last, start, len) ) {
+                    result = last;
+                } else {
+                    result = new String(line, start, len);
+                }
+            }
+            cells[index] = result;
+        }
+        return result;
+    }
+
+    /**
+     * 单元格为空或只有空白字符
+     */
+    public boolean isBlank(int index) {
+        if ( quotedCells[index]!=null ) {
+            return quotedCells[index].trim().isEmpty();
+        }
+        for(int i=cellStarts[index];i<cellEnds[index];i++) {
+            if ( line[i]>' ' ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 解析整数, 格式为 [-]digits
+     *
+     * @return NOT_SIMPLE 如果不是简单整数格式
+     */
+    public long parseLong(int index) {
+        if ( quotedCells[index]!=null ) {
+            return NOT_SIMPLE;
+        }
+        int i = cellStarts[index], end = cellEnds[index];
+        boolean negative = false;
+        if ( i<end && line[i]=='-' ) {
+            negative = true;
+            i++;
+        }
+        if ( i>=end || end-i>18 ) {
+            return NOT_SIMPLE;
+        }
+        long result = 0;
+        for(;i<end;i++) {
+            int d = line[i]-'0';
+            if ( d<0 || d>9 ) {
+                return NOT_SIMPLE;
+            }
+            result = result*10+d;
+        }
+        return negative?-result:result;
+    }
+
+    /**
+     * 解析小数, 格式为 [-]digits[.digits], 有效数字不超过15位时结果与Double.parseDouble一致
+     *
+     * @return NaN 如果不是简单小数格式
+     */
+    public double parseDouble(int index) {
+        if ( quotedCells[index]!=null ) {
+            return Double.NaN;
+        }
+        int i = cellStarts[index], end = cellEnds[index];
+        boolean negative = false;
+        if ( i<end && line[i]=='-' ) {
+            negative = true;
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0, fractionDigits = 0;
+        boolean dot = false;
+        for(;i<end;i++) {
+            char c = line[i];
+            if ( c=='.' && !dot ) {
+                dot = true;
+                continue;
+            }
+            int d = c-'0';
+            if ( d<0 || d>9 || digits>=15 ) {
+                return Double.NaN;
+            }
+            mantissa = mantissa*10+d;
+            digits++;
+            if ( dot ) {
+                fractionDigits++;
+            }
+        }
+        if ( digits==0 ) {
+            return Double.NaN;
+        }
+        //两个double都是精确值, 除法结果是正确舍入的
+        double result = mantissa/POW10[fractionDigits];
+        return negative?-result:result;
+    }
+
+    /**
+     * 解析价格为4位小数的long, 格式为 digits[.digits], 整数部分不超过9位, 小数部分不超过4位
+     *
+     * @return NOT_SIMPLE 如果不是简单价格格式
+     */
+    public long parsePrice(int index) {
+        if ( quotedCells[index]!=null ) {
+            return NOT_SIMPLE;
+        }
+        int i = cellStarts[index], end = cellEnds[index];
+        long result = 0;
+        int intDigits = 0, fractionDigits = 0;
+        boolean dot = false;
+        for(;i<end;i++) {
+            char c = line[i];
+            if ( c=='.' && !dot ) {
+                dot = true;
+                continue;
+            }
+            int d = c-'0';
+            if ( d<0 || d>9 ) {
+                return NOT_SIMPLE;
+            }
+            if ( dot ) {
+                if ( ++fractionDigits>4 ) {
+                    return NOT_SIMPLE;
+                }
+            } else if ( ++intDigits>9 ) {
+                return NOT_SIMPLE;
+            }
+            result = result*10+d;
+        }
+        if ( intDigits+fractionDigits==0 ) {
+            return NOT_SIMPLE;
+        }
+        return result*PRICE_SCALES[fractionDigits];
+    }
+
+    public void close() {
+        if ( reader!=null ) {
+            try {
+                reader.close();
+            } catch (IOException e) {}
+            reader = null;
+        }
+        eof = true;
+        hasLine = false;
+        lineStr = null;
+    }
+
+    private boolean fill() throws IOException {
+        while( !eof ) {
+            int len = reader.read(buf, 0, buf.length);
+            if ( len<0 ) {
+                eof = true;
+            } else if ( len>0 ) {
+                bufPos = 0;
+                bufLen = len;
+                return true;
+            }
+        }
+        bufPos = bufLen = 0;
+        return false;
+    }
+
+    private void append(int start, int len) {
+        if ( lineLen+len>line.length ) {
+            char[] line2 = new char[Math.max(line.length*2, lineLen+len)];
+            System.arraycopy(line, 0, line2, 0, lineLen);
+            line = line2;
+        }
+        System.arraycopy(buf, start, line, lineLen, len);
+        lineLen += len;
+    }
+
+    private void split() {
+        for(int i=0;i<cellCount;i++) {
+            if ( cells[i]!=null ) {
+                lastCells[i] = cells[i];
+                cells[i] = null;
+            }
+            quotedCells[i] = null;
+        }
+        cellCount = 0;
+        int start = 0;
+        boolean quoted = false, inQuote = false;
+        for(int i=0;i<lineLen;i++) {
+            char c = line[i];
+            if ( c=='"' ) {
+                quoted = true;
+                if ( !inQuote ) {
+                    inQuote = true;
+                } else if ( i+1<lineLen && line[i+1]=='"' ) {
+                    i++;
+                } else {
+                    inQuote = false;
+                }
+                continue;
+            }
+            if ( !inQuote && c==delimiter ) {
+                addCell(start, i, quoted);
+                start = i+1;
+                quoted = false;
+            }
+        }
+        addCell(start, lineLen, quoted);
+    }
+
+    private void addCell(int start, int end, boolean quoted) {
+        if ( cellCount>=cellStarts.length ) {
+            int size = cellStarts.length*2;
+            cellStarts = copyOf(cellStarts, size);
+            cellEnds = copyOf(cellEnds, size);
+            quotedCells = copyOf(quotedCells, size);
+            cells = copyOf(cells, size);
+            lastCells = copyOf(lastCells, size);
+        }
+        cellStarts[cellCount] = start;
+        cellEnds[cellCount] = end;
+        if ( quoted ) {
+            quotedCells[cellCount] = unquote(start, end);
+        }
+        cellCount++;
+    }
+
+    private String unquote(int start, int end) {
+        StringBuilder result = new StringBuilder(end-start);
+        boolean inQuote = false;
+        for(int i=start;i<end;i++) {
+            char c = line[i];
+            if ( c=='"' ) {
+                if ( !inQuote ) {
+                    inQuote = true;
+                } else if ( i+1<end && line[i+1]=='"' ) {
+                    result.append('"');
+                    i++;
+                } else {
+                    inQuote = false;
+                }
+                continue;
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    private boolean regionEquals(String str, int start, int len) {
+        if ( str.length()!=len ) {
+            return false;
+        }
+        for(int i=0;i<len;i++) {
+            if ( str.charAt(i)!=line[start+i] ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] copyOf(int[] arr, int size) {
+        int[] result = new int[size];
+        System.arraycopy(arr, 0, result, 0, arr.length);
+        return result;
+    }
+
+    private static String[] copyOf(String[] arr, int size) {
+        String[] result = new String[size];
+        System.arraycopy(arr, 0, result, 0, arr.length);
+        return result;
+    }
+
+}
@@ -203,6 +203,10 @@ public class DateUtil {
         if (timeHHCMMCSS.length() == 0) {
             return localDate.atTime(0, 0, 0);
         }
+        if ( isTimeHHCMMCSS(timeHHCMMCSS) ) { //常见格式直接解析, 不产生中间对象
+            int timeInt = time2int(timeHHCMMCSS);
+            return localDate.atTime(timeInt/10000, (timeInt/100)%100, timeInt%100, millisec * 1000000);
+        }
         if (timeHHCMMCSS.length() == 7) {
             timeHHCMMCSS = "0" + timeHHCMMCSS;
         }
@@ -222,13 +226,13 @@ public class DateUtil {
      */
     public static int time2int(String timeHHCMMCSS) {
         int result = 0;
-        if ( timeHHCMMCSS.length()>=7 ) {
-            if (timeHHCMMCSS.length() == 7) {
-                timeHHCMMCSS = "0" + timeHHCMMCSS;
-            }
-            int hour = Integer.parseInt(timeHHCMMCSS.substring(0, 2));
-            int min = Integer.parseInt(timeHHCMMCSS.substring(3, 5));
-            int sec = Integer.parseInt(timeHHCMMCSS.substring(6, 8));
+        int len = timeHHCMMCSS.length();
+        if ( len>=7 ) {
+            //直接解析字符, 兼容 9:00:00 和 09:00:00
+            int ofs = (len==7)?-1:0;
+            int hour = digits(timeHHCMMCSS, 0, 2+ofs);
+            int min = digits(timeHHCMMCSS, 3+ofs, 5+ofs);
+            int sec = digits(timeHHCMMCSS, 6+ofs, 8+ofs);
             result = hour*10000+min*100+sec;
         } else {
             //HHMMSS
@@ -237,6 +241,23 @@ public class DateUtil {
         return result;
     }
 
+    private static int digits(String str, int begin, int end) {
+        int result = 0;
+        for(int i=begin;i<end;i++) {
+            char c = str.charAt(i);
+            if ( c<'0' || c>'9' ) {
+                throw new NumberFormatException("Invalid time: "+str);
+            }
+            result = result*10+(c-'0');
+        }
+        return result;
+    }
+
+    private static boolean isTimeHHCMMCSS(String str) {
+        int len = str.length();
+        return (len==7 || len==8) && str.charAt(len-3)==':' && str.charAt(len-6)==':';
+    }
+
     /**
      * 转换09:00:00格式为: 9,00,00, 转换12:00:00格式为12,00,00
      */
@@ -84,7 +84,7 @@ public class TraderHomeUtil {
         return traderHome;
     }
 
-    public static ExchangeableData getExchangeableData() {
+    public static synchronized ExchangeableData getExchangeableData() {
         if (data == null) {
             File dataDir = getDirectory(DIR_REPOSITORY);
             String repositoryDir = System.getProperty(PROP_REPOSITORY_DIR);
@@ -96,6 +96,16 @@ public class TraderHomeUtil {
         return data;
     }
 
+    /**
+     * 进程退出前关闭共享的ExchangeableData, 释放SQL数据库连接
+     */
+    public static synchronized void closeExchangeableData() {
+        if ( data!=null ) {
+            data.close();
+            data = null;
+        }
+    }
+
     public static File getDirectory(String purpose) {
         switch(purpose) {
         case DIR_ETC:
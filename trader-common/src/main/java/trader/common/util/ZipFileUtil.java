@@ -4,13 +4,12 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Enumeration;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -30,9 +29,13 @@ public class ZipFileUtil {
     public static void archiveRemoveAll(File zip, final List<String> pathInZips)
             throws IOException
     {
-        net.lingala.zip4j.ZipFile zipFile = new net.lingala.zip4j.ZipFile(zip);
-        for(String pathInZip:pathInZips) {
-            zipFile.removeFile(pathInZip);
+        try {
+            net.lingala.zip4j.ZipFile zipFile = new net.lingala.zip4j.ZipFile(zip);
+            for(String pathInZip:pathInZips) {
+                zipFile.removeFile(pathInZip);
+            }
+        }finally {
+            ZipIndex.invalidate(zip);
         }
     }
 
@@ -43,40 +46,47 @@ public class ZipFileUtil {
             pathInZip = toAdd.getName();
         }
 
-        net.lingala.zip4j.ZipFile zipFile = new net.lingala.zip4j.ZipFile(zip);
+        try {
+            net.lingala.zip4j.ZipFile zipFile = new net.lingala.zip4j.ZipFile(zip);
 
-        List<FileHeader> items = zipFile.getFileHeaders();
-        for(FileHeader zipItem : items) {
-            if ( zipItem.getFileName().equalsIgnoreCase(pathInZip)) {
-                zipFile.removeFile(zipItem);
+            List<FileHeader> items = zipFile.getFileHeaders();
+            for(FileHeader zipItem : items) {
+                if ( zipItem.getFileName().equalsIgnoreCase(pathInZip)) {
+                    zipFile.removeFile(zipItem);
+                }
             }
+            net.lingala.zip4j.model.ZipParameters zipParams = new net.lingala.zip4j.model.ZipParameters();
+            zipParams.setCompressionLevel(CompressionLevel.MAXIMUM);
+            zipParams.setFileNameInZip(pathInZip);
+            zipFile.addFile(toAdd, zipParams);
+        }finally {
+            ZipIndex.invalidate(zip);
         }
-        net.lingala.zip4j.model.ZipParameters zipParams = new net.lingala.zip4j.model.ZipParameters();
-        zipParams.setCompressionLevel(CompressionLevel.MAXIMUM);
-        zipParams.setFileNameInZip(pathInZip);
-        zipFile.addFile(toAdd, zipParams);
-
     }
 
     public static void archiveAddAll(File zip, final List<String> pathInZips, final List<byte[]> datas)
             throws IOException
     {
-        net.lingala.zip4j.ZipFile zipFile = new net.lingala.zip4j.ZipFile(zip);
+        try {
+            net.lingala.zip4j.ZipFile zipFile = new net.lingala.zip4j.ZipFile(zip);
 
-        List<FileHeader> items = new ArrayList<>( zipFile.getFileHeaders() );
+            List<FileHeader> items = new ArrayList<>( zipFile.getFileHeaders() );
 
-        for(FileHeader zipItem : items) {
-            if ( pathInZips.contains(zipItem.getFileName()) ) {
-                zipFile.removeFile(zipItem);
+            for(FileHeader zipItem : items) {
+                if ( pathInZips.contains(zipItem.getFileName()) ) {
+                    zipFile.removeFile(zipItem);
+                }
             }
-        }
 
-        for(int i=0;i<pathInZips.size();i++) {
-            net.lingala.zip4j.model.ZipParameters zipParams = new net.lingala.zip4j.model.ZipParameters();
-            byte[] data = datas.get(i);
-            zipParams.setCompressionLevel(CompressionLevel.MAXIMUM);
-            zipParams.setFileNameInZip(pathInZips.get(i));
-            zipFile.addStream(new ByteArrayInputStream(data), zipParams);
+            for(int i=0;i<pathInZips.size();i++) {
+                net.lingala.zip4j.model.ZipParameters zipParams = new net.lingala.zip4j.model.ZipParameters();
+                byte[] data = datas.get(i);
+                zipParams.setCompressionLevel(CompressionLevel.MAXIMUM);
+                zipParams.setFileNameInZip(pathInZips.get(i));
+                zipFile.addStream(new ByteArrayInputStream(data), zipParams);
+            }
+        }finally {
+            ZipIndex.invalidate(zip);
         }
     }
 
@@ -88,53 +98,48 @@ public class ZipFileUtil {
 
     public static ZipEntry[] listEntries(File zip, String classification) throws IOException
     {
-        if ( !zip.exists() ) {
+        ZipIndex zipIndex = ZipIndex.get(zip);
+        if ( null==zipIndex ) {
             return new ZipEntry[0];
         }
         LinkedList<ZipEntry> result = new LinkedList<>();
-        ZipFile originalZip = new ZipFile(zip);
-        Enumeration<? extends ZipEntry> entries = originalZip.entries();
-        while (entries.hasMoreElements()) {
-            ZipEntry e = entries.nextElement();
-            if ( e.isDirectory() ) {
-                continue;
-            }
-            if ( classification==null ){
-                result.add(e);
-                continue;
-            }
-            String entryName = e.getName();
-            if ( entryName.indexOf(classification)>0 ) {
+        for(ZipIndex.Entry entry:zipIndex.getEntries()) {
+            String entryName = entry.getName();
+            if ( classification==null || entryName.indexOf(classification)>0 ) {
+                ZipEntry e = new ZipEntry(entryName);
+                e.setSize(entry.getSize());
+                e.setCompressedSize(entry.getCompressedSize());
                 result.add(e);
             }
         }
-        originalZip.close();
         return result.toArray(new ZipEntry[result.size()]);
     }
 
     public static boolean arhiveExists(File zip, String pathInZip)
             throws IOException
     {
-        if ( !zip.exists() ) {
+        ZipIndex zipIndex = ZipIndex.get(zip);
+        if ( null==zipIndex ) {
             return false;
         }
-        boolean found = false;
-        ZipFile originalZip = new ZipFile(zip);
-        Enumeration<? extends ZipEntry> entries = originalZip.entries();
-        while (entries.hasMoreElements()) {
-            ZipEntry e = entries.nextElement();
-            if ( e.getName().equals(pathInZip) && e.getSize()>2 ){
-                found = true;
-                break;
-            }
-        }
-        originalZip.close();
-        return found;
+        ZipIndex.Entry entry = zipIndex.getEntry(pathInZip);
+        return entry!=null && entry.getSize()>2;
     }
 
     public static String archiveRead(File zip, String pathInZip)
             throws IOException
     {
+        ZipIndex zipIndex = ZipIndex.get(zip);
+        if ( null==zipIndex ) {
+            return null;
+        }
+        ZipIndex.Entry entry = zipIndex.getEntry(pathInZip);
+        if ( null==entry ) {
+            return null;
+        }
+        if ( entry.isSupported() ) {
+            return new String(zipIndex.read(entry), StringUtil.UTF8);
+        }
         net.lingala.zip4j.ZipFile zipFile = new net.lingala.zip4j.ZipFile(zip);
 
         String result = null;
@@ -145,6 +150,32 @@ public class ZipFileUtil {
         return result;
     }
 
+    /**
+     * 以流方式打开zip文件中的某个文件, 不存在返回null. 调用者负责关闭
+     */
+    public static InputStream archiveOpen(File zip, String pathInZip)
+            throws IOException
+    {
+        ZipIndex zipIndex = ZipIndex.get(zip);
+        if ( null==zipIndex ) {
+            return null;
+        }
+        ZipIndex.Entry entry = zipIndex.getEntry(pathInZip);
+        if ( null==entry ) {
+            return null;
+        }
+        if ( entry.isSupported() ) {
+            return zipIndex.open(entry);
+        }
+        net.lingala.zip4j.ZipFile zipFile = new net.lingala.zip4j.ZipFile(zip);
+        FileHeader fileHeader = zipFile.getFileHeader(pathInZip);
+        if ( fileHeader==null ) {
+            zipFile.close();
+            return null;
+        }
+        return zipFile.getInputStream(fileHeader);
+    }
+
     /**
      * returns a list of file name and content(in UTF-8) format.
      */
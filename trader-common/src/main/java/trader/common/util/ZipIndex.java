@@ -0,0 +1,407 @@
+package trader.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 解析后的ZIP文件目录(central directory), 进程内按 文件路径+修改时间+长度 缓存.
+ * <BR>查找文件只需要HASH查找, 读取某个文件直接定位到数据位置解压, 不需要每次重新解析整个ZIP目录.
+ * <BR>只支持未加密的STORED/DEFLATED文件, 其它情况由调用者使用zip4j处理
+ */
+public class ZipIndex {
+
+    public static class Entry {
+        private final String name;
+        private final int flags;
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+
+        Entry(String name, int flags, int method, long compressedSize, long size, long localHeaderOffset){
+            this.name = name;
+            this.flags = flags;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getLocalHeaderOffset() {
+            return localHeaderOffset;
+        }
+
+        /**
+         * 是否可以直接解压: 未加密, STORED或DEFLATED
+         */
+        public boolean isSupported() {
+            return (flags&FLAG_ENCRYPTED)==0 && (method==METHOD_STORED || method==METHOD_DEFLATED) && size<=Integer.MAX_VALUE;
+        }
+    }
+
+    private static final int SIG_LOCAL_HEADER = 0x04034b50;
+    private static final int SIG_CENTRAL_HEADER = 0x02014b50;
+    private static final int SIG_EOCD = 0x06054b50;
+    private static final int SIG_ZIP64_EOCD = 0x06064b50;
+    private static final int SIG_ZIP64_LOCATOR = 0x07064b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int FLAG_ENCRYPTED = 1;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final long U32_MAX = 0xFFFFFFFFL;
+    private static final int U16_MAX = 0xFFFF;
+
+    private static final int MAX_CACHED_INDEXES = 4096;
+
+    private static final Map<File, ZipIndex> indexes = new LinkedHashMap<File, ZipIndex>(256, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, ZipIndex> eldest) {
+            return size()>MAX_CACHED_INDEXES;
+        }
+    };
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private final File file;
+    private final long lastModified;
+    private final long length;
+    private final Map<String, Entry> entries;
+
+    private ZipIndex(File file, long lastModified, long length, Map<String, Entry> entries) {
+        this.file = file;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.entries = entries;
+    }
+
+    /**
+     * 返回ZIP文件的目录, 文件不存在返回null. 文件修改时间或长度变化后重新解析
+     */
+    public static ZipIndex get(File zip) throws IOException {
+        File key = zip.getAbsoluteFile();
+        long lastModified = key.lastModified();
+        if ( lastModified==0 && !key.exists() ) {
+            invalidate(key);
+            return null;
+        }
+        long length = key.length();
+        ZipIndex result = null;
+        synchronized(indexes) {
+            result = indexes.get(key);
+        }
+        if ( result!=null && result.lastModified==lastModified && result.length==length ) {
+            hits.incrementAndGet();
+            return result;
+        }
+        misses.incrementAndGet();
+        result = new ZipIndex(key, lastModified, length, parse(key));
+        synchronized(indexes) {
+            indexes.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * ZIP文件被修改后清除缓存
+     */
+    public static void invalidate(File zip) {
+        synchronized(indexes) {
+            indexes.remove(zip.getAbsoluteFile());
+        }
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Entry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    /**
+     * 定位并解压单个文件
+     */
+    public byte[] read(Entry entry) throws IOException {
+        checkSupported(entry);
+        byte[] result = new byte[(int)entry.size];
+        try(RandomAccessFile raf = new RandomAccessFile(file, "r");){
+            FileChannel channel = raf.getChannel();
+            long dataOffset = getDataOffset(channel, entry);
+            if ( entry.method==METHOD_STORED ) {
+                readFully(channel, ByteBuffer.wrap(result), dataOffset);
+                return result;
+            }
+            //nowrap模式需要多一个字节的输入
+            byte[] compressed = new byte[(int)entry.compressedSize+1];
+            readFully(channel, ByteBuffer.wrap(compressed, 0, (int)entry.compressedSize), dataOffset);
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(compressed);
+                int len = 0;
+                while(len<result.length && !inflater.finished()) {
+                    int n = inflater.inflate(result, len, result.length-len);
+                    if ( n==0 && (inflater.needsInput() || inflater.needsDictionary()) ) {
+                        break;
+                    }
+                    len += n;
+                }
+                if ( len!=result.length ) {
+                    throw new IOException("Zip entry "+file+"/"+entry.name+" is truncated");
+                }
+            }catch(DataFormatException e) {
+                throw new IOException("Zip entry "+file+"/"+entry.name+" is corrupted", e);
+            }finally {
+                inflater.end();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 以流方式打开单个文件, 调用者负责关闭
+     */
+    public InputStream open(Entry entry) throws IOException {
+        checkSupported(entry);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long dataOffset = getDataOffset(raf.getChannel(), entry);
+            InputStream is = new RangeInputStream(raf, dataOffset, entry.compressedSize);
+            if ( entry.method==METHOD_STORED ) {
+                return is;
+            }
+            Inflater inflater = new Inflater(true);
+            return new InflaterInputStream(is, inflater, 64*1024) {
+                private boolean eofPadded;
+                @Override
+                protected void fill() throws IOException {
+                    len = in.read(buf, 0, buf.length);
+                    if ( len<0 ) {
+                        if ( eofPadded ) {
+                            throw new IOException("Unexpected end of zip entry "+entry.name);
+                        }
+                        //nowrap模式需要多一个字节的输入
+                        eofPadded = true;
+                        buf[0] = 0;
+                        len = 1;
+                    }
+                    inf.setInput(buf, 0, len);
+                }
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    }finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }catch(IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    private void checkSupported(Entry entry) throws IOException {
+        if ( !entry.isSupported() ) {
+            throw new IOException("Zip entry "+file+"/"+entry.name+" is encrypted or uses unsupported method "+entry.method);
+        }
+    }
+
+    private long getDataOffset(FileChannel channel, Entry entry) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, entry.localHeaderOffset);
+        if ( header.getInt(0)!=SIG_LOCAL_HEADER ) {
+            throw new IOException("Invalid local header of zip entry "+file+"/"+entry.name);
+        }
+        int nameLen = header.getShort(26)&U16_MAX;
+        int extraLen = header.getShort(28)&U16_MAX;
+        return entry.localHeaderOffset+LOCAL_HEADER_SIZE+nameLen+extraLen;
+    }
+
+    /**
+     * 从文件尾部找到目录位置并解析全部文件项
+     */
+    private static Map<String, Entry> parse(File zip) throws IOException {
+        try(RandomAccessFile raf = new RandomAccessFile(zip, "r");){
+            FileChannel channel = raf.getChannel();
+            long fileLen = channel.size();
+            int tailLen = (int)Math.min(fileLen, EOCD_SIZE+U16_MAX);
+            ByteBuffer tail = ByteBuffer.allocate(tailLen).order(ByteOrder.LITTLE_ENDIAN);
+            long tailOffset = fileLen-tailLen;
+            readFully(channel, tail, tailOffset);
+            int eocdPos = -1;
+            for(int i=tailLen-EOCD_SIZE; i>=0; i--) {
+                if ( tail.getInt(i)==SIG_EOCD ) {
+                    eocdPos = i;
+                    break;
+                }
+            }
+            if ( eocdPos<0 ) {
+                throw new IOException("Invalid zip file "+zip+", end of central directory not found");
+            }
+            long entryCount = tail.getShort(eocdPos+10)&U16_MAX;
+            long cdSize = tail.getInt(eocdPos+12)&U32_MAX;
+            long cdOffset = tail.getInt(eocdPos+16)&U32_MAX;
+            if ( entryCount==U16_MAX || cdSize==U32_MAX || cdOffset==U32_MAX ) {
+                //ZIP64
+                long locatorOffset = tailOffset+eocdPos-20;
+                ByteBuffer locator = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, locator, locatorOffset);
+                if ( locator.getInt(0)!=SIG_ZIP64_LOCATOR ) {
+                    throw new IOException("Invalid zip64 file "+zip+", locator not found");
+                }
+                ByteBuffer eocd64 = ByteBuffer.allocate(56).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, eocd64, locator.getLong(8));
+                if ( eocd64.getInt(0)!=SIG_ZIP64_EOCD ) {
+                    throw new IOException("Invalid zip64 file "+zip+", end of central directory not found");
+                }
+                entryCount = eocd64.getLong(32);
+                cdSize = eocd64.getLong(40);
+                cdOffset = eocd64.getLong(48);
+            }
+            if ( cdSize>Integer.MAX_VALUE || cdOffset+cdSize>fileLen ) {
+                throw new IOException("Invalid zip file "+zip+", central directory offset "+cdOffset+" size "+cdSize);
+            }
+            ByteBuffer cd = ByteBuffer.allocate((int)cdSize).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, cd, cdOffset);
+            Map<String, Entry> result = new LinkedHashMap<>((int)Math.min(entryCount*2, 1<<16));
+            int pos = 0;
+            for(long i=0;i<entryCount;i++) {
+                if ( pos+CENTRAL_HEADER_SIZE>cdSize || cd.getInt(pos)!=SIG_CENTRAL_HEADER ) {
+                    throw new IOException("Invalid zip file "+zip+", central directory entry "+i+" is corrupted");
+                }
+                int flags = cd.getShort(pos+8)&U16_MAX;
+                int method = cd.getShort(pos+10)&U16_MAX;
+                long compressedSize = cd.getInt(pos+20)&U32_MAX;
+                long size = cd.getInt(pos+24)&U32_MAX;
+                int nameLen = cd.getShort(pos+28)&U16_MAX;
+                int extraLen = cd.getShort(pos+30)&U16_MAX;
+                int commentLen = cd.getShort(pos+32)&U16_MAX;
+                long localHeaderOffset = cd.getInt(pos+42)&U32_MAX;
+                String name = new String(cd.array(), pos+CENTRAL_HEADER_SIZE, nameLen, StandardCharsets.UTF_8);
+                //ZIP64扩展字段按顺序保存值为0xFFFFFFFF的字段
+                int extraPos = pos+CENTRAL_HEADER_SIZE+nameLen;
+                int extraEnd = extraPos+extraLen;
+                while(extraPos+4<=extraEnd) {
+                    int headerId = cd.getShort(extraPos)&U16_MAX;
+                    int dataSize = cd.getShort(extraPos+2)&U16_MAX;
+                    if ( headerId==0x0001 ) {
+                        int p = extraPos+4;
+                        if ( size==U32_MAX ) {
+                            size = cd.getLong(p); p+=8;
+                        }
+                        if ( compressedSize==U32_MAX ) {
+                            compressedSize = cd.getLong(p); p+=8;
+                        }
+                        if ( localHeaderOffset==U32_MAX ) {
+                            localHeaderOffset = cd.getLong(p); p+=8;
+                        }
+                        break;
+                    }
+                    extraPos += 4+dataSize;
+                }
+                if ( !name.endsWith("/") ) {
+                    result.put(name, new Entry(name, flags, method, compressedSize, size, localHeaderOffset));
+                }
+                pos += CENTRAL_HEADER_SIZE+nameLen+extraLen+commentLen;
+            }
+            return result;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while(buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if ( n<0 ) {
+                throw new IOException("Unexpected end of file at "+position);
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * 读取文件中的一段数据
+     */
+    private static class RangeInputStream extends InputStream {
+        private RandomAccessFile raf;
+        private FileChannel channel;
+        private long position;
+        private long remaining;
+
+        RangeInputStream(RandomAccessFile raf, long position, long length){
+            this.raf = raf;
+            this.channel = raf.getChannel();
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n<0?-1:(b[0]&0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if ( remaining<=0 ) {
+                return -1;
+            }
+            int toRead = (int)Math.min(len, remaining);
+            int n = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+            if ( n<0 ) {
+                throw new IOException("Unexpected end of file at "+position);
+            }
+            position += n;
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            raf.close();
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package trader.common.util.concurrent;
 
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 
 public class LockWrapper implements AutoCloseable
@@ -11,6 +12,21 @@ public class LockWrapper implements AutoCloseable
        this._lock = lock;
     }
 
+    private LockWrapper(Lock lock, AtomicLong contentions) {
+        if ( !lock.tryLock() ) {
+            contentions.incrementAndGet();
+            lock.lock();
+        }
+        this._lock = lock;
+    }
+
+    /**
+     * 加锁, 如果需要等待其它线程释放锁, 增加contentions计数
+     */
+    public static LockWrapper lock(Lock lock, AtomicLong contentions) {
+        return new LockWrapper(lock, contentions);
+    }
+
     public void lock() {
         this._lock.lock();
     }
@@ -19,4 +35,4 @@ public class LockWrapper implements AutoCloseable
     public void close() {
         this._lock.unlock();
     }
-}
\ No newline at end of file
+}
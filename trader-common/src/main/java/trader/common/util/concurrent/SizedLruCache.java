@@ -0,0 +1,135 @@
+package trader.common.util.concurrent;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按字节预算限制大小的LRU缓存, 线程安全.
+ * <BR>每个元素的占用字节数由调用者给出, 总大小超过预算时淘汰最久未访问的元素.
+ * <BR>超过预算一半的单个元素不缓存, 避免一次性把其它数据全部挤出.
+ */
+public class SizedLruCache<K, V> {
+
+    private static class Item<V>{
+        final V value;
+        final long bytes;
+
+        Item(V value, long bytes){
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    private final LinkedHashMap<K, Item<V>> items = new LinkedHashMap<>(256, 0.75f, true);
+    private long maxBytes;
+    private long currBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public SizedLruCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public V get(K key) {
+        Item<V> item = null;
+        synchronized(items) {
+            item = items.get(key);
+        }
+        if ( item==null ) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return item.value;
+    }
+
+    /**
+     * 加入缓存
+     *
+     * @param bytes 元素估算的占用字节数
+     * @return true 如果缓存成功
+     */
+    public boolean put(K key, V value, long bytes) {
+        synchronized(items) {
+            Item<V> old = items.remove(key);
+            if ( old!=null ) {
+                currBytes -= old.bytes;
+            }
+            if ( value==null || bytes>maxBytes/2 ) {
+                return false;
+            }
+            items.put(key, new Item<>(value, bytes));
+            currBytes += bytes;
+            evict();
+        }
+        return true;
+    }
+
+    public void remove(K key) {
+        synchronized(items) {
+            Item<V> old = items.remove(key);
+            if ( old!=null ) {
+                currBytes -= old.bytes;
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized(items) {
+            items.clear();
+            currBytes = 0;
+        }
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * 调整字节预算, 缩小时立刻淘汰多出的元素
+     */
+    public void setMaxBytes(long maxBytes) {
+        synchronized(items) {
+            this.maxBytes = maxBytes;
+            evict();
+        }
+    }
+
+    public long getCurrBytes() {
+        synchronized(items) {
+            return currBytes;
+        }
+    }
+
+    public int getCount() {
+        synchronized(items) {
+            return items.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<K, Item<V>>> it = items.entrySet().iterator();
+        while( currBytes>maxBytes && it.hasNext() ) {
+            Item<V> item = it.next().getValue();
+            it.remove();
+            currBytes -= item.bytes;
+            evictions.incrementAndGet();
+        }
+    }
+
+}
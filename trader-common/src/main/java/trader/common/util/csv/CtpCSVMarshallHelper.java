@@ -4,6 +4,7 @@ import java.text.Format;
 import java.util.ArrayList;
 
 import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.util.CSVDataSet;
 import trader.common.util.CSVMarshallHelper;
 import trader.common.util.ConversionUtil;
 import trader.common.util.FormatUtil;
@@ -120,6 +121,66 @@ public class CtpCSVMarshallHelper implements CSVMarshallHelper<CThostFtdcDepthMa
 		return result;
 	}
 
+	/**
+	 * 价格和数量直接从缓冲区解析, 只有日期/合约/时间列创建String
+	 */
+	@Override
+	public CThostFtdcDepthMarketDataField unmarshall(CSVDataSet csv) {
+		int i=0;
+		CThostFtdcDepthMarketDataField result = new CThostFtdcDepthMarketDataField();
+		result.TradingDay = csv.get(i++);
+		result.InstrumentID = csv.get(i++);
+		result.ExchangeID = csv.get(i++);
+		result.ExchangeInstID = csv.get(i++);
+		result.LastPrice = csv.getDouble(i++, 0);
+		result.PreSettlementPrice = csv.getDouble(i++, 0);
+		result.PreClosePrice = csv.getDouble(i++, 0);
+		result.PreOpenInterest = csv.getDouble(i++, 0);
+		result.OpenPrice = csv.getDouble(i++, 0);
+		result.HighestPrice = csv.getDouble(i++, 0);
+		result.LowestPrice = csv.getDouble(i++, 0);
+		result.Volume = csv.getInt(i++, 0);
+		result.Turnover = csv.getDouble(i++, 0);
+		result.OpenInterest = csv.getDouble(i++, 0);
+		result.ClosePrice = csv.getDouble(i++, 0);
+		result.SettlementPrice = csv.getDouble(i++, 0);
+		result.UpperLimitPrice = csv.getDouble(i++, 0);
+		result.LowerLimitPrice = csv.getDouble(i++, 0);
+		result.PreDelta = csv.getDouble(i++, 0);
+		result.CurrDelta = csv.getDouble(i++, 0);
+		result.UpdateTime = csv.get(i++);
+		result.UpdateMillisec = csv.getInt(i++, 0);
+
+		result.BidPrice1 = csv.getDouble(i++, 0);
+		result.BidVolume1 = csv.getInt(i++, 0);
+		result.AskPrice1 = csv.getDouble(i++, 0);
+		result.AskVolume1 = csv.getInt(i++, 0);
+
+		result.BidPrice2 = csv.getDouble(i++, 0);
+		result.BidVolume2 = csv.getInt(i++, 0);
+		result.AskPrice2 = csv.getDouble(i++, 0);
+		result.AskVolume2 = csv.getInt(i++, 0);
+
+		result.BidPrice3 = csv.getDouble(i++, 0);
+		result.BidVolume3 = csv.getInt(i++, 0);
+		result.AskPrice3 = csv.getDouble(i++, 0);
+		result.AskVolume3 = csv.getInt(i++, 0);
+
+		result.BidPrice4 = csv.getDouble(i++, 0);
+		result.BidVolume4 = csv.getInt(i++, 0);
+		result.AskPrice4 = csv.getDouble(i++, 0);
+		result.AskVolume4 = csv.getInt(i++, 0);
+
+		result.BidPrice5 = csv.getDouble(i++, 0);
+		result.BidVolume5 = csv.getInt(i++, 0);
+		result.AskPrice5 = csv.getDouble(i++, 0);
+		result.AskVolume5 = csv.getInt(i++, 0);
+
+		result.AveragePrice = csv.getDouble(i++, 0);
+		result.ActionDay = csv.get(i++);
+		return result;
+	}
+
 	@Override
 	public String[] marshall(CThostFtdcDepthMarketDataField field) {
 		ArrayList<String> row = new ArrayList<>();
@@ -0,0 +1,49 @@
+package trader.service.md;
+
+import java.time.LocalDate;
+
+import trader.common.util.CSVDataSet;
+import trader.common.util.CSVMarshallHelper;
+
+/**
+ * 从CSV流逐行解码行情切片
+ */
+public class CSVTickCursor implements TickCursor {
+
+    private CSVDataSet csvDataSet;
+    private CSVMarshallHelper csvMarshallHelper;
+    private MarketDataProducer mdProducer;
+    private LocalDate tradingDay;
+    private MarketData tick;
+
+    public CSVTickCursor(CSVDataSet csvDataSet, CSVMarshallHelper csvMarshallHelper, MarketDataProducer mdProducer, LocalDate tradingDay) {
+        this.csvDataSet = csvDataSet;
+        this.csvMarshallHelper = csvMarshallHelper;
+        this.mdProducer = mdProducer;
+        this.tradingDay = tradingDay;
+    }
+
+    @Override
+    public boolean next() {
+        tick = null;
+        while( csvDataSet.next() ) {
+            tick = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet), tradingDay);
+            if ( tick!=null ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public MarketData getTick() {
+        return tick;
+    }
+
+    @Override
+    public void close() {
+        csvDataSet.close();
+        tick = null;
+    }
+
+}
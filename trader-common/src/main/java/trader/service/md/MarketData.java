@@ -149,6 +149,11 @@ public abstract class MarketData implements Cloneable, JsonEnabled {
      */
     public int mktTime;
 
+    /**
+     * 延时跟踪的各阶段System.nanoTime(), 只在开启跟踪时存在
+     */
+    public long[] traceTimes;
+
     public abstract String getCsvHead();
 
     public abstract void toCsvRow(StringBuilder rowBuf);
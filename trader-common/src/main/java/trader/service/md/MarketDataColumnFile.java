@@ -0,0 +1,315 @@
+package trader.service.md;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+
+/**
+ * 行情切片的列式二进制文件: 每个合约每个交易日一个文件.
+ * <BR>所有字段按列定长保存(价格为long), 加载时直接mmap顺序读取, 不需要解析字符串.
+ * <P>文件格式: HEADER(32字节) + 13个long列 + depth列 + bidPrices/bidVolumes/askPrices/askVolumes 各depth列
+ */
+public class MarketDataColumnFile {
+
+    public static final int MAGIC = 0x544B4331;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int MAX_DEPTH = 5;
+
+    private static final int COL_TIMESTAMP = 0;
+    private static final int COL_LAST_PRICE = 1;
+    private static final int COL_VOLUME = 2;
+    private static final int COL_TURNOVER = 3;
+    private static final int COL_OPEN_INTEREST = 4;
+    private static final int COL_PRE_SETTLEMENT_PRICE = 5;
+    private static final int COL_PRE_CLOSE_PRICE = 6;
+    private static final int COL_OPEN_PRICE = 7;
+    private static final int COL_HIGHEST_PRICE = 8;
+    private static final int COL_LOWEST_PRICE = 9;
+    private static final int COL_AVERAGE_PRICE = 10;
+    private static final int COL_UPPER_LIMIT_PRICE = 11;
+    private static final int COL_LOWER_LIMIT_PRICE = 12;
+    private static final int LONG_COLUMNS = 13;
+
+    /**
+     * 只读的列式文件, 基于mmap
+     */
+    public static class Reader {
+        private final ByteBuffer buf;
+        private final int rowCount;
+        private final int depth;
+        private final String tradingDay;
+        private final int depthColOffset;
+        private final int bidPricesOffset;
+        private final int bidVolumesOffset;
+        private final int askPricesOffset;
+        private final int askVolumesOffset;
+
+        Reader(ByteBuffer buf) throws IOException {
+            this.buf = buf.order(ByteOrder.LITTLE_ENDIAN);
+            if ( buf.capacity()<HEADER_SIZE || buf.getInt(0)!=MAGIC ) {
+                throw new IOException("Invalid tick column file");
+            }
+            if ( buf.getInt(4)!=VERSION ) {
+                throw new IOException("Unsupported tick column file version: "+buf.getInt(4));
+            }
+            rowCount = buf.getInt(8);
+            depth = buf.getInt(12);
+            tradingDay = Integer.toString(buf.getInt(16));
+            depthColOffset = HEADER_SIZE + LONG_COLUMNS*8*rowCount;
+            bidPricesOffset = depthColOffset + 4*rowCount;
+            bidVolumesOffset = bidPricesOffset + depth*8*rowCount;
+            askPricesOffset = bidVolumesOffset + depth*4*rowCount;
+            askVolumesOffset = askPricesOffset + depth*8*rowCount;
+            if ( buf.capacity()<askVolumesOffset+depth*4*rowCount ) {
+                throw new IOException("Truncated tick column file, rows "+rowCount);
+            }
+        }
+
+        /**
+         * 文件字节数
+         */
+        public int getSize() {
+            return buf.capacity();
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public String getTradingDay() {
+            return tradingDay;
+        }
+
+        /**
+         * 第N行的 updateTimestamp
+         */
+        public long getTimestamp(int row) {
+            return getLong(COL_TIMESTAMP, row);
+        }
+
+        /**
+         * 二分查找最后一条 updateTimestamp&lt;=timestamp 的行, 如果没有返回0
+         */
+        public int floorRow(long timestamp) {
+            return TickCursor.floorIndex(rowCount, this::getTimestamp, timestamp);
+        }
+
+        /**
+         * 解码第N行为MarketData对象
+         */
+        public MarketData getRow(int row, String producerId, Exchangeable instrument, ZoneId zoneId) {
+            SimpleMarketData md = new SimpleMarketData();
+            md.producerId = producerId;
+            md.instrument = instrument;
+            md.tradingDay = tradingDay;
+            md.updateTimestamp = getLong(COL_TIMESTAMP, row);
+            md.updateTime = DateUtil.long2datetime(zoneId, md.updateTimestamp);
+            md.lastPrice = getLong(COL_LAST_PRICE, row);
+            md.volume = getLong(COL_VOLUME, row);
+            md.turnover = getLong(COL_TURNOVER, row);
+            md.openInterest = getLong(COL_OPEN_INTEREST, row);
+            md.preSettlementPrice = getLong(COL_PRE_SETTLEMENT_PRICE, row);
+            md.preClosePrice = getLong(COL_PRE_CLOSE_PRICE, row);
+            md.openPrice = getLong(COL_OPEN_PRICE, row);
+            md.highestPrice = getLong(COL_HIGHEST_PRICE, row);
+            md.lowestPrice = getLong(COL_LOWEST_PRICE, row);
+            md.averagePrice = getLong(COL_AVERAGE_PRICE, row);
+            md.upperLimitPrice = getLong(COL_UPPER_LIMIT_PRICE, row);
+            md.lowerLimitPrice = getLong(COL_LOWER_LIMIT_PRICE, row);
+            int rowDepth = buf.getInt(depthColOffset+row*4);
+            md.depth = rowDepth;
+            md.bidPrices = new long[rowDepth];
+            md.bidVolumes = new int[rowDepth];
+            md.askPrices = new long[rowDepth];
+            md.askVolumes = new int[rowDepth];
+            for(int i=0;i<rowDepth;i++) {
+                md.bidPrices[i] = buf.getLong(bidPricesOffset+(i*rowCount+row)*8);
+                md.bidVolumes[i] = buf.getInt(bidVolumesOffset+(i*rowCount+row)*4);
+                md.askPrices[i] = buf.getLong(askPricesOffset+(i*rowCount+row)*8);
+                md.askVolumes[i] = buf.getInt(askVolumesOffset+(i*rowCount+row)*4);
+            }
+            return md;
+        }
+
+        /**
+         * 从第N行开始逐行解码的游标
+         */
+        public TickCursor cursor(int fromRow, String producerId, Exchangeable instrument) {
+            ZoneId zoneId = instrument.exchange().getZoneId();
+            return new TickCursor() {
+                private int row = fromRow-1;
+                private MarketData tick;
+
+                @Override
+                public boolean next() {
+                    tick = null;
+                    if ( row+1>=rowCount ) {
+                        row = rowCount;
+                        return false;
+                    }
+                    row++;
+                    tick = getRow(row, producerId, instrument, zoneId);
+                    return true;
+                }
+
+                @Override
+                public boolean seek(long timestamp) {
+                    row = floorRow(timestamp)-1;
+                    return true;
+                }
+
+                @Override
+                public MarketData getTick() {
+                    return tick;
+                }
+
+                @Override
+                public void close() {
+                    tick = null;
+                }
+            };
+        }
+
+        private long getLong(int column, int row) {
+            return buf.getLong(HEADER_SIZE+(column*rowCount+row)*8);
+        }
+    }
+
+    /**
+     * mmap方式打开文件
+     */
+    public static Reader open(File file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);){
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new Reader(buf);
+        }
+    }
+
+    /**
+     * 顺序加载全部行情切片
+     */
+    public static List<MarketData> read(File file, String producerId, Exchangeable instrument) throws IOException {
+        return read(open(file), producerId, instrument);
+    }
+
+    /**
+     * 从已经打开的文件顺序加载全部行情切片
+     */
+    public static List<MarketData> read(Reader reader, String producerId, Exchangeable instrument) {
+        ZoneId zoneId = instrument.exchange().getZoneId();
+        int rowCount = reader.getRowCount();
+        List<MarketData> result = new ArrayList<>(rowCount);
+        for(int i=0;i<rowCount;i++) {
+            result.add(reader.getRow(i, producerId, instrument, zoneId));
+        }
+        return result;
+    }
+
+    /**
+     * 写入文件, 先写临时文件再改名, 避免读到写了一半的文件
+     */
+    public static void write(File file, LocalDate tradingDay, List<MarketData> ticks) throws IOException {
+        int rowCount = ticks.size();
+        int depth = 0;
+        for(MarketData md:ticks) {
+            depth = Math.max(depth, Math.min(MAX_DEPTH, md.depth));
+        }
+        long size = HEADER_SIZE + (long)rowCount*(LONG_COLUMNS*8 + 4 + depth*(8+4+8+4));
+        if ( size>Integer.MAX_VALUE ) {
+            throw new IOException("Too many ticks to write: "+rowCount);
+        }
+        ByteBuffer buf = ByteBuffer.allocate((int)size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC);
+        buf.putInt(VERSION);
+        buf.putInt(rowCount);
+        buf.putInt(depth);
+        buf.putInt(Integer.parseInt(DateUtil.date2str(tradingDay)));
+        buf.position(HEADER_SIZE);
+        for(int col=0;col<LONG_COLUMNS;col++) {
+            for(MarketData md:ticks) {
+                buf.putLong(getLong(md, col));
+            }
+        }
+        for(MarketData md:ticks) {
+            buf.putInt(Math.min(depth, md.depth));
+        }
+        for(int i=0;i<depth;i++) {
+            for(MarketData md:ticks) {
+                buf.putLong(i<md.depth?md.bidPrices[i]:0);
+            }
+        }
+        for(int i=0;i<depth;i++) {
+            for(MarketData md:ticks) {
+                buf.putInt(i<md.depth?md.bidVolumes[i]:0);
+            }
+        }
+        for(int i=0;i<depth;i++) {
+            for(MarketData md:ticks) {
+                buf.putLong(i<md.depth?md.askPrices[i]:0);
+            }
+        }
+        for(int i=0;i<depth;i++) {
+            for(MarketData md:ticks) {
+                buf.putInt(i<md.depth?md.askVolumes[i]:0);
+            }
+        }
+        buf.flip();
+
+        File tmpFile = new File(file.getParentFile(), file.getName()+".tmp");
+        try(FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);){
+            while(buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(false);
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long getLong(MarketData md, int column) {
+        switch(column) {
+        case COL_TIMESTAMP:
+            return md.updateTimestamp;
+        case COL_LAST_PRICE:
+            return md.lastPrice;
+        case COL_VOLUME:
+            return md.volume;
+        case COL_TURNOVER:
+            return md.turnover;
+        case COL_OPEN_INTEREST:
+            return md.openInterest;
+        case COL_PRE_SETTLEMENT_PRICE:
+            return md.preSettlementPrice;
+        case COL_PRE_CLOSE_PRICE:
+            return md.preClosePrice;
+        case COL_OPEN_PRICE:
+            return md.openPrice;
+        case COL_HIGHEST_PRICE:
+            return md.highestPrice;
+        case COL_LOWEST_PRICE:
+            return md.lowestPrice;
+        case COL_AVERAGE_PRICE:
+            return md.averagePrice;
+        case COL_UPPER_LIMIT_PRICE:
+            return md.upperLimitPrice;
+        case COL_LOWER_LIMIT_PRICE:
+            return md.lowerLimitPrice;
+        default:
+            throw new IllegalArgumentException("Unknown column "+column);
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package trader.service.md;
+
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntToLongFunction;
+
+/**
+ * 行情切片的游标, 逐条解码, 不需要一次性加载整天数据到内存
+ */
+public interface TickCursor extends AutoCloseable {
+
+    /**
+     * 移动到下一条行情
+     *
+     * @return false 如果没有更多数据
+     */
+    public boolean next();
+
+    /**
+     * 当前行情
+     */
+    public MarketData getTick();
+
+    @Override
+    public void close();
+
+    /**
+     * 按时间定位, 之后的next()返回最后一条 updateTimestamp&lt;=timestamp 的行情(如果没有则是第一条).
+     * <BR>只能在读取第一条行情之前调用
+     *
+     * @return false 如果不支持按时间定位, 需要逐条读取
+     */
+    public default boolean seek(long timestamp) {
+        return false;
+    }
+
+    /**
+     * 在按时间排序的数据中, 二分查找最后一个 timestamp&lt;=目标时间 的位置, 如果没有返回0
+     */
+    public static int floorIndex(int size, IntToLongFunction timestamps, long timestamp) {
+        int low = 0, high = size-1, result = 0;
+        while( low<=high ) {
+            int mid = (low+high)>>>1;
+            if ( timestamps.applyAsLong(mid)<=timestamp ) {
+                result = mid;
+                low = mid+1;
+            } else {
+                high = mid-1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 从已经加载的行情列表创建游标
+     */
+    public static TickCursor of(List<MarketData> ticks) {
+        return new TickCursor() {
+            private int index = -1;
+            private MarketData tick;
+
+            @Override
+            public boolean next() {
+                if ( index+1<ticks.size() ) {
+                    index++;
+                    tick = ticks.get(index);
+                    return true;
+                }
+                index = ticks.size();
+                tick = null;
+                return false;
+            }
+
+            @Override
+            public boolean seek(long timestamp) {
+                if ( ticks instanceof RandomAccess ) {
+                    index = floorIndex(ticks.size(), (int i)->ticks.get(i).updateTimestamp, timestamp)-1;
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public MarketData getTick() {
+                return tick;
+            }
+
+            @Override
+            public void close() {
+                tick = null;
+            }
+        };
+    }
+}
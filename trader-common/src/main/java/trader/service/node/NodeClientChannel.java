@@ -1,5 +1,12 @@
 package trader.service.node;
 
+import java.io.Writer;
+import java.time.LocalDate;
+
+import trader.common.exception.AppException;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData.DataInfo;
+
 /**
  * 节点客户端服务, 用于主动通过websocket连接节点管理服务
  */
@@ -12,4 +19,9 @@ public interface NodeClientChannel extends NodeEndpoint, NodeConstants {
      */
     public NodeState getState();
 
+    /**
+     * 从Broker查询品种数据, 数据分段返回并依次写入writer
+     */
+    public void dataQuery(Exchangeable instrument, DataInfo dataInfo, LocalDate tradingDay, Writer writer) throws AppException;
+
 }
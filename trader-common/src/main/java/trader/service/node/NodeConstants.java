@@ -19,7 +19,17 @@ public interface NodeConstants {
     public static final String TYPE_SUFFIX_PUSH = "Push";
 
     /**
-     * Client->Broker, Client初始化
+     * 二进制消息格式, 可以在InitReq/InitRep中协商
+     */
+    public static final String WIRE_FORMAT_BINARY = "binary";
+    /**
+     * 二进制消息较大时使用deflate压缩
+     */
+    public static final String WIRE_FORMAT_DEFLATE = "deflate";
+
+    /**
+     * Client->Broker, Client初始化. 消息字段:
+     * <LI>wireFormats: string array, Client支持的消息格式, InitRep返回Broker接受的消息格式, InitRep之后双方使用该格式发送消息
      */
     public static final String TYPE_INIT_REQ = "InitReq";
     public static final String TYPE_INIT_REP = "InitRep";
@@ -69,11 +79,13 @@ public interface NodeConstants {
      * <LI>exchangeable: string, 合约名
      * <LI>dataInfo: string, dataInfo名称
      * <LI>tradingDay: string, 交易日
+     * <LI>moreData: boolean, 是否接受分段返回
      */
     public static final String TYPE_DATAQUERY_REQ = "DataQueryReq";
     /**
      * Broker->Client, 查询结果:消息字段:
      * <LI>data: string, CSV格式查询结果
+     * <LI>moreData: boolean, 分段返回时除最后一段外为true
      */
     public static final String TYPE_DATAQUERY_REP = "DataQueryRep";
 
@@ -93,10 +105,20 @@ public interface NodeConstants {
     public static final String TOPIC_TRADE_ACCOUNT_MONEY = "/trade/account/money";
 
     /**
-     * 账户基础信息, 每分钟推送1次
+     * 账户全量信息, 启动/账户状态变化/Broker请求时推送
      */
     public static final String TOPIC_TRADE_ACCOUNT_INFO = "/trade/account/info";
 
+    /**
+     * 账户增量变化: 带序号的变化的资金/报单/持仓, 每3-5秒推送1次.
+     */
+    public static final String TOPIC_TRADE_ACCOUNT_DELTA = "/trade/account/delta";
+
+    /**
+     * Broker发现增量序号不连续时请求账户全量信息, 由交易节点订阅
+     */
+    public static final String TOPIC_TRADE_ACCOUNT_SNAPSHOT_REQ = "/trade/account/snapshotReq";
+
     public static final String TOPIC_TRADE_ORDER = "/trade/order";
 
     public static final String TOPIC_TRADE_TXN = "/trade/txn";
@@ -93,6 +93,10 @@ public class NodeMessage implements NodeConstants, JsonEnabled {
      * 查询数据
      */
     public static final String FIELD_DATA = "data";
+    /**
+     * 支持/接受的消息格式列表
+     */
+    public static final String FIELD_WIRE_FORMATS = "wireFormats";
     /**
      * ControllerInvoke的URI路径
      */
@@ -114,7 +118,7 @@ public class NodeMessage implements NodeConstants, JsonEnabled {
         this(type, nextId.incrementAndGet(), 0, 0, null);
     }
 
-    private NodeMessage(String type, int id, int reqId, int corrId, Map<String,Object> fields) {
+    NodeMessage(String type, int id, int reqId, int corrId, Map<String,Object> fields) {
         this.type = type;
         this.id = id;
         this.reqId = reqId;
@@ -203,6 +207,10 @@ public class NodeMessage implements NodeConstants, JsonEnabled {
         fields.putAll(values);
     }
 
+    public boolean hasMoreData() {
+        return ConversionUtil.toBoolean(fields.get(FIELD_MORE_DATA));
+    }
+
     public String toString() {
         return toJson().toString();
     }
@@ -212,6 +220,9 @@ public class NodeMessage implements NodeConstants, JsonEnabled {
         JsonObject json = new JsonObject();
         json.addProperty(FIELD_TYPE, type);
         json.addProperty(FIELD_ID, id);
+        if ( reqId!=0 ) {
+            json.addProperty(FIELD_REQID, reqId);
+        }
         json.addProperty(FIELD_CORRID, corrId);
         json.addProperty(FIELD_ERROR_CODE, errCode);
         if ( errCode!=0 ) {
@@ -0,0 +1,355 @@
+package trader.service.node;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import trader.common.util.JsonUtil;
+
+/**
+ * NodeMessage的二进制编解码.
+ * <BR>格式: MAGIC(1字节) + VERSION(1字节) + FLAGS(1字节) + BODY
+ * <BR>BODY: type, id, reqId, corrId, errCode, errMsg, 字段数量, 字段名/字段值...
+ * <BR>整数使用zigzag变长编码, 字符串使用 长度+UTF8; 压缩时BODY为 原始长度+deflate数据
+ */
+public class NodeMessageCodec {
+
+    public static final byte MAGIC = 0x4E;
+    public static final byte VERSION = 1;
+    public static final int FLAG_DEFLATE = 1;
+
+    /**
+     * 超过该长度的消息才压缩
+     */
+    public static final int DEFLATE_THRESHOLD = 8*1024;
+
+    /**
+     * 解压后消息的最大长度, 避免对方发送的原始长度导致分配过大的内存
+     */
+    public static final int MAX_MESSAGE_SIZE = 64*1024*1024;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_STRING = 1;
+    private static final int TAG_LONG = 2;
+    private static final int TAG_DOUBLE = 3;
+    private static final int TAG_TRUE = 4;
+    private static final int TAG_FALSE = 5;
+    private static final int TAG_LIST = 6;
+    private static final int TAG_MAP = 7;
+
+    /**
+     * 编码消息
+     *
+     * @param deflate 消息较大时是否压缩
+     */
+    public static byte[] encode(NodeMessage msg, boolean deflate) {
+        Encoder encoder = new Encoder();
+        encoder.writeString(msg.getType());
+        encoder.writeVarLong(msg.getId());
+        encoder.writeVarLong(msg.getReqId());
+        encoder.writeVarLong(msg.getCorrId());
+        encoder.writeVarLong(msg.getErrCode());
+        encoder.writeValue(msg.getErrMsg());
+        Map<String, Object> fields = msg.getFields();
+        encoder.writeVarLong(fields.size());
+        for(Map.Entry<String, Object> entry:fields.entrySet()) {
+            encoder.writeString(entry.getKey());
+            encoder.writeValue(entry.getValue());
+        }
+        byte[] body = encoder.toByteArray();
+        int flags = 0;
+        if ( deflate && body.length>=DEFLATE_THRESHOLD ) {
+            Encoder deflated = new Encoder();
+            deflated.writeVarLong(body.length);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(body);
+                deflater.finish();
+                byte[] buf = new byte[64*1024];
+                while(!deflater.finished()) {
+                    int len = deflater.deflate(buf);
+                    deflated.write(buf, 0, len);
+                }
+            }finally {
+                deflater.end();
+            }
+            body = deflated.toByteArray();
+            flags |= FLAG_DEFLATE;
+        }
+        byte[] result = new byte[3+body.length];
+        result[0] = MAGIC;
+        result[1] = VERSION;
+        result[2] = (byte)flags;
+        System.arraycopy(body, 0, result, 3, body.length);
+        return result;
+    }
+
+    /**
+     * 解码消息
+     */
+    public static NodeMessage decode(ByteBuffer buf) throws IOException {
+        if ( !buf.hasArray() ) {
+            byte[] data = new byte[buf.remaining()];
+            buf.get(data);
+            buf = ByteBuffer.wrap(data);
+        }
+        if ( buf.remaining()<3 || buf.get()!=MAGIC ) {
+            throw new IOException("Invalid node message header");
+        }
+        byte version = buf.get();
+        if ( version!=VERSION ) {
+            throw new IOException("Unsupported node message version "+version);
+        }
+        int flags = buf.get();
+        if ( (flags&FLAG_DEFLATE)!=0 ) {
+            long rawLength0 = readVarLong(buf);
+            if ( rawLength0<0 || rawLength0>MAX_MESSAGE_SIZE ) {
+                throw new IOException("Invalid node message length "+rawLength0+", max "+MAX_MESSAGE_SIZE);
+            }
+            int rawLength = (int)rawLength0;
+            byte[] compressed = new byte[buf.remaining()];
+            buf.get(compressed);
+            byte[] raw = new byte[rawLength];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed);
+                int len = 0;
+                while(len<rawLength && !inflater.finished()) {
+                    int n = inflater.inflate(raw, len, rawLength-len);
+                    if ( n==0 && (inflater.needsInput() || inflater.needsDictionary()) ) {
+                        break;
+                    }
+                    len += n;
+                }
+                if ( len!=rawLength ) {
+                    throw new IOException("Truncated node message, expected "+rawLength+" got "+len);
+                }
+            }catch(DataFormatException e) {
+                throw new IOException("Inflate node message failed", e);
+            }finally {
+                inflater.end();
+            }
+            buf = ByteBuffer.wrap(raw);
+        }
+        String type = readString(buf);
+        int id = (int)readVarLong(buf);
+        int reqId = (int)readVarLong(buf);
+        int corrId = (int)readVarLong(buf);
+        int errCode = (int)readVarLong(buf);
+        String errMsg = (String)readValue(buf);
+        int fieldCount = (int)readVarLong(buf);
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for(int i=0;i<fieldCount;i++) {
+            String key = readString(buf);
+            fields.put(key, readValue(buf));
+        }
+        NodeMessage result = new NodeMessage(type, id, reqId, corrId, fields);
+        result.setErrCode(errCode);
+        result.setErrMsg(errMsg);
+        return result;
+    }
+
+    private static class Encoder extends ByteArrayOutputStream {
+
+        Encoder(){
+            super(256);
+        }
+
+        void writeVarLong(long v) {
+            //zigzag
+            v = (v<<1)^(v>>63);
+            while( (v&~0x7FL)!=0 ) {
+                write((int)((v&0x7F)|0x80));
+                v >>>= 7;
+            }
+            write((int)v);
+        }
+
+        void writeString(String str) {
+            byte[] data = str.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(data.length);
+            write(data, 0, data.length);
+        }
+
+        void writeValue(Object value) {
+            if ( null==value ) {
+                write(TAG_NULL);
+            } else if ( value instanceof String ) {
+                write(TAG_STRING);
+                writeString((String)value);
+            } else if ( value instanceof Boolean ) {
+                write(((Boolean)value)?TAG_TRUE:TAG_FALSE);
+            } else if ( value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte ) {
+                write(TAG_LONG);
+                writeVarLong(((Number)value).longValue());
+            } else if ( value instanceof Number ) {
+                write(TAG_DOUBLE);
+                writeDouble(((Number)value).doubleValue());
+            } else if ( value instanceof Enum ) {
+                write(TAG_STRING);
+                writeString(((Enum)value).name());
+            } else if ( value instanceof Map ) {
+                Map<Object, Object> map = (Map)value;
+                write(TAG_MAP);
+                writeVarLong(map.size());
+                for(Map.Entry<Object, Object> entry:map.entrySet()) {
+                    writeString(entry.getKey().toString());
+                    writeValue(entry.getValue());
+                }
+            } else if ( value instanceof Collection ) {
+                Collection<Object> list = (Collection)value;
+                write(TAG_LIST);
+                writeVarLong(list.size());
+                for(Object elem:list) {
+                    writeValue(elem);
+                }
+            } else if ( value instanceof Object[] ) {
+                Object[] arr = (Object[])value;
+                write(TAG_LIST);
+                writeVarLong(arr.length);
+                for(Object elem:arr) {
+                    writeValue(elem);
+                }
+            } else if ( value.getClass().isArray() ) {
+                int len = Array.getLength(value);
+                write(TAG_LIST);
+                writeVarLong(len);
+                for(int i=0;i<len;i++) {
+                    writeValue(Array.get(value, i));
+                }
+            } else if ( value instanceof JsonElement ) {
+                writeJson((JsonElement)value);
+            } else {
+                writeJson(JsonUtil.object2json(value));
+            }
+        }
+
+        void writeJson(JsonElement json) {
+            if ( null==json || json.isJsonNull() ) {
+                write(TAG_NULL);
+            } else if ( json.isJsonObject() ) {
+                JsonObject obj = (JsonObject)json;
+                write(TAG_MAP);
+                writeVarLong(obj.size());
+                for(Map.Entry<String, JsonElement> entry:obj.entrySet()) {
+                    writeString(entry.getKey());
+                    writeJson(entry.getValue());
+                }
+            } else if ( json.isJsonArray() ) {
+                JsonArray arr = (JsonArray)json;
+                write(TAG_LIST);
+                writeVarLong(arr.size());
+                for(JsonElement elem:arr) {
+                    writeJson(elem);
+                }
+            } else {
+                JsonPrimitive p = (JsonPrimitive)json;
+                if ( p.isBoolean() ) {
+                    write(p.getAsBoolean()?TAG_TRUE:TAG_FALSE);
+                } else if ( p.isNumber() ) {
+                    double d = p.getAsDouble();
+                    if ( d==Math.rint(d) && Math.abs(d)<(1L<<53) ) {
+                        write(TAG_LONG);
+                        writeVarLong((long)d);
+                    } else {
+                        write(TAG_DOUBLE);
+                        writeDouble(d);
+                    }
+                } else {
+                    write(TAG_STRING);
+                    writeString(p.getAsString());
+                }
+            }
+        }
+
+        void writeDouble(double d) {
+            long v = Double.doubleToRawLongBits(d);
+            for(int i=0;i<8;i++) {
+                write((int)(v>>>(i*8)));
+            }
+        }
+    }
+
+    private static long readVarLong(ByteBuffer buf) {
+        long v = 0;
+        int shift = 0;
+        while(true) {
+            int b = buf.get()&0xFF;
+            v |= ((long)(b&0x7F))<<shift;
+            if ( (b&0x80)==0 ) {
+                break;
+            }
+            shift += 7;
+        }
+        return (v>>>1)^-(v&1);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = (int)readVarLong(buf);
+        String result = new String(buf.array(), buf.arrayOffset()+buf.position(), len, StandardCharsets.UTF_8);
+        buf.position(buf.position()+len);
+        return result;
+    }
+
+    private static Object readValue(ByteBuffer buf) throws IOException {
+        int tag = buf.get();
+        switch(tag) {
+        case TAG_NULL:
+            return null;
+        case TAG_STRING:
+            return readString(buf);
+        case TAG_LONG:
+            return readVarLong(buf);
+        case TAG_DOUBLE:{
+            long v = 0;
+            for(int i=0;i<8;i++) {
+                v |= ((long)(buf.get()&0xFF))<<(i*8);
+            }
+            return Double.longBitsToDouble(v);
+        }
+        case TAG_TRUE:
+            return Boolean.TRUE;
+        case TAG_FALSE:
+            return Boolean.FALSE;
+        case TAG_LIST:{
+            int size = (int)readVarLong(buf);
+            //每个元素至少1字节, 避免按照错误的数量预分配
+            if ( size<0 || size>buf.remaining() ) {
+                throw new IOException("Invalid list size "+size);
+            }
+            List<Object> list = new ArrayList<>(size);
+            for(int i=0;i<size;i++) {
+                list.add(readValue(buf));
+            }
+            return list;
+        }
+        case TAG_MAP:{
+            int size = (int)readVarLong(buf);
+            Map<String, Object> map = new LinkedHashMap<>();
+            for(int i=0;i<size;i++) {
+                String key = readString(buf);
+                map.put(key, readValue(buf));
+            }
+            return map;
+        }
+        default:
+            throw new IOException("Unknown value tag "+tag);
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package trader.service.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 延时分布统计, 按照2的幂次划分纳秒区间, 记录时不分配内存.
+ * <BR>单线程记录, 统计线程读取近似值
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private volatile long count;
+    private volatile long max;
+
+    /**
+     * 记录一次延时, 单位纳秒
+     */
+    public void record(long nanos) {
+        if ( nanos<0 ) {
+            nanos = 0;
+        }
+        int idx = bucketIndex(nanos);
+        buckets.lazySet(idx, buckets.get(idx)+1);
+        if ( nanos>max ) {
+            max = nanos;
+        }
+        count++;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * 返回百分位延时(区间上限), 单位纳秒
+     *
+     * @param percentile 0-100
+     */
+    public long getPercentile(double percentile) {
+        long[] values = new long[BUCKETS];
+        long total = 0;
+        for(int i=0;i<BUCKETS;i++) {
+            values[i] = buckets.get(i);
+            total += values[i];
+        }
+        if ( total==0 ) {
+            return 0;
+        }
+        long threshold = (long)Math.ceil(total*percentile/100);
+        long sum = 0;
+        for(int i=0;i<BUCKETS;i++) {
+            sum += values[i];
+            if ( sum>=threshold && values[i]>0 ) {
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 注册统计指标: totalCount, currP50Micros, currP99Micros, currMaxMicros
+     */
+    public void registerStats(StatsCollector statsCollector, String service, String component) {
+        statsCollector.registerStatsItem(new StatsItem(service, component, "totalCount"),  (StatsItem itemInfo) -> {
+            return getCount();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, component, "currP50Micros"),  (StatsItem itemInfo) -> {
+            return getPercentile(50)/1000.0;
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, component, "currP99Micros"),  (StatsItem itemInfo) -> {
+            return getPercentile(99)/1000.0;
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, component, "currMaxMicros"),  (StatsItem itemInfo) -> {
+            return getMax()/1000.0;
+        });
+    }
+
+    private static int bucketIndex(long nanos) {
+        return 64-Long.numberOfLeadingZeros(nanos);
+    }
+
+    private static long bucketUpperBound(int index) {
+        if ( index>=63 ) {
+            return Long.MAX_VALUE;
+        }
+        return (1L<<index)-1;
+    }
+
+}
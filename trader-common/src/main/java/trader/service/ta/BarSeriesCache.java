@@ -0,0 +1,149 @@
+package trader.service.ta;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.tick.PriceLevel;
+import trader.common.util.DateUtil;
+
+/**
+ * 按 合约/级别/交易日 保存计算好的KBAR的二进制缓存, 位于数据仓库的 _barCache 目录, 实盘和回测工具共用.
+ * <BR>缓存记录源数据(MIN1/TICK文件)的版本, 源数据改变或者格式版本改变时重新计算.
+ * <P>文件格式: HEADER(32字节) + 每个BAR定长 FutureBarImpl.BINARY_SIZE 字节
+ */
+public class BarSeriesCache {
+    private final static Logger logger = LoggerFactory.getLogger(BarSeriesCache.class);
+
+    public static final String SUBDIR = "_barCache";
+    public static final int MAGIC = 0x42415231;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+
+    private static final Map<File, BarSeriesCache> caches = new ConcurrentHashMap<>();
+
+    private File dir;
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+
+    public BarSeriesCache(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * 返回数据仓库对应的缓存
+     */
+    public static BarSeriesCache getInstance(ExchangeableData data) {
+        File dir = new File(data.getDataDir(), SUBDIR);
+        return caches.computeIfAbsent(dir, (File f)->new BarSeriesCache(f));
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public File getFile(Exchangeable instrument, PriceLevel level, LocalDate tradingDay) {
+        File instrumentDir = new File(new File(dir, instrument.exchange().name()), instrument.id());
+        return new File(instrumentDir, DateUtil.date2str(tradingDay)+"."+level.name()+".bar");
+    }
+
+    /**
+     * 加载缓存的KBAR, 缓存不存在或者源数据版本不同时返回null
+     */
+    public List<FutureBarImpl> load(Exchangeable instrument, PriceLevel level, ExchangeableTradingTimes tradingTimes, long sourceVersion) {
+        File file = getFile(instrument, level, tradingTimes.getTradingDay());
+        List<FutureBarImpl> result = null;
+        if ( file.exists() ) {
+            try {
+                result = read(file, tradingTimes, sourceVersion);
+            }catch(Throwable t) {
+                logger.warn("Load bar cache "+file+" failed: "+t);
+            }
+        }
+        if ( result!=null ) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * 保存KBAR到缓存, 先写临时文件再改名, 多个进程同时写入不会读到写了一半的文件
+     */
+    public void save(Exchangeable instrument, PriceLevel level, LocalDate tradingDay, long sourceVersion, List<FutureBarImpl> bars) throws IOException {
+        File file = getFile(instrument, level, tradingDay);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE+bars.size()*FutureBarImpl.BINARY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC);
+        buf.putInt(VERSION);
+        buf.putInt(bars.size());
+        buf.putInt(FutureBarImpl.BINARY_SIZE);
+        buf.putLong(sourceVersion);
+        buf.position(HEADER_SIZE);
+        for(FutureBarImpl bar:bars) {
+            bar.save(buf);
+        }
+        buf.flip();
+
+        File parentDir = file.getParentFile();
+        parentDir.mkdirs();
+        Path tmpFile = Files.createTempFile(parentDir.toPath(), file.getName(), ".tmp");
+        try {
+            try(FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);){
+                while(buf.hasRemaining()) {
+                    channel.write(buf);
+                }
+            }
+            Files.move(tmpFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    private static List<FutureBarImpl> read(File file, ExchangeableTradingTimes tradingTimes, long sourceVersion) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        if ( buf.capacity()<HEADER_SIZE || buf.getInt(0)!=MAGIC || buf.getInt(4)!=VERSION ) {
+            return null;
+        }
+        int rowCount = buf.getInt(8);
+        if ( buf.getInt(12)!=FutureBarImpl.BINARY_SIZE || buf.getLong(16)!=sourceVersion ) {
+            return null;
+        }
+        if ( buf.capacity()<HEADER_SIZE+rowCount*FutureBarImpl.BINARY_SIZE ) {
+            throw new IOException("Truncated bar cache file, rows "+rowCount);
+        }
+        buf.position(HEADER_SIZE);
+        List<FutureBarImpl> result = new ArrayList<>(rowCount);
+        for(int i=0;i<rowCount;i++) {
+            result.add(FutureBarImpl.fromBinary(buf, tradingTimes));
+        }
+        return result;
+    }
+
+}
@@ -19,6 +19,8 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.ta4j.core.Bar;
 
 import it.unimi.dsi.fastutil.longs.LongArrayList;
@@ -40,11 +42,13 @@ import trader.service.md.MarketData;
 import trader.service.md.MarketDataProducer;
 import trader.service.md.MarketDataProducerFactory;
 import trader.service.md.MarketDataService;
+import trader.service.md.TickCursor;
 
 /**
  * 行情数据加载和转换为分钟级别数据
  */
 public class BarSeriesLoader {
+    private final static Logger logger = LoggerFactory.getLogger(BarSeriesLoader.class);
 
     private ExecutorService executorService;
     private BeansContainer beansContainer;
@@ -74,16 +78,24 @@ public class BarSeriesLoader {
 
     private Map<LocalDate, ExchangeableTradingTimes> tradingDays = new HashMap<>();
 
+    /**
+     * 从TICK计算的KBAR缓存, null表示不使用缓存
+     */
+    private BarSeriesCache barCache;
+
     public BarSeriesLoader(BeansContainer beansContainer, ExchangeableData data) {
         this.beansContainer = beansContainer;
         this.data = data;
         if (null!=beansContainer)
             this.executorService = beansContainer.getBean(ExecutorService.class);
+        if (null!=data && null!=data.getDataDir())
+            this.barCache = BarSeriesCache.getInstance(data);
     }
 
     public BarSeriesLoader clone() {
         BarSeriesLoader result = new BarSeriesLoader(beansContainer, data);
         result.executorService = this.executorService;
+        result.barCache = barCache;
         result.instrument = instrument;
         result.level = level;
         result.endTime = endTime;
@@ -117,6 +129,18 @@ public class BarSeriesLoader {
         return this.level;
     }
 
+    /**
+     * 设置KBAR缓存, null关闭缓存
+     */
+    public BarSeriesLoader setBarCache(BarSeriesCache barCache) {
+        this.barCache = barCache;
+        return this;
+    }
+
+    public BarSeriesCache getBarCache() {
+        return barCache;
+    }
+
     /**
      * 设置第一个交易日, 缺省为当天
      */
@@ -163,35 +187,80 @@ public class BarSeriesLoader {
      */
     public List<MarketData> loadMarketDataTicks(Exchangeable instrument, LocalDate tradingDay, LocalDateTime endTime, DataInfo tickDataInfo) throws IOException
     {
-        if (!data.exists(instrument, tickDataInfo, tradingDay)) {
-            return Collections.emptyList();
-        }
         List<MarketData> result = new ArrayList<>();
+        try(TickCursor cursor = openMarketDataTicks(instrument, tradingDay, endTime, tickDataInfo);){
+            while(cursor.next()) {
+                result.add(cursor.getTick());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 以游标方式逐条加载行情切片, 内存占用与单条行情相当
+     */
+    public TickCursor openMarketDataTicks(Exchangeable instrument, LocalDate tradingDay, LocalDateTime endTime, DataInfo tickDataInfo) throws IOException
+    {
+        if (!data.exists(instrument, tickDataInfo, tradingDay)
+                && !(tickDataInfo == ExchangeableData.TICK_CTP && data.exists(instrument, ExchangeableData.TICK_COLUMNS, tradingDay))) {
+            return TickCursor.of(Collections.emptyList());
+        }
         MarketDataService mdService = this.beansContainer.getBean(MarketDataService.class);
         MarketDataProducerFactory ctpFactory = mdService.getProducerFactories().get(tickDataInfo.provider());
         MarketDataProducer mdProducer = ctpFactory.create(beansContainer, null);
         CSVMarshallHelper csvMarshallHelper = ctpFactory.createCSVMarshallHelper();
-        String csv = data.load(instrument, tickDataInfo, tradingDay);
-        CSVDataSet csvDataSet = CSVUtil.parse(csv);
         ExchangeableTradingTimes tradingTimes = instrument.exchange().getTradingTimes(instrument, tradingDay);
+        TickCursor cursor = data.openTicks(instrument, tickDataInfo, tradingDay, mdProducer, csvMarshallHelper);
+        return new PostProcessTickCursor(cursor, tradingTimes, endTime);
+    }
 
-        // 修在updateTime/updateTimstamp数据, 对于匪所, 同一秒的TICK序言耗时增加200MS
-        long lastTimestamp = 0;
-        while (csvDataSet.next()) {
-            MarketData tick = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), tradingDay);
-            if (endTime != null && endTime.isBefore(tick.updateTime)) {
-                continue;
-            }
-            if (lastTimestamp >= tick.updateTimestamp) {
-                tick.updateTimestamp = lastTimestamp + 200;
-                tick.updateTime = Instant.ofEpochMilli(tick.updateTimestamp)
-                        .atZone(tick.instrument.exchange().getZoneId()).toLocalDateTime();
+    /**
+     * 修在updateTime/updateTimstamp数据, 对于匪所, 同一秒的TICK序言耗时增加200MS
+     */
+    private static class PostProcessTickCursor implements TickCursor {
+        private TickCursor cursor;
+        private ExchangeableTradingTimes tradingTimes;
+        private LocalDateTime endTime;
+        private long lastTimestamp = 0;
+        private MarketData tick;
+
+        PostProcessTickCursor(TickCursor cursor, ExchangeableTradingTimes tradingTimes, LocalDateTime endTime){
+            this.cursor = cursor;
+            this.tradingTimes = tradingTimes;
+            this.endTime = endTime;
+        }
+
+        @Override
+        public boolean next() {
+            tick = null;
+            while(cursor.next()) {
+                MarketData tick = cursor.getTick();
+                if (endTime != null && endTime.isBefore(tick.updateTime)) {
+                    continue;
+                }
+                if (lastTimestamp >= tick.updateTimestamp) {
+                    tick.updateTimestamp = lastTimestamp + 200;
+                    tick.updateTime = Instant.ofEpochMilli(tick.updateTimestamp)
+                            .atZone(tick.instrument.exchange().getZoneId()).toLocalDateTime();
+                }
+                tick.postProcess(tradingTimes);
+                lastTimestamp = tick.updateTimestamp;
+                this.tick = tick;
+                return true;
             }
-            tick.postProcess(tradingTimes);
-            lastTimestamp = tick.updateTimestamp;
-            result.add(tick);
+            return false;
+        }
+
+        @Override
+        public MarketData getTick() {
+            return tick;
+        }
+
+        @Override
+        public void close() {
+            cursor.close();
+            tick = null;
         }
-        return result;
     }
 
     /**
@@ -212,10 +281,22 @@ public class BarSeriesLoader {
         if (level.name().startsWith(PriceLevel.LEVEL_MIN)) { // 基于时间切分BAR
             List<java.util.concurrent.Future<List<FutureBarImpl>>> dayBarsFutures = new ArrayList<>();
             LocalDate tradingDay = endTradingDay;
+            // 启用SQL时一次查询全部交易日的MIN1数据, 否则逐日加载, 避免同时持有全部交易日的CSV
+            boolean min1Range = level == PriceLevel.MIN1 && data.isSqlEnabled(ExchangeableData.MIN1);
+            Map<LocalDate, String> min1Csvs = new HashMap<>();
+            if (min1Range) {
+                min1Csvs = data.loadRange(instrument, ExchangeableData.MIN1, startTradingDay, endTradingDay);
+            }
             // 从后向前
             while (tradingDay.compareTo(startTradingDay) >= 0) {
-                if (level == PriceLevel.MIN1 && data.exists(instrument, ExchangeableData.MIN1, tradingDay)) {
-                    List<FutureBarImpl> dayMin1Bars = loadMin1Bars(tradingDay);
+                String min1Csv = null;
+                if (min1Range) {
+                    min1Csv = min1Csvs.remove(tradingDay);
+                } else if (level == PriceLevel.MIN1 && data.exists(instrument, ExchangeableData.MIN1, tradingDay)) {
+                    min1Csv = data.load(instrument, ExchangeableData.MIN1, tradingDay);
+                }
+                if (min1Csv != null) {
+                    List<FutureBarImpl> dayMin1Bars = loadMin1Bars(tradingDay, min1Csv);
                     checkBars(dayMin1Bars, tradingDay, PriceLevel.MIN1);
                     min1BarsByDay.put(tradingDay, dayMin1Bars);
                 }
@@ -225,7 +306,7 @@ public class BarSeriesLoader {
                     if (min1BarsByDay.containsKey(tradingDay2)) {
                         dayBars = timedBarsFromMin1(tradingDay2, min1BarsByDay.get(tradingDay2));
                     } else {
-                        dayBars = loadMinFromTicks(tradingDay2);
+                        dayBars = loadMinFromTicksCached(tradingDay2);
                     }
                     checkBars(dayBars, tradingDay2, this.level);
                     return dayBars;
@@ -250,10 +331,9 @@ public class BarSeriesLoader {
             }
         }
         // 转换Bar为TimeSeries
-        BaseLeveledBarSeries result = new BaseLeveledBarSeries(instrument, instrument.name() + "-" + resolvedLevel,
-                resolvedLevel, LongNum::valueOf);
-        for (int i = 0; i < bars.size(); i++) {
-            Bar bar = bars.get(i);
+        ColumnarLeveledBarSeries result = new ColumnarLeveledBarSeries(instrument, instrument.name() + "-" + resolvedLevel,
+                resolvedLevel, LongNum::valueOf, bars.size());
+        for (Bar bar : bars) {
             result.addBar(bar);
         }
         return result;
@@ -312,10 +392,9 @@ public class BarSeriesLoader {
     /**
      * 加载某日的MIN1数据
      */
-    private List<FutureBarImpl> loadMin1Bars(LocalDate tradingDay) throws IOException {
+    private List<FutureBarImpl> loadMin1Bars(LocalDate tradingDay, String csv) throws IOException {
         List<FutureBarImpl> result = new ArrayList<>();
         ZoneId zoneId = instrument.exchange().getZoneId();
-        String csv = data.load(instrument, ExchangeableData.MIN1, tradingDay);
         CSVDataSet csvDataSet = CSVUtil.parse(csv);
         int colIndex = csvDataSet.getColumnIndex(ExchangeableData.COLUMN_INDEX);
         ExchangeableTradingTimes tradingTimes = instrument.exchange().getTradingTimes(instrument, tradingDay);
@@ -335,61 +414,105 @@ public class BarSeriesLoader {
      * 加载某日的TICK数据, 转换为MIN1数据
      */
     private List<FutureBarImpl> loadMinFromTicks(LocalDate tradingDay) throws IOException {
-        List<MarketData> marketDatas = loadMarketData(tradingDay);
-        List<FutureBarImpl> minBars = marketDatas2bars(instrument, tradingDay, level, marketDatas);
+        List<FutureBarImpl> minBars = null;
+        try(TickCursor ticks = openMarketData(tradingDay);){
+            minBars = marketDatas2bars(instrument, tradingDay, level, ticks);
+        }
         if (level == PriceLevel.MIN1) {
             min1BarsByDay.put(tradingDay, minBars);
         }
         return minBars;
     }
 
+    /**
+     * 优先从缓存加载TICK计算的KBAR. 最后一个交易日的数据可能不完整, 也不会在截止时间之后, 不使用缓存
+     */
+    private List<FutureBarImpl> loadMinFromTicksCached(LocalDate tradingDay) throws IOException {
+        if (barCache == null || tradingDay.compareTo(endTradingDay) >= 0) {
+            return loadMinFromTicks(tradingDay);
+        }
+        ExchangeableTradingTimes tradingTimes = instrument.exchange().getTradingTimes(instrument, tradingDay);
+        if (tradingTimes == null || (endTime != null && endTime.isBefore(tradingTimes.getMarketCloseTime()))) {
+            return loadMinFromTicks(tradingDay);
+        }
+        long sourceVersion = getSourceVersion(tradingDay);
+        if (sourceVersion == 0) {
+            return loadMinFromTicks(tradingDay);
+        }
+        List<FutureBarImpl> result = barCache.load(instrument, level, tradingTimes, sourceVersion);
+        if (result == null) {
+            result = loadMinFromTicks(tradingDay);
+            if (!result.isEmpty()) {
+                try {
+                    barCache.save(instrument, level, tradingDay, sourceVersion, result);
+                } catch (IOException ioe) {
+                    logger.warn("Save bar cache " + instrument + " " + level + " " + tradingDay + " failed: " + ioe);
+                }
+            }
+        } else if (level == PriceLevel.MIN1) {
+            min1BarsByDay.put(tradingDay, result);
+        }
+        return result;
+    }
+
+    /**
+     * 源数据的版本, 任何一种源数据文件改变都会导致版本改变
+     */
+    private long getSourceVersion(LocalDate tradingDay) throws IOException {
+        long result = 0;
+        for (DataInfo dataInfo : new DataInfo[] { ExchangeableData.TICK_CTP, ExchangeableData.TICK_COLUMNS }) {
+            result = result * 31 + data.getDataVersion(instrument, dataInfo, tradingDay);
+        }
+        return result;
+    }
+
     /**
      * 将TICK数据转换为 VOL10K Bar这种数据, 如果TICK之间的volume不能被整除, 不会再次切分TICK.因为这是最小单位.
      */
     private Collection<FutureBarImpl> loadVolBars(LocalDate tradingDay, PriceLevel level) throws IOException {
         resolvedLevel = level;
         List<FutureBarImpl> result = new ArrayList<>();
-        List<MarketData> marketDatas = loadMarketData(tradingDay);
         int currIndex = 0;
         int volsPerBar = level.value();
         FutureBarImpl currBar = null;
         ExchangeableTradingTimes tradingTimes = instrument.exchange().getTradingTimes(instrument, tradingDay);
         MarketData md0 = null;
-        for (int i = 0; i < marketDatas.size(); i++) {
-            MarketData md = marketDatas.get(i);
-            if (tradingTimes.getTimeStage(md.updateTime) != MarketTimeStage.MarketOpen) {
-                continue;
-            }
-            if (null != currBar) {
-                // 如果Tick的Vol数量太大, 这就不能加了.
-                long volInTick = md.volume - currBar.getCloseTick().volume;
-                if (volInTick + currBar.getVolume().longValue() > volsPerBar * 3 / 2) {
-                    currBar = null;
+        try(TickCursor marketDatas = openMarketData(tradingDay);){
+            while (marketDatas.next()) {
+                MarketData md = marketDatas.getTick();
+                if (tradingTimes.getTimeStage(md.updateTime) != MarketTimeStage.MarketOpen) {
+                    continue;
                 }
-            }
-            if (null == currBar) {
-                if (null == md0) {
-                    md0 = md;
+                if (null != currBar) {
+                    // 如果Tick的Vol数量太大, 这就不能加了.
+                    long volInTick = md.volume - currBar.getCloseTick().volume;
+                    if (volInTick + currBar.getVolume().longValue() > volsPerBar * 3 / 2) {
+                        currBar = null;
+                    }
                 }
-                currBar = FutureBarImpl.fromTicks(currIndex++, tradingTimes, DateUtil.round(md.updateTime), md0, md, md.lastPrice, md.lastPrice);
-                result.add(currBar);
-            } else {
-                currBar.update(md, md.updateTime);
-                if (currBar.getVolume().longValue() >= volsPerBar) {
-                    currBar = null;
+                if (null == currBar) {
+                    if (null == md0) {
+                        md0 = md;
+                    }
+                    currBar = FutureBarImpl.fromTicks(currIndex++, tradingTimes, DateUtil.round(md.updateTime), md0, md, md.lastPrice, md.lastPrice);
+                    result.add(currBar);
+                } else {
+                    currBar.update(md, md.updateTime);
+                    if (currBar.getVolume().longValue() >= volsPerBar) {
+                        currBar = null;
+                    }
                 }
+                md0 = md;
             }
-            md0 = md;
         }
         return result;
     }
 
-    private List<MarketData> loadMarketData(LocalDate tradingDay) throws IOException {
-        List<MarketData> marketDatas = new ArrayList<>();
+    private TickCursor openMarketData(LocalDate tradingDay) throws IOException {
         if (instrument.getType() == ExchangeableType.FUTURE) {
-            marketDatas = loadMarketDataTicks(tradingDay, ExchangeableData.TICK_CTP);
+            return openMarketDataTicks(instrument, tradingDay, endTime, ExchangeableData.TICK_CTP);
         }
-        return marketDatas;
+        return TickCursor.of(Collections.emptyList());
     }
 
     /**
@@ -427,12 +550,23 @@ public class BarSeriesLoader {
         if (ticks.isEmpty()) {
             return Collections.emptyList();
         }
-        ExchangeableTradingTimes tradingTimes = exchangeable.exchange().getTradingTimes(exchangeable, tradingDay);
+        return marketDatas2bars(exchangeable, tradingDay, level, TickCursor.of(ticks));
+    }
+
+    /**
+     * 将原始CTP TICK转为MIN1 Bar, 逐条读取TICK, 只保留当前Bar的TICK
+     */
+    public static List<FutureBarImpl> marketDatas2bars(Exchangeable exchangeable, LocalDate tradingDay,
+            PriceLevel level, TickCursor ticks) {
+        ExchangeableTradingTimes tradingTimes = null;
         List<FutureBarImpl> result = new ArrayList<>();
         int barIndex = 0;
         List<MarketData> barTicks = new ArrayList<>();
-        for (int i = 0; i < ticks.size(); i++) {
-            MarketData currTick = ticks.get(i);
+        while (ticks.next()) {
+            MarketData currTick = ticks.getTick();
+            if (tradingTimes == null) {
+                tradingTimes = exchangeable.exchange().getTradingTimes(exchangeable, tradingDay);
+            }
             if (tradingTimes.getTimeStage(currTick.updateTime) != MarketTimeStage.MarketOpen) {
                 continue;
             }
@@ -0,0 +1,657 @@
+package trader.service.ta;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.ta4j.core.Bar;
+import org.ta4j.core.BaseBarSeries;
+import org.ta4j.core.num.Num;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.tick.PriceLevel;
+import trader.common.util.CSVWriter;
+import trader.common.util.DateUtil;
+import trader.common.util.JsonEnabled;
+import trader.common.util.JsonUtil;
+import trader.common.util.PriceUtil;
+import trader.service.md.MarketData;
+
+/**
+ * 列式保存的K线数据: 每个字段一个long[]数组, 不再为每个历史BAR保留FutureBarImpl对象.
+ * <BR>getBar()返回基于行号的轻量视图对象, 价格等数值按需转换为LongNum.
+ * <BR>最后一个BAR如果是FutureBarImpl会保留原对象, 因为FutureBarBuilder会在原对象上持续更新, 增加下一个BAR时再写入列数据.
+ */
+public class ColumnarLeveledBarSeries extends BaseBarSeries implements LeveledBarSeries, JsonEnabled {
+    private static final long serialVersionUID = -3021763587462011546L;
+
+    private static final int COL_OPEN = 0;
+    private static final int COL_HIGH = 1;
+    private static final int COL_LOW = 2;
+    private static final int COL_CLOSE = 3;
+    private static final int COL_AVG = 4;
+    private static final int COL_MKTAVG = 5;
+    private static final int COL_VOLUME = 6;
+    private static final int COL_AMOUNT = 7;
+    private static final int COL_BEGIN_VOLUME = 8;
+    private static final int COL_BEGIN_AMOUNT = 9;
+    private static final int COL_END_VOLUME = 10;
+    private static final int COL_END_AMOUNT = 11;
+    private static final int COL_UPPER_LIMIT = 12;
+    private static final int COL_LOWER_LIMIT = 13;
+    private static final int COL_BEGIN_OPENINT = 14;
+    private static final int COL_END_OPENINT = 15;
+    private static final int COL_BEGIN_TIME = 16;
+    private static final int COL_END_TIME = 17;
+    private static final int COL_DURATION = 18;
+    private static final int LONG_COLUMNS = 19;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private Exchangeable instrument;
+    private PriceLevel level;
+    private ZoneId zoneId;
+
+    /**
+     * 价格/成交量/成交额为LongNum原始值, 时间为epoch毫秒, 周期为毫秒
+     */
+    private long[][] longCols = new long[LONG_COLUMNS][];
+    private int[] barIndexes;
+    /**
+     * 交易日时间在tradingTimes中的位置
+     */
+    private int[] tradingTimesIndexes;
+    private List<ExchangeableTradingTimes> tradingTimes = new ArrayList<>();
+    private Map<LocalDate, Integer> tradingTimesByDay = new HashMap<>();
+    private int size;
+    /**
+     * 仍在更新的最后一个BAR
+     */
+    private FutureBar liveBar;
+
+    public ColumnarLeveledBarSeries(Exchangeable instrument, String name, PriceLevel level, Function<Number, Num> numFunction) {
+        this(instrument, name, level, numFunction, INITIAL_CAPACITY);
+    }
+
+    public ColumnarLeveledBarSeries(Exchangeable instrument, String name, PriceLevel level, Function<Number, Num> numFunction, int capacity) {
+        super(name, numFunction);
+        this.instrument = instrument;
+        this.level = level;
+        this.zoneId = instrument.exchange().getZoneId();
+        capacity = Math.max(capacity, 1);
+        for(int i=0;i<LONG_COLUMNS;i++) {
+            longCols[i] = new long[capacity];
+        }
+        barIndexes = new int[capacity];
+        tradingTimesIndexes = new int[capacity];
+    }
+
+    @Override
+    public Exchangeable getInstrument() {
+        return instrument;
+    }
+
+    @Override
+    public PriceLevel getLevel() {
+        return level;
+    }
+
+    @Override
+    public int getBarCount() {
+        return size;
+    }
+
+    @Override
+    public int getBeginIndex() {
+        return size>0?0:-1;
+    }
+
+    @Override
+    public int getEndIndex() {
+        return size-1;
+    }
+
+    @Override
+    public int getMaximumBarCount() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void setMaximumBarCount(int maximumBarCount) {
+        throw new UnsupportedOperationException("setMaximumBarCount");
+    }
+
+    @Override
+    public int getRemovedBarsCount() {
+        return 0;
+    }
+
+    @Override
+    public Bar getBar(int i) {
+        if ( i<0 || i>=size ) {
+            throw new IndexOutOfBoundsException("Bar index "+i+" out of bounds, bar count "+size);
+        }
+        if ( i==size-1 && liveBar!=null ) {
+            return liveBar;
+        }
+        return new ColumnBar(i);
+    }
+
+    @Override
+    public FutureBar getBar2(int i) {
+        return (FutureBar)getBar(i);
+    }
+
+    public Bar getLastBar() {
+        Bar result = null;
+        if ( size>0 ) {
+            result = getBar(size-1);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Bar> getBarData() {
+        return new AbstractList<Bar>() {
+            @Override
+            public Bar get(int index) {
+                return getBar(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public void addBar(Bar bar, boolean replace) {
+        if ( bar==null ) {
+            throw new NullPointerException("bar");
+        }
+        if ( replace && size>0 ) {
+            liveBar = null;
+            setRow(size-1, bar);
+        } else {
+            if ( size>0 ) {
+                long lastEndTime = liveBar!=null?toEpochMillis(liveBar.getEndTime()):longCols[COL_END_TIME][size-1];
+                if ( toEpochMillis(bar.getEndTime())<=lastEndTime ) {
+                    throw new IllegalArgumentException("Cannot add a bar with end time:"+bar.getEndTime()+" that is before or same as series end time: "+Instant.ofEpochMilli(lastEndTime).atZone(zoneId));
+                }
+            }
+            flushLiveBar();
+            ensureCapacity(size+1);
+            setRow(size, bar);
+            size++;
+        }
+        if ( bar instanceof FutureBarImpl ) {
+            liveBar = (FutureBar)bar;
+        }
+    }
+
+    /**
+     * 在序列开头插入历史BAR, 只插入结束时间不晚于第一个BAR开始时间的部分, 返回插入的数量.
+     * <BR>在原对象上修改, 已经持有本序列引用的调用者可以继续使用, 但是原有BAR的下标会后移
+     */
+    public int prependBars(LeveledBarSeries history) {
+        int count = 0;
+        if ( size>0 ) {
+            long firstBeginTime = toEpochMillis(getBar(0).getBeginTime());
+            while( count<history.getBarCount() && toEpochMillis(history.getBar(history.getBeginIndex()+count).getEndTime())<=firstBeginTime ) {
+                count++;
+            }
+        } else {
+            count = history.getBarCount();
+        }
+        if ( count<=0 ) {
+            return 0;
+        }
+        ensureCapacity(size+count);
+        for(int i=0;i<LONG_COLUMNS;i++) {
+            System.arraycopy(longCols[i], 0, longCols[i], count, size);
+        }
+        System.arraycopy(barIndexes, 0, barIndexes, count, size);
+        System.arraycopy(tradingTimesIndexes, 0, tradingTimesIndexes, count, size);
+        for(int i=0;i<count;i++) {
+            setRow(i, history.getBar(history.getBeginIndex()+i));
+        }
+        size += count;
+        return count;
+    }
+
+    /**
+     * 删除最后一个BAR, 返回的BAR与本序列不再关联
+     */
+    public Bar removeLastBar() {
+        if ( size<=0 ) {
+            return null;
+        }
+        Bar result = liveBar;
+        if ( result==null ) {
+            result = getSubSeries(size-1, size).getBar(0);
+        }
+        liveBar = null;
+        size--;
+        return result;
+    }
+
+    @Override
+    public ColumnarLeveledBarSeries getSubSeries(int startIndex, int endIndex) {
+        if(startIndex > endIndex){
+            throw new IllegalArgumentException
+                    (String.format("the endIndex: %s must be bigger than startIndex: %s", endIndex, startIndex));
+        }
+        int start = Math.max(startIndex, 0);
+        int end = Math.min(endIndex, size);
+        int count = Math.max(end-start, 0);
+        ColumnarLeveledBarSeries result = new ColumnarLeveledBarSeries(instrument, getName(), level, numFunction, count);
+        if ( count>0 ) {
+            for(int i=0;i<LONG_COLUMNS;i++) {
+                System.arraycopy(longCols[i], start, result.longCols[i], 0, count);
+            }
+            System.arraycopy(barIndexes, start, result.barIndexes, 0, count);
+            for(int i=0;i<count;i++) {
+                int timesIdx = tradingTimesIndexes[start+i];
+                result.tradingTimesIndexes[i] = timesIdx<0?-1:result.getTradingTimesIndex(tradingTimes.get(timesIdx));
+            }
+            result.size = count;
+            //仍在更新的BAR只复制当前值, 原序列继续保留FutureBarImpl给FutureBarBuilder更新
+            if ( liveBar!=null && end==size ) {
+                result.setRow(count-1, liveBar);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public JsonElement toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("instrument", instrument.uniqueId());
+        json.addProperty("level", level.toString());
+        json.addProperty("name", getName());
+        JsonArray array = new JsonArray();
+        for(int i=0;i<size; i++) {
+            array.add(JsonUtil.object2json(getBar(i)));
+        }
+        json.add("bars", array);
+        return json;
+    }
+
+    /**
+     * 将仍在更新的最后一个BAR写入列数据
+     */
+    private void flushLiveBar() {
+        if ( liveBar!=null ) {
+            setRow(size-1, liveBar);
+            liveBar = null;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        int currCapacity = barIndexes.length;
+        if ( capacity<=currCapacity ) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, currCapacity*2);
+        for(int i=0;i<LONG_COLUMNS;i++) {
+            longCols[i] = Arrays.copyOf(longCols[i], newCapacity);
+        }
+        barIndexes = Arrays.copyOf(barIndexes, newCapacity);
+        tradingTimesIndexes = Arrays.copyOf(tradingTimesIndexes, newCapacity);
+    }
+
+    private void setRow(int row, Bar bar) {
+        longCols[COL_OPEN][row] = raw(bar.getOpenPrice());
+        longCols[COL_HIGH][row] = raw(bar.getHighPrice());
+        longCols[COL_LOW][row] = raw(bar.getLowPrice());
+        longCols[COL_CLOSE][row] = raw(bar.getClosePrice());
+        longCols[COL_VOLUME][row] = raw(bar.getVolume());
+        longCols[COL_AMOUNT][row] = raw(bar.getAmount());
+        longCols[COL_BEGIN_TIME][row] = toEpochMillis(bar.getBeginTime());
+        longCols[COL_END_TIME][row] = toEpochMillis(bar.getEndTime());
+        longCols[COL_DURATION][row] = bar.getTimePeriod()!=null?bar.getTimePeriod().toMillis():0;
+
+        int barIndex = row;
+        int timesIdx = -1;
+        long avg=0, mktAvg=0, beginOpenInt=0, endOpenInt=0;
+        if ( bar instanceof FutureBar ) {
+            FutureBar fbar = (FutureBar)bar;
+            barIndex = fbar.getIndex();
+            if ( fbar.getTradingTimes()!=null ) {
+                timesIdx = getTradingTimesIndex(fbar.getTradingTimes());
+            }
+            avg = raw(fbar.getAvgPrice());
+            mktAvg = raw(fbar.getMktAvgPrice());
+            beginOpenInt = fbar.getBeginOpenInt();
+            endOpenInt = fbar.getEndOpenInt();
+        }
+        long beginVolume=0, beginAmount=0, endVolume=0, endAmount=0, upperLimit=0, lowerLimit=0;
+        if ( bar instanceof AbsFutureBar ) {
+            AbsFutureBar abar = (AbsFutureBar)bar;
+            beginVolume = raw(abar.getBeginVolume());
+            beginAmount = raw(abar.getBeginAmount());
+            endVolume = raw(abar.getEndVolume());
+            endAmount = raw(abar.getEndAmount());
+            upperLimit = raw(abar.upperLimit);
+            lowerLimit = raw(abar.lowerLimit);
+        } else if ( bar instanceof ColumnBar ) {
+            ColumnBar cbar = (ColumnBar)bar;
+            beginVolume = cbar.getLong(COL_BEGIN_VOLUME);
+            beginAmount = cbar.getLong(COL_BEGIN_AMOUNT);
+            endVolume = cbar.getLong(COL_END_VOLUME);
+            endAmount = cbar.getLong(COL_END_AMOUNT);
+            upperLimit = cbar.getLong(COL_UPPER_LIMIT);
+            lowerLimit = cbar.getLong(COL_LOWER_LIMIT);
+        }
+        longCols[COL_AVG][row] = avg;
+        longCols[COL_MKTAVG][row] = mktAvg;
+        longCols[COL_BEGIN_OPENINT][row] = beginOpenInt;
+        longCols[COL_END_OPENINT][row] = endOpenInt;
+        longCols[COL_BEGIN_VOLUME][row] = beginVolume;
+        longCols[COL_BEGIN_AMOUNT][row] = beginAmount;
+        longCols[COL_END_VOLUME][row] = endVolume;
+        longCols[COL_END_AMOUNT][row] = endAmount;
+        longCols[COL_UPPER_LIMIT][row] = upperLimit;
+        longCols[COL_LOWER_LIMIT][row] = lowerLimit;
+        barIndexes[row] = barIndex;
+        tradingTimesIndexes[row] = timesIdx;
+    }
+
+    private int getTradingTimesIndex(ExchangeableTradingTimes times) {
+        int last = tradingTimes.size()-1;
+        if ( last>=0 && tradingTimes.get(last)==times ) {
+            return last;
+        }
+        Integer result = tradingTimesByDay.get(times.getTradingDay());
+        if ( result==null ) {
+            result = tradingTimes.size();
+            tradingTimes.add(times);
+            tradingTimesByDay.put(times.getTradingDay(), result);
+        }
+        return result;
+    }
+
+    private static long raw(Num num) {
+        if ( num==null ) {
+            return 0;
+        }
+        if ( num instanceof LongNum ) {
+            return ((LongNum)num).rawValue();
+        }
+        return PriceUtil.price2long(num.doubleValue());
+    }
+
+    private static long toEpochMillis(ZonedDateTime time) {
+        return time.toInstant().toEpochMilli();
+    }
+
+    /**
+     * 基于行号的BAR视图, 数据直接从列数组读取
+     */
+    public class ColumnBar implements FutureBar, JsonEnabled {
+        private static final long serialVersionUID = 4539015745628357915L;
+
+        private final int row;
+
+        ColumnBar(int row) {
+            this.row = row;
+        }
+
+        long getLong(int column) {
+            return longCols[column][row];
+        }
+
+        private Num getNum(int column) {
+            return LongNum.fromRawValue(longCols[column][row]);
+        }
+
+        @Override
+        public ExchangeableTradingTimes getTradingTimes() {
+            int timesIdx = tradingTimesIndexes[row];
+            return timesIdx<0?null:tradingTimes.get(timesIdx);
+        }
+
+        @Override
+        public int getIndex() {
+            return barIndexes[row];
+        }
+
+        @Override
+        public Duration getTimePeriod() {
+            return Duration.ofMillis(getLong(COL_DURATION));
+        }
+
+        @Override
+        public ZonedDateTime getBeginTime() {
+            return Instant.ofEpochMilli(getLong(COL_BEGIN_TIME)).atZone(zoneId);
+        }
+
+        @Override
+        public ZonedDateTime getEndTime() {
+            return Instant.ofEpochMilli(getLong(COL_END_TIME)).atZone(zoneId);
+        }
+
+        @Override
+        public Num getOpenPrice() {
+            return getNum(COL_OPEN);
+        }
+
+        @Override
+        public Num getHighPrice() {
+            return getNum(COL_HIGH);
+        }
+
+        @Override
+        public Num getLowPrice() {
+            return getNum(COL_LOW);
+        }
+
+        @Override
+        public Num getClosePrice() {
+            return getNum(COL_CLOSE);
+        }
+
+        @Override
+        public Num getVolume() {
+            return getNum(COL_VOLUME);
+        }
+
+        @Override
+        public Num getAmount() {
+            return getNum(COL_AMOUNT);
+        }
+
+        public Num getBeginVolume() {
+            return getNum(COL_BEGIN_VOLUME);
+        }
+
+        public Num getBeginAmount() {
+            return getNum(COL_BEGIN_AMOUNT);
+        }
+
+        public Num getEndVolume() {
+            return getNum(COL_END_VOLUME);
+        }
+
+        public Num getEndAmount() {
+            return getNum(COL_END_AMOUNT);
+        }
+
+        @Override
+        public long getTrades() {
+            return 0;
+        }
+
+        @Override
+        public void addTrade(Num tradeVolume, Num tradePrice) {
+            throw new UnsupportedOperationException("addTrade");
+        }
+
+        @Override
+        public void addPrice(Num price) {
+            throw new UnsupportedOperationException("addPrice");
+        }
+
+        @Override
+        public Num getAvgPrice() {
+            return getNum(COL_AVG);
+        }
+
+        @Override
+        public Num getMktAvgPrice() {
+            return getNum(COL_MKTAVG);
+        }
+
+        @Override
+        public long getOpenInt() {
+            return getEndOpenInt()-getBeginOpenInt();
+        }
+
+        @Override
+        public long getBeginOpenInt() {
+            return getLong(COL_BEGIN_OPENINT);
+        }
+
+        @Override
+        public long getEndOpenInt() {
+            return getLong(COL_END_OPENINT);
+        }
+
+        /**
+         * 列式保存时不保留TICK
+         */
+        @Override
+        public MarketData getOpenTick() {
+            return null;
+        }
+
+        @Override
+        public MarketData getCloseTick() {
+            return null;
+        }
+
+        @Override
+        public MarketData getMaxTick() {
+            return null;
+        }
+
+        @Override
+        public MarketData getMinTick() {
+            return null;
+        }
+
+        @Override
+        public long getOpenPrice2() {
+            return getLong(COL_OPEN);
+        }
+
+        @Override
+        public long getClosePrice2() {
+            return getLong(COL_CLOSE);
+        }
+
+        @Override
+        public long getHighPrice2() {
+            return getLong(COL_HIGH);
+        }
+
+        @Override
+        public long getLowPrice2() {
+            return getLong(COL_LOW);
+        }
+
+        @Override
+        public long getAvgPrice2() {
+            return getLong(COL_AVG);
+        }
+
+        /**
+         * 与FutureBarImpl.save()相同的格式
+         */
+        public void save(CSVWriter csvWriter) {
+            csvWriter.set(ExchangeableData.COLUMN_BEGIN_TIME, DateUtil.date2str(getBeginTime().toLocalDateTime()));
+            csvWriter.set(ExchangeableData.COLUMN_END_TIME, DateUtil.date2str(getEndTime().toLocalDateTime()));
+            csvWriter.set(ExchangeableData.COLUMN_OPEN, getOpenPrice().toString());
+            csvWriter.set(ExchangeableData.COLUMN_HIGH, getHighPrice().toString());
+            csvWriter.set(ExchangeableData.COLUMN_LOW, getLowPrice().toString());
+            csvWriter.set(ExchangeableData.COLUMN_CLOSE, getClosePrice().toString());
+            csvWriter.set(ExchangeableData.COLUMN_AVG, getAvgPrice().toString());
+            csvWriter.set(ExchangeableData.COLUMN_MKTAVG, getMktAvgPrice().toString());
+            csvWriter.set(ExchangeableData.COLUMN_VOLUME, ""+getVolume().longValue());
+            csvWriter.set(ExchangeableData.COLUMN_AMOUNT, getAmount().toString());
+
+            csvWriter.set(ExchangeableData.COLUMN_BEGIN_VOLUME, ""+getBeginVolume().longValue());
+            csvWriter.set(ExchangeableData.COLUMN_BEGIN_AMOUNT, getBeginAmount().toString());
+            csvWriter.set(ExchangeableData.COLUMN_BEGIN_OPENINT, ""+getBeginOpenInt());
+
+            csvWriter.set(ExchangeableData.COLUMN_END_VOLUME, ""+getEndVolume().longValue());
+            csvWriter.set(ExchangeableData.COLUMN_END_AMOUNT, getEndAmount().toString());
+            csvWriter.set(ExchangeableData.COLUMN_END_OPENINT, ""+getEndOpenInt());
+            csvWriter.set(ExchangeableData.COLUMN_INDEX, ""+getIndex());
+            if ( getLong(COL_UPPER_LIMIT)!=0 ) {
+                csvWriter.set(ExchangeableData.COLUMN_UPPER_LIMIT, getNum(COL_UPPER_LIMIT).toString());
+            }
+            if ( getLong(COL_LOWER_LIMIT)!=0 ) {
+                csvWriter.set(ExchangeableData.COLUMN_LOWER_LIMIT, getNum(COL_LOWER_LIMIT).toString());
+            }
+        }
+
+        @Override
+        public JsonElement toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("index", getIndex());
+            ExchangeableTradingTimes mktTimes = getTradingTimes();
+            if ( mktTimes!=null ) {
+                json.addProperty("tradingDay", DateUtil.date2str(mktTimes.getTradingDay()));
+            }
+            json.addProperty("open", getOpenPrice().toString());
+            json.addProperty("close", getClosePrice().toString());
+            json.addProperty("max", getHighPrice().toString());
+            json.addProperty("min", getLowPrice().toString());
+            json.addProperty("volume", getVolume().toString());
+            json.addProperty("turnover", getAmount().toString());
+            json.addProperty("avgPrice", getAvgPrice().toString());
+            json.addProperty("openInt", getOpenInt() );
+            json.addProperty("beginTime", DateUtil.date2str(getBeginTime().toLocalDateTime()));
+            json.addProperty("endTime", DateUtil.date2str(getEndTime().toLocalDateTime()));
+            json.addProperty("beginAmount", getBeginAmount().toString());
+            json.addProperty("beginVolume", getBeginVolume().toString());
+            json.addProperty("beginOpenInt", getBeginOpenInt() );
+            json.addProperty("endAmount", getEndAmount().toString());
+            json.addProperty("endVolume", getEndVolume().toString());
+            json.addProperty("duration", getTimePeriod().getSeconds());
+            json.addProperty("mktAvgPrice", getMktAvgPrice().toString());
+            json.addProperty("endOpenInt", getEndOpenInt() );
+            if ( getLong(COL_UPPER_LIMIT)!=0 ) {
+                json.addProperty("upperLimit", getNum(COL_UPPER_LIMIT).toString());
+            }
+            if ( getLong(COL_LOWER_LIMIT)!=0 ) {
+                json.addProperty("lowerLimit", getNum(COL_LOWER_LIMIT).toString());
+            }
+            return json;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{END: %1s, O: %3$6.2f, C: %2$6.2f, L: %4$6.2f, H: %5$6.2f, V: %6$d, OI: %7$d}",
+                    DateUtil.date2str(getEndTime().toLocalDateTime()), getOpenPrice().doubleValue(), getClosePrice().doubleValue(), getLowPrice().doubleValue(), getHighPrice().doubleValue(), getVolume().longValue(), getOpenInt());
+        }
+    }
+
+}
@@ -1,6 +1,8 @@
 package trader.service.ta;
 
+import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -30,6 +32,11 @@ import trader.service.md.MarketData;
  */
 public class FutureBarImpl extends AbsFutureBar {
     private static final long serialVersionUID = -5989316287411952601L;
+    /**
+     * 二进制格式的长度: index + 22个long
+     */
+    public static final int BINARY_SIZE = 4+22*8;
+    private static final long NULL_NUM = Long.MIN_VALUE;
     private long settlementPrice;
 
     private FutureBarImpl(int index, ExchangeableTradingTimes tradingTimes, LocalDateTime beginTime, MarketData openTick, MarketData closeTick, long high, long low) {
@@ -305,6 +312,79 @@ public class FutureBarImpl extends AbsFutureBar {
         return bar;
     }
 
+    /**
+     * 从二进制格式加载, 不包含TICK数据
+     */
+    public static FutureBarImpl fromBinary(ByteBuffer buf, ExchangeableTradingTimes tradingTimes) {
+        ZoneId zoneId = tradingTimes.getInstrument().exchange().getZoneId();
+        FutureBarImpl bar = new FutureBarImpl(buf.getInt(), tradingTimes);
+        bar.beginTime = Instant.ofEpochMilli(buf.getLong()).atZone(zoneId);
+        bar.endTime = Instant.ofEpochMilli(buf.getLong()).atZone(zoneId);
+        bar.beginMktTime = buf.getLong();
+        bar.endMktTime = buf.getLong();
+        bar.timePeriod = Duration.ofMillis(buf.getLong());
+        bar.openPrice = getNum(buf);
+        bar.highPrice = getNum(buf);
+        bar.lowPrice = getNum(buf);
+        bar.closePrice = getNum(buf);
+        bar.avgPrice = getNum(buf);
+        bar.mktAvgPrice = getNum(buf);
+        bar.volume = getNum(buf);
+        bar.amount = getNum(buf);
+        bar.beginVolume = getNum(buf);
+        bar.beginAmount = getNum(buf);
+        bar.endVolume = getNum(buf);
+        bar.endAmount = getNum(buf);
+        bar.beginOpenInt = buf.getLong();
+        bar.endOpenInt = buf.getLong();
+        bar.openInt = bar.endOpenInt - bar.beginOpenInt;
+        bar.upperLimit = getNum(buf);
+        bar.lowerLimit = getNum(buf);
+        bar.settlementPrice = buf.getLong();
+        return bar;
+    }
+
+    /**
+     * 保存为定长的二进制格式, 长度为BINARY_SIZE
+     */
+    public void save(ByteBuffer buf) {
+        buf.putInt(index);
+        buf.putLong(beginTime.toInstant().toEpochMilli());
+        buf.putLong(endTime.toInstant().toEpochMilli());
+        buf.putLong(beginMktTime);
+        buf.putLong(endMktTime);
+        buf.putLong(timePeriod!=null?timePeriod.toMillis():0);
+        putNum(buf, openPrice);
+        putNum(buf, highPrice);
+        putNum(buf, lowPrice);
+        putNum(buf, closePrice);
+        putNum(buf, avgPrice);
+        putNum(buf, mktAvgPrice);
+        putNum(buf, volume);
+        putNum(buf, amount);
+        putNum(buf, beginVolume);
+        putNum(buf, beginAmount);
+        putNum(buf, endVolume);
+        putNum(buf, endAmount);
+        buf.putLong(beginOpenInt);
+        buf.putLong(endOpenInt);
+        putNum(buf, upperLimit);
+        putNum(buf, lowerLimit);
+        buf.putLong(settlementPrice);
+    }
+
+    private static Num getNum(ByteBuffer buf) {
+        long v = buf.getLong();
+        if ( v==NULL_NUM ) {
+            return null;
+        }
+        return LongNum.fromRawValue(v);
+    }
+
+    private static void putNum(ByteBuffer buf, Num num) {
+        buf.putLong(num!=null?LongNum.fromNum(num).rawValue():NULL_NUM);
+    }
+
     public void save(CSVWriter csvWriter) {
         csvWriter.set(ExchangeableData.COLUMN_BEGIN_TIME, DateUtil.date2str(getBeginTime().toLocalDateTime()));
         csvWriter.set(ExchangeableData.COLUMN_END_TIME, DateUtil.date2str(getEndTime().toLocalDateTime()));
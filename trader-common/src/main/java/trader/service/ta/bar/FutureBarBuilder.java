@@ -3,6 +3,7 @@ package trader.service.ta.bar;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -21,10 +22,12 @@ import trader.common.util.JsonEnabled;
 import trader.common.util.JsonUtil;
 import trader.service.md.MarketData;
 import trader.service.ta.BaseLeveledBarSeries;
+import trader.service.ta.ColumnarLeveledBarSeries;
 import trader.service.ta.FutureBarImpl;
 import trader.service.ta.LeveledBarSeries;
 import trader.service.ta.LongNum;
 import trader.service.ta.BarSeriesLoader;
+import trader.service.ta.indicators.stream.StreamingIndicator;
 /**
  * 实时创建 MIN1-MIN15, VOL1K等等BAR
  */
@@ -49,6 +52,10 @@ public class FutureBarBuilder implements BarBuilder, JsonEnabled {
     MarketData lastTick;
     boolean newBar = false;
     private List<LocalDate> historicalDates = Collections.emptyList();
+    /**
+     * 随BAR开始/更新增量计算的指标
+     */
+    private List<StreamingIndicator> indicators = new ArrayList<>();
 
     public FutureBarBuilder(ExchangeableTradingTimes tradingTimes, PriceLevel level) {
         this.tradingTimes = tradingTimes;
@@ -68,7 +75,7 @@ public class FutureBarBuilder implements BarBuilder, JsonEnabled {
                 barEndMillis[i] = DateUtil.localdatetime2long(exchangeable.exchange().getZoneId(), barTimes[1]);
             }
         }
-        series = new BaseLeveledBarSeries(tradingTimes.getInstrument(), tradingTimes.getInstrument()+"-"+level.toString(), level, LongNum::valueOf);
+        series = new ColumnarLeveledBarSeries(tradingTimes.getInstrument(), tradingTimes.getInstrument()+"-"+level.toString(), level, LongNum::valueOf);
     }
 
     public PriceLevel getLevel() {
@@ -96,6 +103,34 @@ public class FutureBarBuilder implements BarBuilder, JsonEnabled {
         return newBar;
     }
 
+    /**
+     * 增加增量计算的指标, 会先用已有的BAR计算
+     */
+    public void addIndicator(StreamingIndicator indicator) {
+        replay(indicator);
+        indicators.add(indicator);
+    }
+
+    public List<StreamingIndicator> getIndicators(){
+        return Collections.unmodifiableList(indicators);
+    }
+
+    private void replay(StreamingIndicator indicator) {
+        indicator.reset();
+        if ( series.getBarCount()==0 ) {
+            return;
+        }
+        for(int i=series.getBeginIndex(); i<=series.getEndIndex(); i++) {
+            indicator.update(series.getBar(i), true);
+        }
+    }
+
+    private void updateIndicators(FutureBarImpl bar, boolean newBar) {
+        for(int i=0;i<indicators.size();i++) {
+            indicators.get(i).update(bar, newBar);
+        }
+    }
+
     public void loadHistoryData(BarSeriesLoader seriesLoader) throws Exception
     {
         this.series = seriesLoader
@@ -104,6 +139,24 @@ public class FutureBarBuilder implements BarBuilder, JsonEnabled {
                 .setEndTradingDay(tradingTimes.getTradingDay())
                 .load();
         historicalDates = seriesLoader.getLoadedDates();
+        for(StreamingIndicator indicator:indicators) {
+            replay(indicator);
+        }
+    }
+
+    /**
+     * 合并后台加载的历史数据: 历史数据中在第一个实时BAR之前的部分插入到当前序列的开头.
+     * <BR>在原序列对象上修改, 之前通过getTimeSeries()获得的引用仍然有效, 但是BAR的下标会后移
+     */
+    public void mergeHistoryData(LeveledBarSeries history, List<LocalDate> historicalDates) {
+        if ( !(series instanceof ColumnarLeveledBarSeries) ) {
+            throw new IllegalStateException("Series "+series.getName()+" can not merge history data in place");
+        }
+        ((ColumnarLeveledBarSeries)series).prependBars(history);
+        this.historicalDates = historicalDates;
+        for(StreamingIndicator indicator:indicators) {
+            replay(indicator);
+        }
     }
 
     @Override
@@ -124,9 +177,11 @@ public class FutureBarBuilder implements BarBuilder, JsonEnabled {
                 }
                 if ( lastBar!=null && lastBar.getVolume().doubleValue()<level.value()) {
                     lastBar.update(tick, tick.updateTime);
+                    updateIndicators(lastBar, false);
                 } else {
                     FutureBarImpl bar = FutureBarImpl.fromTicks(++barIndex, tradingTimes, DateUtil.round(tick.updateTime), tick, tick, tick.lastPrice, tick.lastPrice);
                     series.addBar(bar);
+                    updateIndicators(bar, true);
                     result = true;
                 }
                 break;
@@ -181,6 +236,7 @@ public class FutureBarBuilder implements BarBuilder, JsonEnabled {
         }
         if ( tickBarIndex==this.barIndex || tick.updateTime.equals(lastBarEndTime) ) {
             lastBar.update(tick, tick.updateTime);
+            updateIndicators(lastBar, false);
         } else { //创建新的BAR
             MarketData edgeTick = lastTick;
             if ( lastBar!=null ){
@@ -194,6 +250,7 @@ public class FutureBarBuilder implements BarBuilder, JsonEnabled {
             try{
                 series.addBar(bar);
                 this.barIndex = tickBarIndex;
+                updateIndicators(bar, true);
             }catch(Throwable t){
                 logger.error(exchangeable+" "+level+" failed to NEW Kbar #"+tickBarIndex+" old #"+this.barIndex+" : "+bar, t);
             }
@@ -0,0 +1,38 @@
+package trader.service.ta.indicators.stream;
+
+/**
+ * 增量EMA, 与ta4j EMAIndicator算法相同: 第一个值为输入值, 之后 EMA=PREV+(X-PREV)*2/(N+1)
+ */
+public class RunningEMA {
+    private final double multiplier;
+    private int count;
+    private double prevValue;
+    private double value;
+
+    public RunningEMA(int barCount) {
+        multiplier = 2.0/(barCount+1);
+    }
+
+    public double update(double x, boolean newBar) {
+        if ( newBar || count==0 ) {
+            prevValue = value;
+            count++;
+        }
+        if ( count==1 ) {
+            value = x;
+        } else {
+            value = prevValue+(x-prevValue)*multiplier;
+        }
+        return value;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public void reset() {
+        count = 0;
+        prevValue = 0;
+        value = 0;
+    }
+}
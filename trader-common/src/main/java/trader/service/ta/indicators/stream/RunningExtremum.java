@@ -0,0 +1,71 @@
+package trader.service.ta.indicators.stream;
+
+/**
+ * 增量计算最近N个BAR的最高/最低值(HHV/LLV).
+ * <BR>已固定的前N-1个BAR使用单调队列维护, 最后一个BAR单独比较, 每次更新均摊O(1)
+ */
+public class RunningExtremum {
+    private final boolean max;
+    private final int barCount;
+    private final double[] dequeValues;
+    private final int[] dequeIndexes;
+    private int head;
+    private int size;
+    private int index = -1;
+    private double currValue;
+
+    public RunningExtremum(int barCount, boolean max) {
+        this.barCount = barCount;
+        this.max = max;
+        dequeValues = new double[barCount];
+        dequeIndexes = new int[barCount];
+    }
+
+    public double update(double x, boolean newBar) {
+        if ( newBar || index<0 ) {
+            if ( index>=0 ) {
+                push(currValue, index);
+            }
+            index++;
+            //淘汰窗口之外的BAR
+            while( size>0 && dequeIndexes[head]<=index-barCount ) {
+                head = (head+1)%dequeValues.length;
+                size--;
+            }
+        }
+        currValue = x;
+        if ( size>0 ) {
+            double v = dequeValues[head];
+            if ( max ? v>x : v<x ) {
+                return v;
+            }
+        }
+        return x;
+    }
+
+    private void push(double v, int idx) {
+        while( size>0 ) {
+            int tail = (head+size-1)%dequeValues.length;
+            double tv = dequeValues[tail];
+            if ( max ? tv>v : tv<v ) {
+                break;
+            }
+            size--;
+        }
+        if ( size==dequeValues.length ) {
+            head = (head+1)%dequeValues.length;
+            size--;
+        }
+        int pos = (head+size)%dequeValues.length;
+        dequeValues[pos] = v;
+        dequeIndexes[pos] = idx;
+        size++;
+    }
+
+    public void reset() {
+        head = 0;
+        size = 0;
+        index = -1;
+        currValue = 0;
+    }
+}
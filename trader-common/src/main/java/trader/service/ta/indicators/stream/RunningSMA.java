@@ -0,0 +1,38 @@
+package trader.service.ta.indicators.stream;
+
+/**
+ * 增量SMA, 与ta4j SMAIndicator算法相同: 不足N个BAR时按实际BAR数平均
+ */
+public class RunningSMA {
+    private final double[] window;
+    private int size;
+    private int last = -1;
+    private double sum;
+
+    public RunningSMA(int barCount) {
+        window = new double[barCount];
+    }
+
+    public double update(double x, boolean newBar) {
+        if ( newBar || size==0 ) {
+            last = (last+1)%window.length;
+            if ( size==window.length ) {
+                sum -= window[last];
+            } else {
+                size++;
+            }
+            window[last] = x;
+            sum += x;
+        } else {
+            sum += x-window[last];
+            window[last] = x;
+        }
+        return sum/size;
+    }
+
+    public void reset() {
+        size = 0;
+        last = -1;
+        sum = 0;
+    }
+}
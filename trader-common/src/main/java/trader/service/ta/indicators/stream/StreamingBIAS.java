@@ -0,0 +1,29 @@
+package trader.service.ta.indicators.stream;
+
+import org.ta4j.core.Bar;
+
+/**
+ * 增量计算的BIAS, 与BIASIndicator结果相同: (CLOSE-MA(CLOSE,N))/MA(CLOSE,N)*100
+ */
+public class StreamingBIAS extends StreamingIndicator {
+    private RunningSMA sma;
+
+    public StreamingBIAS(int barCount) {
+        sma = new RunningSMA(barCount);
+    }
+
+    @Override
+    public void update(Bar bar, boolean newBar) {
+        newBar = isNewBar(newBar);
+        double close = closePrice(bar);
+        double ma = sma.update(close, newBar);
+        setValue((close-ma)/ma*100, newBar);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        sma.reset();
+    }
+
+}
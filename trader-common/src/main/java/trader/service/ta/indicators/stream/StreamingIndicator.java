@@ -0,0 +1,59 @@
+package trader.service.ta.indicators.stream;
+
+import org.ta4j.core.Bar;
+
+import trader.common.util.PriceUtil;
+import trader.service.ta.FutureBar;
+
+/**
+ * 增量计算的指标, 每个BAR的开始/更新只需要O(1)计算, 中间状态使用double保存.
+ * <BR>新BAR开始时上一个BAR的值固定; 最后一个BAR更新时只根据已固定的状态重新计算最后一个值.
+ * <BR>只能在单一线程中更新
+ */
+public abstract class StreamingIndicator extends StreamingValues {
+
+    /**
+     * 更新指标
+     *
+     * @param bar 最新的BAR
+     * @param newBar true表示新BAR开始, false表示最后一个BAR有更新
+     */
+    public abstract void update(Bar bar, boolean newBar);
+
+    /**
+     * 清除全部状态, 重新计算前调用
+     */
+    @Override
+    public void reset() {
+        super.reset();
+    }
+
+    /**
+     * 新BAR判断, 第一个BAR总是新BAR
+     */
+    protected boolean isNewBar(boolean newBar) {
+        return newBar || getBarCount()==0;
+    }
+
+    protected static double closePrice(Bar bar) {
+        if ( bar instanceof FutureBar ) {
+            return PriceUtil.long2price(((FutureBar)bar).getClosePrice2());
+        }
+        return bar.getClosePrice().doubleValue();
+    }
+
+    protected static double highPrice(Bar bar) {
+        if ( bar instanceof FutureBar ) {
+            return PriceUtil.long2price(((FutureBar)bar).getHighPrice2());
+        }
+        return bar.getHighPrice().doubleValue();
+    }
+
+    protected static double lowPrice(Bar bar) {
+        if ( bar instanceof FutureBar ) {
+            return PriceUtil.long2price(((FutureBar)bar).getLowPrice2());
+        }
+        return bar.getLowPrice().doubleValue();
+    }
+
+}
@@ -0,0 +1,49 @@
+package trader.service.ta.indicators.stream;
+
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.Indicator;
+import org.ta4j.core.num.NaN;
+import org.ta4j.core.num.Num;
+
+/**
+ * 增量指标到ta4j Indicator的适配.
+ * <BR>指标的最后一个值对应BarSeries的最后一个BAR, 如果BarSeries从头删除了BAR也可以正确对应
+ */
+public class StreamingIndicatorAdapter implements Indicator<Num> {
+    private BarSeries series;
+    private StreamingValues indicator;
+
+    public StreamingIndicatorAdapter(BarSeries series, StreamingValues indicator) {
+        this.series = series;
+        this.indicator = indicator;
+    }
+
+    public StreamingValues getIndicator() {
+        return indicator;
+    }
+
+    @Override
+    public Num getValue(int index) {
+        int barCount = indicator.getBarCount();
+        int valueIndex = index-(series.getEndIndex()+1-barCount);
+        if ( valueIndex<0 || valueIndex>=barCount ) {
+            return NaN.NaN;
+        }
+        double value = indicator.getValue(valueIndex);
+        if ( Double.isNaN(value) ) {
+            return NaN.NaN;
+        }
+        return series.numOf(value);
+    }
+
+    @Override
+    public BarSeries getBarSeries() {
+        return series;
+    }
+
+    @Override
+    public Num numOf(Number number) {
+        return series.numOf(number);
+    }
+
+}
@@ -0,0 +1,81 @@
+package trader.service.ta.indicators.stream;
+
+import org.ta4j.core.Bar;
+
+/**
+ * 增量计算的KDJ, 与KDJIndicator结果相同
+ * <BR>RSV=(CLOSE-LLV(LOW,N))/(HHV(HIGH,N)-LLV(LOW,N))*100, K=(K'*(M1-1)+RSV)/M1, D=(D'*(M2-1)+K)/M2, J=3K-2D
+ * <BR>第一个BAR的K/D为50. HHV==LLV时RSV为50
+ */
+public class StreamingKDJ extends StreamingIndicator {
+    private RunningExtremum hhv;
+    private RunningExtremum llv;
+    private int kCount;
+    private int dCount;
+    private double prevK;
+    private double prevD;
+    private StreamingValues rsv = new StreamingValues();
+    private StreamingValues k = new StreamingValues();
+    private StreamingValues d = new StreamingValues();
+
+    public StreamingKDJ(int rsvCount) {
+        this(rsvCount, 3, 3);
+    }
+
+    public StreamingKDJ(int rsvCount, int kCount, int dCount) {
+        hhv = new RunningExtremum(rsvCount, true);
+        llv = new RunningExtremum(rsvCount, false);
+        this.kCount = kCount;
+        this.dCount = dCount;
+    }
+
+    @Override
+    public void update(Bar bar, boolean newBar) {
+        newBar = isNewBar(newBar);
+        if ( newBar && getBarCount()>0 ) {
+            prevK = k.getValue();
+            prevD = d.getValue();
+        }
+        double highest = hhv.update(highPrice(bar), newBar);
+        double lowest = llv.update(lowPrice(bar), newBar);
+        double rsvVal = 50;
+        if ( highest!=lowest ) {
+            rsvVal = (closePrice(bar)-lowest)/(highest-lowest)*100;
+        }
+        double kVal = 50, dVal = 50;
+        boolean first = newBar ? getBarCount()==0 : getBarCount()==1;
+        if ( !first ) {
+            kVal = (prevK*(kCount-1)+rsvVal)/kCount;
+            dVal = (prevD*(dCount-1)+kVal)/dCount;
+        }
+        rsv.setValue(rsvVal, newBar);
+        k.setValue(kVal, newBar);
+        d.setValue(dVal, newBar);
+        setValue(kVal*3-dVal*2, newBar);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        hhv.reset();
+        llv.reset();
+        prevK = 0;
+        prevD = 0;
+        rsv.reset();
+        k.reset();
+        d.reset();
+    }
+
+    public StreamingValues getRSV() {
+        return rsv;
+    }
+
+    public StreamingValues getK() {
+        return k;
+    }
+
+    public StreamingValues getD() {
+        return d;
+    }
+
+}
@@ -0,0 +1,55 @@
+package trader.service.ta.indicators.stream;
+
+import org.ta4j.core.Bar;
+
+/**
+ * 增量计算的MACD, 与MACDIndicator结果相同
+ * <BR>DIFF=EMA(CLOSE,SHORT)-EMA(CLOSE,LONG), DEA=EMA(DIFF,M), MACD=2*(DIFF-DEA)
+ */
+public class StreamingMACD extends StreamingIndicator {
+    private RunningEMA shortEma;
+    private RunningEMA longEma;
+    private RunningEMA deaEma;
+    private StreamingValues diff = new StreamingValues();
+    private StreamingValues dea = new StreamingValues();
+
+    public StreamingMACD() {
+        this(12, 26, 9);
+    }
+
+    public StreamingMACD(int shortCount, int longCount, int deaCount) {
+        shortEma = new RunningEMA(shortCount);
+        longEma = new RunningEMA(longCount);
+        deaEma = new RunningEMA(deaCount);
+    }
+
+    @Override
+    public void update(Bar bar, boolean newBar) {
+        newBar = isNewBar(newBar);
+        double close = closePrice(bar);
+        double diffVal = shortEma.update(close, newBar) - longEma.update(close, newBar);
+        double deaVal = deaEma.update(diffVal, newBar);
+        diff.setValue(diffVal, newBar);
+        dea.setValue(deaVal, newBar);
+        setValue((diffVal-deaVal)*2, newBar);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        shortEma.reset();
+        longEma.reset();
+        deaEma.reset();
+        diff.reset();
+        dea.reset();
+    }
+
+    public StreamingValues getDIFF() {
+        return diff;
+    }
+
+    public StreamingValues getDEA() {
+        return dea;
+    }
+
+}
@@ -0,0 +1,65 @@
+package trader.service.ta.indicators.stream;
+
+import java.util.Arrays;
+
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.Indicator;
+import org.ta4j.core.num.Num;
+
+/**
+ * 增量指标的计算结果, 只能读取.
+ * <BR>复合指标的子结果(例如MACD的DIFF/DEA)只暴露为StreamingValues, 由所属的StreamingIndicator更新
+ */
+public class StreamingValues {
+    private double[] values = new double[256];
+    private int barCount;
+
+    public int getBarCount() {
+        return barCount;
+    }
+
+    /**
+     * 第N个BAR的值, 从0开始
+     */
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * 最后一个BAR的值
+     */
+    public double getValue() {
+        if ( barCount==0 ) {
+            return Double.NaN;
+        }
+        return values[barCount-1];
+    }
+
+    /**
+     * 转换为ta4j的Indicator, 供原有的策略/脚本函数使用
+     */
+    public Indicator<Num> toIndicator(BarSeries series) {
+        return new StreamingIndicatorAdapter(series, this);
+    }
+
+    /**
+     * 清除全部值
+     */
+    protected void reset() {
+        barCount = 0;
+    }
+
+    /**
+     * 新BAR追加一个值, 否则替换最后一个值
+     */
+    protected void setValue(double value, boolean newBar) {
+        if ( newBar || barCount==0 ) {
+            if ( barCount>=values.length ) {
+                values = Arrays.copyOf(values, values.length*2);
+            }
+            barCount++;
+        }
+        values[barCount-1] = value;
+    }
+
+}
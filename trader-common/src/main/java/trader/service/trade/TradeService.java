@@ -20,4 +20,9 @@ public interface TradeService extends ServiceStateAware, TradeConstants {
     public OrderRefGen getOrderRefGen();
 
     public void addListener(TradeServiceListener listener);
+
+    /**
+     * 成交回报到达账户时调用, 记录从交易接口回调开始的延时
+     */
+    public void recordTxnLatency();
 }
@@ -13,6 +13,36 @@ import trader.service.trade.TradeConstants.PosDirection;
  */
 public interface TxnFeeEvaluator extends JsonEnabled {
 
+    /**
+     * 预先解析的单个合约的费用计算, 不需要每次查找合约费率, 不分配内存
+     */
+    public static interface FeeHandle {
+
+        public Exchangeable getInstrument();
+
+        /**
+         * 保证金
+         */
+        public long computeMargin(int volume, long price, PosDirection direction);
+
+        /**
+         * 合约价值
+         */
+        public long computeValue(int volume, long price);
+
+        /**
+         * 计算保证金, 手续费和合约价值, 写入result
+         *
+         * @param result 0 保证金, 1 手续费, 2 合约价值
+         */
+        public void compute(int volume, long price, OrderDirection direction, OrderOffsetFlag offsetFlag, long[] result);
+    }
+
+    /**
+     * 返回合约的费用计算, 调用方可以缓存. 没有费率信息返回null
+     */
+    public FeeHandle getFeeHandle(Exchangeable e);
+
     public Collection<Exchangeable> getInstruments();
 
     /**
@@ -329,5 +329,9 @@ public interface TradletConstants {
     public static final String ITEM_TRADLETS = "/TradletService/tradlets";
     public static final String ITEM_TRADLETGROUP = "/TradletService/tradletGroup";
     public static final String ITEM_TRADLETGROUPS = ITEM_TRADLETGROUP+"[]";
+    /**
+     * 开启TICK到报单的延时跟踪
+     */
+    public static final String ITEM_LATENCY_TRACE = "/TradletService/latencyTrace";
 
 }
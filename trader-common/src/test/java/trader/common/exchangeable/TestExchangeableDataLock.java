@@ -0,0 +1,55 @@
+package trader.common.exchangeable;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import trader.common.util.FileUtil;
+
+public class TestExchangeableDataLock {
+
+    @Test
+    public void testParallelReads() throws Exception {
+        File dataDir = Files.createTempDirectory("testExchangeableData").toFile();
+        try {
+            ExchangeableData data = new ExchangeableData(dataDir, false);
+            Exchangeable e = Exchangeable.fromString("ru2101");
+            LocalDate tradingDay = LocalDate.of(2020, 11, 3);
+            StringBuilder csv = new StringBuilder("a,b\n");
+            for(int i=0;i<1000;i++) {
+                csv.append(i).append(",").append(i*2).append("\n");
+            }
+            data.save(e, ExchangeableData.MIN1, tradingDay, csv.toString());
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for(int i=0;i<200;i++) {
+                    futures.add(executor.submit(()->{
+                        return data.exists(e, ExchangeableData.MIN1, tradingDay)
+                                && data.load(e, ExchangeableData.MIN1, tradingDay).length()==csv.length();
+                    }));
+                }
+                for(Future<Boolean> f:futures) {
+                    assertTrue(f.get());
+                }
+            }finally {
+                executor.shutdown();
+            }
+            //只有读操作时读锁之间不会互相等待
+            assertTrue(data.getReadContentions()==0);
+        }finally {
+            FileUtil.deleteDirectory(dataDir);
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package trader.common.util;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class TestCSVTokenizer {
+
+    @Test
+    public void testTokenize() throws Exception {
+        String csv = "A,B,C\r\n"
+                +"ru2101,15000.5,-12\n"
+                +"ru2101,\"1,5\",\"a\"\"b\"\r"
+                +",N/A,0.00015\n"
+                +"ru2101,12345678901,1e5";
+        CSVTokenizer tokenizer = new CSVTokenizer(new StringReader(csv), ',');
+        assertTrue(tokenizer.nextLine() && tokenizer.getLine().equals("A,B,C"));
+
+        assertTrue(tokenizer.nextLine() && tokenizer.getCellCount()==3);
+        String instrument = tokenizer.getCell(0);
+        assertTrue(instrument.equals("ru2101"));
+        assertTrue(tokenizer.parsePrice(1)==150005000L);
+        assertTrue(tokenizer.parseDouble(1)==15000.5);
+        assertTrue(tokenizer.parseLong(2)==-12);
+        assertTrue(tokenizer.parseLong(1)==CSVTokenizer.NOT_SIMPLE);
+
+        assertTrue(tokenizer.nextLine() && tokenizer.getCellCount()==3);
+        //内容相同时复用上一行的String
+        assertTrue(tokenizer.getCell(0)==instrument);
+        assertTrue(tokenizer.getCell(1).equals("1,5") && tokenizer.getCell(2).equals("a\"b"));
+        assertTrue(tokenizer.parsePrice(1)==CSVTokenizer.NOT_SIMPLE);
+
+        assertTrue(tokenizer.nextLine() && tokenizer.isBlank(0));
+        assertTrue(Double.isNaN(tokenizer.parseDouble(1)));
+        assertTrue(tokenizer.parseDouble(2)==Double.parseDouble("0.00015"));
+        assertTrue(tokenizer.parsePrice(2)==CSVTokenizer.NOT_SIMPLE);
+
+        assertTrue(tokenizer.nextLine() && tokenizer.getCellCount()==3);
+        assertTrue(tokenizer.parseLong(1)==12345678901L && tokenizer.parsePrice(1)==CSVTokenizer.NOT_SIMPLE);
+        assertTrue(Double.isNaN(tokenizer.parseDouble(2)));
+        assertTrue(!tokenizer.nextLine() && tokenizer.getLine()==null);
+    }
+
+    @Test
+    public void testDataSet() {
+        StringBuilder text = new StringBuilder("Index,Close,Volume\n");
+        for(int i=0;i<20000;i++) {
+            text.append(i).append(",").append(15000+i%100).append(".25,").append(i*10).append("\n");
+        }
+        CSVDataSet csv = CSVUtil.parse(text.toString());
+        int rows = 0;
+        while(csv.next()) {
+            assertTrue(csv.getInt("Index")==rows);
+            assertTrue(csv.getPrice("Close")==PriceUtil.price2long(csv.getDouble("Close")));
+            assertTrue(csv.getLong("Volume")==rows*10L);
+            assertTrue(csv.getRow().length==3 && csv.get("Volume").equals(""+rows*10));
+            assertTrue(csv.hasValue("Volume") && !csv.hasValue("NoSuchColumn"));
+            rows++;
+        }
+        assertTrue(rows==20000);
+    }
+
+}
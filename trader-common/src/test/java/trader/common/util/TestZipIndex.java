@@ -0,0 +1,77 @@
+package trader.common.util;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+public class TestZipIndex {
+
+    @Test
+    public void testReadEntries() throws Exception {
+        File zip = File.createTempFile("testZipIndex", ".zip");
+        zip.deleteOnExit();
+        StringBuilder csv = new StringBuilder();
+        for(int i=0;i<20000;i++) {
+            csv.append("20201103 09:00:00,15000,").append(i).append("\n");
+        }
+        byte[] data = csv.toString().getBytes(StandardCharsets.UTF_8);
+        try(ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip));){
+            zos.putNextEntry(new ZipEntry("20201103.min1.csv"));
+            zos.write(data);
+            zos.closeEntry();
+            ZipEntry stored = new ZipEntry("20201104.min1.csv");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(data.length);
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            stored.setCrc(crc.getValue());
+            zos.putNextEntry(stored);
+            zos.write(data);
+            zos.closeEntry();
+        }
+
+        ZipIndex zipIndex = ZipIndex.get(zip);
+        assertTrue(zipIndex.getEntries().size()==2);
+        assertTrue(zipIndex.getEntry("20201105.min1.csv")==null);
+        for(String name:new String[] {"20201103.min1.csv", "20201104.min1.csv"}) {
+            ZipIndex.Entry entry = zipIndex.getEntry(name);
+            assertTrue(entry.isSupported() && entry.getSize()==data.length);
+            assertTrue(new String(zipIndex.read(entry), StandardCharsets.UTF_8).equals(csv.toString()));
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            try(InputStream is = zipIndex.open(entry);){
+                byte[] buf = new byte[4096];
+                int len;
+                while( (len=is.read(buf))>0 ) {
+                    os.write(buf, 0, len);
+                }
+            }
+            assertTrue(new String(os.toByteArray(), StandardCharsets.UTF_8).equals(csv.toString()));
+        }
+        //没有修改时使用缓存
+        assertTrue(ZipIndex.get(zip)==zipIndex);
+
+        //文件修改后重新解析
+        try(ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip));){
+            zos.putNextEntry(new ZipEntry("20201105.min1.csv"));
+            zos.write(data, 0, 100);
+            zos.closeEntry();
+        }
+        ZipIndex.invalidate(zip);
+        ZipIndex zipIndex2 = ZipIndex.get(zip);
+        assertTrue(zipIndex2!=zipIndex);
+        assertTrue(zipIndex2.getEntries().size()==1 && zipIndex2.getEntry("20201105.min1.csv").getSize()==100);
+
+        zip.delete();
+        assertTrue(ZipIndex.get(zip)==null);
+    }
+
+}
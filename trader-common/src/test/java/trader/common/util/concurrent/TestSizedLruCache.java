@@ -0,0 +1,39 @@
+package trader.common.util.concurrent;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestSizedLruCache {
+
+    @Test
+    public void testEviction() {
+        SizedLruCache<String, String> cache = new SizedLruCache<>(1000);
+        assertTrue(cache.put("a", "a", 300));
+        assertTrue(cache.put("b", "b", 300));
+        assertTrue(cache.put("c", "c", 300));
+        //访问a之后, 最久未访问的是b
+        assertTrue("a".equals(cache.get("a")));
+        assertTrue(cache.put("d", "d", 300));
+        assertTrue(cache.get("b")==null);
+        assertTrue(cache.get("a")!=null && cache.get("c")!=null && cache.get("d")!=null);
+        assertTrue(cache.getCurrBytes()==900 && cache.getCount()==3);
+        assertTrue(cache.getEvictions()==1);
+        assertTrue(cache.getHits()==4 && cache.getMisses()==1);
+
+        //超过预算一半的不缓存
+        assertTrue(!cache.put("e", "e", 600));
+        assertTrue(cache.get("e")==null && cache.getCount()==3);
+
+        //替换时重新计算大小
+        cache.put("a", "a2", 100);
+        assertTrue(cache.getCurrBytes()==700 && "a2".equals(cache.get("a")));
+
+        cache.setMaxBytes(300);
+        assertTrue(cache.getCurrBytes()<=300);
+        cache.remove("a");
+        cache.clear();
+        assertTrue(cache.getCurrBytes()==0 && cache.getCount()==0);
+    }
+
+}
@@ -0,0 +1,74 @@
+package trader.service.md;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.util.DateUtil;
+import trader.common.util.PriceUtil;
+
+public class TestMarketDataColumnFile {
+
+    @Test
+    public void testWriteAndRead() throws Exception
+    {
+        Exchangeable e = Exchangeable.fromString("ru2101");
+        LocalDate tradingDay = DateUtil.str2localdate("20201103");
+        long timestamp = DateUtil.localdatetime2long(e.exchange().getZoneId(), DateUtil.str2localdatetime("20201103 09:00:00.500"));
+        List<MarketData> ticks = new ArrayList<>();
+        for(int i=0;i<10;i++) {
+            SimpleMarketData md = new SimpleMarketData();
+            md.instrument = e;
+            md.updateTimestamp = timestamp+i*500;
+            md.lastPrice = PriceUtil.price2long(15000+i*5);
+            md.volume = 100+i;
+            md.openInterest = 2000-i;
+            md.depth = (i%2==0)?1:5;
+            md.bidPrices = new long[md.depth];
+            md.bidVolumes = new int[md.depth];
+            md.askPrices = new long[md.depth];
+            md.askVolumes = new int[md.depth];
+            for(int j=0;j<md.depth;j++) {
+                md.bidPrices[j] = md.lastPrice-PriceUtil.price2long(5*(j+1));
+                md.askPrices[j] = md.lastPrice+PriceUtil.price2long(5*(j+1));
+                md.bidVolumes[j] = i+j;
+                md.askVolumes[j] = i*2+j;
+            }
+            ticks.add(md);
+        }
+        File file = File.createTempFile("ticks", ".dat");
+        file.deleteOnExit();
+        MarketDataColumnFile.write(file, tradingDay, ticks);
+
+        List<MarketData> ticks2 = MarketDataColumnFile.read(file, "ctp", e);
+        assertTrue(ticks2.size()==ticks.size());
+        for(int i=0;i<ticks.size();i++) {
+            MarketData md = ticks.get(i), md2 = ticks2.get(i);
+            assertTrue(MarketData.equals(md, md2));
+            assertTrue(md.updateTimestamp==md2.updateTimestamp);
+            assertTrue(md2.updateTime.equals(DateUtil.long2datetime(e.exchange().getZoneId(), md.updateTimestamp)));
+            assertTrue(md2.depth==md.depth);
+            assertTrue(md2.tradingDay.equals("20201103"));
+        }
+
+        //按时间定位
+        MarketDataColumnFile.Reader reader = MarketDataColumnFile.open(file);
+        TickCursor cursor = reader.cursor(0, "ctp", e);
+        assertTrue(cursor.seek(timestamp+2200));
+        assertTrue(cursor.next() && cursor.getTick().updateTimestamp==timestamp+2000);
+        cursor = reader.cursor(0, "ctp", e);
+        cursor.seek(timestamp-1000);
+        assertTrue(cursor.next() && cursor.getTick().updateTimestamp==timestamp);
+        cursor = TickCursor.of(ticks);
+        cursor.seek(timestamp+100000);
+        assertTrue(cursor.next() && cursor.getTick()==ticks.get(ticks.size()-1));
+        assertTrue(!cursor.next());
+    }
+
+}
@@ -0,0 +1,92 @@
+package trader.service.node;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import trader.common.util.ConversionUtil;
+
+public class TestNodeMessageCodec {
+
+    @Test
+    public void testEncodeDecode() throws Exception {
+        NodeMessage req = new NodeMessage(NodeConstants.TYPE_DATAQUERY_REQ);
+        NodeMessage msg = req.createResponse();
+        msg.setErrCode(1);
+        msg.setErrMsg("错误");
+        msg.setField(NodeMessage.FIELD_TOPICS, new String[] {"/a", "/b"});
+        msg.setField(NodeMessage.FIELD_MORE_DATA, true);
+        msg.setField("long", 1234567890123L);
+        msg.setField("double", 1.25);
+        msg.setField("nodeType", NodeConstants.NodeType.Trader);
+        JsonArray accounts = new JsonArray();
+        JsonObject account = new JsonObject();
+        account.addProperty("id", "acc1");
+        account.addProperty("seq", 3);
+        accounts.add(account);
+        msg.setField("accounts", accounts);
+
+        NodeMessage msg2 = NodeMessageCodec.decode(ByteBuffer.wrap(NodeMessageCodec.encode(msg, true)));
+        assertTrue(msg2.getType().equals(NodeConstants.TYPE_DATAQUERY_REP));
+        assertTrue(msg2.getId()==msg.getId() && msg2.getReqId()==req.getId());
+        assertTrue(msg2.getErrCode()==1 && msg2.getErrMsg().equals("错误"));
+        assertTrue(msg2.hasMoreData());
+        assertTrue(((List)msg2.getField(NodeMessage.FIELD_TOPICS)).equals(Arrays.asList("/a", "/b")));
+        assertTrue(ConversionUtil.toLong(msg2.getField("long"))==1234567890123L);
+        assertTrue(ConversionUtil.toDouble(msg2.getField("double"))==1.25);
+        assertTrue("Trader".equals(msg2.getField("nodeType")));
+        Map account2 = (Map)((List)msg2.getField("accounts")).get(0);
+        assertTrue("acc1".equals(account2.get("id")) && ConversionUtil.toInt(account2.get("seq"))==3);
+    }
+
+    @Test
+    public void testDeflate() throws Exception {
+        NodeMessage msg = new NodeMessage(NodeConstants.TYPE_DATAQUERY_REP);
+        StringBuilder data = new StringBuilder();
+        for(int i=0;i<10000;i++) {
+            data.append("20201103 09:00:00,15000,").append(i).append("\n");
+        }
+        msg.setField(NodeMessage.FIELD_DATA, data.toString());
+        byte[] raw = NodeMessageCodec.encode(msg, false);
+        byte[] deflated = NodeMessageCodec.encode(msg, true);
+        assertTrue((raw[2]&NodeMessageCodec.FLAG_DEFLATE)==0);
+        assertTrue((deflated[2]&NodeMessageCodec.FLAG_DEFLATE)!=0);
+        assertTrue(deflated.length<raw.length/2);
+        NodeMessage msg2 = NodeMessageCodec.decode(ByteBuffer.wrap(deflated));
+        assertTrue(data.toString().equals(msg2.getField(NodeMessage.FIELD_DATA)));
+    }
+
+    @Test
+    public void testRejectOversizedLength() throws Exception {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.write(NodeMessageCodec.MAGIC);
+        data.write(NodeMessageCodec.VERSION);
+        data.write(NodeMessageCodec.FLAG_DEFLATE);
+        //zigzag变长编码的原始长度 1<<40
+        long v = (1L<<40)<<1;
+        while( (v&~0x7FL)!=0 ) {
+            data.write((int)((v&0x7F)|0x80));
+            v >>>= 7;
+        }
+        data.write((int)v);
+        data.write(new byte[16]);
+        boolean rejected = false;
+        try {
+            NodeMessageCodec.decode(ByteBuffer.wrap(data.toByteArray()));
+        }catch(IOException e) {
+            rejected = true;
+        }
+        assertTrue(rejected);
+    }
+
+}
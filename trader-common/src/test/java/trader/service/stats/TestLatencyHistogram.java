@@ -0,0 +1,25 @@
+package trader.service.stats;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void testPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertTrue(histogram.getPercentile(99)==0);
+        for(int i=0;i<99;i++) {
+            histogram.record(1000);
+        }
+        histogram.record(1000000);
+        assertTrue(histogram.getCount()==100);
+        assertTrue(histogram.getMax()==1000000);
+        long p50 = histogram.getPercentile(50);
+        assertTrue(p50>=1000 && p50<2000);
+        assertTrue(histogram.getPercentile(99)==p50);
+        assertTrue(histogram.getPercentile(100)==1000000);
+    }
+
+}
@@ -0,0 +1,98 @@
+package trader.service.ta;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.tick.PriceLevel;
+import trader.common.util.DateUtil;
+import trader.common.util.FileUtil;
+import trader.common.util.JsonUtil;
+import trader.common.util.PriceUtil;
+import trader.service.md.MarketData;
+
+public class TestBarSeriesCache {
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        Exchangeable e = Exchangeable.fromString("ru2101");
+        LocalDate tradingDay = DateUtil.str2localdate("20201103");
+        ExchangeableTradingTimes tradingTimes = e.exchange().getTradingTimes(e, tradingDay);
+        LocalDateTime time0 = DateUtil.str2localdatetime("20201103 09:00:00");
+        List<FutureBarImpl> bars = new ArrayList<>();
+        for(int i=0;i<10;i++) {
+            LocalDateTime beginTime = time0.plusMinutes(i*5);
+            MarketData tick = createTick(e, beginTime.plusSeconds(10), 15000+i*5, 100+i*10, 2000+i);
+            FutureBarImpl bar = FutureBarImpl.fromTicks(i, tradingTimes, beginTime, tick, tick, tick.lastPrice, tick.lastPrice);
+            MarketData tick2 = createTick(e, beginTime.plusMinutes(4), 15000+i*5-10, 105+i*10, 2000+i+3);
+            bar.update(tick2, tick2.updateTime);
+            bars.add(bar);
+        }
+
+        File dir = Files.createTempDirectory("barCache").toFile();
+        try {
+            BarSeriesCache cache = new BarSeriesCache(dir);
+            assertTrue(cache.load(e, PriceLevel.MIN5, tradingTimes, 100)==null);
+            cache.save(e, PriceLevel.MIN5, tradingDay, 100, bars);
+
+            List<FutureBarImpl> bars2 = cache.load(e, PriceLevel.MIN5, tradingTimes, 100);
+            assertTrue(bars2!=null && bars2.size()==bars.size());
+            for(int i=0;i<bars.size();i++) {
+                FutureBarImpl bar = bars.get(i), bar2 = bars2.get(i);
+                assertTrue(JsonUtil.object2json(bar).equals(JsonUtil.object2json(bar2)));
+                assertTrue(bar.getTimePeriod().equals(bar2.getTimePeriod()));
+            }
+            //源数据版本改变
+            assertTrue(cache.load(e, PriceLevel.MIN5, tradingTimes, 101)==null);
+            assertTrue(cache.load(e, PriceLevel.MIN15, tradingTimes, 100)==null);
+            assertTrue(cache.getHits()==1 && cache.getMisses()==3);
+        } finally {
+            FileUtil.deleteDirectory(dir);
+        }
+    }
+
+    private static MarketData createTick(Exchangeable e, LocalDateTime time, double price, long volume, long openInt) {
+        TestMarketData md = new TestMarketData();
+        md.instrument = e;
+        md.updateTime = time;
+        md.updateTimestamp = DateUtil.localdatetime2long(e.exchange().getZoneId(), time);
+        md.lastPrice = PriceUtil.price2long(price);
+        md.openPrice = PriceUtil.price2long(15000);
+        md.highestPrice = PriceUtil.price2long(16000);
+        md.lowestPrice = PriceUtil.price2long(14000);
+        md.averagePrice = md.lastPrice;
+        md.upperLimitPrice = PriceUtil.price2long(16500);
+        md.lowerLimitPrice = PriceUtil.price2long(13500);
+        md.volume = volume;
+        md.turnover = PriceUtil.price2long(price*volume*10);
+        md.openInterest = openInt;
+        return md;
+    }
+
+    private static class TestMarketData extends MarketData {
+
+        @Override
+        public MarketData clone() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getCsvHead() {
+            return null;
+        }
+
+        @Override
+        public void toCsvRow(StringBuilder rowBuf) {
+        }
+    }
+
+}
@@ -0,0 +1,195 @@
+package trader.service.ta;
+
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.ta4j.core.Bar;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableTradingTimes;
+import trader.common.exchangeable.MarketTimeStage;
+import trader.common.tick.PriceLevel;
+import trader.common.util.DateUtil;
+import trader.common.util.JsonUtil;
+import trader.common.util.PriceUtil;
+import trader.service.md.MarketData;
+import trader.service.ta.bar.FutureBarBuilder;
+
+public class TestColumnarLeveledBarSeries {
+
+    @Test
+    public void testAddAndUpdate() {
+        Exchangeable e = Exchangeable.fromString("ru2101");
+        LocalDate tradingDay = DateUtil.str2localdate("20201103");
+        ExchangeableTradingTimes tradingTimes = e.exchange().getTradingTimes(e, tradingDay);
+        LocalDateTime time0 = DateUtil.str2localdatetime("20201103 09:00:00");
+
+        //初始容量很小, 需要多次扩容
+        ColumnarLeveledBarSeries series = new ColumnarLeveledBarSeries(e, "ru2101-min1", PriceLevel.MIN1, LongNum::valueOf, 4);
+        BaseLeveledBarSeries series0 = new BaseLeveledBarSeries(e, "ru2101-min1", PriceLevel.MIN1, LongNum::valueOf);
+        for(int i=0;i<20;i++) {
+            LocalDateTime beginTime = time0.plusMinutes(i);
+            MarketData tick = createTick(e, beginTime.plusSeconds(10), 15000+i*5, 100+i*10, 2000+i);
+            FutureBarImpl bar = FutureBarImpl.fromTicks(i, tradingTimes, beginTime, tick, tick, tick.lastPrice, tick.lastPrice);
+            series.addBar(bar);
+            series0.addBar(bar);
+            //加入之后继续更新最后一个BAR
+            MarketData tick2 = createTick(e, beginTime.plusSeconds(50), 15000+i*5-10, 105+i*10, 2000+i+3);
+            bar.update(tick2, tick2.updateTime);
+        }
+        assertTrue(series.getBarCount()==20);
+        assertTrue(series.getBeginIndex()==0 && series.getEndIndex()==19);
+        assertTrue(!(series.getBar(0) instanceof FutureBarImpl));
+        assertTrue(series.getLastBar() instanceof FutureBarImpl);
+        for(int i=0;i<series.getBarCount();i++) {
+            FutureBar bar = series.getBar2(i), bar0 = series0.getBar2(i);
+            assertTrue(bar.getIndex()==i);
+            assertTrue(bar.getClosePrice2()==bar0.getClosePrice2());
+            assertTrue(bar.getEndTime().equals(bar0.getEndTime()));
+            assertTrue(bar.getTradingTimes()==tradingTimes);
+            assertTrue(JsonUtil.object2json(bar).equals(JsonUtil.object2json(bar0)));
+        }
+
+        LeveledBarSeries subSeries = series.getSubSeries(5, 10);
+        assertTrue(subSeries.getBarCount()==5);
+        assertTrue(subSeries.getBar2(0).getIndex()==5);
+        assertTrue(subSeries.getBar2(4).getClosePrice2()==series.getBar2(9).getClosePrice2());
+
+        Bar removed = series.removeLastBar();
+        assertTrue(((FutureBar)removed).getIndex()==19);
+        assertTrue(series.getBarCount()==19);
+        assertTrue(series.getBar2(series.getEndIndex()).getIndex()==18);
+        removed = series.removeLastBar();
+        assertTrue(((FutureBar)removed).getIndex()==18);
+        assertTrue(removed.getClosePrice().equals(series0.getBar(18).getClosePrice()));
+
+        //不能加入时间更早的BAR
+        boolean rejected = false;
+        try {
+            series.addBar(series0.getBar(5));
+        }catch(IllegalArgumentException ex) {
+            rejected = true;
+        }
+        assertTrue(rejected);
+    }
+
+    @Test
+    public void testSubSeriesKeepsLiveBar() {
+        Exchangeable e = Exchangeable.fromString("ru2101");
+        LocalDate tradingDay = DateUtil.str2localdate("20201103");
+        ExchangeableTradingTimes tradingTimes = e.exchange().getTradingTimes(e, tradingDay);
+        LocalDateTime time0 = DateUtil.str2localdatetime("20201103 09:00:00");
+
+        FutureBarBuilder builder = new FutureBarBuilder(tradingTimes, PriceLevel.MIN1);
+        for(int i=0;i<3;i++) {
+            MarketData tick = createTick(e, time0.plusMinutes(i).plusSeconds(10), 15000+i*5, 100+i*10, 2000+i);
+            tick.mktStage = MarketTimeStage.MarketOpen;
+            builder.update(tick);
+        }
+        LeveledBarSeries series = builder.getTimeSeries(PriceLevel.MIN1);
+        FutureBarImpl liveBar = builder.getLastBar();
+
+        LeveledBarSeries subSeries = series.getSubSeries(0, series.getBarCount());
+        assertTrue(subSeries.getBarCount()==3);
+        assertTrue(subSeries.getBar2(2).getClosePrice2()==liveBar.getClosePrice2());
+        //原序列仍然保留FutureBarImpl对象
+        assertTrue(series.getLastBar()==liveBar);
+
+        //继续在最后一个BAR上更新
+        MarketData tick = createTick(e, time0.plusMinutes(2).plusSeconds(40), 15100, 130, 2005);
+        tick.mktStage = MarketTimeStage.MarketOpen;
+        builder.update(tick);
+        assertTrue(series.getBarCount()==3);
+        assertTrue(builder.getLastBar()==liveBar);
+        assertTrue(liveBar.getClosePrice2()==PriceUtil.price2long(15100));
+        assertTrue(series.getBar2(2).getClosePrice2()==PriceUtil.price2long(15100));
+        //子序列是复制的数据, 不随原序列更新
+        assertTrue(subSeries.getBar2(2).getClosePrice2()==PriceUtil.price2long(15010));
+    }
+
+    @Test
+    public void testMergeHistoryKeepsReference() {
+        Exchangeable e = Exchangeable.fromString("ru2101");
+        LocalDate tradingDay = DateUtil.str2localdate("20201103");
+        ExchangeableTradingTimes tradingTimes = e.exchange().getTradingTimes(e, tradingDay);
+        LocalDateTime time0 = DateUtil.str2localdatetime("20201103 09:00:00");
+
+        FutureBarBuilder builder = new FutureBarBuilder(tradingTimes, PriceLevel.MIN1);
+        for(int i=0;i<3;i++) {
+            MarketData tick = createTick(e, time0.plusMinutes(10+i).plusSeconds(10), 15000+i*5, 100+i*10, 2000+i);
+            tick.mktStage = MarketTimeStage.MarketOpen;
+            builder.update(tick);
+        }
+        //合并前获取的序列引用
+        LeveledBarSeries series = builder.getTimeSeries(PriceLevel.MIN1);
+        FutureBarImpl liveBar = builder.getLastBar();
+
+        //历史数据最后一个BAR与实时BAR重叠, 不会插入
+        BaseLeveledBarSeries history = new BaseLeveledBarSeries(e, "ru2101-min1", PriceLevel.MIN1, LongNum::valueOf);
+        for(int i=0;i<11;i++) {
+            LocalDateTime beginTime = time0.plusMinutes(i);
+            MarketData tick = createTick(e, beginTime.plusSeconds(10), 14900+i, 10+i, 1900+i);
+            history.addBar(FutureBarImpl.fromTicks(i, tradingTimes, beginTime, tick, tick, tick.lastPrice, tick.lastPrice));
+        }
+        builder.mergeHistoryData(history, Collections.singletonList(tradingDay));
+
+        assertTrue(builder.getTimeSeries(PriceLevel.MIN1)==series);
+        assertTrue(series.getBarCount()==13);
+        assertTrue(series.getBar2(0).getIndex()==0);
+        assertTrue(series.getBar2(0).getClosePrice2()==history.getBar2(0).getClosePrice2());
+        assertTrue(series.getBar2(9).getClosePrice2()==history.getBar2(9).getClosePrice2());
+        assertTrue(series.getBar2(10).getClosePrice2()==PriceUtil.price2long(15000));
+        assertTrue(series.getLastBar()==liveBar);
+
+        //合并后新的TICK和BAR仍然更新在原来的序列对象上
+        MarketData tick = createTick(e, time0.plusMinutes(12).plusSeconds(40), 15100, 130, 2005);
+        tick.mktStage = MarketTimeStage.MarketOpen;
+        builder.update(tick);
+        assertTrue(series.getBar2(12).getClosePrice2()==PriceUtil.price2long(15100));
+        tick = createTick(e, time0.plusMinutes(13).plusSeconds(10), 15120, 140, 2006);
+        tick.mktStage = MarketTimeStage.MarketOpen;
+        assertTrue(builder.update(tick));
+        assertTrue(series.getBarCount()==14);
+        assertTrue(series.getBar2(13).getClosePrice2()==PriceUtil.price2long(15120));
+    }
+
+    private static MarketData createTick(Exchangeable e, LocalDateTime time, double price, long volume, long openInt) {
+        TestMarketData md = new TestMarketData();
+        md.instrument = e;
+        md.updateTime = time;
+        md.updateTimestamp = DateUtil.localdatetime2long(e.exchange().getZoneId(), time);
+        md.lastPrice = PriceUtil.price2long(price);
+        md.openPrice = PriceUtil.price2long(15000);
+        md.highestPrice = PriceUtil.price2long(16000);
+        md.lowestPrice = PriceUtil.price2long(14000);
+        md.averagePrice = md.lastPrice;
+        md.upperLimitPrice = PriceUtil.price2long(16500);
+        md.lowerLimitPrice = PriceUtil.price2long(13500);
+        md.volume = volume;
+        md.turnover = PriceUtil.price2long(price*volume*10);
+        md.openInterest = openInt;
+        return md;
+    }
+
+    private static class TestMarketData extends MarketData {
+
+        @Override
+        public MarketData clone() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getCsvHead() {
+            return null;
+        }
+
+        @Override
+        public void toCsvRow(StringBuilder rowBuf) {
+        }
+    }
+
+}
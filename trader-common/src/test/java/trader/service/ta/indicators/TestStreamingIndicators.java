@@ -0,0 +1,94 @@
+package trader.service.ta.indicators;
+
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.Test;
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.BaseBarSeries;
+import org.ta4j.core.Indicator;
+import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+import org.ta4j.core.num.DoubleNum;
+import org.ta4j.core.num.Num;
+
+import trader.service.ta.LongNum;
+import trader.service.ta.indicators.stream.StreamingBIAS;
+import trader.service.ta.indicators.stream.StreamingIndicator;
+import trader.service.ta.indicators.stream.StreamingKDJ;
+import trader.service.ta.indicators.stream.StreamingMACD;
+
+public class TestStreamingIndicators {
+
+    @Test
+    public void testDoubleNum() {
+        //相同的算法, 只有浮点误差
+        verify(DoubleNum::valueOf, 0.000001);
+    }
+
+    @Test
+    public void testLongNum() {
+        //LongNum每次运算都会舍入到4位小数, EMA系数也会被舍入
+        verify(LongNum::valueOf, 0.1);
+    }
+
+    private void verify(Function<Number, Num> numFunction, double tolerance) {
+        BarSeries series = new BaseBarSeries("bars", numFunction);
+        BarSeries partials = new BaseBarSeries("partials", numFunction);
+        StreamingMACD macd = new StreamingMACD(12, 26, 9);
+        StreamingKDJ kdj = new StreamingKDJ(9, 3, 3);
+        StreamingBIAS bias = new StreamingBIAS(6);
+        StreamingIndicator[] indicators = new StreamingIndicator[] {macd, kdj, bias};
+
+        Random random = new Random(1);
+        ZonedDateTime beginTime = ZonedDateTime.of(2020, 1, 1, 15, 0, 0, 0, ZoneId.systemDefault());
+        double close = 3500;
+        for(int i=0;i<300;i++) {
+            double open = close, high = open+1, low = open-1;
+            //BAR开始, 之后多次更新最后一个BAR
+            partials.addBar(beginTime.plusDays(partials.getBarCount()), open, high, low, open, 1);
+            for(StreamingIndicator indicator:indicators) {
+                indicator.update(partials.getLastBar(), true);
+            }
+            for(int j=0;j<5;j++) {
+                close += random.nextInt(21)-10;
+                high = Math.max(high, close+1);
+                low = Math.min(low, close-1);
+                partials.addBar(beginTime.plusDays(partials.getBarCount()), open, high, low, close, 1);
+                for(StreamingIndicator indicator:indicators) {
+                    indicator.update(partials.getLastBar(), false);
+                }
+            }
+            series.addBar(beginTime.plusDays(i), open, high, low, close, 100);
+            for(StreamingIndicator indicator:indicators) {
+                indicator.update(series.getLastBar(), false);
+            }
+        }
+
+        ClosePriceIndicator closePrice = new ClosePriceIndicator(series);
+        MACDIndicator macd4j = new MACDIndicator(closePrice, 12, 26, 9);
+        KDJIndicator kdj4j = KDJIndicator.create(series, 9, 3, 3);
+        BIASIndicator bias4j = new BIASIndicator(closePrice, 6);
+        Indicator<Num> macdAdapter = macd.toIndicator(series);
+        for(int i=0;i<series.getBarCount();i++) {
+            assertTrue(macd.getBarCount()==series.getBarCount());
+            assertEquals(macd4j.getDIFF().getValue(i), macd.getDIFF().getValue(i), tolerance);
+            assertEquals(macd4j.getDEA().getValue(i), macd.getDEA().getValue(i), tolerance);
+            assertEquals(macd4j.getValue(i), macd.getValue(i), tolerance);
+            assertEquals(macd4j.getValue(i), macdAdapter.getValue(i).doubleValue(), tolerance);
+            assertEquals(kdj4j.getRSVIndicator().getValue(i), kdj.getRSV().getValue(i), tolerance);
+            assertEquals(kdj4j.getKIndicator().getValue(i), kdj.getK().getValue(i), tolerance);
+            assertEquals(kdj4j.getDIndicator().getValue(i), kdj.getD().getValue(i), tolerance);
+            assertEquals(kdj4j.getValue(i), kdj.getValue(i), tolerance);
+            assertEquals(bias4j.getValue(i), bias.getValue(i), tolerance);
+        }
+    }
+
+    private static void assertEquals(Num expected, double actual, double tolerance) {
+        assertTrue(expected+" <> "+actual, Math.abs(expected.doubleValue()-actual)<=tolerance);
+    }
+
+}
@@ -31,8 +31,10 @@ import trader.service.util.SimpleBeansContainer;
 import trader.simulator.SimMarketDataService;
 import trader.tool.CmdActionFactory;
 import trader.tool.MainHelper;
+import trader.tool.MarketDataConvertJournalAction;
 import trader.tool.MarketDataImportAction;
 import trader.tool.RepositoryBuildBarAction;
+import trader.tool.RepositoryBuildTickColumnsAction;
 import trader.tool.RepositoryExportKBarAction;
 import trader.tool.RepositoryExportTradingDaysAction;
 import trader.tool.RepositoryInstrumentStatsAction;
@@ -75,9 +77,11 @@ public class TraderMain {
         CmdActionFactory actionFactory = new CmdActionFactory(beansContainer, new CmdAction[] {
                 new TraderEvalAction()
                 ,new MarketDataImportAction()
+                ,new MarketDataConvertJournalAction()
                 ,new RepositoryInstrumentStatsAction()
                 ,new RepositoryPrimaryInstrumentAction()
                 ,new RepositoryBuildBarAction()
+                ,new RepositoryBuildTickColumnsAction()
                 ,new ServiceStartAction(TraderMain.class, true)
                 ,new RepositoryExportKBarAction()
                 ,new RepositoryExportTradingDaysAction()
@@ -114,6 +118,7 @@ public class TraderMain {
         //解析Action参数
         List<KVPair> kvpairs = param2kvpairs(args, actionOptsIndex);
         int result = currAction.execute(beansContainer, writer, kvpairs);
+        TraderHomeUtil.closeExchangeableData();
         System.exit(result);
     }
 
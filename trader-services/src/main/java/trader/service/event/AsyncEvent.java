@@ -32,11 +32,17 @@ public class AsyncEvent {
 
 	public Object data2;
 
+	/**
+	 * 发布事件时的System.nanoTime(), 用于统计事件分发延时
+	 */
+	public long publishTime;
+
     public void setData(int eventType, AsyncEventProcessor processor, Object data, Object data2) {
         this.eventType = eventType;
         this.processor = processor;
         this.data = data;
         this.data2 = data2;
+        this.publishTime = System.nanoTime();
     }
 
     void clear() {
@@ -44,6 +50,7 @@ public class AsyncEvent {
         processor = null;
         data = null;
         data2 = null;
+        publishTime = 0;
     }
 
 }
@@ -7,11 +7,14 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -28,14 +31,28 @@ import trader.common.beans.ServiceEventHub;
 import trader.common.beans.ServiceState;
 import trader.common.config.ConfigUtil;
 import trader.common.util.ConversionUtil;
+import trader.common.util.StringUtil;
 import trader.service.md.MarketData;
+import trader.service.stats.LatencyHistogram;
+import trader.service.stats.StatsCollector;
+import trader.service.stats.StatsItem;
 import trader.service.util.ConcurrentUtil;
 
 @Service
 public class AsyncEventServiceImpl implements AsyncEventService {
+    private final static Logger logger = LoggerFactory.getLogger(AsyncEventServiceImpl.class);
 
     public static final String ITEM_DISRUPTOR_WAIT_STRATEGY = "disruptor.waitStrategy";
     public static final String ITEM_DISRUPTOR_RINGBUFFER_SIZE = "disruptor.ringBufferSize";
+    /**
+     * 交易事件独立通道的等待策略, 配置后EVENT_TYPE_PROCESSOR事件不再与行情共用RingBuffer
+     */
+    public static final String ITEM_TRADE_LANE_WAIT_STRATEGY = "tradeLane.waitStrategy";
+    public static final String ITEM_TRADE_LANE_RINGBUFFER_SIZE = "tradeLane.ringBufferSize";
+    /**
+     * 交易事件处理线程绑定CPU的提示, 会体现在线程名称中, 由外部工具(taskset)绑定
+     */
+    public static final String ITEM_TRADE_LANE_CPU_AFFINITY = "tradeLane.cpuAffinity";
 
     private static class AsyncEventHandler implements EventHandler<AsyncEvent>{
         private int eventType;
@@ -83,8 +100,17 @@ public class AsyncEventServiceImpl implements AsyncEventService {
     @Autowired
     private ExecutorService executorService;
 
+    @Autowired
+    private StatsCollector statsCollector;
+
     private Disruptor<AsyncEvent> disruptor;
     private RingBuffer<AsyncEvent> ringBuffer;
+    /**
+     * 交易事件独立通道, 只挂载Trade处理链
+     */
+    private Disruptor<AsyncEvent> tradeLaneDisruptor;
+    private RingBuffer<AsyncEvent> tradeLaneRingBuffer;
+    private LatencyHistogram tradeLaneLatency = new LatencyHistogram();
 
     private Map<String, AsyncEventHandler> handlersById = new HashMap<>();
     private ServiceState state = ServiceState.NotInited;
@@ -121,10 +147,52 @@ public class AsyncEventServiceImpl implements AsyncEventService {
         AsyncEventHandler[] handlers = allFilters.toArray(new AsyncEventHandler[allFilters.size()]);
         disruptor.handleEventsWith(handlers);
         ringBuffer= disruptor.start();
+        String tradeLaneWaitStrategy = ConfigUtil.getString(configPrefix+ITEM_TRADE_LANE_WAIT_STRATEGY);
+        if ( !StringUtil.isEmpty(tradeLaneWaitStrategy) ) {
+            startTradeLane(configPrefix, tradeLaneWaitStrategy);
+        }
         state = ServiceState.Ready;
         return this;
     }
 
+    /**
+     * 启动交易事件独立通道: 使用单独的线程和等待策略, 报单/成交回报不会排在行情后面
+     */
+    private void startTradeLane(String configPrefix, String waitStrategy) {
+        AsyncEventHandler tradeHandler = handlersById.get(FILTER_CHAIN_TRADE);
+        int cpuAffinity = ConfigUtil.getInt(configPrefix+ITEM_TRADE_LANE_CPU_AFFINITY, -1);
+        String threadName = "AsyncEvent-TradeLane"+(cpuAffinity>=0?"-cpu"+cpuAffinity:"");
+        ThreadFactory threadFactory = (Runnable r)->{
+            Thread thread = new Thread(r, threadName);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            return thread;
+        };
+        tradeLaneDisruptor = new Disruptor<AsyncEvent>(()->{
+                return new AsyncEvent();
+            }, ConfigUtil.getInt(configPrefix+ITEM_TRADE_LANE_RINGBUFFER_SIZE, 1024)
+            , threadFactory
+            , ProducerType.MULTI
+            , ConcurrentUtil.createDisruptorWaitStrategy(waitStrategy)
+            );
+        EventHandler<AsyncEvent> laneHandler = (AsyncEvent event, long sequence, boolean endOfBatch)->{
+            tradeLaneLatency.record(System.nanoTime()-event.publishTime);
+            tradeHandler.onEvent(event, sequence, endOfBatch);
+        };
+        tradeLaneDisruptor.handleEventsWith(laneHandler);
+        RingBuffer<AsyncEvent> laneRingBuffer = tradeLaneDisruptor.start();
+        tradeLaneRingBuffer = laneRingBuffer;
+        String service = AsyncEventService.class.getSimpleName();
+        statsCollector.registerStatsItem(new StatsItem(service, "tradeLane", "currQueueDepth"),  (StatsItem itemInfo) -> {
+            return laneRingBuffer.getBufferSize()-laneRingBuffer.remainingCapacity();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "tradeLane", "totalEvents"),  (StatsItem itemInfo) -> {
+            return laneRingBuffer.getCursor()+1;
+        });
+        tradeLaneLatency.registerStats(statsCollector, service, "tradeLaneDispatch");
+        logger.info("Trade events are dispatched by thread "+threadName+" with wait strategy "+waitStrategy);
+    }
+
     @PreDestroy
     public void destroy() {
     }
@@ -142,6 +210,10 @@ public class AsyncEventServiceImpl implements AsyncEventService {
 
     public long publishEvent(int eventType, AsyncEventProcessor processor, Object data, Object data2)
     {
+        RingBuffer<AsyncEvent> ringBuffer = this.ringBuffer;
+        if ( tradeLaneRingBuffer!=null && (eventType&AsyncEvent.EVENT_TYPE_PROCESSOR)!=0 ) {
+            ringBuffer = tradeLaneRingBuffer;
+        }
         long seq = ringBuffer.next();
         try {
             AsyncEvent event = ringBuffer.get(seq);
@@ -154,6 +226,10 @@ public class AsyncEventServiceImpl implements AsyncEventService {
 
     @Override
     public void publishProcessorEvent(AsyncEventProcessor processor, int dataType, Object data, Object data2) {
+        RingBuffer<AsyncEvent> ringBuffer = this.ringBuffer;
+        if ( tradeLaneRingBuffer!=null ) {
+            ringBuffer = tradeLaneRingBuffer;
+        }
         long seq = ringBuffer.next();
         try {
             AsyncEvent event = ringBuffer.get(seq);
@@ -172,6 +248,15 @@ public class AsyncEventServiceImpl implements AsyncEventService {
             }
             ringBuffer = null;
         }
+        if ( tradeLaneDisruptor!=null ) {
+            try {
+                tradeLaneDisruptor.shutdown(5, TimeUnit.SECONDS);
+            } catch (Throwable t) {
+                tradeLaneDisruptor.halt();
+            }
+            tradeLaneDisruptor = null;
+            tradeLaneRingBuffer = null;
+        }
     }
 
 }
@@ -0,0 +1,412 @@
+package trader.service.md;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.service.md.ctp.CtpMarketData;
+import trader.service.md.web.WebMarketData;
+
+/**
+ * 行情数据的二进制追加日志: 每个交易日一个文件, 按接收顺序保存原始行情.
+ * <P>文件格式: MAGIC(4) + VERSION(4) + 记录*
+ * <BR>记录格式: 长度(4) + CRC32(4) + 类型(1) + producerId + provider + instrument + tradingDay + 内容, 版本1没有provider
+ * <BR>CTP行情按CThostFtdcDepthMarketDataField原始字段保存, 其它行情保存CSV文本.
+ * <BR>进程崩溃后最后一条记录可能不完整, 重新打开时会根据长度/CRC截断.
+ */
+public class MarketDataJournal {
+
+    public static final int MAGIC = 0x4D444A31;
+    public static final int VERSION = 2;
+    public static final int HEADER_SIZE = 8;
+    public static final String FILE_NAME = "marketData.journal";
+
+    public static final byte TYPE_CTP = 1;
+    public static final byte TYPE_CSV = 2;
+
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 64*1024;
+
+    /**
+     * 解码后的一条记录
+     */
+    public static class Record {
+        public byte type;
+        public String producerId;
+        /**
+         * producer的provider, 版本1的日志为null
+         */
+        public String provider;
+        public String instrument;
+        public String tradingDay;
+        /**
+         * TYPE_CTP
+         */
+        public CThostFtdcDepthMarketDataField field;
+        /**
+         * TYPE_CSV
+         */
+        public String csvHead;
+        public String csvRow;
+    }
+
+    /**
+     * 日志写入, 不是线程安全的, 只能由保存线程调用.
+     * <BR>append只写入内存缓冲区, commit时批量写入文件, 并按照syncInterval决定是否fsync
+     */
+    public static class Writer implements AutoCloseable {
+        private final File file;
+        private final FileChannel channel;
+        private final ByteBuffer buf;
+        private final CRC32 crc = new CRC32();
+        private final long syncInterval;
+        private long syncTime;
+        private boolean unsynced;
+        private StringBuilder rowBuf;
+        /**
+         * 追加到已有文件时沿用文件的版本
+         */
+        private int version = VERSION;
+
+        /**
+         * @param syncInterval fsync间隔(ms), 0代表每次commit都fsync, 负数代表不主动fsync
+         */
+        public Writer(File file, int bufferSize, long syncInterval) throws IOException {
+            this.file = file;
+            this.syncInterval = syncInterval;
+            file.getParentFile().mkdirs();
+            long validLength = 0;
+            if ( file.exists() ) {
+                try(Reader reader = new Reader(file);){
+                    while(reader.next());
+                    validLength = reader.getValidLength();
+                    if ( validLength>=HEADER_SIZE ) {
+                        version = reader.getVersion();
+                    }
+                }
+            }
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            buf = ByteBuffer.allocateDirect(bufferSize+MAX_RECORD_SIZE);
+            if ( validLength<HEADER_SIZE ) {
+                channel.truncate(0);
+                buf.putInt(MAGIC).putInt(VERSION);
+            } else if ( validLength<channel.size() ) {
+                channel.truncate(validLength);
+            }
+            channel.position(Math.max(0, Math.min(validLength, channel.size())));
+            syncTime = System.currentTimeMillis();
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * 写入缓冲区, 缓冲区满时自动commit
+         */
+        public void append(MarketData md, String producerId, String provider) throws IOException {
+            if ( buf.remaining()<MAX_RECORD_SIZE ) {
+                commit();
+            }
+            int begin = buf.position();
+            try {
+                encode(md, producerId, provider);
+            }catch(BufferOverflowException e) {
+                buf.position(begin);
+                throw new IOException("Market data record too large: "+md.instrument);
+            }
+        }
+
+        /**
+         * 批量写入文件, 到达fsync间隔时同步到磁盘
+         */
+        public void commit() throws IOException {
+            if ( buf.position()>0 ) {
+                buf.flip();
+                while(buf.hasRemaining()) {
+                    channel.write(buf);
+                }
+                buf.clear();
+                unsynced = true;
+            }
+            if ( unsynced && syncInterval>=0 && (System.currentTimeMillis()-syncTime)>=syncInterval ) {
+                sync();
+            }
+        }
+
+        public void sync() throws IOException {
+            channel.force(false);
+            unsynced = false;
+            syncTime = System.currentTimeMillis();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                commit();
+                if ( unsynced ) {
+                    sync();
+                }
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void encode(MarketData md, String producerId, String provider) {
+            int begin = buf.position();
+            buf.position(begin+RECORD_HEADER_SIZE);
+            CThostFtdcDepthMarketDataField field = null;
+            if ( md instanceof CtpMarketData ) {
+                field = ((CtpMarketData)md).field;
+            } else if ( md instanceof WebMarketData ) {
+                field = ((WebMarketData)md).field;
+            }
+            buf.put(field!=null?TYPE_CTP:TYPE_CSV);
+            putString(buf, producerId);
+            if ( version>=2 ) {
+                putString(buf, provider);
+            }
+            putString(buf, md.instrument.toString());
+            putString(buf, md.tradingDay);
+            if ( field!=null ) {
+                putField(buf, field);
+            } else {
+                if ( rowBuf==null ) {
+                    rowBuf = new StringBuilder(512);
+                }
+                rowBuf.setLength(0);
+                md.toCsvRow(rowBuf);
+                putString(buf, md.getCsvHead());
+                putString(buf, rowBuf);
+            }
+            int end = buf.position();
+            ByteBuffer payload = buf.duplicate();
+            payload.position(begin+RECORD_HEADER_SIZE).limit(end);
+            crc.reset();
+            crc.update(payload);
+            buf.putInt(begin, end-begin-RECORD_HEADER_SIZE);
+            buf.putInt(begin+4, (int)crc.getValue());
+        }
+    }
+
+    /**
+     * 顺序读取日志, 遇到不完整或CRC错误的记录时停止
+     */
+    public static class Reader implements AutoCloseable {
+        private final DataInputStream in;
+        private final CRC32 crc = new CRC32();
+        private byte[] payload = new byte[1024];
+        private long validLength;
+        private Record record;
+        private int version;
+
+        public Reader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 256*1024));
+            try {
+                if ( in.readInt()!=MAGIC ) {
+                    throw new IOException("Invalid market data journal "+file);
+                }
+                version = in.readInt();
+                if ( version<1 || version>VERSION ) {
+                    throw new IOException("Unsupported market data journal version "+version+" : "+file);
+                }
+                validLength = HEADER_SIZE;
+            }catch(EOFException e) {
+                validLength = 0;
+            }catch(IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        /**
+         * 读取下一条记录
+         *
+         * @return false 如果到达文件结尾或者遇到不完整的记录
+         */
+        public boolean next() throws IOException {
+            record = null;
+            if ( validLength<HEADER_SIZE ) {
+                return false;
+            }
+            int len, checksum;
+            try {
+                len = in.readInt();
+                checksum = in.readInt();
+                if ( len<=0 || len>MAX_RECORD_SIZE ) {
+                    return false;
+                }
+                if ( payload.length<len ) {
+                    payload = new byte[len];
+                }
+                in.readFully(payload, 0, len);
+            }catch(EOFException e) {
+                return false;
+            }
+            crc.reset();
+            crc.update(payload, 0, len);
+            if ( (int)crc.getValue()!=checksum ) {
+                return false;
+            }
+            record = decode(ByteBuffer.wrap(payload, 0, len), version);
+            validLength += RECORD_HEADER_SIZE+len;
+            return true;
+        }
+
+        public Record getRecord() {
+            return record;
+        }
+
+        /**
+         * 文件格式版本
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * 已读取的完整记录的长度
+         */
+        public long getValidLength() {
+            return validLength;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static Record decode(ByteBuffer buf, int version) {
+        Record record = new Record();
+        record.type = buf.get();
+        record.producerId = getString(buf);
+        if ( version>=2 ) {
+            record.provider = getString(buf);
+        }
+        record.instrument = getString(buf);
+        record.tradingDay = getString(buf);
+        if ( record.type==TYPE_CTP ) {
+            record.field = getField(buf);
+        } else {
+            record.csvHead = getString(buf);
+            record.csvRow = getString(buf);
+        }
+        return record;
+    }
+
+    private static void putField(ByteBuffer buf, CThostFtdcDepthMarketDataField f) {
+        putString(buf, f.TradingDay);
+        putString(buf, f.InstrumentID);
+        putString(buf, f.ExchangeID);
+        putString(buf, f.ExchangeInstID);
+        putString(buf, f.UpdateTime);
+        putString(buf, f.ActionDay);
+        buf.putInt(f.UpdateMillisec);
+        buf.putInt(f.Volume);
+        buf.putDouble(f.LastPrice);
+        buf.putDouble(f.PreSettlementPrice);
+        buf.putDouble(f.PreClosePrice);
+        buf.putDouble(f.PreOpenInterest);
+        buf.putDouble(f.OpenPrice);
+        buf.putDouble(f.HighestPrice);
+        buf.putDouble(f.LowestPrice);
+        buf.putDouble(f.Turnover);
+        buf.putDouble(f.OpenInterest);
+        buf.putDouble(f.ClosePrice);
+        buf.putDouble(f.SettlementPrice);
+        buf.putDouble(f.UpperLimitPrice);
+        buf.putDouble(f.LowerLimitPrice);
+        buf.putDouble(f.PreDelta);
+        buf.putDouble(f.CurrDelta);
+        buf.putDouble(f.AveragePrice);
+        buf.putDouble(f.BidPrice1); buf.putInt(f.BidVolume1); buf.putDouble(f.AskPrice1); buf.putInt(f.AskVolume1);
+        buf.putDouble(f.BidPrice2); buf.putInt(f.BidVolume2); buf.putDouble(f.AskPrice2); buf.putInt(f.AskVolume2);
+        buf.putDouble(f.BidPrice3); buf.putInt(f.BidVolume3); buf.putDouble(f.AskPrice3); buf.putInt(f.AskVolume3);
+        buf.putDouble(f.BidPrice4); buf.putInt(f.BidVolume4); buf.putDouble(f.AskPrice4); buf.putInt(f.AskVolume4);
+        buf.putDouble(f.BidPrice5); buf.putInt(f.BidVolume5); buf.putDouble(f.AskPrice5); buf.putInt(f.AskVolume5);
+    }
+
+    private static CThostFtdcDepthMarketDataField getField(ByteBuffer buf) {
+        CThostFtdcDepthMarketDataField f = new CThostFtdcDepthMarketDataField();
+        f.TradingDay = getString(buf);
+        f.InstrumentID = getString(buf);
+        f.ExchangeID = getString(buf);
+        f.ExchangeInstID = getString(buf);
+        f.UpdateTime = getString(buf);
+        f.ActionDay = getString(buf);
+        f.UpdateMillisec = buf.getInt();
+        f.Volume = buf.getInt();
+        f.LastPrice = buf.getDouble();
+        f.PreSettlementPrice = buf.getDouble();
+        f.PreClosePrice = buf.getDouble();
+        f.PreOpenInterest = buf.getDouble();
+        f.OpenPrice = buf.getDouble();
+        f.HighestPrice = buf.getDouble();
+        f.LowestPrice = buf.getDouble();
+        f.Turnover = buf.getDouble();
+        f.OpenInterest = buf.getDouble();
+        f.ClosePrice = buf.getDouble();
+        f.SettlementPrice = buf.getDouble();
+        f.UpperLimitPrice = buf.getDouble();
+        f.LowerLimitPrice = buf.getDouble();
+        f.PreDelta = buf.getDouble();
+        f.CurrDelta = buf.getDouble();
+        f.AveragePrice = buf.getDouble();
+        f.BidPrice1 = buf.getDouble(); f.BidVolume1 = buf.getInt(); f.AskPrice1 = buf.getDouble(); f.AskVolume1 = buf.getInt();
+        f.BidPrice2 = buf.getDouble(); f.BidVolume2 = buf.getInt(); f.AskPrice2 = buf.getDouble(); f.AskVolume2 = buf.getInt();
+        f.BidPrice3 = buf.getDouble(); f.BidVolume3 = buf.getInt(); f.AskPrice3 = buf.getDouble(); f.AskVolume3 = buf.getInt();
+        f.BidPrice4 = buf.getDouble(); f.BidVolume4 = buf.getInt(); f.AskPrice4 = buf.getDouble(); f.AskVolume4 = buf.getInt();
+        f.BidPrice5 = buf.getDouble(); f.BidVolume5 = buf.getInt(); f.AskPrice5 = buf.getDouble(); f.AskVolume5 = buf.getInt();
+        return f;
+    }
+
+    /**
+     * 字符串: 长度(2, -1代表null) + 内容. 行情字段基本都是ASCII, 直接按字节写入避免编码
+     */
+    private static void putString(ByteBuffer buf, CharSequence str) {
+        if ( str==null ) {
+            buf.putShort((short)-1);
+            return;
+        }
+        int len = str.length();
+        boolean ascii = true;
+        for(int i=0;i<len;i++) {
+            if ( str.charAt(i)>=0x80 ) {
+                ascii = false;
+                break;
+            }
+        }
+        if ( ascii ) {
+            buf.putShort((short)len);
+            for(int i=0;i<len;i++) {
+                buf.put((byte)str.charAt(i));
+            }
+        } else {
+            byte[] data = str.toString().getBytes(StandardCharsets.UTF_8);
+            buf.putShort((short)data.length);
+            buf.put(data);
+        }
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int len = buf.getShort();
+        if ( len<0 ) {
+            return null;
+        }
+        String result = new String(buf.array(), buf.arrayOffset()+buf.position(), len, StandardCharsets.UTF_8);
+        buf.position(buf.position()+len);
+        return result;
+    }
+
+}
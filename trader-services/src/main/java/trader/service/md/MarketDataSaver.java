@@ -11,13 +11,20 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.gson.JsonObject;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.LiteTimeoutBlockingWaitStrategy;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.util.Util;
 
 import trader.common.beans.BeansContainer;
 import trader.common.beans.ServiceState;
@@ -26,6 +33,8 @@ import trader.common.util.FileUtil;
 import trader.common.util.IOUtil;
 import trader.common.util.StringUtil;
 import trader.common.util.TraderHomeUtil;
+import trader.service.stats.StatsCollector;
+import trader.service.stats.StatsItem;
 
 /**
  * 异步保存行情数据
@@ -43,6 +52,29 @@ public class MarketDataSaver {
      */
     private static final int FLUSH_CHECK_INTERVAL = 5*1000;
 
+    /**
+     * 合并后行情的保存目录名
+     */
+    public static final String PRODUCER_MERGED = "merged";
+
+    /**
+     * 保存为CSV文件: <tradingDay>/<producerId>/<instrument>.csv
+     */
+    public static final String FORMAT_CSV = "csv";
+    /**
+     * 保存为二进制日志: <tradingDay>/marketData.journal
+     */
+    public static final String FORMAT_JOURNAL = "journal";
+
+    /**
+     * 每批最多保存的行情数量
+     */
+    private static final int SAVE_BATCH_SIZE = 4096;
+
+    private static final int JOURNAL_BUFFER_SIZE = 1024*1024;
+
+    public static final int DEFAULT_QUEUE_SIZE = 64*1024;
+
     private static class WriterInfo implements AutoCloseable {
 
         private final String key;
@@ -86,51 +118,163 @@ public class MarketDataSaver {
             writer.close();
         }
 
-        public void appendLine(String string) throws IOException {
-            writer.write(string);
-            writer.write("\n");
+        /**
+         * 本批次待写入的行
+         */
+        final StringBuilder pending = new StringBuilder(1024);
+
+        /**
+         * 一次写入本批次的全部数据
+         */
+        public void writePending(char[] chars) throws IOException {
+            int len = pending.length();
+            for(int off=0; off<len; off+=chars.length) {
+                int end = Math.min(len, off+chars.length);
+                pending.getChars(off, end, chars, 0);
+                writer.write(chars, 0, end-off);
+            }
+            pending.setLength(0);
             dataVer++;
         }
 
     }
 
-    private LinkedBlockingQueue<MarketData> queue = new LinkedBlockingQueue<>();
+    /**
+     * 待保存的行情
+     */
+    private static class SaveEntry {
+        MarketData marketData;
+        String producerId;
+    }
+
     private MarketDataService marketDataService;
     private Map<String, WriterInfo> writerMap = new HashMap<>();
     private File dataDir;
-    StringBuilder rowBuf = new StringBuilder(1024);
+    private char[] writeChars = new char[8192];
+    private boolean journalMode;
+    private long syncInterval;
+    private Map<String, MarketDataJournal.Writer> journals = new HashMap<>();
+    private Map<String, String> providers = new HashMap<>();
+    /**
+     * 多生产者/单消费者的RingBuffer, 满时丢弃而不是阻塞行情线程
+     */
+    private RingBuffer<SaveEntry> ringBuffer;
+    private SequenceBarrier sequenceBarrier;
+    private Sequence consumedSequence = new Sequence();
+    /**
+     * 本批次有数据的Writer
+     */
+    private List<WriterInfo> batchWriters = new ArrayList<>();
+    private AtomicLong totalDropped = new AtomicLong();
+    private volatile long totalSaved;
 
     public MarketDataSaver(BeansContainer beansContainer){
+        this(beansContainer, FORMAT_CSV, 0, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * @param format csv/journal
+     * @param syncInterval journal格式的fsync间隔(ms), 负数代表由操作系统决定
+     * @param queueSize 待保存队列大小, 会调整为2的幂
+     */
+    public MarketDataSaver(BeansContainer beansContainer, String format, long syncInterval, int queueSize){
+        this.journalMode = FORMAT_JOURNAL.equalsIgnoreCase(format);
+        this.syncInterval = syncInterval;
         this.marketDataService = beansContainer.getBean(MarketDataService.class);
         ExecutorService executorService = beansContainer.getBean(ExecutorService.class);
         dataDir = TraderHomeUtil.getDirectory(TraderHomeUtil.DIR_MARKETDATA);
         dataDir.mkdirs();
+        ringBuffer = RingBuffer.createMultiProducer(()->new SaveEntry(), Util.ceilingNextPowerOfTwo(Math.max(queueSize, 1024)),
+                new LiteTimeoutBlockingWaitStrategy(200, TimeUnit.MILLISECONDS));
+        ringBuffer.addGatingSequences(consumedSequence);
+        sequenceBarrier = ringBuffer.newBarrier();
+        registerStats(beansContainer.getBean(StatsCollector.class));
         executorService.execute(()->{
             saveThreadLoop();
         });
     }
 
-
     public void asyncSave(MarketData md) {
-        queue.offer(md);
+        publish(md, md.producerId);
+    }
+
+    /**
+     * 保存到合并后行情目录, MarketData对象不会被修改
+     */
+    public void asyncSaveMerged(MarketData md) {
+        publish(md, PRODUCER_MERGED);
+    }
+
+    public long getTotalDropped() {
+        return totalDropped.get();
+    }
+
+    private void publish(MarketData md, String producerId) {
+        long seq;
+        try {
+            seq = ringBuffer.tryNext();
+        }catch(InsufficientCapacityException e) {
+            //磁盘写入跟不上, 丢弃
+            if ( totalDropped.getAndIncrement()%10000==0 ) {
+                logger.warn("Market data save queue is full, total dropped: "+totalDropped.get());
+            }
+            return;
+        }
+        try {
+            SaveEntry entry = ringBuffer.get(seq);
+            entry.marketData = md;
+            entry.producerId = producerId;
+        } finally {
+            ringBuffer.publish(seq);
+        }
+    }
+
+    private void registerStats(StatsCollector statsCollector) {
+        if ( statsCollector==null ) {
+            return;
+        }
+        String service = MarketDataService.class.getSimpleName();
+        statsCollector.registerStatsItem(new StatsItem(service, "saver", "currQueueDepth"),  (StatsItem itemInfo) -> {
+            return ringBuffer.getBufferSize()-ringBuffer.remainingCapacity();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "saver", "totalSaved"),  (StatsItem itemInfo) -> {
+            return totalSaved;
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "saver", "totalDropped"),  (StatsItem itemInfo) -> {
+            return totalDropped.get();
+        });
     }
 
     private void saveThreadLoop() {
         long flushInvokeTime = System.currentTimeMillis();
+        long nextSequence = consumedSequence.get()+1;
         while( marketDataService.getState()!=ServiceState.Stopped ) {
-            MarketData marketData = null;
+            long availableSequence = -1;
             try{
-                marketData = queue.poll(200, TimeUnit.MILLISECONDS);
+                availableSequence = sequenceBarrier.waitFor(nextSequence);
+            }catch(TimeoutException e) {
             }catch(Throwable t) {}
-            if ( marketData!=null ) {
-                try {
-                    WriterInfo writerInfo = getOrCreateWriter(marketData);
-                    rowBuf.setLength(0);
-                    marketData.toCsvRow(rowBuf);
-                    writerInfo.appendLine(rowBuf.toString());
-                } catch (Throwable e) {
-                    logger.error("Write market data file failed",e);
+            if ( availableSequence>=nextSequence ) {
+                //一次处理一批数据, 按Writer分组后写入
+                long endSequence = Math.min(availableSequence, nextSequence+SAVE_BATCH_SIZE-1);
+                for(long seq=nextSequence; seq<=endSequence; seq++) {
+                    SaveEntry entry = ringBuffer.get(seq);
+                    try {
+                        save(entry.marketData, entry.producerId);
+                    } catch (Throwable e) {
+                        logger.error("Write market data file failed",e);
+                    }
+                    entry.marketData = null;
+                    entry.producerId = null;
                 }
+                consumedSequence.set(endSequence);
+                totalSaved += (endSequence-nextSequence+1);
+                nextSequence = endSequence+1;
+                writeBatch();
+            }
+            if ( journalMode ) {
+                //没有新数据时也需要检查fsync间隔
+                commitJournals();
             }
             if ( (System.currentTimeMillis()-flushInvokeTime)>=FLUSH_CHECK_INTERVAL ) {
                 //每秒检查一次, 确保数据不超过15秒后被保存
@@ -139,6 +283,65 @@ public class MarketDataSaver {
             }
         }
         flushAllWriters(true);
+        closeJournals();
+    }
+
+    private void writeBatch() {
+        for(int i=0;i<batchWriters.size();i++) {
+            WriterInfo writerInfo = batchWriters.get(i);
+            try {
+                writerInfo.writePending(writeChars);
+            } catch (Throwable e) {
+                writerInfo.pending.setLength(0);
+                logger.error("Write market data file "+writerInfo.key+" failed",e);
+            }
+        }
+        batchWriters.clear();
+    }
+
+    private void save(MarketData marketData, String producerId) throws IOException {
+        if ( journalMode ) {
+            getOrCreateJournal(marketData.tradingDay).append(marketData, producerId, getProvider(producerId));
+        } else {
+            WriterInfo writerInfo = getOrCreateWriter(marketData, producerId);
+            if ( writerInfo.pending.length()==0 ) {
+                batchWriters.add(writerInfo);
+            }
+            marketData.toCsvRow(writerInfo.pending);
+            writerInfo.pending.append('\n');
+        }
+    }
+
+    private MarketDataJournal.Writer getOrCreateJournal(String tradingDay) throws IOException {
+        MarketDataJournal.Writer journal = journals.get(tradingDay);
+        if ( journal==null ) {
+            File file = new File(dataDir, tradingDay+"/"+MarketDataJournal.FILE_NAME);
+            journal = new MarketDataJournal.Writer(file, JOURNAL_BUFFER_SIZE, syncInterval);
+            journals.put(tradingDay, journal);
+            logger.info("Market data journal opened: "+file);
+        }
+        return journal;
+    }
+
+    private void commitJournals() {
+        for(MarketDataJournal.Writer journal:journals.values()) {
+            try {
+                journal.commit();
+            }catch(Throwable t) {
+                logger.error("Journal "+journal.getFile()+" commit failed", t);
+            }
+        }
+    }
+
+    private void closeJournals() {
+        for(MarketDataJournal.Writer journal:journals.values()) {
+            try {
+                journal.close();
+            }catch(Throwable t) {
+                logger.error("Journal "+journal.getFile()+" close failed", t);
+            }
+        }
+        journals.clear();
     }
 
     /**
@@ -154,11 +357,10 @@ public class MarketDataSaver {
         }
     }
 
-    private WriterInfo getOrCreateWriter(MarketData marketData) throws IOException
+    private WriterInfo getOrCreateWriter(MarketData marketData, String producerId) throws IOException
     {
-        String producerId = marketData.producerId;
         Exchangeable instrumentId = marketData.instrument;
-        String writerKey = marketData.producerId+"-"+instrumentId;
+        String writerKey = producerId+"-"+instrumentId;
         WriterInfo writerInfo = writerMap.get(writerKey);
         if ( null==writerInfo ){
             File file = new File(dataDir, marketData.tradingDay+"/"+producerId+"/"+instrumentId+".csv");
@@ -182,17 +384,28 @@ public class MarketDataSaver {
      */
     private void saveProviderProps(File mdProviderDir, String producerId)
     {
-        String producerType = "ctp";
-        MarketDataProducer mdProducer = marketDataService.getProducer(producerId);
-        if ( mdProducer!=null ) {
-            producerType = mdProducer.getProvider();
-        }
         JsonObject json =new JsonObject();
         json.addProperty("id", producerId);
-        json.addProperty("provider", producerType);
+        json.addProperty("provider", getProvider(producerId));
         try{
             FileUtil.save(new File(mdProviderDir,"producer.json"), json.toString());
         }catch(Throwable t) {}
     }
 
+    /**
+     * 返回producer的provider, 找不到producer时(例如合并后行情)为ctp
+     */
+    private String getProvider(String producerId) {
+        String result = providers.get(producerId);
+        if ( result==null ) {
+            MarketDataProducer mdProducer = marketDataService.getProducer(producerId);
+            if ( mdProducer==null ) {
+                return MarketDataProducer.PROVIDER_CTP;
+            }
+            result = mdProducer.getProvider();
+            providers.put(producerId, result);
+        }
+        return result;
+    }
+
 }
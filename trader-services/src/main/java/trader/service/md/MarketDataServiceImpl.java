@@ -66,6 +66,7 @@ import trader.service.trade.MarketTimeService;
 import trader.service.trade.TradeConstants.TradeServiceType;
 import trader.service.trade.TradeService;
 import trader.service.trade.TradeServiceListener;
+import trader.service.util.LatencyTracer;
 
 /**
  * 行情数据的接收和聚合
@@ -81,6 +82,18 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
      * 是否保存合并后的行情数据
      */
     public static final String ITEM_SAVE_MERGED = "saveMerged";
+    /**
+     * 行情数据保存格式: csv/journal
+     */
+    public static final String ITEM_SAVE_FORMAT = "saveFormat";
+    /**
+     * journal格式的fsync间隔(ms), 0代表每批数据都fsync, 负数代表不主动fsync
+     */
+    public static final String ITEM_SAVE_SYNC_INTERVAL = "saveSyncInterval";
+    /**
+     * 待保存行情队列大小, 队列满时新行情不保存
+     */
+    public static final String ITEM_SAVE_QUEUE_SIZE = "saveQueueSize";
     /**
      * 行情数据源定义
      */
@@ -178,7 +191,11 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
         saveData = ConfigUtil.getBoolean(configPrefix+ITEM_SAVE_DATA, true);
         saveMerged = ConfigUtil.getBoolean(configPrefix+ITEM_SAVE_MERGED, true);
         if ( saveData ) {
-            dataSaver = new MarketDataSaver(beansContainer);
+            String saveFormat = ConfigUtil.getString(configPrefix+ITEM_SAVE_FORMAT, MarketDataSaver.FORMAT_CSV);
+            int saveSyncInterval = ConfigUtil.getInt(configPrefix+ITEM_SAVE_SYNC_INTERVAL, 1000);
+            int saveQueueSize = ConfigUtil.getInt(configPrefix+ITEM_SAVE_QUEUE_SIZE, MarketDataSaver.DEFAULT_QUEUE_SIZE);
+            dataSaver = new MarketDataSaver(beansContainer, saveFormat, saveSyncInterval, saveQueueSize);
+            logger.info("MarketDataService save data format: "+saveFormat);
         } else {
             logger.info("MarketDataServie save data is disabled.");
         }
@@ -370,6 +387,7 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
      * 排队行情事件到disruptor的事件句柄, 再由 onAsyncEvent 处理
      */
     private void onProducerMarketData(MarketData md) {
+        LatencyTracer.stampTick(md, LatencyTracer.STAGE_EVENT_PUBLISH);
         asyncEventService.publishEvent(AsyncEvent.EVENT_TYPE_MARKETDATA, null, md,  null);
         if ( saveData ) {
             dataSaver.asyncSave(md);
@@ -382,6 +400,7 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
     private void onAsyncEvent(AsyncEvent event)
     {
         MarketData tick = (MarketData)event.data;
+        LatencyTracer.stampTick(tick, LatencyTracer.STAGE_MD_DISPATCH);
         //如果行情时间和系统时间差距超过2小时, 忽略.
         if ( Math.abs(mtService.currentTimeMillis()-tick.updateTimestamp)>= 2*3600*1000 ) {
             if ( logger.isDebugEnabled()) {
@@ -411,9 +430,7 @@ public class MarketDataServiceImpl implements MarketDataService, ServiceErrorCod
             }
             //保存合并后的MarketData
             if ( saveMerged && saveData ) {
-                MarketData tick0 = tick.clone();
-                tick0.producerId = "merged";
-                dataSaver.asyncSave(tick0);
+                dataSaver.asyncSaveMerged(tick);
             }
         }
     }
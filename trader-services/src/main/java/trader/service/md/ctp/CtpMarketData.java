@@ -18,6 +18,22 @@ public class CtpMarketData extends MarketData {
     private static final CtpCSVMarshallHelper csvMarshallHelper = new CtpCSVMarshallHelper();
     private static final ZoneId CFFEX_ZONE_ID = Exchange.CFFEX.getZoneId();
 
+    /**
+     * 最近一次转换的日期, 同一天的行情不需要重复解析/格式化日期
+     */
+    private static class DayCache {
+        final String str;
+        final LocalDate day;
+
+        DayCache(String str, LocalDate day){
+            this.str = str;
+            this.day = day;
+        }
+    }
+
+    private static volatile DayCache lastActionDay = new DayCache("", null);
+    private static volatile DayCache lastTradingDay = new DayCache("", null);
+
     public final CThostFtdcDepthMarketDataField field;
 
     public CtpMarketData(String producerId, Exchangeable instrument, CThostFtdcDepthMarketDataField data, LocalDate tradingDay) {
@@ -71,7 +87,7 @@ public class CtpMarketData extends MarketData {
                 }
             }
             //CZCE的tradingDay是actionDay, 需要判断后加以识别
-            tradingDayStr = DateUtil.date2str(tradingDay);
+            tradingDayStr = day2str(tradingDay);
             //CZCE 每天早上推送一条昨晚夜市收盘的价格, 但是ActionDay/TradingDay 都是当天白天日市数据
             if ( PriceUtil.isValidPrice(data.ClosePrice) && data.UpdateTime.compareTo("15")>0 ) { //日市会将夜市的ClosePrice记录下来
                 LocalDate actionDay0 = MarketDayUtil.prevMarketDay(Exchange.CZCE, tradingDay);
@@ -82,8 +98,8 @@ public class CtpMarketData extends MarketData {
             tradingDayStr = DateUtil.date2str(tradingDay);
         }
 
-        this.updateTime = DateUtil.str2localdatetime(actionDayStr, data.UpdateTime, data.UpdateMillisec);
-        this.updateTimestamp = DateUtil.localdatetime2long(CFFEX_ZONE_ID, updateTime);
+        this.updateTime = DateUtil.str2localdatetime(str2day(actionDayStr), data.UpdateTime, data.UpdateMillisec);
+        this.updateTimestamp = updateTime.toEpochSecond(CFFEX_ZONE_ID.getRules().getOffset(updateTime))*1000+updateTime.getNano()/1000000;
         this.preSettlementPrice = PriceUtil.price2long(data.PreSettlementPrice);
         this.preClosePrice = PriceUtil.price2long(data.PreClosePrice);
         this.openPrice = PriceUtil.price2long(data.OpenPrice);
@@ -144,6 +160,24 @@ public class CtpMarketData extends MarketData {
         }
     }
 
+    private static LocalDate str2day(String str) {
+        DayCache cache = lastActionDay;
+        if ( !StringUtil.equals(str, cache.str) ) {
+            cache = new DayCache(str, DateUtil.str2localdate(str));
+            lastActionDay = cache;
+        }
+        return cache.day;
+    }
+
+    private static String day2str(LocalDate day) {
+        DayCache cache = lastTradingDay;
+        if ( !day.equals(cache.day) ) {
+            cache = new DayCache(DateUtil.date2str(day), day);
+            lastTradingDay = cache;
+        }
+        return cache.str;
+    }
+
     @Override
     public String getCsvHead() {
         StringBuilder header = new StringBuilder();
@@ -40,6 +40,7 @@ import trader.service.md.MarketDataProducerFactory;
 import trader.service.md.spi.AbsMarketDataProducer;
 import trader.service.trade.MarketTimeService;
 import trader.service.trade.ctp.CtpUtil;
+import trader.service.util.LatencyTracer;
 
 @Discoverable(interfaceClass = MarketDataProducerFactory.class, purpose = MarketDataProducer.PROVIDER_CTP)
 public class CtpMarketDataProducer extends AbsMarketDataProducer<CThostFtdcDepthMarketDataField> implements MdApiListener {
@@ -257,9 +258,11 @@ public class CtpMarketDataProducer extends AbsMarketDataProducer<CThostFtdcDepth
 
     @Override
     public void OnRtnDepthMarketData(CThostFtdcDepthMarketDataField pDepthMarketData) {
+        long recvTime = System.nanoTime();
         Exchangeable instrument = CtpUtil.ctp2instrument(pDepthMarketData.ExchangeID, pDepthMarketData.InstrumentID);
         adjustMarketData(pDepthMarketData, instrument);
         MarketData md = createMarketData(pDepthMarketData, instrument, tradingDay);
+        LatencyTracer.onTickRecv(md, recvTime);
         notifyData(md);
     }
 
@@ -1,12 +1,18 @@
 package trader.service.node;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import jakarta.annotation.PostConstruct;
 
@@ -19,6 +25,7 @@ import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketHandler;
@@ -31,7 +38,10 @@ import com.google.gson.JsonObject;
 import trader.common.beans.BeansContainer;
 import trader.common.config.ConfigUtil;
 import trader.common.exception.AppException;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData.DataInfo;
 import trader.common.util.ConversionUtil;
+import trader.common.util.DateUtil;
 import trader.common.util.EncryptionUtil;
 import trader.common.util.JsonUtil;
 import trader.common.util.StringUtil;
@@ -56,6 +66,11 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
 
     private static final String ITEM_MGMT_CREDENTIAL = "/BasisService/mgmt.credential";
 
+    /**
+     * 是否协商使用二进制消息格式, 缺省开启, Broker不支持时继续使用JSON文本
+     */
+    private static final String ITEM_MGMT_BINARY = "/BasisService/mgmt.binary";
+
     private static final int RECONNECT_INTERVAL = 60*1000;
 
     @Autowired
@@ -84,6 +99,10 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
     private volatile Throwable wsLastException;
     private AtomicLong totalMsgsSent = new AtomicLong();
     private AtomicLong totalMsgsRecv = new AtomicLong();
+    private AtomicLong totalBytesSent = new AtomicLong();
+    private AtomicLong totalBytesRecv = new AtomicLong();
+    private volatile boolean binaryFormat;
+    private volatile boolean deflateFormat;
     private List<NodeClientListener> listeners = new ArrayList<>();
 
 
@@ -99,6 +118,12 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
         statsCollector.registerStatsItem(new StatsItem(NodeClientChannel.class.getSimpleName(), "totalMsgsRecv"),  (StatsItem itemInfo) -> {
             return totalMsgsRecv.get();
         });
+        statsCollector.registerStatsItem(new StatsItem(NodeClientChannel.class.getSimpleName(), "totalBytesSent"),  (StatsItem itemInfo) -> {
+            return totalBytesSent.get();
+        });
+        statsCollector.registerStatsItem(new StatsItem(NodeClientChannel.class.getSimpleName(), "totalBytesRecv"),  (StatsItem itemInfo) -> {
+            return totalBytesRecv.get();
+        });
         statsCollector.registerStatsItem(new StatsItem(NodeClientChannel.class.getSimpleName(), "currConnState"),  (StatsItem itemInfo) -> {
             return state.ordinal();
         });
@@ -144,16 +169,21 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
     public void handleMessage(WebSocketSession session, WebSocketMessage<?> wsMessage) throws Exception {
         lastRecvTime = System.currentTimeMillis();
         totalMsgsRecv.incrementAndGet();
-        if ( logger.isDebugEnabled() ){
-            logger.debug("Message: "+wsMessage.getPayload().toString());
-        }
+        totalBytesRecv.addAndGet(wsMessage.getPayloadLength());
         NodeMessage req = null, respMessage = null;
         try{
-            req = NodeMessage.fromString(wsMessage.getPayload().toString());
+            if ( wsMessage instanceof BinaryMessage ) {
+                req = NodeMessageCodec.decode((ByteBuffer)wsMessage.getPayload());
+            } else {
+                req = NodeMessage.fromString(wsMessage.getPayload().toString());
+            }
         }catch(Exception e){
             logger.error("Message parse failed: ", e);
             return;
         }
+        if ( logger.isDebugEnabled() ){
+            logger.debug("Message: "+req);
+        }
         switch(req.getType()) {
         case TYPE_PING_REQ:
             respMessage = req.createResponse();
@@ -164,6 +194,11 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
                 asyncCloseWsSession(session);
             } else {
                 this.localId = ConversionUtil.toString(req.getField(NodeMessage.FIELD_NODE_ID));
+                Collection<Object> wireFormats = (Collection)req.getField(NodeMessage.FIELD_WIRE_FORMATS);
+                if ( null!=wireFormats ) {
+                    deflateFormat = wireFormats.contains(WIRE_FORMAT_DEFLATE);
+                    binaryFormat = wireFormats.contains(WIRE_FORMAT_BINARY);
+                }
                 changeState(NodeState.Ready);
                 logger.info("Node "+consistentId+"/"+localId+" to "+wsUrl+" is initialized");
             }
@@ -232,6 +267,8 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
         wsLastException = null;
         lastSentTime = System.currentTimeMillis();
         lastRecvTime = System.currentTimeMillis();
+        binaryFormat = false;
+        deflateFormat = false;
         changeState(NodeState.Initializing);
         sendInitReq();
     }
@@ -286,6 +323,37 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
         doSendAndWait(req, 0);
     }
 
+    @Override
+    public void dataQuery(Exchangeable instrument, DataInfo dataInfo, LocalDate tradingDay, Writer writer) throws AppException
+    {
+        checkState();
+        NodeMessage req = new NodeMessage(TYPE_DATAQUERY_REQ);
+        req.setField(NodeMessage.FIELD_EXCHANGEABLE, instrument.toString());
+        req.setField(NodeMessage.FIELD_DATA_INFO, dataInfo.name());
+        req.setField(NodeMessage.FIELD_TRADING_DAY, DateUtil.date2str(tradingDay));
+        req.setField(NodeMessage.FIELD_MORE_DATA, true);
+        IOException[] writeException = new IOException[1];
+        NodeMessage resp = doSendAndWait(req, 0, (NodeMessage part)->{
+            String data = ConversionUtil.toString(part.getField(NodeMessage.FIELD_DATA));
+            if ( null!=data && null==writeException[0] ) {
+                try{
+                    writer.write(data);
+                }catch(IOException e) {
+                    writeException[0] = e;
+                }
+            }
+        });
+        if ( null==resp ) {
+            throw new AppException(ServiceErrorConstants.ERR_NODE_SEND, "Query "+instrument+" "+dataInfo.name()+" "+tradingDay+" from "+wsUrl+" timeout");
+        }
+        if ( resp.getErrCode()!=0 ) {
+            throw new AppException(ServiceErrorConstants.ERR_NODE_SEND, "Query "+instrument+" "+dataInfo.name()+" "+tradingDay+" from "+wsUrl+" failed: "+resp.getErrMsg());
+        }
+        if ( null!=writeException[0] ) {
+            throw new AppException(writeException[0], ServiceErrorConstants.ERR_NODE_SEND, "Write "+instrument+" "+dataInfo.name()+" "+tradingDay+" data failed");
+        }
+    }
+
     private void checkState() throws AppException
     {
         if ( getState()!=NodeState.Ready) {
@@ -302,9 +370,16 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
             if ( logger.isDebugEnabled() ) {
                 logger.debug("Send message: "+message.toString());
             }
-            wsSession.sendMessage(new TextMessage(message.toString()));
+            WebSocketMessage<?> wsMessage = null;
+            if ( binaryFormat ) {
+                wsMessage = new BinaryMessage(NodeMessageCodec.encode(message, deflateFormat));
+            } else {
+                wsMessage = new TextMessage(message.toString());
+            }
+            wsSession.sendMessage(wsMessage);
             lastSentTime = System.currentTimeMillis();
             totalMsgsSent.incrementAndGet();
+            totalBytesSent.addAndGet(wsMessage.getPayloadLength());
         } catch (Throwable e) {
             asyncCloseWsSession(wsSession);
             logger.error("Send message failed: ", e);
@@ -316,19 +391,37 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
      * 发送消息并等待回应
      */
     protected NodeMessage doSendAndWait(NodeMessage req, int timeout) throws AppException
+    {
+        return doSendAndWait(req, timeout, null);
+    }
+
+    /**
+     * 发送消息并等待回应, 分段返回时每一段都交给partHandler处理, 超时时间为两段消息之间的最大间隔
+     */
+    protected NodeMessage doSendAndWait(NodeMessage req, int timeout, Consumer<NodeMessage> partHandler) throws AppException
     {
         ReqItem reqItem = new ReqItem();
-        int reqId = req.getReqId();
+        reqItem.partHandler = partHandler;
+        int reqId = req.getId();
         if ( timeout<=0 ) {
             timeout = defaultTimeout;
         }
         pendingReqs.put(reqId, reqItem);
         try {
             doSend(req);
+            reqItem.lastRecvTime = System.currentTimeMillis();
             synchronized(reqItem) {
-                try{
-                    reqItem.wait(timeout);
-                }catch(Throwable t) {}
+                while(reqItem.responseMsg==null) {
+                    long waitTime = reqItem.lastRecvTime+timeout-System.currentTimeMillis();
+                    if ( waitTime<=0 ) {
+                        break;
+                    }
+                    try{
+                        reqItem.wait(waitTime);
+                    }catch(Throwable t) {
+                        break;
+                    }
+                }
             }
         }finally {
             pendingReqs.remove(reqId);
@@ -349,6 +442,9 @@ public class NodeClientChannelImpl extends AbsNodeEndpoint implements NodeClient
         }
         initReq.setField(NodeMessage.FIELD_USER, user);
         initReq.setField(NodeMessage.FIELD_CREDENTIAL, credential);
+        if ( ConfigUtil.getBoolean(ITEM_MGMT_BINARY, true) ) {
+            initReq.setField(NodeMessage.FIELD_WIRE_FORMATS, new String[] {WIRE_FORMAT_BINARY, WIRE_FORMAT_DEFLATE});
+        }
         fillNodeProps(initReq);
         doSend(initReq);
     }
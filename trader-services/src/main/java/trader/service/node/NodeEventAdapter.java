@@ -1,8 +1,10 @@
 package trader.service.node;
 
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -22,13 +24,14 @@ import com.google.gson.JsonObject;
 
 import trader.common.beans.ServiceState;
 import trader.common.util.JsonUtil;
+import trader.common.util.PriceUtil;
 import trader.service.ServiceConstants.AccountState;
 import trader.service.node.NodeConstants.NodeState;
 import trader.service.trade.Account;
 import trader.service.trade.AccountListener;
 import trader.service.trade.Order;
 import trader.service.trade.OrderStateTuple;
-import trader.service.trade.TradeConstants;
+import trader.service.trade.Position;
 import trader.service.trade.TradeConstants.AccMoney;
 import trader.service.trade.TradeService;
 import trader.service.trade.Transaction;
@@ -41,13 +44,13 @@ import trader.service.tradlet.TradletServiceListener;
 
 /**
  * 集群事件适配代码
+ * <BR>账户信息按增量推送: 每个账户维护递增的序号, 定期推送自上次以来变化的资金字段/报单/持仓,
+ * 全量信息只在启动/重连/账户状态变化以及Broker发现序号不连续请求时推送
  */
 @Service
 public class NodeEventAdapter {
     private static final Logger logger = LoggerFactory.getLogger(NodeEventAdapter.class);
 
-    private static final int MAX_ACCOUNT_COUNT = 256;
-
     @Autowired
     private NodeClientChannel clientChannel;
 
@@ -65,11 +68,24 @@ public class NodeEventAdapter {
 
     private ServiceState state = ServiceState.NotInited;
 
-    private long[] accountBalances = new long[MAX_ACCOUNT_COUNT];
+    private Map<String, AccountPubState> accountPubStates = new ConcurrentHashMap<>();
+
+    private int accountDeltaPubSeconds = 3;
 
-    private int accountMoneyPubSeconds = 3;
+    private NodeTopicListener snapshotReqListener = (String topic, Map<String, Object> topicData)->{
+        onSnapshotReq(topicData);
+    };
 
-    private int accountInfoPubSeconds = 60;
+    /**
+     * 账户的推送状态
+     */
+    private static class AccountPubState {
+        long seq;
+        volatile boolean snapshotRequired = true;
+        long[] lastMoney;
+        Set<String> dirtyOrderIds = ConcurrentHashMap.newKeySet();
+        Set<String> dirtyPositions = ConcurrentHashMap.newKeySet();
+    }
 
     @PostConstruct
     public void init() {
@@ -97,40 +113,57 @@ public class NodeEventAdapter {
         });
         //注册账户报单/成交回调
         for(Account account:tradeService.getAccounts()) {
+            accountPubStates.put(account.getId(), new AccountPubState());
             account.addAccountListener(new AccountListener() {
                 @Override
                 public void onAccountStateChanged(Account account, AccountState oldState) {
-                    accountBalances = new long[MAX_ACCOUNT_COUNT];
-                    if ( canTopicPub() ) {
-                        pubAccountInfo(account);
-                    }
+                    accountPubStates.get(account.getId()).snapshotRequired = true;
                 }
                 @Override
                 public void onTransaction(Account account, Order order, Transaction txn) {
+                    accountPubStates.get(account.getId()).dirtyPositions.add(order.getInstrument().toString());
                     if ( canTopicPub() ) {
                         pubAccountTxn(account, order, txn);
                     }
                 }
                 @Override
                 public void onOrderStateChanged(Account account, Order order, OrderStateTuple lastStateTuple) {
+                    AccountPubState pubState = accountPubStates.get(account.getId());
+                    pubState.dirtyOrderIds.add(order.getId());
+                    pubState.dirtyPositions.add(order.getInstrument().toString());
                     if ( canTopicPub() ) {
                         pubAccountOrder(account, order);
                     }
                 }
             });
         }
-        //定期检查, 发送账户的基础信息
-        schduledExecutorService.scheduleAtFixedRate(()->{
-            if ( canTopicPub() ) {
-                pubAccountInfos();
+        //重连后Broker可能已经丢失账户状态, 重新订阅并推送全量信息
+        clientChannel.addListener(new NodeClientListener() {
+            @Override
+            public void onStateChanged(NodeEndpoint endpoint, NodeState oldState) {
+                if ( clientChannel.getState()==NodeState.Ready ) {
+                    for(AccountPubState pubState:accountPubStates.values()) {
+                        pubState.snapshotRequired = true;
+                    }
+                    executorService.execute(()->{
+                        subscribeSnapshotReq();
+                    });
+                }
+            }
+            @Override
+            public NodeMessage onMessage(NodeMessage req) {
+                return null;
             }
-        }, 0, accountInfoPubSeconds, TimeUnit.SECONDS);
-        //定期检查, 发送账户的资金变化
+        });
+        if ( clientChannel.getState()==NodeState.Ready ) {
+            subscribeSnapshotReq();
+        }
+        //定期检查, 发送账户的全量或增量信息
         schduledExecutorService.scheduleAtFixedRate(()->{
             if ( canTopicPub() ) {
-                pubAccountMoneyChanged();
+                pubAccountStates();
             }
-        }, accountMoneyPubSeconds, accountMoneyPubSeconds, TimeUnit.SECONDS);
+        }, 0, accountDeltaPubSeconds, TimeUnit.SECONDS);
         state = ServiceState.Ready;
     }
 
@@ -138,73 +171,127 @@ public class NodeEventAdapter {
         return ServiceState.Ready==state && clientChannel.getState()==NodeState.Ready;
     }
 
-    private void pubAccountInfo(Account account) {
+    private void subscribeSnapshotReq() {
         try{
-            Map<String, Object> topicData = new HashMap<>();
-            JsonArray accountsData = new JsonArray();
-            topicData.put("accounts", accountsData);
-            accountsData.add(account2json(account));
-            clientChannel.topicPub(NodeConstants.TOPIC_TRADE_ACCOUNT_INFO, topicData);
+            clientChannel.topicSub(new String[] {NodeConstants.TOPIC_TRADE_ACCOUNT_SNAPSHOT_REQ}, snapshotReqListener);
         }catch(Throwable t) {
-            logger.error("Publish account info failed", t);
+            logger.error("Subscribe account snapshot request failed", t);
         }
     }
 
-    private void pubAccountInfos() {
+    /**
+     * Broker请求全量信息, 在下一次定期推送时发送
+     */
+    private void onSnapshotReq(Map<String, Object> topicData) {
+        Collection<Object> accountIds = (Collection)topicData.get("accountIds");
+        for(Map.Entry<String, AccountPubState> entry:accountPubStates.entrySet()) {
+            if ( null==accountIds || accountIds.contains(entry.getKey()) ) {
+                entry.getValue().snapshotRequired = true;
+            }
+        }
+    }
+
+    /**
+     * 推送账户的全量或增量信息, 只在定时线程中调用, 保证序号顺序
+     */
+    private void pubAccountStates() {
+        JsonArray snapshotsData = new JsonArray();
+        JsonArray deltasData = new JsonArray();
+        for(Account account:tradeService.getAccounts()) {
+            AccountPubState pubState = accountPubStates.get(account.getId());
+            if ( null==pubState ) {
+                continue;
+            }
+            if ( pubState.snapshotRequired ) {
+                pubState.snapshotRequired = false;
+                snapshotsData.add(account2snapshot(account, pubState));
+            } else {
+                JsonObject delta = account2delta(account, pubState);
+                if ( null!=delta ) {
+                    deltasData.add(delta);
+                }
+            }
+        }
         try{
-            Map<String, Object> topicData = new HashMap<>();
-            JsonArray accountsData = new JsonArray();
-            topicData.put("accounts", accountsData);
-            for(Account account:tradeService.getAccounts()) {
-                accountsData.add(account2json(account));
+            if ( snapshotsData.size()>0 ) {
+                Map<String, Object> topicData = new HashMap<>();
+                topicData.put("accounts", snapshotsData);
+                clientChannel.topicPub(NodeConstants.TOPIC_TRADE_ACCOUNT_INFO, topicData);
+            }
+            if ( deltasData.size()>0 ) {
+                Map<String, Object> topicData = new HashMap<>();
+                topicData.put("accounts", deltasData);
+                clientChannel.topicPub(NodeConstants.TOPIC_TRADE_ACCOUNT_DELTA, topicData);
             }
-            clientChannel.topicPub(NodeConstants.TOPIC_TRADE_ACCOUNT_INFO, topicData);
         }catch(Throwable t) {
-            logger.error("Publish account info failed", t);
+            //发送失败后Broker会因为序号不连续请求全量信息
+            logger.error("Publish account states failed", t);
         }
     }
 
-    private JsonObject account2json(Account account) {
+    private JsonObject account2snapshot(Account account, AccountPubState pubState) {
+        pubState.dirtyOrderIds.clear();
+        pubState.dirtyPositions.clear();
+        pubState.lastMoney = account.getMoneys().clone();
         JsonObject accJson = account.toJson().getAsJsonObject();
         accJson.add("orders", JsonUtil.object2json(account.getOrders()));
         accJson.add("transactions", JsonUtil.object2json(account.getTransactions()));
         accJson.add("positions", JsonUtil.object2json(account.getPositions()));
+        accJson.addProperty("seq", ++pubState.seq);
         return accJson;
     }
 
-    private void pubAccountMoneyChanged() {
-        try{
-            //判断是否资金发生变动
-            long[] currAccountBalances = new long[MAX_ACCOUNT_COUNT];
-            List<Account> accounts = tradeService.getAccounts();
-            boolean same=true;
-            for(int i=0;i<accounts.size();i++) {
-                currAccountBalances[i] = accounts.get(i).getMoney(AccMoney.Balance);
-                if ( currAccountBalances[i]!=accountBalances[i]) {
-                    same = false;
+    /**
+     * 返回自上次推送以来的变化, 没有变化返回null
+     */
+    private JsonObject account2delta(Account account, AccountPubState pubState) {
+        AccountState accState = account.getState();
+        JsonObject moneyJson = new JsonObject();
+        if ( AccountState.Ready==accState ) {
+            long[] money = account.getMoneys().clone();
+            for(AccMoney m:AccMoney.values()) {
+                int idx = m.ordinal();
+                if ( null==pubState.lastMoney || money[idx]!=pubState.lastMoney[idx] ) {
+                    moneyJson.addProperty(m.name(), PriceUtil.long2str(money[idx]));
                 }
             }
-            if ( same ) { //没有变动不发更新
-                return;
+            pubState.lastMoney = money;
+        }
+        JsonArray ordersJson = new JsonArray();
+        for(String orderId:pubState.dirtyOrderIds) {
+            pubState.dirtyOrderIds.remove(orderId);
+            Order order = account.getOrder(orderId);
+            if ( null!=order ) {
+                ordersJson.add(JsonUtil.object2json(order));
             }
-            Map<String, Object> topicData = new HashMap<>();
-            JsonArray accountsData = new JsonArray();
-            for(Account account:accounts) {
-                AccountState accState = account.getState();
-                JsonObject accountInfo = new JsonObject();
-                accountInfo.addProperty("id", account.getId());
-                accountInfo.addProperty("state", accState.name());
-                if ( AccountState.Ready==accState ) {
-                    accountInfo.add("money", TradeConstants.accMoney2json(account.getMoneys()));
+        }
+        JsonArray positionsJson = new JsonArray();
+        for(String instrument:pubState.dirtyPositions) {
+            pubState.dirtyPositions.remove(instrument);
+            for(Position pos:account.getPositions()) {
+                if ( instrument.equals(pos.getInstrument().toString()) ) {
+                    positionsJson.add(JsonUtil.object2json(pos));
                 }
-                accountsData.add(accountInfo);
             }
-            topicData.put("accounts", accountsData);
-            clientChannel.topicPub(NodeConstants.TOPIC_TRADE_ACCOUNT_MONEY, topicData);
-            accountBalances = currAccountBalances;
-        }catch(Throwable t) {
-            logger.error("Publish account money failed", t);
         }
+        if ( moneyJson.size()==0 && ordersJson.size()==0 && positionsJson.size()==0 ) {
+            return null;
+        }
+        JsonObject delta = new JsonObject();
+        delta.addProperty("id", account.getId());
+        delta.addProperty("state", accState.name());
+        delta.addProperty("baseSeq", pubState.seq);
+        delta.addProperty("seq", ++pubState.seq);
+        if ( moneyJson.size()>0 ) {
+            delta.add("money", moneyJson);
+        }
+        if ( ordersJson.size()>0 ) {
+            delta.add("orders", ordersJson);
+        }
+        if ( positionsJson.size()>0 ) {
+            delta.add("positions", positionsJson);
+        }
+        return delta;
     }
 
     private void pubAccountOrder(Account account, Order order) {
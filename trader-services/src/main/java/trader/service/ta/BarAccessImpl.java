@@ -5,6 +5,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +41,18 @@ public class BarAccessImpl implements BarAccess, JsonEnabled {
     private static class LeveledBarBuilderInfo{
         PriceLevel level;
         BarBuilder barBuilder;
+        /**
+         * 后台加载历史数据的任务, 同步加载时为null
+         */
+        FutureTask<Void> historyTask;
+        /**
+         * 历史数据加载耗时, 未加载为-1
+         */
+        volatile long historyLoadMillis = -1;
+        /**
+         * 历史数据加载完成前产生了新的BAR或者合并了历史数据, 加载完成后补发通知
+         */
+        boolean newBarPending;
     }
 
     private BeansContainer beansContainer;
@@ -53,13 +67,22 @@ public class BarAccessImpl implements BarAccess, JsonEnabled {
     List<BarListener> listeners = new ArrayList<>();
 
     public BarAccessImpl(BeansContainer beansContainer, ExchangeableData data, Exchangeable instrument, InstrumentDef instrumentDef) {
+        this(beansContainer, data, instrument, instrumentDef, null);
+    }
+
+    /**
+     * @param historyExecutor 不为null时在后台加载历史数据. 加载完成前getSeries()只返回当日实时数据, 不会等待;
+     * 历史数据加载后插入到同一个序列对象的开头, 之前获得的序列引用仍然有效, 但是BAR的下标会后移.
+     * 新BAR的通知推迟到加载完成之后, 合并历史数据后会补发一次通知, 已创建的ta4j指标需要在通知中重新计算
+     */
+    public BarAccessImpl(BeansContainer beansContainer, ExchangeableData data, Exchangeable instrument, InstrumentDef instrumentDef, Executor historyExecutor) {
         this.beansContainer = beansContainer;
         this.instrument = instrument;
         this.instrumentDef = instrumentDef;
         this.options = instrumentDef.options;
         MarketTimeService mtService = beansContainer.getBean(MarketTimeService.class);
         tradingTimes = instrument.exchange().getTradingTimes(instrument, mtService.getTradingDay());
-        initBarBuilders(data, mtService);
+        initBarBuilders(data, mtService, historyExecutor);
     }
 
     @Override
@@ -105,6 +128,20 @@ public class BarAccessImpl implements BarAccess, JsonEnabled {
         return seriesLoader;
     }
 
+    /**
+     * 全部级别的历史数据加载耗时(毫秒), 还有级别未加载完成返回-1
+     */
+    public long getHistoryLoadMillis() {
+        long result = 0;
+        for(LeveledBarBuilderInfo bb:levelBuilders) {
+            if ( bb.historyTask!=null && !bb.historyTask.isDone() ) {
+                return -1;
+            }
+            result += Math.max(0, bb.historyLoadMillis);
+        }
+        return result;
+    }
+
     @Override
     public JsonElement toJson() {
         JsonObject json = new JsonObject();
@@ -115,6 +152,9 @@ public class BarAccessImpl implements BarAccess, JsonEnabled {
             JsonObject ljson = new JsonObject();
             ljson.addProperty("level", leveledBarBuilder.level.name());
             ljson.addProperty("barCount", leveledBarBuilder.barBuilder.getTimeSeries(leveledBarBuilder.level).getBarCount());
+            if ( leveledBarBuilder.historyLoadMillis>=0 ) {
+                ljson.addProperty("historyLoadMillis", leveledBarBuilder.historyLoadMillis);
+            }
             levels.add(ljson);
         }
         json.add("levels", levels);
@@ -133,7 +173,7 @@ public class BarAccessImpl implements BarAccess, JsonEnabled {
         }
     }
 
-    private void initBarBuilders(ExchangeableData data, MarketTimeService mtService) {
+    private void initBarBuilders(ExchangeableData data, MarketTimeService mtService, Executor historyExecutor) {
         seriesLoader = new BarSeriesLoader(beansContainer, data).setInstrument(instrument);
         List<PriceLevel> levels = new ArrayList<>();
         for(String level:instrumentDef.levels) {
@@ -147,24 +187,60 @@ public class BarAccessImpl implements BarAccess, JsonEnabled {
 
             leveledBarBuilder.barBuilder = new FutureBarBuilder(tradingTimes, leveledBarBuilder.level);
             if ( leveledBarBuilder.level.prefix().equals(PriceLevel.LEVEL_MIN) || leveledBarBuilder.level.prefix().equals(PriceLevel.LEVEL_DAY) ) {
-                try{
-                    loadHistoryData(seriesLoader, (FutureBarBuilder)leveledBarBuilder.barBuilder, mtService);
-                }catch(Throwable t) {
-                    logger.error("Load "+instrument+" level "+level+" history data failed", t);
+                if ( historyExecutor==null ) {
+                    loadHistoryData(leveledBarBuilder, seriesLoader, mtService, false);
+                } else {
+                    //每个级别使用独立的loader, 避免后台线程和访问线程同时修改加载参数
+                    BarSeriesLoader levelLoader = seriesLoader.clone();
+                    leveledBarBuilder.historyTask = new FutureTask<>(()->{
+                        loadHistoryData(leveledBarBuilder, levelLoader, mtService, true);
+                        return null;
+                    });
+                    historyExecutor.execute(leveledBarBuilder.historyTask);
                 }
             }
             levelBuilders.add(leveledBarBuilder);
             levels.add(leveledBarBuilder.level);
         }
-        logger.info("Instrument "+instrument+" bar builders were created for levels: "+levels);
+        if ( historyExecutor==null ) {
+            logger.info("Instrument "+instrument+" bar builders were created for levels: "+levels+", history data loaded in "+getHistoryLoadMillis()+" ms");
+        } else {
+            logger.info("Instrument "+instrument+" bar builders were created for levels: "+levels+", history data is loading in background");
+        }
+    }
+
+    private void loadHistoryData(LeveledBarBuilderInfo barBuilderInfo, BarSeriesLoader seriesLoader, MarketTimeService mtService, boolean merge)
+    {
+        FutureBarBuilder barBuilder = (FutureBarBuilder)barBuilderInfo.barBuilder;
+        long t0 = System.currentTimeMillis();
+        try{
+            setHistoryRange(seriesLoader, barBuilder.getLevel(), mtService);
+            if ( merge ) {
+                LeveledBarSeries history = seriesLoader.load();
+                synchronized(barBuilderInfo) {
+                    barBuilder.mergeHistoryData(history, seriesLoader.getLoadedDates());
+                    barBuilderInfo.newBarPending = true;
+                }
+            } else {
+                barBuilder.loadHistoryData(seriesLoader);
+            }
+        }catch(Throwable t) {
+            if ( t instanceof InterruptedException ) {
+                Thread.currentThread().interrupt();
+            }
+            logger.error("Load "+instrument+" level "+barBuilderInfo.level+" history data failed", t);
+        }
+        barBuilderInfo.historyLoadMillis = System.currentTimeMillis()-t0;
+        if ( merge ) {
+            logger.info("Instrument "+instrument+" level "+barBuilderInfo.level+" history data loaded "+barBuilder.getTimeSeries(barBuilderInfo.level).getBarCount()+" bars in "+barBuilderInfo.historyLoadMillis+" ms");
+        }
     }
 
     /**
      * 加载昨日和当日数据
      */
-    private void loadHistoryData(BarSeriesLoader seriesLoader, FutureBarBuilder barBuilder, MarketTimeService mtService) throws Exception
+    private void setHistoryRange(BarSeriesLoader seriesLoader, PriceLevel level, MarketTimeService mtService)
     {
-        PriceLevel level = barBuilder.getLevel();
         int dayBefore = 2;
         if ( PriceLevel.DAY.equals(level)) {
             dayBefore = 30;
@@ -180,8 +256,6 @@ public class BarAccessImpl implements BarAccess, JsonEnabled {
             .setEndTradingDay(tradingTimes.getTradingDay())
             .setStartTradingDay(MarketDayUtil.nextMarketDays(instrument.exchange(), tradingTimes.getTradingDay(), -1*dayBefore))
             .setEndTime(mtService.getMarketTime());
-
-        barBuilder.loadHistoryData(seriesLoader);
     }
 
     /**
@@ -230,7 +304,24 @@ public class BarAccessImpl implements BarAccess, JsonEnabled {
         //日常更新KBAR
         for(int i=0;i<levelBuilders.size();i++) {
             LeveledBarBuilderInfo leveledBarBuilder = levelBuilders.get(i);
-            if ( leveledBarBuilder.barBuilder.update(tick)) {
+            boolean newBar = false;
+            FutureTask<Void> historyTask = leveledBarBuilder.historyTask;
+            boolean historyLoading = historyTask!=null && !historyTask.isDone();
+            if ( historyLoading ) {
+                //后台正在合并历史数据. 不在行情线程等待历史数据, 加载完成后的第一个TICK补发通知
+                synchronized(leveledBarBuilder) {
+                    newBar = leveledBarBuilder.barBuilder.update(tick);
+                    leveledBarBuilder.newBarPending |= newBar;
+                }
+                continue;
+            } else {
+                newBar = leveledBarBuilder.barBuilder.update(tick);
+            }
+            if ( listeners.isEmpty() ) {
+                continue;
+            }
+            if ( newBar || leveledBarBuilder.newBarPending ) {
+                leveledBarBuilder.newBarPending = false;
                 LeveledBarSeries series = leveledBarBuilder.barBuilder.getTimeSeries(leveledBarBuilder.level);
                 notifyListeners(series);
             }
@@ -5,6 +5,8 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -23,9 +25,13 @@ import trader.common.exchangeable.ExchangeableData;
 import trader.common.exchangeable.ExchangeableType;
 import trader.common.exchangeable.FutureCombo;
 import trader.common.util.TraderHomeUtil;
+import trader.common.util.concurrent.SizedLruCache;
 import trader.service.md.MarketData;
+import trader.service.md.MarketDataColumnFile;
 import trader.service.md.MarketDataListener;
 import trader.service.md.MarketDataService;
+import trader.service.stats.StatsCollector;
+import trader.service.stats.StatsItem;
 
 /**
  * 技术分析/KBar实现类.
@@ -38,6 +44,10 @@ public class BarServiceImpl implements BarService, MarketDataListener {
      * 关注的品种定义
      */
     public static final String ITEM_INSTRUMENTS = "instrument[]";
+    /**
+     * 后台加载历史KBAR, 加载完成前只返回当日实时KBAR, 不会等待. 缺省启动时同步加载
+     */
+    public static final String ITEM_LAZY_HISTORY = "lazyHistory";
 
     @Autowired
     private BeansContainer beansContainer;
@@ -45,6 +55,9 @@ public class BarServiceImpl implements BarService, MarketDataListener {
     @Autowired
     private MarketDataService mdService;
 
+    @Autowired
+    private StatsCollector statsCollector;
+
     private ExchangeableData data;
 
     private ServiceState state = ServiceState.NotInited;
@@ -53,6 +66,8 @@ public class BarServiceImpl implements BarService, MarketDataListener {
 
     private Map<Exchangeable, BarAccessImpl> accessors = new HashMap<>();
 
+    private ExecutorService historyExecutor;
+
     public ServiceState getState() {
         return state;
     }
@@ -88,14 +103,26 @@ public class BarServiceImpl implements BarService, MarketDataListener {
         mdService = beansContainer.getBean(MarketDataService.class);
         mdService.addListener(this);
         instrumentDefs.putAll( loadInstrumentDefs(configPrefix));
+        if ( ConfigUtil.getBoolean(configPrefix+ITEM_LAZY_HISTORY, false) ) {
+            historyExecutor = Executors.newSingleThreadExecutor((Runnable r)->{
+                Thread thread = new Thread(r, "BarHistoryLoader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        long t0 = System.currentTimeMillis();
         buildAccessors();
-        logger.info("Start with data dir "+data.getDataDir());
+        logger.info("Start with data dir "+data.getDataDir()+", "+accessors.size()+" instruments were initialized in "+(System.currentTimeMillis()-t0)+" ms"+(historyExecutor!=null?", history data is loading in background":""));
+        registerStats();
         state = ServiceState.Ready;
         return this;
     }
 
     @PreDestroy
     public void destroy() {
+        if ( historyExecutor!=null ) {
+            historyExecutor.shutdownNow();
+        }
     }
 
     @Override
@@ -155,11 +182,76 @@ public class BarServiceImpl implements BarService, MarketDataListener {
             if ( def==null ) {
                 continue;
             }
-            BarAccessImpl accessor = new BarAccessImpl(beansContainer, data, e, def);
+            BarAccessImpl accessor = new BarAccessImpl(beansContainer, data, e, def, historyExecutor);
             accessors.put(e, accessor);
         }
     }
 
+    /**
+     * 历史数据加载耗时和KBAR缓存命中统计
+     */
+    private void registerStats() {
+        if ( statsCollector==null ) {
+            return;
+        }
+        String service = BarService.class.getSimpleName();
+        statsCollector.registerStatsItem(new StatsItem(service, "historyLoad", "currPendingInstruments"),  (StatsItem itemInfo) -> {
+            int result = 0;
+            for(BarAccessImpl accessor:new ArrayList<>(accessors.values())) {
+                if ( accessor.getHistoryLoadMillis()<0 ) {
+                    result++;
+                }
+            }
+            return result;
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "historyLoad", "currMaxMillis"),  (StatsItem itemInfo) -> {
+            long result = 0;
+            for(BarAccessImpl accessor:new ArrayList<>(accessors.values())) {
+                result = Math.max(result, accessor.getHistoryLoadMillis());
+            }
+            return result;
+        });
+        BarSeriesCache barCache = BarSeriesCache.getInstance(data);
+        statsCollector.registerStatsItem(new StatsItem(service, "barCache", "totalHits"),  (StatsItem itemInfo) -> {
+            return barCache.getHits();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "barCache", "totalMisses"),  (StatsItem itemInfo) -> {
+            return barCache.getMisses();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "dataLock", "totalReadContentions"),  (StatsItem itemInfo) -> {
+            return data.getReadContentions();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "dataLock", "totalWriteContentions"),  (StatsItem itemInfo) -> {
+            return data.getWriteContentions();
+        });
+        SizedLruCache<String, Object> dataCache = ExchangeableData.getDataCache();
+        statsCollector.registerStatsItem(new StatsItem(service, "dataCache", "totalHits"),  (StatsItem itemInfo) -> {
+            return dataCache.getHits();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "dataCache", "totalMisses"),  (StatsItem itemInfo) -> {
+            return dataCache.getMisses();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "dataCache", "totalEvictions"),  (StatsItem itemInfo) -> {
+            return dataCache.getEvictions();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "dataCache", "currBytes"),  (StatsItem itemInfo) -> {
+            return dataCache.getCurrBytes();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "dataCache", "currCount"),  (StatsItem itemInfo) -> {
+            return dataCache.getCount();
+        });
+        SizedLruCache<String, MarketDataColumnFile.Reader> columnFileCache = ExchangeableData.getColumnFileCache();
+        statsCollector.registerStatsItem(new StatsItem(service, "columnFileCache", "totalHits"),  (StatsItem itemInfo) -> {
+            return columnFileCache.getHits();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "columnFileCache", "totalEvictions"),  (StatsItem itemInfo) -> {
+            return columnFileCache.getEvictions();
+        });
+        statsCollector.registerStatsItem(new StatsItem(service, "columnFileCache", "currCount"),  (StatsItem itemInfo) -> {
+            return columnFileCache.getCount();
+        });
+    }
+
     private BarAccessImpl buildTechAccess(Exchangeable instrument) {
         BarAccessImpl result = accessors.get(instrument);
         if ( result==null) {
@@ -170,7 +262,7 @@ public class BarServiceImpl implements BarService, MarketDataListener {
                 instrumentDef = new InstrumentDef(instrument, defConfig);
             }
             if ( instrumentDef!=null ) {
-                result = new BarAccessImpl(beansContainer, data, instrument, instrumentDef);
+                result = new BarAccessImpl(beansContainer, data, instrument, instrumentDef, historyExecutor);
                 if ( instrument.getType()==ExchangeableType.FUTURE_COMBO) {
                     FutureCombo combo = (FutureCombo)instrument;
                     accessors.put(combo.getExchangeable1(), result);
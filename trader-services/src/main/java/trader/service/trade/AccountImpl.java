@@ -52,6 +52,7 @@ import trader.service.repository.BORepository;
 import trader.service.repository.BORepositoryConstants.BOEntityType;
 import trader.service.trade.spi.AbsTxnSession;
 import trader.service.trade.spi.TxnSessionListener;
+import trader.service.util.LatencyTracer;
 
 /**
  * 一个交易账户和通道实例对象.
@@ -82,6 +83,10 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
     private Map<Exchangeable, AtomicInteger> cancelCounts = new ConcurrentHashMap<>();
     private Lock orderLock = new ReentrantLock();
     private Lock positionLock = new ReentrantLock();
+    /**
+     * 增量估值: 行情变化时持仓和账户资金按差值更新, 不需要遍历持仓明细和全部持仓
+     */
+    private boolean incrementalValuation;
 
     public AccountImpl(TradeService tradeService, BeansContainer beansContainer, Map configElem) {
         this.tradeService = tradeService;
@@ -89,6 +94,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         id = ConversionUtil.toString(configElem.get("id"));
         state = AccountState.Created;
         String provider = ConversionUtil.toString(configElem.get("provider"));
+        incrementalValuation = "incremental".equalsIgnoreCase(ConversionUtil.toString(configElem.get("valuation")));
         repository = beansContainer.getBean(BORepository.class);
         mtService = beansContainer.getBean(MarketTimeService.class);
         LocalDate tradingDay = mtService.getTradingDay();
@@ -113,6 +119,10 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         return this.money[mny.ordinal()];
     }
 
+    public boolean isIncrementalValuation() {
+        return incrementalValuation;
+    }
+
     public long[] getMoneys() {
         long result[] = new long[money.length];
         System.arraycopy(money, 0, result, 0, result.length);
@@ -219,6 +229,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
 
     @Override
     public Order createOrder(OrderBuilder builder) throws AppException {
+        LatencyTracer.stamp(LatencyTracer.STAGE_CREATE_ORDER);
         if ( txnSession==null || txnSession.getState()!=ConnState.Connected ) {
             throw new AppException(ERRCODE_TRADE_SESSION_NOT_READY, "Account "+getId()+" txn session is not ready");
         }
@@ -470,6 +481,7 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
      */
     @Override
     public void onTransaction(String txnId, Exchangeable instrument, String orderRef, OrderDirection txnDirection, OrderOffsetFlag txnFlag, long txnPrice, int txnVolume, long txnTime, Object txnData) {
+        tradeService.recordTxnLatency();
         OrderImpl order = (OrderImpl)getOrderByRef(orderRef);
         if ( order ==null ){
             logger.error("Account "+getId()+" order ref \""+orderRef+"\" is not found for txn id: "+txnId);
@@ -615,13 +627,27 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
         if ( state!=AccountState.Ready ) {
             return;
         }
-        boolean priceChanged = false;
         PositionImpl pos = positions.get(marketData.instrument);
-        if( pos!=null ) {
-            priceChanged = pos.onMarketData(marketData);
+        if ( pos==null ) {
+            return;
         }
-        if ( priceChanged ) {
-            updateAccountMoneyOnMarket();
+        //与成交回报/报单状态变化在同一把锁下修改持仓和资金, 避免增量计算与全量计算交错
+        positionLock.lock();
+        try {
+            if ( incrementalValuation ) {
+                long posProfit0 = pos.getMoney(PosMoney.PositionProfit);
+                long posProfitToday0 = pos.getMoney(PosMoney.PositionProfitToday);
+                long margin0 = pos.getMoney(PosMoney.UseMargin);
+                if ( pos.onMarketData(marketData) ) {
+                    updateAccountMoneyOnMarket(pos.getMoney(PosMoney.PositionProfit)-posProfit0,
+                            pos.getMoney(PosMoney.PositionProfitToday)-posProfitToday0,
+                            pos.getMoney(PosMoney.UseMargin)-margin0);
+                }
+            } else if ( pos.onMarketData(marketData) ) {
+                updateAccountMoneyOnMarket();
+            }
+        }finally {
+            positionLock.unlock();
         }
     }
 
@@ -882,6 +908,19 @@ public class AccountImpl implements Account, TxnSessionListener, TradeConstants,
 
     }
 
+    /**
+     * 按单个持仓的变化量更新账户资金. 差值累加没有误差, 结果等于按当前持仓数据调用updateAccountMoneyOnMarket()重新汇总.
+     * <BR>但增量估值的持仓盈亏和保证金是按方向汇总后计算的, 与全量估值逐笔明细计算相比, 每个持仓每项最多相差 明细笔数*0.01,
+     * 账户资金的误差为各持仓误差之和, 可用资金的误差为当日持仓盈亏与保证金误差之和
+     */
+    private void updateAccountMoneyOnMarket(long posProfitDelta, long posProfitTodayDelta, long marginDelta) {
+        addMoney(AccMoney.Balance, posProfitTodayDelta);
+        addMoney(AccMoney.PositionProfit, posProfitDelta);
+        addMoney(AccMoney.PositionProfitToday, posProfitTodayDelta);
+        addMoney(AccMoney.CurrMargin, marginDelta);
+        addMoney(AccMoney.Available, posProfitTodayDelta-marginDelta);
+    }
+
     /**
      * 本地冻结订单的保证金和手续费, 调整account/position的相关字段, 并保存数据到OrderImpl
      */
@@ -116,7 +116,78 @@ public class FutureFeeEvaluator implements TxnFeeEvaluator, TradeConstants {
 
     }
 
+    /**
+     * 单个合约的费用计算
+     */
+    private static class FutureFeeHandle implements FeeHandle {
+        private final Exchangeable instrument;
+        private final int volumeMultiple;
+        private final double longMarginByMoney;
+        private final double shortMarginByMoney;
+        private final double[] commissionRatios;
+
+        FutureFeeHandle(Exchangeable instrument, FutureFeeInfo feeInfo){
+            this.instrument = instrument;
+            this.volumeMultiple = feeInfo.getVolumeMultiple();
+            this.longMarginByMoney = feeInfo.marginRatios[MarginRatio.LongByMoney.ordinal()];
+            this.shortMarginByMoney = feeInfo.marginRatios[MarginRatio.ShortByMoney.ordinal()];
+            this.commissionRatios = feeInfo.commissionRatios;
+        }
+
+        @Override
+        public Exchangeable getInstrument() {
+            return instrument;
+        }
+
+        @Override
+        public long computeMargin(int volume, long price, PosDirection direction) {
+            long turnover = volume*price*volumeMultiple;
+            double marginByMoney = direction==PosDirection.Long ? longMarginByMoney : shortMarginByMoney;
+            return PriceUtil.round((long)(marginByMoney*turnover));
+        }
+
+        @Override
+        public long computeValue(int volume, long price) {
+            return PriceUtil.round(volume*price*volumeMultiple);
+        }
+
+        @Override
+        public void compute(int volume, long price, OrderDirection direction, OrderOffsetFlag offsetFlag, long[] result) {
+            long turnover = volume*price*volumeMultiple;
+            long margin=0, commission=0;
+            {//保证金
+                double marginByMoney = direction==OrderDirection.Buy ? longMarginByMoney : shortMarginByMoney;
+                margin = (long)(marginByMoney*turnover);
+            }
+            {//手续费
+                switch(offsetFlag) {
+                case OPEN:
+                    long openMoney = (long)( turnover*commissionRatios[CommissionRatio.OpenByMoney.ordinal()] );
+                    long openVolume = PriceUtil.price2long( volume*commissionRatios[CommissionRatio.OpenByVolume.ordinal()] );
+                    commission = (openMoney+openVolume);
+                    break;
+                case CLOSE:
+                case CLOSE_YESTERDAY:
+                case FORCE_CLOSE:
+                    long closeMoney = (long)( turnover*commissionRatios[CommissionRatio.CloseByMoney.ordinal()] );
+                    long closeVolume = PriceUtil.price2long( volume*commissionRatios[CommissionRatio.CloseByVolume.ordinal()] );
+                    commission = closeMoney+closeVolume;
+                    break;
+                case CLOSE_TODAY:
+                    long closeTodayMoney = (long)( turnover*commissionRatios[CommissionRatio.CloseTodayByMoney.ordinal()] );
+                    long closeTodayVolume = PriceUtil.price2long( volume*commissionRatios[CommissionRatio.CloseTodayByVolume.ordinal()] );
+                    commission = closeTodayMoney+closeTodayVolume;
+                    break;
+                }
+            }
+            result[0] = PriceUtil.round(margin);
+            result[1] = PriceUtil.round(commission);
+            result[2] = PriceUtil.round(turnover);
+        }
+    }
+
     private Map<Exchangeable, FutureFeeInfo> feeInfos;
+    private Map<Exchangeable, FutureFeeHandle> feeHandles = new HashMap<>();
 
     public FutureFeeEvaluator(Map<Exchangeable, FutureFeeInfo> feeInfos)
     {
@@ -130,6 +201,7 @@ public class FutureFeeEvaluator implements TxnFeeEvaluator, TradeConstants {
             if ( e.getVolumeMutiplier()!=feeVolumeMutiplier) {
                 logger.error("Exchangeable "+e+" volumeMultiple "+(e.getVolumeMutiplier())+" is WRONG, expected value is "+feeVolumeMutiplier);
             }
+            feeHandles.put(e, new FutureFeeHandle(e, feeInfos.get(e)));
         }
     }
 
@@ -148,6 +220,11 @@ public class FutureFeeEvaluator implements TxnFeeEvaluator, TradeConstants {
         return result;
     }
 
+    @Override
+    public FeeHandle getFeeHandle(Exchangeable e) {
+        return feeHandles.get(e);
+    }
+
     @Override
     public long[] compute(Transaction txn) {
         return compute(txn.getInstrument(), txn.getVolume(), txn.getPrice(), txn.getDirection(), txn.getOffsetFlags());
@@ -155,82 +232,23 @@ public class FutureFeeEvaluator implements TxnFeeEvaluator, TradeConstants {
 
     @Override
     public long[] compute(Exchangeable e, int volume, long price, OrderDirection direction, OrderOffsetFlag offsetFlag) {
-        FutureFeeInfo feeInfo = feeInfos.get(e);
-        if ( feeInfo==null ) {
+        FutureFeeHandle feeHandle = feeHandles.get(e);
+        if ( feeHandle==null ) {
             logger.error("No fee info for "+e);
             return null;
         }
-        long turnover = volume*price*feeInfo.getVolumeMultiple();
-        long margin=0, commission=0;
-        {//保证金
-            if ( direction==OrderDirection.Buy ) {
-                double longByMoney = feeInfo.marginRatios[MarginRatio.LongByMoney.ordinal()];
-                double longByVolume = feeInfo.marginRatios[MarginRatio.LongByVolume.ordinal()];
-                long marginByMoney = (long)(longByMoney*turnover);
-                margin = marginByMoney;
-            }else {
-                double shortByMoney = feeInfo.marginRatios[MarginRatio.ShortByMoney.ordinal()];
-                double shortByVolume = feeInfo.marginRatios[MarginRatio.ShortByVolume.ordinal()];
-                long marginByMoney = (long)(shortByMoney*turnover);
-                margin = marginByMoney;
-            }
-        }
-        {//手续费
-            switch(offsetFlag) {
-            case OPEN:
-                long openMoney = (long)( turnover*feeInfo.commissionRatios[CommissionRatio.OpenByMoney.ordinal()] );
-                long openVolume = PriceUtil.price2long( volume*feeInfo.commissionRatios[CommissionRatio.OpenByVolume.ordinal()] );
-                commission = (openMoney+openVolume);
-                break;
-            case CLOSE:
-            case CLOSE_YESTERDAY:
-            case FORCE_CLOSE:
-                long closeMoney = (long)( turnover*feeInfo.commissionRatios[CommissionRatio.CloseByMoney.ordinal()] );
-                long closeVolume = PriceUtil.price2long( volume*feeInfo.commissionRatios[CommissionRatio.CloseByVolume.ordinal()] );
-                commission = closeMoney+closeVolume;
-                break;
-            case CLOSE_TODAY:
-                long closeTodayMoney = (long)( turnover*feeInfo.commissionRatios[CommissionRatio.CloseTodayByMoney.ordinal()] );
-                long closeTodayVolume = PriceUtil.price2long( volume*feeInfo.commissionRatios[CommissionRatio.CloseTodayByVolume.ordinal()] );
-                commission = closeTodayMoney+closeTodayVolume;
-                break;
-            }
-        }
-        margin = PriceUtil.round(margin);
-        commission = PriceUtil.round(commission);
-        turnover = PriceUtil.round(turnover);
-        return new long[] {margin, commission, turnover};
+        long[] result = new long[3];
+        feeHandle.compute(volume, price, direction, offsetFlag, result);
+        return result;
     }
 
     @Override
     public long[] compute(Exchangeable e, int volume, long price, PosDirection direction){
-        FutureFeeInfo feeInfo = feeInfos.get(e);
-        if ( feeInfo==null ) {
+        FutureFeeHandle feeHandle = feeHandles.get(e);
+        if ( feeHandle==null ) {
             return null;
         }
-        long turnover = volume*price*feeInfo.getVolumeMultiple();
-        long margin = 0;
-        switch(direction) {
-        case Long:
-            {
-                double longByMoney = feeInfo.marginRatios[MarginRatio.LongByMoney.ordinal()];
-                double longByVolume = feeInfo.marginRatios[MarginRatio.LongByVolume.ordinal()];
-                long marginByMoney = (long)(longByMoney*turnover);
-                margin = marginByMoney;
-                break;
-            }
-        default:
-            {
-                double shortByMoney = feeInfo.marginRatios[MarginRatio.ShortByMoney.ordinal()];
-                double shortByVolume = feeInfo.marginRatios[MarginRatio.ShortByVolume.ordinal()];
-                long marginByMoney = (long)(shortByMoney*turnover);
-                margin = marginByMoney;
-                break;
-            }
-        }
-        margin = PriceUtil.round(margin);
-        turnover = PriceUtil.round(turnover);
-        return new long[] {margin, turnover};
+        return new long[] {feeHandle.computeMargin(volume, price, direction), feeHandle.computeValue(volume, price)};
     }
 
     @Override
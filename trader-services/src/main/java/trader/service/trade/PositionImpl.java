@@ -39,6 +39,20 @@ public class PositionImpl implements Position, TradeConstants {
 
     private long lastPrice;
 
+    /**
+     * 增量估值: 按方向(0多/1空)汇总的持仓量, 开仓市值, 今日开仓市值(昨仓按昨结算价).
+     * <BR>只在持仓明细或昨结算价变化时重新计算, 行情变化时不需要遍历持仓明细
+     */
+    private final int[] aggVolumes = new int[2];
+    private final long[] aggOpenValues = new long[2];
+    private final long[] aggTodayOpenValues = new long[2];
+    private boolean aggValid;
+    /**
+     * 缓存的合约费用计算
+     */
+    private TxnFeeEvaluator.FeeHandle feeHandle;
+    private TxnFeeEvaluator feeHandleEvaluator;
+
     public PositionImpl(AccountImpl account, Exchangeable e, PosDirection direction, long[] money, int[] volumes, List<PositionDetailImpl> details) {
         this(account, e);
         this.direction = direction;
@@ -121,6 +135,9 @@ public class PositionImpl implements Position, TradeConstants {
     }
 
     long setMoney(PosMoney mny, long value) {
+        if ( mny==PosMoney.PreSettlementPrice ) {
+            aggValid = false;
+        }
         long result = money[mny.ordinal()];
         money[mny.ordinal()] = value;
         return result;
@@ -339,7 +356,7 @@ public class PositionImpl implements Position, TradeConstants {
      */
     private void computeTxnProfit(Transaction txn, long txnFees[], List<PositionDetailImpl> closedDetails)
     {
-        TxnFeeEvaluator feeEval = account.getFeeEvaluator();
+        TxnFeeEvaluator.FeeHandle feeHandle = getFeeHandle();
 
         long closeAmount = txnFees[2];
         long openAmount = 0;
@@ -349,8 +366,7 @@ public class PositionImpl implements Position, TradeConstants {
             if (!detail.isToday() ) {
                 txnPrice = getMoney(PosMoney.PreSettlementPrice);
             }
-            long detailFees[] = feeEval.compute(instrument, detail.getVolume(), txnPrice, detail.getDirection());
-            openAmount += detailFees[1];
+            openAmount += feeHandle.computeValue(detail.getVolume(), txnPrice);
         }
         long txnProfit = 0;
         if ( txn.getDirection()==OrderDirection.Sell) {
@@ -367,7 +383,11 @@ public class PositionImpl implements Position, TradeConstants {
      * 计算持仓盈亏
      */
     private void computePositionProfit(boolean updateVolumes) {
-        TxnFeeEvaluator feeEval = account.getFeeEvaluator();
+        if ( !updateVolumes && aggValid && account.isIncrementalValuation() ) {
+            computePositionProfitIncremental();
+            return;
+        }
+        TxnFeeEvaluator.FeeHandle feeHandle = getFeeHandle();
         int longPos = 0, shortPos = 0;
         int longTodayPos = 0, shortTodayPos=0;
         int longYdPos = 0, shortYdPos = 0;
@@ -376,26 +396,35 @@ public class PositionImpl implements Position, TradeConstants {
         long openCost= 0;
         long longUseMargin=0;
         long shortUseMargin=0;
-        for(int i=0;i<details.size();i++) {
-            PositionDetail detail = details.get(i);
+        //重用汇总数组, 每个TICK不分配新对象
+        aggVolumes[0] = aggVolumes[1] = 0;
+        aggOpenValues[0] = aggOpenValues[1] = 0;
+        aggTodayOpenValues[0] = aggTodayOpenValues[1] = 0;
+        for(PositionDetail detail:details) {
             PosDirection detailDirection = detail.getDirection();
             int detailVolume = detail.getVolume();
-            long[] lastMarginValue = feeEval.compute(instrument, detailVolume, lastPrice, detailDirection);
+            long lastMargin = feeHandle.computeMargin(detailVolume, lastPrice, detailDirection);
+            long lastValue = feeHandle.computeValue(detailVolume, lastPrice);
 
-            long posValue = feeEval.compute(instrument, detailVolume, detail.getPrice(), detailDirection)[1];
+            long posValue = feeHandle.computeValue(detailVolume, detail.getPrice());
             long posValueToday = posValue;
             if ( !detail.isToday() ) {
-                posValueToday = feeEval.compute(instrument, detailVolume, getMoney(PosMoney.PreSettlementPrice), detailDirection)[1];
+                posValueToday = feeHandle.computeValue(detailVolume, getMoney(PosMoney.PreSettlementPrice));
             }
-            long valueDiff = lastMarginValue[1]-posValue;
-            long valueDiffToday = lastMarginValue[1]-posValueToday;
+            long valueDiff = lastValue-posValue;
+            long valueDiffToday = lastValue-posValueToday;
             long valueDiffUnit = 1;
+            int aggIdx = 0;
             if ( detailDirection==PosDirection.Short ) {
                 valueDiffUnit = -1;
-                shortUseMargin += lastMarginValue[0];;
+                aggIdx = 1;
+                shortUseMargin += lastMargin;
             }else{
-                longUseMargin += lastMarginValue[0];
+                longUseMargin += lastMargin;
             }
+            aggVolumes[aggIdx] += detailVolume;
+            aggOpenValues[aggIdx] += posValue;
+            aggTodayOpenValues[aggIdx] += posValueToday;
             posProfit += valueDiff*valueDiffUnit;
             posProfitToday += valueDiffToday*valueDiffUnit;
             if ( updateVolumes ) {
@@ -418,6 +447,7 @@ public class PositionImpl implements Position, TradeConstants {
                 }
             }
         }
+        aggValid = true;
 
         setMoney(PosMoney.PositionProfit, posProfit);
         setMoney(PosMoney.PositionProfitToday, posProfitToday);
@@ -442,6 +472,47 @@ public class PositionImpl implements Position, TradeConstants {
         }
     }
 
+    /**
+     * 基于汇总数据计算持仓盈亏和保证金, 与持仓明细数量无关.
+     * <BR>市值和保证金按方向汇总后计算, 与逐笔明细计算相比有取整误差, 每项最多相差 明细笔数*0.01
+     */
+    private void computePositionProfitIncremental() {
+        TxnFeeEvaluator.FeeHandle feeHandle = getFeeHandle();
+        long posProfit = 0;
+        long posProfitToday = 0;
+        long longUseMargin = 0;
+        long shortUseMargin = 0;
+        if ( aggVolumes[0]>0 ) {
+            long lastValue = feeHandle.computeValue(aggVolumes[0], lastPrice);
+            longUseMargin = feeHandle.computeMargin(aggVolumes[0], lastPrice, PosDirection.Long);
+            posProfit += lastValue-aggOpenValues[0];
+            posProfitToday += lastValue-aggTodayOpenValues[0];
+        }
+        if ( aggVolumes[1]>0 ) {
+            long lastValue = feeHandle.computeValue(aggVolumes[1], lastPrice);
+            shortUseMargin = feeHandle.computeMargin(aggVolumes[1], lastPrice, PosDirection.Short);
+            posProfit -= lastValue-aggOpenValues[1];
+            posProfitToday -= lastValue-aggTodayOpenValues[1];
+        }
+        setMoney(PosMoney.PositionProfit, posProfit);
+        setMoney(PosMoney.PositionProfitToday, posProfitToday);
+        setMoney(PosMoney.LongUseMargin, longUseMargin);
+        setMoney(PosMoney.ShortUseMargin, shortUseMargin);
+        setMoney(PosMoney.UseMargin, Math.max(longUseMargin, shortUseMargin));
+    }
+
+    /**
+     * 返回缓存的合约费用计算, 账户费率重新加载后自动更新
+     */
+    private TxnFeeEvaluator.FeeHandle getFeeHandle() {
+        TxnFeeEvaluator feeEval = account.getFeeEvaluator();
+        if ( feeHandleEvaluator!=feeEval ) {
+            feeHandle = feeEval.getFeeHandle(instrument);
+            feeHandleEvaluator = feeEval;
+        }
+        return feeHandle;
+    }
+
     /**
      * 重新计算方向
      */
@@ -35,6 +35,8 @@ import trader.service.md.MarketData;
 import trader.service.md.MarketDataService;
 import trader.service.plugin.Plugin;
 import trader.service.plugin.PluginService;
+import trader.service.stats.LatencyHistogram;
+import trader.service.stats.StatsCollector;
 import trader.service.trade.ctp.CtpTxnSessionFactory;
 import trader.service.trade.spi.AbsTxnSession;
 
@@ -67,6 +69,9 @@ public class TradeServiceImpl implements TradeService {
     @Autowired
     private BeansContainer beansContainer;
 
+    @Autowired
+    private StatsCollector statsCollector;
+
     private List<TradeServiceListener> listeners = new ArrayList<>();
 
     private Map<String, TxnSessionFactory> txnSessionFactories = new HashMap<>();
@@ -79,6 +84,16 @@ public class TradeServiceImpl implements TradeService {
 
     private Map<String, AccountImpl> accountByIds = new HashMap<>();
 
+    /**
+     * 当前正在处理的交易事件的发布时间, 只在交易事件线程中访问
+     */
+    private long currEventPublishTime;
+
+    /**
+     * 交易接口回调到AccountImpl.onTransaction的延时
+     */
+    private LatencyHistogram txnLatency = new LatencyHistogram();
+
     private AccountImpl primaryAccount = null;
 
     @PostConstruct
@@ -107,6 +122,9 @@ public class TradeServiceImpl implements TradeService {
             onAsyncEvent(event);
             return true;
         }, AsyncEvent.EVENT_TYPE_PROCESSOR_MASK);
+        if ( statsCollector!=null ) {
+            txnLatency.registerStats(statsCollector, TradeService.class.getSimpleName(), "txnLatency");
+        }
         //加载CTP交易接口
         txnSessionFactories = discoverTxnSessionProviders(beansContainer);
         reloadAccounts();
@@ -173,10 +191,24 @@ public class TradeServiceImpl implements TradeService {
      * 处理所有的交易相关的事件
      */
     private void onAsyncEvent(AsyncEvent event) {
+        currEventPublishTime = event.publishTime;
         try{
             event.processor.process(event.eventType, event.data, event.data2);
         }catch(Throwable t) {
             logger.error("Async event process failed on data "+event.data);
+        }finally {
+            currEventPublishTime = 0;
+        }
+    }
+
+    /**
+     * 成交回报到达AccountImpl时调用, 记录从交易接口回调开始的延时
+     */
+    @Override
+    public void recordTxnLatency() {
+        long publishTime = currEventPublishTime;
+        if ( publishTime!=0 ) {
+            txnLatency.record(System.nanoTime()-publishTime);
         }
     }
 
@@ -45,6 +45,7 @@ import trader.service.trade.OrderStateTuple;
 import trader.service.trade.TradeConstants;
 import trader.service.trade.spi.AbsTxnSession;
 import trader.service.trade.spi.TxnSessionListener;
+import trader.service.util.LatencyTracer;
 
 /**
  * CTP的交易会话实现类. 目前使用异步多线程处理模式: 在收到报单/成交回报事件后, 将事件排队到AsyncEventService中异步处理.
@@ -1325,6 +1326,7 @@ public class CtpTxnSession extends AbsTxnSession implements ServiceErrorConstant
         listener.onOrderStateChanged(order, new OrderStateTuple(OrderState.Submitting, OrderSubmitState.InsertSubmitting, System.currentTimeMillis()), null);
         try{
             traderApi.ReqOrderInsert(req);
+            LatencyTracer.stamp(LatencyTracer.STAGE_ORDER_INSERT);
             listener.onOrderStateChanged(order, new OrderStateTuple(OrderState.Submitted, OrderSubmitState.InsertSubmitting, System.currentTimeMillis()), null);
         }catch(Throwable t) {
             logger.error("ReqOrderInsert failed: "+order, t);
@@ -19,6 +19,7 @@ import trader.service.trade.MarketTimeService;
 import trader.service.trade.Order;
 import trader.service.trade.OrderStateTuple;
 import trader.service.trade.Transaction;
+import trader.service.util.LatencyTracer;
 
 /**
  * TradletGroupEngine公共类
@@ -31,6 +32,10 @@ public abstract class AbsTradletGroupEngine implements TradletConstants, Lifecyc
     protected MarketTimeService mtService;
     protected TradletGroupImpl group;
     protected long lastEventTime;
+    /**
+     * TICK到报单的延时跟踪, 没有开启时为null
+     */
+    protected LatencyTracer latencyTracer;
 
     public TradletGroupImpl getGroup() {
         return group;
@@ -40,6 +45,10 @@ public abstract class AbsTradletGroupEngine implements TradletConstants, Lifecyc
         return lastEventTime;
     }
 
+    public LatencyTracer getLatencyTracer() {
+        return latencyTracer;
+    }
+
     @Override
     public void init(BeansContainer beansContainer) {
         this.beansContainer = beansContainer;
@@ -104,7 +113,16 @@ public abstract class AbsTradletGroupEngine implements TradletConstants, Lifecyc
         }
         switch(eventType) {
         case TradletEvent.EVENT_TYPE_MD_TICK:
-            processTick((MarketData)data);
+            MarketData tick = (MarketData)data;
+            if ( latencyTracer!=null && latencyTracer.beginTick(tick) ) {
+                try {
+                    processTick(tick);
+                }finally {
+                    latencyTracer.endTick();
+                }
+            } else {
+                processTick(tick);
+            }
             break;
         case TradletEvent.EVENT_TYPE_MD_BAR:
             processBar((LeveledBarSeries)data);
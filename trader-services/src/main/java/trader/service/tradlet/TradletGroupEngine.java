@@ -18,6 +18,7 @@ import trader.common.util.ConversionUtil;
 import trader.common.util.StringUtil;
 import trader.service.trade.AccountListener;
 import trader.service.util.ConcurrentUtil;
+import trader.service.util.LatencyTracer;
 
 /**
  * 交易策略分组的单线程引擎, 每个对象必须独占一个线程
@@ -31,6 +32,9 @@ public class TradletGroupEngine extends AbsTradletGroupEngine implements Lifecyc
 
     public TradletGroupEngine(TradletGroupImpl group) {
         this.group = group;
+        if ( LatencyTracer.isEnabled() ) {
+            latencyTracer = new LatencyTracer(group.getId());
+        }
     }
 
     public Thread getEngineThread() {
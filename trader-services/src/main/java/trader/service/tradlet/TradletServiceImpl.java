@@ -1,5 +1,7 @@
 package trader.service.tradlet;
 
+import java.io.File;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -31,8 +33,10 @@ import trader.common.beans.ServiceState;
 import trader.common.config.ConfigUtil;
 import trader.common.exception.AppException;
 import trader.common.util.ConversionUtil;
+import trader.common.util.IOUtil;
 import trader.common.util.JsonUtil;
 import trader.common.util.StringUtil;
+import trader.common.util.TraderHomeUtil;
 import trader.service.ServiceErrorConstants;
 import trader.service.beans.DiscoverableRegistry;
 import trader.service.md.MarketData;
@@ -40,8 +44,10 @@ import trader.service.md.MarketDataService;
 import trader.service.plugin.Plugin;
 import trader.service.plugin.PluginListener;
 import trader.service.plugin.PluginService;
+import trader.service.stats.StatsCollector;
 import trader.service.ta.BarService;
 import trader.service.trade.TradeService;
+import trader.service.util.LatencyTracer;
 
 /**
  * 交易策略(Tradlet)/策略组(TradletGroup)的管理和事件分发
@@ -51,6 +57,8 @@ public class TradletServiceImpl extends AbsTradletService implements TradletCons
 {
     private static final Logger logger = LoggerFactory.getLogger(TradletServiceImpl.class);
 
+    private static final String FILE_LATENCY_TRACE = "latencyTrace.csv";
+
     @Autowired
     private BeansContainer beansContainer;
 
@@ -72,6 +80,9 @@ public class TradletServiceImpl extends AbsTradletService implements TradletCons
     @Autowired
     private ScheduledExecutorService scheduledExecutorService;
 
+    @Autowired
+    private StatsCollector statsCollector;
+
     private Map<String, TradletInfo> tradletInfos = new HashMap<>();
 
     private ArrayList<TradletGroupEngine> groupEngines = new ArrayList<>();
@@ -93,6 +104,7 @@ public class TradletServiceImpl extends AbsTradletService implements TradletCons
 
     private TradletService init0() {
         state = ServiceState.Starting;
+        LatencyTracer.setEnabled(ConfigUtil.getBoolean(ITEM_LATENCY_TRACE, false));
         pluginService.registerListener((List<Plugin> updatedPlugins)->{
             onPluginChanged(updatedPlugins);
         });
@@ -121,6 +133,25 @@ public class TradletServiceImpl extends AbsTradletService implements TradletCons
                 logger.error("交易策略组 "+engine.getGroup().getId()+" 释放失败: "+t, t);
             }
         }
+        if ( LatencyTracer.isEnabled() ) {
+            dumpLatencyTrace();
+        }
+    }
+
+    /**
+     * 保存各策略组的延时分布到工作目录
+     */
+    private void dumpLatencyTrace() {
+        File file = new File(TraderHomeUtil.getDirectory(TraderHomeUtil.DIR_WORK), FILE_LATENCY_TRACE);
+        try(PrintWriter writer = new PrintWriter(IOUtil.createBufferedWriter(file, StringUtil.UTF8, false));){
+            for(TradletGroupEngine engine:groupEngines) {
+                if ( engine.getLatencyTracer()!=null ) {
+                    engine.getLatencyTracer().dump(writer);
+                }
+            }
+        }catch(Throwable t) {
+            logger.error("保存延时跟踪数据失败: "+t, t);
+        }
     }
 
     @Override
@@ -239,6 +270,9 @@ public class TradletServiceImpl extends AbsTradletService implements TradletCons
         for(TradletGroupEngine engine:newGroupEngines.values()) {
             try{
                 engine.init(beansContainer);
+                if ( engine.getLatencyTracer()!=null && statsCollector!=null ) {
+                    engine.getLatencyTracer().registerStats(statsCollector, TradletService.class.getSimpleName());
+                }
             }catch(Throwable t) {
                 logger.error("交易分组 "+engine.getGroup().getId()+" 初始化失败: "+t, t);
             }
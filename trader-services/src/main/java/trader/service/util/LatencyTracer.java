@@ -0,0 +1,165 @@
+package trader.service.util;
+
+import java.io.PrintWriter;
+
+import trader.service.md.MarketData;
+import trader.service.stats.LatencyHistogram;
+import trader.service.stats.StatsCollector;
+
+/**
+ * TICK到报单的延时跟踪, 缺省关闭.
+ * <BR>行情在到达/发布/分发阶段记录System.nanoTime()到MarketData.traceTimes; 策略组线程处理TICK时绑定当前线程,
+ * 之后在同一线程中的创建报单和发送报单阶段记录到该策略组.
+ * <BR>每个策略组一个实例, 每个阶段的延时为相对上一阶段的时间差, tickToOrder为行情到达到报单发送的总延时
+ */
+public class LatencyTracer {
+    public static final int STAGE_PRODUCER_RECV = 0;
+    public static final int STAGE_EVENT_PUBLISH = 1;
+    public static final int STAGE_MD_DISPATCH = 2;
+    public static final int STAGE_GROUP_PROCESS = 3;
+    public static final int STAGE_CREATE_ORDER = 4;
+    public static final int STAGE_ORDER_INSERT = 5;
+    public static final int STAGE_COUNT = 6;
+    /**
+     * MarketData.traceTimes的长度
+     */
+    public static final int MD_STAGE_COUNT = 3;
+
+    public static final String[] STAGE_NAMES = {"producerRecv", "eventPublish", "mdDispatch", "groupProcess", "createOrder", "orderInsert"};
+
+    private static volatile boolean enabled;
+    private static final ThreadLocal<LatencyTracer> currTracer = new ThreadLocal<>();
+
+    private String id;
+    private LatencyHistogram[] stageLatencies = new LatencyHistogram[STAGE_COUNT];
+    private LatencyHistogram tickToOrder = new LatencyHistogram();
+    private long[] currTimes = new long[STAGE_COUNT];
+    private boolean active;
+
+    public LatencyTracer(String id) {
+        this.id = id;
+        for(int i=0;i<STAGE_COUNT;i++) {
+            stageLatencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean v) {
+        enabled = v;
+    }
+
+    /**
+     * 行情数据到达时调用, 开启跟踪时为MarketData分配traceTimes
+     */
+    public static void onTickRecv(MarketData md, long recvTime) {
+        if ( enabled ) {
+            long[] traceTimes = new long[MD_STAGE_COUNT];
+            traceTimes[STAGE_PRODUCER_RECV] = recvTime;
+            md.traceTimes = traceTimes;
+        }
+    }
+
+    /**
+     * 记录行情的发布/分发阶段
+     */
+    public static void stampTick(MarketData md, int stage) {
+        long[] traceTimes = md.traceTimes;
+        if ( traceTimes!=null ) {
+            traceTimes[stage] = System.nanoTime();
+        }
+    }
+
+    /**
+     * 记录当前线程正在跟踪的TICK的报单阶段
+     */
+    public static void stamp(int stage) {
+        if ( !enabled ) {
+            return;
+        }
+        LatencyTracer tracer = currTracer.get();
+        if ( tracer!=null && tracer.active ) {
+            tracer.record(stage, System.nanoTime());
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 策略组线程开始处理TICK, 如果TICK没有跟踪数据返回false
+     */
+    public boolean beginTick(MarketData tick) {
+        long[] traceTimes = tick.traceTimes;
+        if ( traceTimes==null ) {
+            return false;
+        }
+        for(int i=0;i<STAGE_COUNT;i++) {
+            currTimes[i] = 0;
+        }
+        currTimes[STAGE_PRODUCER_RECV] = traceTimes[STAGE_PRODUCER_RECV];
+        for(int i=1;i<MD_STAGE_COUNT;i++) {
+            record(i, traceTimes[i]);
+        }
+        record(STAGE_GROUP_PROCESS, System.nanoTime());
+        active = true;
+        currTracer.set(this);
+        return true;
+    }
+
+    public void endTick() {
+        active = false;
+        currTracer.set(null);
+    }
+
+    private void record(int stage, long time) {
+        if ( time==0 ) {
+            return;
+        }
+        long prevTime = currTimes[stage-1];
+        if ( prevTime!=0 ) {
+            stageLatencies[stage].record(time-prevTime);
+        }
+        currTimes[stage] = time;
+        if ( stage==STAGE_ORDER_INSERT && currTimes[STAGE_PRODUCER_RECV]!=0 ) {
+            tickToOrder.record(time-currTimes[STAGE_PRODUCER_RECV]);
+        }
+    }
+
+    /**
+     * 注册统计指标, component为 latency.策略组ID.阶段名称
+     */
+    public void registerStats(StatsCollector statsCollector, String service) {
+        for(int i=1;i<STAGE_COUNT;i++) {
+            stageLatencies[i].registerStats(statsCollector, service, "latency."+id+"."+STAGE_NAMES[i]);
+        }
+        tickToOrder.registerStats(statsCollector, service, "latency."+id+".tickToOrder");
+    }
+
+    /**
+     * 输出各阶段的延时分布, 单位微秒
+     */
+    public void dump(PrintWriter writer) {
+        writer.println("# "+id);
+        writer.println("stage,count,p50,p90,p99,p999,max");
+        for(int i=1;i<STAGE_COUNT;i++) {
+            dump(writer, STAGE_NAMES[i], stageLatencies[i]);
+        }
+        dump(writer, "tickToOrder", tickToOrder);
+    }
+
+    private static void dump(PrintWriter writer, String name, LatencyHistogram histogram) {
+        writer.println(name
+                +","+histogram.getCount()
+                +","+(histogram.getPercentile(50)/1000.0)
+                +","+(histogram.getPercentile(90)/1000.0)
+                +","+(histogram.getPercentile(99)/1000.0)
+                +","+(histogram.getPercentile(99.9)/1000.0)
+                +","+(histogram.getMax()/1000.0)
+                );
+    }
+
+}
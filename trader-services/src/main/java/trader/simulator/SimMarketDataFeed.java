@@ -0,0 +1,41 @@
+package trader.simulator;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.service.md.MarketData;
+
+/**
+ * 某个交易日预先加载并完成时间清理的行情数据.
+ * <BR>只读, 可以在同时运行的多个回测之间共享, 避免重复解析TICK数据
+ */
+public class SimMarketDataFeed {
+
+    private LocalDate tradingDay;
+    private Map<Exchangeable, List<MarketData>> ticks;
+
+    SimMarketDataFeed(LocalDate tradingDay, Map<Exchangeable, List<MarketData>> ticks) {
+        this.tradingDay = tradingDay;
+        this.ticks = Collections.unmodifiableMap(ticks);
+    }
+
+    public LocalDate getTradingDay() {
+        return tradingDay;
+    }
+
+    public Collection<Exchangeable> getInstruments(){
+        return ticks.keySet();
+    }
+
+    /**
+     * 返回合约的全部行情, 如果没有加载返回null
+     */
+    public List<MarketData> getTicks(Exchangeable instrument){
+        return ticks.get(instrument);
+    }
+
+}
@@ -12,6 +12,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -26,9 +27,8 @@ import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableData;
 import trader.common.exchangeable.ExchangeableData.DataInfo;
 import trader.common.exchangeable.ExchangeableTradingTimes;
-import trader.common.util.CSVDataSet;
 import trader.common.util.CSVMarshallHelper;
-import trader.common.util.CSVUtil;
+import trader.common.util.DateUtil;
 import trader.common.util.FileUtil;
 import trader.common.util.StringUtil;
 import trader.common.util.TraderHomeUtil;
@@ -39,6 +39,7 @@ import trader.service.md.MarketDataProducer;
 import trader.service.md.MarketDataProducerFactory;
 import trader.service.md.MarketDataService;
 import trader.service.md.MarketDataServiceImpl;
+import trader.service.md.TickCursor;
 import trader.service.util.SimpleBeansContainer;
 
 /**
@@ -47,42 +48,71 @@ import trader.service.util.SimpleBeansContainer;
 public class SimMarketDataService implements MarketDataService, SimMarketTimeAware {
     private final static Logger logger = LoggerFactory.getLogger(SimMarketDataService.class);
 
-    private static class SimMDInfo {
+    private static class SimMDInfo implements Comparable<SimMDInfo> {
+        Exchangeable instrument;
         ExchangeableTradingTimes tradingTimes;
-        List<MarketData> ticks = new ArrayList<>();
-        int nextDataIndex = 0;
+        ZoneId zoneId;
+        /**
+         * 逐条读取行情的游标
+         */
+        TickCursor cursor;
+        /**
+         * 已读取但未推送的下一条行情
+         */
+        MarketData nextTick;
+        /**
+         * 最后推送的行情
+         */
+        MarketData lastTick;
+        long lastTimestamp;
+        /**
+         * 行情来自共享的SimMarketDataFeed, 已经完成postProcess
+         */
+        boolean postProcessed;
 
+        /**
+         * 返回下一条行情但不移动, 同时对原始TICK数据进行时间清理
+         */
+        MarketData peek() {
+            if ( nextTick==null && cursor!=null ) {
+                if ( cursor.next() ) {
+                    MarketData tick = cursor.getTick();
+                    if ( tick.updateTimestamp<=lastTimestamp ) {
+                        tick.updateTimestamp=lastTimestamp+200;
+                        tick.updateTime = ZonedDateTime.ofInstant(Instant.ofEpochMilli(tick.updateTimestamp), zoneId).toLocalDateTime();
+                    }
+                    lastTimestamp = tick.updateTimestamp;
+                    nextTick = tick;
+                } else {
+                    cursor.close();
+                    cursor = null;
+                }
+            }
+            return nextTick;
+        }
 
         /**
-         * 寻找下一个行情数据
+         * 寻找下一个行情数据, 只比较epoch毫秒时间
          */
-        public MarketData seek(LocalDateTime lastTime, LocalDateTime actionTime, long timestamp) {
+        public MarketData seek(LocalDateTime lastTime, long timestamp) {
             MarketData result = null;
             if ( lastTime==null ) { //第一次, 寻找与市场时间相等或最后一个小于市场时间的行情切片
-                for(int i=0;i<ticks.size();i++) {
-                    MarketData md = ticks.get(i);
-                    int actionTimeCompare= actionTime.compareTo(md.updateTime);
-                    if ( actionTimeCompare>=0 ) { //actionTime >= marketDataTime
-                        nextDataIndex = i+1;
-                        result = md;
-                        continue;
-                    } else{
-                        nextDataIndex = i;
-                        break;
-                    }
+                if ( nextTick==null && cursor!=null ) {
+                    //支持索引的游标直接定位, 回测从盘中开始时不需要从开盘逐条扫描
+                    cursor.seek(timestamp);
+                }
+                MarketData md = null;
+                while( (md=peek())!=null && timestamp>=md.updateTimestamp ) {
+                    result = md;
+                    lastTick = md;
+                    nextTick = null;
                 }
             } else { //后续, 寻找lastTime<=updateTime&&updateTime<=actionTime
-                for(int i=nextDataIndex;i<ticks.size();i++) {
-                    MarketData md = ticks.get(i);
-                    int actionTimeCompare= actionTime.compareTo(md.updateTime);
-                    if ( actionTimeCompare>=0 ) { //actionTime >= marketDataTime
-                        nextDataIndex = i+1;
-                        result = md;
-                        break;
-                    } else {
-                        nextDataIndex = i;
-                        break;
-                    }
+                MarketData md = peek();
+                if ( md!=null && timestamp>=md.updateTimestamp ) {
+                    result = md;
+                    lastTick = md;
+                    nextTick = null;
                 }
             }
             if ( null!=result && Math.abs(timestamp-result.updateTimestamp)>200 ) {
@@ -91,6 +121,18 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
             return result;
         }
 
+        /**
+         * 按照下一条行情时间排序, 调用前需要确保 nextTick 已读取
+         */
+        @Override
+        public int compareTo(SimMDInfo o) {
+            int result = Long.compare(nextTick.updateTimestamp, o.nextTick.updateTimestamp);
+            if ( result==0 ) {
+                result = instrument.compareTo(o.instrument);
+            }
+            return result;
+        }
+
     }
 
     private BeansContainer beansContainer;
@@ -100,6 +142,12 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
     protected Map<Exchangeable, List<MarketDataListener>> listeners = new HashMap<>();
     protected Set<Exchangeable> subscriptions = new TreeSet<>();
     protected Map<Exchangeable, SimMDInfo> mdInfos = new HashMap<>();
+    /**
+     * 按照下一条行情时间合并所有合约, 每个时间片只处理到期的合约
+     */
+    private PriorityQueue<SimMDInfo> pendingMDInfos = new PriorityQueue<>();
+    private List<SimMDInfo> dueMDInfos = new ArrayList<>();
+    private SimMarketDataFeed feed;
 
     protected LocalDateTime lastTime;
 
@@ -132,8 +180,8 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
     public MarketData getLastData(Exchangeable e) {
         MarketData result = null;
         SimMDInfo mdInfo = mdInfos.get(e);
-        if ( mdInfo!=null && mdInfo.nextDataIndex>0 ) {
-            result = mdInfo.ticks.get(mdInfo.nextDataIndex-1);
+        if ( mdInfo!=null ) {
+            result = mdInfo.lastTick;
         }
         return result;
     }
@@ -173,36 +221,94 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
         producerFactories = discoverProducerFactories();
     }
 
+    /**
+     * 行情时间戳是按照交易所时区计算的, 这里按照合约的交易所时区重新计算模拟时间, 不依赖主机时区
+     */
     @Override
     public void onTimeChanged(LocalDate tradingDay, LocalDateTime actionTime, long timestamp) {
+        ZoneId zoneId = null;
         //通知行情数据
         if ( lastTime==null ) {
             //第一次调用, 需要加载数据
             loadMarketData(tradingDay);
-        }
-        for(Exchangeable e:subscriptions) {
-            SimMDInfo mdInfo = mdInfos.get(e);
-            if ( mdInfo==null ) {
-                continue;
-            }
-            MarketData md = mdInfo.seek(lastTime, actionTime, timestamp);
-            if ( md==null ) {
-                continue;
+            for(Exchangeable e:subscriptions) {
+                SimMDInfo mdInfo = mdInfos.get(e);
+                if ( mdInfo==null ) {
+                    continue;
+                }
+                if ( mdInfo.zoneId!=zoneId ) {
+                    zoneId = mdInfo.zoneId;
+                    timestamp = DateUtil.localdatetime2long(zoneId, actionTime);
+                }
+                MarketData md = mdInfo.seek(lastTime, timestamp);
+                if ( mdInfo.peek()!=null ) {
+                    pendingMDInfos.add(mdInfo);
+                }
+                if ( md!=null ) {
+                    notifyMarketData(mdInfo, md);
+                }
             }
-            md.postProcess(mdInfo.tradingTimes);
-            for(MarketDataListener listener:genericListeners) {
-                listener.onMarketData(md);
+        } else {
+            SimMDInfo mdInfo = null;
+            while( (mdInfo=pendingMDInfos.peek())!=null ) {
+                if ( mdInfo.zoneId!=zoneId ) {
+                    zoneId = mdInfo.zoneId;
+                    timestamp = DateUtil.localdatetime2long(zoneId, actionTime);
+                }
+                if ( timestamp<mdInfo.nextTick.updateTimestamp ) {
+                    break;
+                }
+                dueMDInfos.add(pendingMDInfos.poll());
             }
-            List<MarketDataListener> eListeners = listeners.get(e);
-            if ( eListeners!=null ) {
-                for(MarketDataListener listener:eListeners) {
-                    listener.onMarketData(md);
+            for(int i=0;i<dueMDInfos.size();i++) {
+                mdInfo = dueMDInfos.get(i);
+                if ( mdInfo.zoneId!=zoneId ) {
+                    zoneId = mdInfo.zoneId;
+                    timestamp = DateUtil.localdatetime2long(zoneId, actionTime);
+                }
+                MarketData md = mdInfo.seek(lastTime, timestamp);
+                if ( mdInfo.peek()!=null ) {
+                    pendingMDInfos.add(mdInfo);
+                }
+                if ( md!=null ) {
+                    notifyMarketData(mdInfo, md);
                 }
             }
+            dueMDInfos.clear();
         }
         lastTime = actionTime;
     }
 
+    /**
+     * 返回所有合约中最早的下一条行情时间
+     */
+    @Override
+    public long nextEventTime(long timestamp) {
+        if ( lastTime==null ) {
+            return 0;
+        }
+        SimMDInfo mdInfo = pendingMDInfos.peek();
+        if ( mdInfo==null ) {
+            return Long.MAX_VALUE;
+        }
+        return mdInfo.nextTick.updateTimestamp;
+    }
+
+    private void notifyMarketData(SimMDInfo mdInfo, MarketData md) {
+        if ( !mdInfo.postProcessed ) {
+            md.postProcess(mdInfo.tradingTimes);
+        }
+        for(MarketDataListener listener:genericListeners) {
+            listener.onMarketData(md);
+        }
+        List<MarketDataListener> eListeners = listeners.get(mdInfo.instrument);
+        if ( eListeners!=null ) {
+            for(MarketDataListener listener:eListeners) {
+                listener.onMarketData(md);
+            }
+        }
+    }
+
     private void loadSubScriptions() {
         String configPrefix = MarketDataService.class.getSimpleName()+".";
         String text = StringUtil.trim(ConfigUtil.getString(configPrefix+MarketDataServiceImpl.ITEM_SUBSCRIPTIONS));
@@ -249,30 +355,69 @@ public class SimMarketDataService implements MarketDataService, SimMarketTimeAwa
     }
 
     private void loadMarketData(LocalDate tradingDay) {
-        ExchangeableData data = TraderHomeUtil.getExchangeableData();
         for(Exchangeable e:subscriptions) {
-            SimMDInfo mdInfo  =new SimMDInfo();
-            mdInfo.tradingTimes = e.exchange().getTradingTimes(e, tradingDay);
-            DataInfo tickInfo = ExchangeableData.TICK_CTP;
-            String tickCsv = null;
-            try{
-                tickCsv = data.load(e, tickInfo, tradingDay);
-            }catch(Throwable t) {
-                logger.error("加载 "+e+" 交易日 "+tradingDay+" TICK行情数据失败", t);
-                throw new RuntimeException(t);
+            SimMDInfo mdInfo = null;
+            List<MarketData> feedTicks = null;
+            if ( feed!=null && feed.getTradingDay().equals(tradingDay) ) {
+                feedTicks = feed.getTicks(e);
             }
+            if ( feedTicks!=null ) { //使用共享的已清理行情
+                mdInfo = new SimMDInfo();
+                mdInfo.instrument = e;
+                mdInfo.tradingTimes = e.exchange().getTradingTimes(e, tradingDay);
+                mdInfo.zoneId = e.exchange().getZoneId();
+                mdInfo.cursor = TickCursor.of(feedTicks);
+                mdInfo.postProcessed = true;
+            } else {
+                mdInfo = openMDInfo(e, tradingDay);
+            }
+            mdInfos.put(e, mdInfo);
+        }
+    }
 
+    private SimMDInfo openMDInfo(Exchangeable e, LocalDate tradingDay) {
+        ExchangeableData data = TraderHomeUtil.getExchangeableData();
+        SimMDInfo mdInfo  =new SimMDInfo();
+        mdInfo.instrument = e;
+        mdInfo.tradingTimes = e.exchange().getTradingTimes(e, tradingDay);
+        mdInfo.zoneId = e.exchange().getZoneId();
+        DataInfo tickInfo = ExchangeableData.TICK_CTP;
+        try{
             CSVMarshallHelper csvMarshallHelper = createCSVMarshallHelper(tickInfo);
             MarketDataProducer mdProducer = createMarketDataProducer(tickInfo);
+            //逐条读取, 优先使用列式二进制数据
+            mdInfo.cursor = data.openTicks(e, tickInfo, tradingDay, mdProducer, csvMarshallHelper);
+        }catch(Throwable t) {
+            logger.error("加载 "+e+" 交易日 "+tradingDay+" TICK行情数据失败", t);
+            throw new RuntimeException(t);
+        }
+        return mdInfo;
+    }
+
+    /**
+     * 设置共享的预加载行情, 对应交易日的合约不再从Repository读取
+     */
+    public void setFeed(SimMarketDataFeed feed) {
+        this.feed = feed;
+    }
 
-            CSVDataSet csvDataSet = CSVUtil.parse(tickCsv);
-            while(csvDataSet.next()) {
-                MarketData marketData = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), tradingDay);
-                mdInfo.ticks.add(marketData);
+    /**
+     * 一次性加载当前订阅合约在某个交易日的全部行情并完成清理, 用于多个回测共享
+     */
+    public SimMarketDataFeed createFeed(LocalDate tradingDay) {
+        Map<Exchangeable, List<MarketData>> ticks = new HashMap<>();
+        for(Exchangeable e:subscriptions) {
+            SimMDInfo mdInfo = openMDInfo(e, tradingDay);
+            List<MarketData> eticks = new ArrayList<>();
+            MarketData md = null;
+            while( (md=mdInfo.peek())!=null ) {
+                md.postProcess(mdInfo.tradingTimes);
+                eticks.add(md);
+                mdInfo.nextTick = null;
             }
-            postprocessTicks(mdInfo.ticks);
-            mdInfos.put(e, mdInfo);
+            ticks.put(e, Collections.unmodifiableList(eticks));
         }
+        return new SimMarketDataFeed(tradingDay, ticks);
     }
 
     private CSVMarshallHelper createCSVMarshallHelper(DataInfo tickInfo) {
@@ -10,4 +10,13 @@ public interface SimMarketTimeAware {
 
     public void onTimeChanged(LocalDate tradingDay, LocalDateTime actionTime, long timestamp);
 
+    /**
+     * 事件驱动模式下, 返回下一个需要被通知的时间点(epoch millis)
+     *
+     * @return Long.MAX_VALUE 如果没有待处理事件; 小于等于timestamp 表示需要按照最小时间间隔推进
+     */
+    public default long nextEventTime(long timestamp) {
+        return 0;
+    }
+
 }
@@ -8,6 +8,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 
+import trader.common.exchangeable.Exchange;
 import trader.common.util.DateUtil;
 import trader.service.trade.MarketTimeService;
 
@@ -16,7 +17,10 @@ import trader.service.trade.MarketTimeService;
  */
 public class SimMarketTimeService implements MarketTimeService {
 
-    private ZoneId timeZone = DateUtil.getDefaultZoneId();
+    /**
+     * 模拟时间按照交易所时区转换为epoch毫秒, 与行情的updateTimestamp保持一致, 不依赖主机时区
+     */
+    private ZoneId timeZone = Exchange.SHFE.getZoneId();
     private LocalDateTime time = LocalDateTime.now();
     private List<SimMarketTimeAware> timeListeners = new ArrayList<>();
 
@@ -29,6 +33,11 @@ public class SimMarketTimeService implements MarketTimeService {
      */
     private int minTimeInterval = 100;
 
+    /**
+     * 事件驱动模式: 直接跳到下一个行情/定时任务时间点, 而不是逐个时间片推进
+     */
+    private boolean eventDriven;
+
     @Override
     public long currentTimeMillis() {
         Instant instant = time.atZone(timeZone).toInstant();
@@ -49,6 +58,22 @@ public class SimMarketTimeService implements MarketTimeService {
         timeListeners.add(timeAware);
     }
 
+    public boolean isEventDriven() {
+        return eventDriven;
+    }
+
+    public void setEventDriven(boolean eventDriven) {
+        this.eventDriven = eventDriven;
+    }
+
+    public ZoneId getTimeZone() {
+        return timeZone;
+    }
+
+    public void setTimeZone(ZoneId timeZone) {
+        this.timeZone = timeZone;
+    }
+
     public void setTradingDay(LocalDate tradingDay) {
         this.tradingDay = tradingDay;
     }
@@ -82,10 +107,35 @@ public class SimMarketTimeService implements MarketTimeService {
         long timestamp = currentTimeMillis();
         for(SimMarketTimeAware c:timeListeners)
             c.onTimeChanged(tradingDay, dt, timestamp);
-        time = time.plus(minTimeInterval, ChronoUnit.MILLIS);
+        if ( eventDriven ) {
+            time = nextEventTime(timestamp);
+        } else {
+            time = time.plus(minTimeInterval, ChronoUnit.MILLIS);
+        }
         return true;
     }
 
+    /**
+     * 从所有监听者中找到最早的下一个事件时间点
+     */
+    private LocalDateTime nextEventTime(long timestamp) {
+        long nextTimestamp = Long.MAX_VALUE;
+        for(SimMarketTimeAware c:timeListeners) {
+            long t = c.nextEventTime(timestamp);
+            if ( t<=timestamp ) { //需要按照最小时间间隔推进
+                nextTimestamp = timestamp+minTimeInterval;
+                break;
+            }
+            nextTimestamp = Math.min(nextTimestamp, t);
+        }
+        if ( nextTimestamp==Long.MAX_VALUE ) { //没有后续事件, 直接结束
+            LocalDateTime[] lastRange = timeRanges[timeRanges.length-1];
+            timeRangeIndex = timeRanges.length;
+            return lastRange[1];
+        }
+        return DateUtil.long2datetime(timeZone, nextTimestamp);
+    }
+
     public String toString() {
         return DateUtil.date2str(time);
     }
@@ -2,7 +2,6 @@ package trader.simulator;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -27,8 +26,6 @@ import trader.common.beans.Lifecycle;
 public class SimScheduledExecutorService implements ScheduledExecutorService, Lifecycle, SimMarketTimeAware {
     private static final Logger logger = LoggerFactory.getLogger(SimScheduledExecutorService.class);
 
-    private static ZoneId zoneId = ZoneId.systemDefault();
-
     public class TimeScheduleEntry {
         private Runnable command;
         private long initialDelay;
@@ -41,9 +38,10 @@ public class SimScheduledExecutorService implements ScheduledExecutorService, Li
             this.periodMillis = unit.toMillis(period);
         }
 
-        public void onTimeChanged(LocalDateTime time) {
-            long currMillis = time.atZone(zoneId).toInstant().toEpochMilli();
-
+        /**
+         * @param currMillis SimMarketTimeService按照交易所时区计算的当前时间
+         */
+        public void onTimeChanged(long currMillis) {
             if ( nextTriggerMillis==0){ //第一次需要round到秒
                 nextTriggerMillis = (currMillis/1000)*1000+initialDelay;
                 return;
@@ -59,6 +57,10 @@ public class SimScheduledExecutorService implements ScheduledExecutorService, Li
                 }
             }
         }
+
+        public long getNextTriggerMillis() {
+            return nextTriggerMillis;
+        }
     }
 
     private List<TimeScheduleEntry> schedulerEntries = new ArrayList<>();
@@ -174,8 +176,21 @@ public class SimScheduledExecutorService implements ScheduledExecutorService, Li
     @Override
     public void onTimeChanged(LocalDate tradingDay, LocalDateTime actionTime, long timestamp) {
         for(int i=0;i<schedulerEntries.size();i++) {
-            schedulerEntries.get(i).onTimeChanged(actionTime);
+            schedulerEntries.get(i).onTimeChanged(timestamp);
+        }
+    }
+
+    @Override
+    public long nextEventTime(long timestamp) {
+        long result = Long.MAX_VALUE;
+        for(int i=0;i<schedulerEntries.size();i++) {
+            long nextTriggerMillis = schedulerEntries.get(i).getNextTriggerMillis();
+            if ( nextTriggerMillis==0 ) { //尚未初始化
+                return 0;
+            }
+            result = Math.min(result, nextTriggerMillis);
         }
+        return result;
     }
 
 }
@@ -53,6 +53,10 @@ public class SimTradletService extends AbsTradletService implements TradletServi
 
     private Map<String, TradletInfo> tradletInfos = new HashMap<>();
     private List<SimTradletGroupEngine> groupEngines = new ArrayList<>();
+    /**
+     * 替代配置文件的交易组配置, 用于参数扫描
+     */
+    private List<Map> groupConfigs;
 
     public void init(BeansContainer beansContainer) throws Exception
     {
@@ -65,10 +69,12 @@ public class SimTradletService extends AbsTradletService implements TradletServi
         if ( pluginService!=null ) {
             tradletPlugins = TradletServiceImpl.filterTradletPlugins(pluginService.getPlugins());
         }
-        if ( staticTradletInfos==null ) {
-            staticTradletInfos = TradletServiceImpl.reloadTradletInfos(TradletServiceImpl.loadStandardTradlets(), tradletPlugins, null, null, null);
+        synchronized(SimTradletService.class) { //并行回测时多个交易日同时初始化
+            if ( staticTradletInfos==null ) {
+                staticTradletInfos = TradletServiceImpl.reloadTradletInfos(TradletServiceImpl.loadStandardTradlets(), tradletPlugins, null, null, null);
+            }
+            tradletInfos = staticTradletInfos;
         }
-        tradletInfos = staticTradletInfos;
         //加载TradletGroup
         groupEngines = loadGroups();
         mdService.addListener((MarketData tick)->{
@@ -86,6 +92,13 @@ public class SimTradletService extends AbsTradletService implements TradletServi
         }
     }
 
+    /**
+     * 使用指定的交易组配置, 需要在init之前调用
+     */
+    public void setGroupConfigs(List<Map> groupConfigs) {
+        this.groupConfigs = groupConfigs;
+    }
+
     public ServiceState getState() {
         return ServiceState.Ready;
     }
@@ -157,7 +170,11 @@ public class SimTradletService extends AbsTradletService implements TradletServi
     private List<SimTradletGroupEngine> loadGroups()  throws AppException
     {
         List<SimTradletGroupEngine> result = new ArrayList<>();
-        for(Map groupElem:(List<Map>)ConfigUtil.getObject(ITEM_TRADLETGROUPS)) {
+        List<Map> groupElems = groupConfigs;
+        if ( groupElems==null ) {
+            groupElems = (List<Map>)ConfigUtil.getObject(ITEM_TRADLETGROUPS);
+        }
+        for(Map groupElem:groupElems) {
             TradletGroupImpl group = createGroup(groupElem);
             SimTradletGroupEngine engine = new SimTradletGroupEngine(group);
             engine.init(beansContainer);
@@ -17,6 +17,7 @@ import trader.common.util.JsonEnabled;
 import trader.common.util.PriceUtil;
 import trader.common.util.StringUtil;
 import trader.service.trade.TradeConstants;
+import trader.service.trade.TxnFeeEvaluator;
 import trader.simulator.trade.SimOrder.SimOrderState;
 
 /**
@@ -39,6 +40,10 @@ public class SimPosition implements JsonEnabled, TradeConstants {
     private List<SimOrder> orders = new LinkedList<>();
 
     private long lastPrice;
+    /**
+     * 计算报单冻结资金的缓冲区
+     */
+    private long[] orderValues = new long[3];
 
     SimPosition(SimTxnSession session, Exchangeable e){
         this.session = session;
@@ -200,9 +205,12 @@ public class SimPosition implements JsonEnabled, TradeConstants {
         int longPos = 0, shortPos = 0, longTodayPos=0, longYdPos = 0, shortTodayPos=0, shortYdPos=0;
         int longFrozenPos=0, shortFrozenPos=0;
         LocalDate tradingDay = session.getTradingDay();
+        TxnFeeEvaluator.FeeHandle feeHandle = session.getFeeEvaluator().getFeeHandle(instrument);
+        long[] orderValues = this.orderValues;
         for(SimPositionDetail d:details) {
-            long[] posOpenValues = session.getFeeEvaluator().compute(instrument, d.getVolume(), d.getOpenPrice(), d.getDirection());
-            long[] posValues = session.getFeeEvaluator().compute(instrument, d.getVolume(), lastPrice, d.getDirection());
+            long posOpenValue = feeHandle.computeValue(d.getVolume(), d.getOpenPrice());
+            long posValue = feeHandle.computeValue(d.getVolume(), lastPrice);
+            long posMargin = feeHandle.computeMargin(d.getVolume(), lastPrice, d.getDirection());
             if ( d.getDirection()==PosDirection.Long ) {
                 longPos+=d.getVolume();
                 if ( tradingDay.equals(d.getOpenTime().toLocalDate()) ) {
@@ -210,7 +218,7 @@ public class SimPosition implements JsonEnabled, TradeConstants {
                 }else {
                     longYdPos += d.getVolume();
                 }
-                longMargin += posValues[0];
+                longMargin += posMargin;
             }else {
                 shortPos+=d.getVolume();
                 if ( tradingDay.equals(d.getOpenTime().toLocalDate()) ) {
@@ -218,13 +226,13 @@ public class SimPosition implements JsonEnabled, TradeConstants {
                 }else {
                     shortYdPos += d.getVolume();
                 }
-                shortMargin += posValues[0];
+                shortMargin += posMargin;
             }
-            posProfit += (posValues[1] - posOpenValues[1]);
+            posProfit += (posValue - posOpenValue);
         }
         for(SimOrder o:orders) {
             if ( o.getOffsetFlag()==OrderOffsetFlag.OPEN ) {
-                long[] orderValues = session.getFeeEvaluator().compute(instrument, o.getVolume(), o.getLimitPrice(), o.getDirection(), o.getOffsetFlag());
+                feeHandle.compute(o.getVolume(), o.getLimitPrice(), o.getDirection(), o.getOffsetFlag(), orderValues);
                 frozenCommission += orderValues[1];
                 //开仓
                 if ( o.getDirection()==OrderDirection.Buy ) {
@@ -119,6 +119,11 @@ public class SimTradeService implements TradeService, Lifecycle {
         //do nothing
     }
 
+    @Override
+    public void recordTxnLatency() {
+        //do nothing
+    }
+
     public void setOrderRefMgr(OrderRefGen orderRefGen) {
         this.orderRefGen = orderRefGen;
     }
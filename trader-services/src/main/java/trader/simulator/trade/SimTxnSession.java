@@ -66,6 +66,10 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
     private List<SimTxn> allTxns = new ArrayList<>();
     private List<SimResponse> pendingResponses = new ArrayList<>();
     private TxnFeeEvaluator feeEvaluator;
+    /**
+     * 模拟账户的初始资金, 用于合并多段并行回测的盈亏
+     */
+    private long initBalance;
 
     public SimTxnSession(BeansContainer beansContainer, Account account, TxnSessionListener listener) {
         super(beansContainer, account, listener);
@@ -286,6 +290,14 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
         sendResponses();
     }
 
+    @Override
+    public long nextEventTime(long timestamp) {
+        if ( !pendingResponses.isEmpty() ) { //下一个时间片发送回报
+            return 0;
+        }
+        return Long.MAX_VALUE;
+    }
+
     /**
      * 加载数据
      */
@@ -299,6 +311,10 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
         JsonObject json = (new JsonParser()).parse(jsonText).getAsJsonObject();
 
         long balance = PriceUtil.str2long(json.get("balance").getAsString());
+        initBalance = balance;
+        if ( json.has("initBalance") ) {
+            initBalance = PriceUtil.str2long(json.get("initBalance").getAsString());
+        }
         setMoney(AccMoney.Balance, balance);
         setMoney(AccMoney.PreBalance, balance);
         JsonArray jsonPos = json.get("positions").getAsJsonArray();
@@ -321,6 +337,7 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
         if ( initMoney==0.0 ) {
             initMoney = 50000.00;
         }
+        initBalance = PriceUtil.price2long(initMoney);
         money[TradeConstants.AccMoney.Balance.ordinal()] = PriceUtil.price2long(initMoney);
         money[TradeConstants.AccMoney.PreBalance.ordinal()] = PriceUtil.price2long(initMoney);
         money[TradeConstants.AccMoney.Available.ordinal()] = PriceUtil.price2long(initMoney);
@@ -332,6 +349,7 @@ public class SimTxnSession extends AbsTxnSession implements JsonEnabled, TradeCo
     private void saveData() {
         JsonObject json = new JsonObject();
         json.addProperty("balance", PriceUtil.long2str(getMoney(AccMoney.Balance)));
+        json.addProperty("initBalance", PriceUtil.long2str(initBalance));
         JsonArray posJson = new JsonArray();
         for(SimPosition pos:positions.values()) {
             int position = pos.getVolume(PosVolume.Position);
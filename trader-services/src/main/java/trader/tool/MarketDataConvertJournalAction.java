@@ -0,0 +1,167 @@
+package trader.tool;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.JsonObject;
+
+import trader.common.beans.BeansContainer;
+import trader.common.util.DateUtil;
+import trader.common.util.FileUtil;
+import trader.common.util.IOUtil;
+import trader.common.util.StringUtil;
+import trader.common.util.StringUtil.KVPair;
+import trader.common.util.TraderHomeUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+import trader.service.md.MarketDataJournal;
+import trader.service.md.MarketDataProducer;
+import trader.service.util.CmdAction;
+
+/**
+ * 将行情二进制日志转换为 <tradingDay>/<producerId>/<instrument>.csv 文件, 格式与CSV方式保存的TICK_CTP数据相同,
+ * 之后可以用 marketData import 导入数据仓库
+ */
+public class MarketDataConvertJournalAction implements CmdAction {
+
+    private PrintWriter writer;
+    private String dataDir;
+    private LocalDate beginDate;
+    private LocalDate endDate;
+    private boolean overwrite;
+    private CtpCSVMarshallHelper csvMarshallHelper = new CtpCSVMarshallHelper();
+
+    @Override
+    public String getCommand() {
+        return "marketData.convertJournal";
+    }
+
+    @Override
+    public void usage(PrintWriter writer) {
+        writer.println("marketData convertJournal [--datadir=DATA_DIR] [--beginDate=beginDate] [--endDate=endDate] [--overwrite=true]");
+        writer.println("\t转换行情二进制日志为CSV文件");
+    }
+
+    @Override
+    public int execute(BeansContainer beansContainer, PrintWriter writer, List<KVPair> options) throws Exception {
+        this.writer = writer;
+        parseOptions(options);
+        File mdDir = StringUtil.isEmpty(dataDir) ? TraderHomeUtil.getDirectory(TraderHomeUtil.DIR_MARKETDATA) : new File(dataDir);
+        writer.println("从行情数据目录转换: "+mdDir.getAbsolutePath());writer.flush();
+        for(File tradingDayDir: FileUtil.listSubDirs(mdDir)) {
+            LocalDate tradingDay = DateUtil.str2localdate(tradingDayDir.getName());
+            File journalFile = new File(tradingDayDir, MarketDataJournal.FILE_NAME);
+            if ( tradingDay==null || !journalFile.exists() ) {
+                continue;
+            }
+            if ( (beginDate!=null && tradingDay.isBefore(beginDate)) || (endDate!=null && tradingDay.isAfter(endDate)) ) {
+                continue;
+            }
+            convertJournal(tradingDayDir, journalFile);
+        }
+        return 0;
+    }
+
+    private void convertJournal(File tradingDayDir, File journalFile) throws Exception
+    {
+        writer.print("转换交易日 "+tradingDayDir.getName()+" : "); writer.flush();
+        Map<String, BufferedWriter> csvWriters = new HashMap<>();
+        Set<String> skippedFiles = new HashSet<>();
+        StringBuilder rowBuf = new StringBuilder(1024);
+        int totalTicks = 0;
+        try(MarketDataJournal.Reader reader = new MarketDataJournal.Reader(journalFile);){
+            while(reader.next()) {
+                MarketDataJournal.Record record = reader.getRecord();
+                String key = record.producerId+"/"+record.instrument;
+                if ( skippedFiles.contains(key) ) {
+                    continue;
+                }
+                BufferedWriter csvWriter = csvWriters.get(key);
+                if ( csvWriter==null ) {
+                    File producerDir = new File(tradingDayDir, record.producerId);
+                    File csvFile = new File(producerDir, record.instrument+".csv");
+                    if ( csvFile.exists() && !overwrite ) {
+                        writer.print("\n\t忽略已存在文件 "+csvFile);
+                        skippedFiles.add(key);
+                        continue;
+                    }
+                    if ( !producerDir.exists() ) {
+                        producerDir.mkdirs();
+                        saveProducerProps(producerDir, record.producerId, record.provider);
+                    }
+                    csvWriter = IOUtil.createBufferedWriter(csvFile, StringUtil.UTF8, false);
+                    csvWriter.write(record.type==MarketDataJournal.TYPE_CTP?getCsvHead():record.csvHead);
+                    csvWriter.write("\n");
+                    csvWriters.put(key, csvWriter);
+                }
+                rowBuf.setLength(0);
+                if ( record.type==MarketDataJournal.TYPE_CTP ) {
+                    String[] fields = csvMarshallHelper.marshall(record.field);
+                    for(int i=0;i<fields.length;i++) {
+                        if ( i>0 ) {
+                            rowBuf.append(",");
+                        }
+                        rowBuf.append(fields[i]);
+                    }
+                } else {
+                    rowBuf.append(record.csvRow);
+                }
+                rowBuf.append("\n");
+                csvWriter.append(rowBuf);
+                totalTicks++;
+            }
+            if ( reader.getValidLength()<journalFile.length() ) {
+                writer.print("\n\t忽略不完整数据 "+(journalFile.length()-reader.getValidLength())+" 字节");
+            }
+        } finally {
+            for(BufferedWriter csvWriter:csvWriters.values()) {
+                csvWriter.close();
+            }
+        }
+        writer.println(" "+csvWriters.size()+" 文件, "+totalTicks+" 条TICK");
+    }
+
+    private String getCsvHead() {
+        return String.join(",", csvMarshallHelper.getHeader());
+    }
+
+    /**
+     * 与MarketDataSaver相同, 为每个producer目录保存producer.json. 版本1的日志没有provider, 按ctp处理
+     */
+    private void saveProducerProps(File producerDir, String producerId, String provider) throws Exception
+    {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", producerId);
+        json.addProperty("provider", StringUtil.isEmpty(provider)?MarketDataProducer.PROVIDER_CTP:provider);
+        FileUtil.save(new File(producerDir, "producer.json"), json.toString());
+    }
+
+    protected void parseOptions(List<KVPair> options) {
+        for(KVPair kv:options) {
+            if ( StringUtil.isEmpty(kv.v)) {
+                continue;
+            }
+            switch(kv.k.toLowerCase()) {
+            case "datadir":
+                dataDir = kv.v;
+                break;
+            case "begindate":
+                beginDate = DateUtil.str2localdate(kv.v);
+                break;
+            case "enddate":
+                endDate = DateUtil.str2localdate(kv.v);
+                break;
+            case "overwrite":
+                overwrite = "true".equalsIgnoreCase(kv.v);
+                break;
+            }
+        }
+    }
+
+}
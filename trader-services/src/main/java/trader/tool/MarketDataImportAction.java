@@ -130,7 +130,7 @@ public class MarketDataImportAction implements CmdAction {
             CSVDataSet csvDataSet = CSVUtil.parse(FileUtil.read(tickFile));
             CtpTicksPostProcessor ticksPostProcessor = new CtpTicksPostProcessor();
             while(csvDataSet.next()) {
-                MarketData md = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), tradingDay);
+                MarketData md = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet), tradingDay);
                 ticksPostProcessor.checkTick(md);
                 Exchangeable e = md.instrument;
                 if ( tradingTimes==null ) {
@@ -504,7 +504,7 @@ public class MarketDataImportAction implements CmdAction {
             existsData = data.load(mdshare.instrument, dataInfo, mdshare.tradingDay);
             CSVDataSet csvDataSet = CSVUtil.parse(existsData);
             while(csvDataSet.next()) {
-                MarketData tick = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), mdshare.tradingDay);
+                MarketData tick = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet), mdshare.tradingDay);
                 ticks0.add(tick);
             }
             ticksBeforeSave = ticks0.size();
@@ -928,7 +928,7 @@ public class MarketDataImportAction implements CmdAction {
             existsData = data.load(mdInfo.exchangeable, dataInfo, date);
             CSVDataSet csvDataSet = CSVUtil.parse(existsData);
             while(csvDataSet.next()) {
-                MarketData tick = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), mdInfo.tradingDay);
+                MarketData tick = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet), mdInfo.tradingDay);
                 ticks0.add(tick);
             }
             existsCount = ticks0.size();
@@ -99,7 +99,7 @@ public class RepositoryBuildBarAction implements CmdAction {
             CSVDataSet csvDataSet = CSVUtil.parse(tickCsv);
             long preSettlementPrice = 0;
             while(csvDataSet.next()) {
-                MarketData md = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), tradingDay);
+                MarketData md = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet), tradingDay);
                 if ( md!=null && md.preSettlementPrice!=0) {
                     preSettlementPrice = md.preSettlementPrice;
                     break;
@@ -170,7 +170,7 @@ public class RepositoryBuildBarAction implements CmdAction {
         CSVDataSet csvDataSet = CSVUtil.parse(tickCsv);
         List<MarketData> ticks = new ArrayList<>();
         while(csvDataSet.next()) {
-            MarketData md = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet.getRow()), tradingDay);
+            MarketData md = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet), tradingDay);
             if ( md!=null ) {
                 ticks.add(md);
                 result.preSettlementPrice = md.preSettlementPrice;
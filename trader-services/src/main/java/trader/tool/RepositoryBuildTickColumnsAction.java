@@ -0,0 +1,161 @@
+package trader.tool;
+
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import trader.common.beans.BeansContainer;
+import trader.common.exchangeable.Exchange;
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.util.CSVDataSet;
+import trader.common.util.CSVMarshallHelper;
+import trader.common.util.CSVUtil;
+import trader.common.util.DateUtil;
+import trader.common.util.StringUtil;
+import trader.common.util.StringUtil.KVPair;
+import trader.common.util.TraderHomeUtil;
+import trader.service.md.MarketData;
+import trader.service.md.MarketDataProducer;
+import trader.service.md.MarketDataProducerFactory;
+import trader.service.util.CmdAction;
+import trader.simulator.SimMarketDataService;
+
+/**
+ * 将TICK_CTP的CSV/ZIP数据转换为列式二进制格式
+ */
+public class RepositoryBuildTickColumnsAction implements CmdAction {
+
+    private List<String> instrumentFilters = new ArrayList<>();
+    private LocalDate beginDate;
+    private LocalDate endDate;
+    private boolean overwrite;
+    private PrintWriter writer;
+    private ExchangeableData data;
+    private Map<String, MarketDataProducerFactory> producerFactories;
+    private CSVMarshallHelper csvMarshallHelper;
+    private MarketDataProducer mdProducer;
+    private ThreadPoolExecutor executorService;
+
+    public RepositoryBuildTickColumnsAction() {
+        executorService = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(), 5, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    }
+
+    @Override
+    public String getCommand() {
+        return "repository.buildTickColumns";
+    }
+
+    @Override
+    public void usage(PrintWriter writer) {
+        writer.println("repository buildTickColumns [--instruments=e1,e2,e3] [--beginDate=beginDate] [--endDate=endDate] [--overwrite=true]");
+        writer.println("\t转换TICK_CTP行情数据为列式二进制格式");
+    }
+
+    @Override
+    public int execute(BeansContainer beansContainer, PrintWriter writer, List<KVPair> options) throws Exception {
+        this.writer = writer;
+        parseOptions(options);
+        data = TraderHomeUtil.getExchangeableData();
+        producerFactories = SimMarketDataService.discoverProducerFactories();
+        MarketDataProducerFactory factory = producerFactories.get(MarketDataProducer.PROVIDER_CTP);
+        csvMarshallHelper = factory.createCSVMarshallHelper();
+        mdProducer = factory.create(null, Collections.emptyMap());
+
+        for(Exchange exchange:Exchange.getInstances()) {
+            for(Exchangeable instrument: data.listHistoryExchangeableIds(exchange)) {
+                if ( acceptInstrument(instrument)) {
+                    convertTicks(instrument);
+                }
+            }
+        }
+        return 0;
+    }
+
+    private void convertTicks(Exchangeable instrument) throws Exception
+    {
+        List<LocalDate> tradingDays = data.list(instrument, ExchangeableData.TICK_CTP);
+        Collections.sort(tradingDays);
+        writer.print(instrument+" : "); writer.flush();
+        List<Future<Integer>> futures = new ArrayList<>();
+        for(LocalDate tradingDay:tradingDays) {
+            if ( (beginDate!=null && tradingDay.isBefore(beginDate)) || (endDate!=null && tradingDay.isAfter(endDate)) ) {
+                continue;
+            }
+            if ( !overwrite && data.exists(instrument, ExchangeableData.TICK_COLUMNS, tradingDay) ) {
+                continue;
+            }
+            futures.add(executorService.submit(()->{
+                return convertTicks(instrument, tradingDay);
+            }));
+        }
+        int totalTicks = 0;
+        for(Future<Integer> f:futures) {
+            totalTicks += f.get();
+            writer.print("."); writer.flush();
+        }
+        writer.println(" "+futures.size()+" 天, "+totalTicks+" 条TICK");
+    }
+
+    private int convertTicks(Exchangeable instrument, LocalDate tradingDay) throws Exception
+    {
+        String tickCsv = data.load(instrument, ExchangeableData.TICK_CTP, tradingDay);
+        CSVDataSet csvDataSet = CSVUtil.parse(tickCsv);
+        List<MarketData> ticks = new ArrayList<>();
+        while(csvDataSet.next()) {
+            MarketData md = mdProducer.createMarketData(csvMarshallHelper.unmarshall(csvDataSet), tradingDay);
+            if ( md!=null ) {
+                ticks.add(md);
+            }
+        }
+        data.saveTicks(instrument, ExchangeableData.TICK_COLUMNS, tradingDay, ticks);
+        return ticks.size();
+    }
+
+    private boolean acceptInstrument(Exchangeable instrument) {
+        if ( instrumentFilters.isEmpty() ) {
+            return true;
+        }
+        for(String f:instrumentFilters) {
+            if ( instrument.uniqueId().indexOf(f)>=0 ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void parseOptions(List<KVPair> options) {
+        for(KVPair kv:options) {
+            if ( StringUtil.isEmpty(kv.v)) {
+                continue;
+            }
+            switch(kv.k.toLowerCase()) {
+            case "begindate":
+                beginDate = DateUtil.str2localdate(kv.v);
+                break;
+            case "enddate":
+                endDate = DateUtil.str2localdate(kv.v);
+                break;
+            case "instrument":
+                instrumentFilters.add(kv.v);
+                break;
+            case "instruments":
+                for(String p:StringUtil.split(kv.v, ",|;")) {
+                    instrumentFilters.add(p);
+                }
+                break;
+            case "overwrite":
+                overwrite = "true".equalsIgnoreCase(kv.v);
+                break;
+            }
+        }
+    }
+
+}
@@ -15,6 +15,7 @@ import trader.common.util.DateUtil;
 import trader.common.util.FileUtil;
 import trader.common.util.StringUtil;
 import trader.common.util.StringUtil.KVPair;
+import trader.service.ta.ColumnarLeveledBarSeries;
 import trader.service.ta.FutureBar;
 import trader.service.ta.FutureBarImpl;
 import trader.service.ta.LeveledBarSeries;
@@ -100,6 +101,14 @@ public class RepositoryExportKBarAction extends AbsCmdAction {
         return result;
     }
 
+    private static void saveBar(FutureBar bar, CSVWriter csvWriter) {
+        if ( bar instanceof ColumnarLeveledBarSeries.ColumnBar ) {
+            ((ColumnarLeveledBarSeries.ColumnBar)bar).save(csvWriter);
+        } else {
+            ((FutureBarImpl)bar).save(csvWriter);
+        }
+    }
+
     protected void saveBar(List<LeveledBarSeries> allDaySeries) throws Exception
     {
         if ( filePerDay ) {
@@ -122,7 +131,7 @@ public class RepositoryExportKBarAction extends AbsCmdAction {
                         csvWriter = new CSVWriter(ExchangeableData.FUTURE_MIN_COLUMNS);
                     }
                     csvWriter.next();
-                    ((FutureBarImpl)bar).save(csvWriter);
+                    saveBar(bar, csvWriter);
                 }
             }
             if ( null!=csvWriter ) {
@@ -136,7 +145,7 @@ public class RepositoryExportKBarAction extends AbsCmdAction {
                 for(int i=0;i<series.getBarCount();i++) {
                     csvWriter.next();
                     FutureBar bar = series.getBar2(i);
-                    ((FutureBarImpl)bar).save(csvWriter);
+                    saveBar(bar, csvWriter);
                 }
             }
             FileUtil.save(new File(outputFile), csvWriter.toString());
@@ -7,10 +7,16 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.ScheduledExecutorService;
 
 import org.slf4j.Logger;
@@ -23,10 +29,12 @@ import com.google.gson.JsonParser;
 
 import trader.common.beans.BeansContainer;
 import trader.common.beans.Lifecycle;
+import trader.common.config.ConfigUtil;
 import trader.common.exchangeable.Exchange;
 import trader.common.exchangeable.Exchangeable;
 import trader.common.exchangeable.ExchangeableTradingTimes;
 import trader.common.exchangeable.MarketDayUtil;
+import trader.common.util.ConversionUtil;
 import trader.common.util.DateUtil;
 import trader.common.util.FileUtil;
 import trader.common.util.JsonUtil;
@@ -49,11 +57,13 @@ import trader.service.trade.TradeConstants.AccMoney;
 import trader.service.trade.TradeConstants.OdrVolume;
 import trader.service.trade.TradeService;
 import trader.service.tradlet.PlaybookImpl;
+import trader.service.tradlet.TradletConstants;
 import trader.service.tradlet.TradletGroup;
 import trader.service.tradlet.TradletService;
 import trader.service.util.CmdAction;
 import trader.service.util.SimpleBeansContainer;
 import trader.simulator.SimBORepository;
+import trader.simulator.SimMarketDataFeed;
 import trader.simulator.SimMarketDataService;
 import trader.simulator.SimMarketTimeService;
 import trader.simulator.SimOrderedExecutor;
@@ -67,6 +77,8 @@ import trader.simulator.trade.SimTradeService;
 public class TraderEvalAction implements CmdAction {
     private static final String TIME_MODE_TRADING = "trading";
     private static final String TIME_MODE_NATURAL = "natural";
+    private static final String TIME_STEP_FIXED = "fixed";
+    private static final String TIME_STEP_EVENT = "event";
 
     protected PrintWriter writer;
     protected LocalDate beginDate;
@@ -75,7 +87,33 @@ public class TraderEvalAction implements CmdAction {
      * 时间模式: 自然时间, 交易日时间
      */
     protected String timeMode = "trading";
+    /**
+     * 时间推进方式: 固定时间片, 按行情/定时任务事件跳转
+     */
+    protected String timeStep = TIME_STEP_FIXED;
     protected String statsFile = "";
+    /**
+     * 并行回测的线程数, 交易日按顺序分为多段并行执行, 每段使用独立的账户
+     */
+    protected int parallel = 1;
+    /**
+     * 参数扫描: Tradlet配置项以及候选值, 例如 MACD135.fast=3,5,8
+     */
+    protected Map<String, String[]> sweepParams = new LinkedHashMap<>();
+    /**
+     * 参数扫描时按交易日共享的已加载行情
+     */
+    private Map<LocalDate, SimMarketDataFeed> sharedFeeds;
+
+    /**
+     * 参数扫描的一组参数组合, 有独立的账户和BORepository
+     */
+    private static class SweepConfig {
+        String id;
+        Map<String, String> params;
+        List<Map> groupConfigs;
+        SimpleBeansContainer beans;
+    }
 
     @Override
     public String getCommand() {
@@ -84,7 +122,7 @@ public class TraderEvalAction implements CmdAction {
 
     @Override
     public void usage(PrintWriter writer) {
-        writer.println("eval -Dtrader.configFile=TRADE_XML --beginDate=YYYYMMDD --endDate=YYYYMMDD --timeMode=natural|trading");
+        writer.println("eval -Dtrader.configFile=TRADE_XML --beginDate=YYYYMMDD --endDate=YYYYMMDD --timeMode=natural|trading --timeStep=fixed|event [--parallel=N] [--sweep=Tradlet.key=v1,v2;Tradlet.key2=v1,v2]");
         writer.println("\t回测");
     }
 
@@ -104,13 +142,20 @@ public class TraderEvalAction implements CmdAction {
         writer.println("回测时间: "+DateUtil.date2str(beginDate)+" - "+DateUtil.date2str(endDate) +", 共 "+MarketDayUtil.getMarketDays(null, beginDate, endDate).length+" 交易日 ");
         long bt=System.currentTimeMillis();
         SimpleBeansContainer globalBeans = createGlobalBeans();
-        while(!tradingDay.isAfter(endDate)) {
-            //模拟每日交易
-            var dailyInstruments = tradeDaily(globalBeans, tradingDay);
-            tradingDay = MarketDayUtil.nextMarketDay(dailyInstruments.get(0).exchange(), tradingDay);
+        if ( !sweepParams.isEmpty() ) {
+            tradeSweep(globalBeans, getTradingDays(globalBeans, tradingDay));
+        } else if ( parallel<=1 ) {
+            while(!tradingDay.isAfter(endDate)) {
+                //模拟每日交易
+                var dailyInstruments = tradeDaily(globalBeans, tradingDay);
+                tradingDay = MarketDayUtil.nextMarketDay(dailyInstruments.get(0).exchange(), tradingDay);
+            }
+            //输出交易统计
+            saveStats(List.of(globalBeans), statsFile);
+        } else {
+            List<SimpleBeansContainer> rangeBeans = tradeParallel(globalBeans, getTradingDays(globalBeans, tradingDay));
+            saveStats(rangeBeans, statsFile);
         }
-        //输出交易统计
-        saveStats(globalBeans);
         long et=System.currentTimeMillis();
         writer.println("回测结束, 耗时: "+(et-bt)/1000+" s");
         return 0;
@@ -132,8 +177,25 @@ public class TraderEvalAction implements CmdAction {
             case "timemode":
                 timeMode = kv.v;
                 break;
+            case "timestep":
+                timeStep = kv.v;
+                break;
             case "statsfile":
                 statsFile = kv.v;
+                break;
+            case "parallel":
+                parallel = ConversionUtil.toInt(kv.v);
+                break;
+            case "sweep":
+                for(String param:StringUtil.split(kv.v, ";")) {
+                    int idx = param.indexOf('=');
+                    if ( idx<0 || param.substring(0, idx).indexOf('.')<=0 ) {
+                        writer.println("参数扫描格式错误, 需要为 Tradlet.key=v1,v2 : "+param);
+                        return false;
+                    }
+                    sweepParams.put(param.substring(0, idx).trim(), StringUtil.split(param.substring(idx+1), ","));
+                }
+                break;
             }
         }
         if ( endDate==null && beginDate==null ) {
@@ -218,30 +280,238 @@ public class TraderEvalAction implements CmdAction {
     }
 
     /**
-     * 保存交易统计数据
+     * 按照订阅合约的交易所计算回测期间的全部交易日
      */
-    private void saveStats(SimpleBeansContainer beansContainer) throws Exception
+    private List<LocalDate> getTradingDays(SimpleBeansContainer globalBeans, LocalDate tradingDay) throws Exception
     {
-        BORepository repository = beansContainer.getBean(BORepository.class);
-        JsonObject json = new JsonObject();
+        SimMarketDataService mdService0 = new SimMarketDataService();
+        mdService0.init(globalBeans);
+        Exchange exchange = Exchange.SHFE;
+        for(Exchangeable instrument:mdService0.getSubscriptions()) {
+            exchange = instrument.exchange();
+            break;
+        }
+        List<LocalDate> result = new ArrayList<>();
+        while(!tradingDay.isAfter(endDate)) {
+            result.add(tradingDay);
+            tradingDay = MarketDayUtil.nextMarketDay(exchange, tradingDay);
+        }
+        return result;
+    }
 
-        var orders = new JsonArray();
-        for(var odr:OrderImpl.loadAll(repository, null, beginDate)) {
-            orders.add(odr.toJson());
+    /**
+     * 交易日按顺序分为多段, 在ForkJoinPool中并行回测. 每段有独立的BORepository, 账户/持仓只在段内延续
+     */
+    private List<SimpleBeansContainer> tradeParallel(SimpleBeansContainer globalBeans, List<LocalDate> tradingDays) throws Exception
+    {
+        int rangeCount = Math.max(1, Math.min(parallel, tradingDays.size()));
+        List<SimpleBeansContainer> result = new ArrayList<>();
+        List<ForkJoinTask<SimpleBeansContainer>> tasks = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(rangeCount);
+        try {
+            for(int i=0;i<rangeCount;i++) {
+                List<LocalDate> rangeDays = tradingDays.subList(i*tradingDays.size()/rangeCount, (i+1)*tradingDays.size()/rangeCount);
+                tasks.add(pool.submit(()->{
+                    SimpleBeansContainer rangeBeans = new SimpleBeansContainer(globalBeans);
+                    rangeBeans.addBean(BORepository.class, new SimBORepository());
+                    for(LocalDate day:rangeDays) {
+                        tradeDaily(rangeBeans, day);
+                    }
+                    return rangeBeans;
+                }));
+            }
+            for(ForkJoinTask<SimpleBeansContainer> task:tasks) {
+                result.add(task.get());
+            }
+        } finally {
+            pool.shutdown();
         }
+        writer.println("并行回测: "+tradingDays.size()+" 交易日, 分为 "+rangeCount+" 段");
+        return result;
+    }
 
-        var playbooks = new JsonArray();
-        for(var pb : PlaybookImpl.loadAll(repository, null, null, beginDate)) {
-            playbooks.add(pb.toJson());
+    /**
+     * 参数扫描: 每个交易日的行情只加载一次, 所有参数组合在ForkJoinPool中同时回测, 各自使用独立账户
+     */
+    private void tradeSweep(SimpleBeansContainer globalBeans, List<LocalDate> tradingDays) throws Exception
+    {
+        List<SweepConfig> sweepConfigs = createSweepConfigs(globalBeans);
+        writer.println("参数扫描: "+sweepConfigs.size()+" 组参数");
+        int threads = parallel>1?parallel:Runtime.getRuntime().availableProcessors();
+        sharedFeeds = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(threads, sweepConfigs.size())));
+        try {
+            for(LocalDate tradingDay:tradingDays) {
+                List<ForkJoinTask<List<Exchangeable>>> tasks = new ArrayList<>();
+                for(SweepConfig config:sweepConfigs) {
+                    tasks.add(pool.submit(()->{
+                        return tradeDaily(config.beans, tradingDay);
+                    }));
+                }
+                for(ForkJoinTask<List<Exchangeable>> task:tasks) {
+                    task.get();
+                }
+                //自然日模式下夜盘行情属于下一交易日, 保留到下一轮
+                sharedFeeds.keySet().removeIf(day->!day.isAfter(tradingDay));
+            }
+        } finally {
+            pool.shutdown();
+            sharedFeeds = null;
+        }
+        //每组参数单独输出统计文件, 并汇总
+        StringBuilder summary = new StringBuilder();
+        summary.append("id,params,balance,profit,orders,playbooks\n");
+        writer.println(String.format("%-10s %-40s %16s %16s %8s %8s", "ID", "参数", "资金", "盈亏", "报单", "交易剧本"));
+        for(SweepConfig config:sweepConfigs) {
+            JsonObject json = saveStats(List.of(config.beans), getSweepStatsFile(config));
+            String params = config.params.toString();
+            long balance = 0, profit = 0;
+            JsonElement accountJson = json.get("account");
+            if ( accountJson!=null && accountJson.isJsonObject() ) {
+                balance = PriceUtil.str2long(accountJson.getAsJsonObject().get("balance").getAsString());
+                profit = balance-PriceUtil.str2long(accountJson.getAsJsonObject().get("initBalance").getAsString());
+            }
+            int orderCount = json.get("orders").getAsJsonArray().size();
+            int playbookCount = json.get("playbooks").getAsJsonArray().size();
+            summary.append(config.id).append(",\"").append(params).append("\",")
+                .append(PriceUtil.long2str(balance)).append(",").append(PriceUtil.long2str(profit)).append(",")
+                .append(orderCount).append(",").append(playbookCount).append("\n");
+            writer.println(String.format("%-10s %-40s %16s %16s %8d %8d", config.id, params, PriceUtil.long2str(balance), PriceUtil.long2str(profit), orderCount, playbookCount));
         }
+        FileUtil.save(new File(getSweepStatsFile(null)), summary.toString());
+    }
 
-        String jsonText = repository.load(BOEntityType.Default, "simTxn");
-        JsonElement accountJson = JsonParser.parseString(jsonText);
+    /**
+     * 根据扫描参数的笛卡尔积创建参数组合
+     */
+    private List<SweepConfig> createSweepConfigs(SimpleBeansContainer globalBeans)
+    {
+        List<Map<String, String>> paramsList = new ArrayList<>();
+        paramsList.add(new LinkedHashMap<>());
+        for(String key:sweepParams.keySet()) {
+            List<Map<String, String>> paramsList2 = new ArrayList<>();
+            for(Map<String, String> params:paramsList) {
+                for(String value:sweepParams.get(key)) {
+                    Map<String, String> params2 = new LinkedHashMap<>(params);
+                    params2.put(key, value.trim());
+                    paramsList2.add(params2);
+                }
+            }
+            paramsList = paramsList2;
+        }
+        List<SweepConfig> result = new ArrayList<>();
+        for(int i=0;i<paramsList.size();i++) {
+            SweepConfig config = new SweepConfig();
+            config.id = "sweep"+(i+1);
+            config.params = paramsList.get(i);
+            config.groupConfigs = new ArrayList<>();
+            for(Map groupElem:(List<Map>)ConfigUtil.getObject(TradletConstants.ITEM_TRADLETGROUPS)) {
+                Map groupElem2 = new HashMap(groupElem);
+                String text = ConversionUtil.toString(groupElem.get("text"));
+                for(Map.Entry<String, String> param:config.params.entrySet()) {
+                    text = overrideConfigText(text, param.getKey(), param.getValue());
+                }
+                groupElem2.put("text", text);
+                config.groupConfigs.add(groupElem2);
+            }
+            config.beans = new SimpleBeansContainer(globalBeans);
+            config.beans.addBean(BORepository.class, new SimBORepository());
+            config.beans.addBean(SweepConfig.class, config);
+            result.add(config);
+        }
+        return result;
+    }
+
+    /**
+     * 修改交易组配置文本中 [Tradlet] 小节的 key=value
+     */
+    private static String overrideConfigText(String text, String param, String value) {
+        int dotIdx = param.lastIndexOf('.');
+        String section = param.substring(0, dotIdx), key = param.substring(dotIdx+1);
+        List<String> lines = new ArrayList<>(StringUtil.text2lines(text, false, false));
+        int sectionIdx = -1;
+        for(int i=0;i<lines.size();i++) {
+            String line = lines.get(i).trim();
+            if ( line.startsWith("[") && line.endsWith("]") ) {
+                if ( sectionIdx>=0 ) {
+                    break;
+                }
+                if ( line.substring(1, line.length()-1).trim().equals(section) ) {
+                    sectionIdx = i;
+                }
+                continue;
+            }
+            int idx = line.indexOf('=');
+            if ( sectionIdx>=0 && idx>0 && line.substring(0, idx).trim().equals(key) ) {
+                lines.set(i, key+"="+value);
+                return String.join("\n", lines);
+            }
+        }
+        if ( sectionIdx>=0 ) {
+            lines.add(sectionIdx+1, key+"="+value);
+        }
+        return String.join("\n", lines);
+    }
+
+    /**
+     * 参数组合的统计文件名: stats-sweep1.json; 汇总文件: stats-sweep.csv
+     */
+    private String getSweepStatsFile(SweepConfig config) {
+        String base = statsFile, ext = ".json";
+        int dotIdx = statsFile.lastIndexOf('.');
+        if ( dotIdx>0 && dotIdx>statsFile.lastIndexOf(File.separatorChar) ) {
+            base = statsFile.substring(0, dotIdx);
+            ext = statsFile.substring(dotIdx);
+        }
+        if ( config==null ) {
+            return base+"-sweep.csv";
+        }
+        return base+"-"+config.id+ext;
+    }
+
+    /**
+     * 保存交易统计数据, 多段并行回测时合并报单/交易剧本, 账户资金累加各段盈亏
+     */
+    private JsonObject saveStats(List<SimpleBeansContainer> rangeBeans, String statsFile) throws Exception
+    {
+        JsonObject json = new JsonObject();
+        var orders = new JsonArray();
+        var playbooks = new JsonArray();
+        JsonObject accountJson = null;
+        long profit = 0;
+        for(int i=0;i<rangeBeans.size();i++) {
+            BORepository repository = rangeBeans.get(i).getBean(BORepository.class);
+            for(var odr:OrderImpl.loadAll(repository, null, beginDate)) {
+                orders.add(odr.toJson());
+            }
+            for(var pb : PlaybookImpl.loadAll(repository, null, null, beginDate)) {
+                playbooks.add(pb.toJson());
+            }
+            String jsonText = repository.load(BOEntityType.Default, "simTxn");
+            if ( StringUtil.isEmpty(jsonText) ) {
+                continue;
+            }
+            JsonObject rangeAccount = JsonParser.parseString(jsonText).getAsJsonObject();
+            if ( accountJson!=null ) {
+                long balance = PriceUtil.str2long(accountJson.get("balance").getAsString());
+                long initBalance = PriceUtil.str2long(accountJson.get("initBalance").getAsString());
+                profit += balance-initBalance;
+                if ( accountJson.get("positions").getAsJsonArray().size()>0 ) {
+                    writer.println("并行回测的分段结束时存在持仓, 持仓不会延续到下一段: "+accountJson.get("positions"));
+                }
+            }
+            accountJson = rangeAccount;
+        }
+        if ( accountJson!=null && profit!=0 ) {
+            long balance = PriceUtil.str2long(accountJson.get("balance").getAsString());
+            accountJson.addProperty("balance", PriceUtil.long2str(balance+profit));
+        }
 
         json.add("orders", orders);
         json.add("playbooks", playbooks);
         json.add("account", accountJson);
         FileUtil.save(new File(statsFile), JsonUtil.json2str(json, true));
+        return json;
     }
 
     /**
@@ -269,6 +539,7 @@ public class TraderEvalAction implements CmdAction {
     {
         SimpleBeansContainer beansContainer = new SimpleBeansContainer(globalBeans);
         SimMarketTimeService mtService = new SimMarketTimeService();
+        mtService.setEventDriven(StringUtil.equalsIgnoreCase(timeStep, TIME_STEP_EVENT));
         SimOrderedExecutor orderedExecutor = new SimOrderedExecutor();
         SimScheduledExecutorService scheduledExecutorService = new SimScheduledExecutorService();
         SimMarketDataService mdService = new SimMarketDataService();
@@ -286,9 +557,17 @@ public class TraderEvalAction implements CmdAction {
 
         mtService.setTradingDay(tradingDay);
         mdService.init(beansContainer);
+        SweepConfig sweepConfig = globalBeans.getBean(SweepConfig.class);
+        if ( sweepConfig!=null ) {
+            tradletService.setGroupConfigs(sweepConfig.groupConfigs);
+        }
+        if ( sharedFeeds!=null ) {
+            mdService.setFeed(sharedFeeds.computeIfAbsent(tradingDay, (day)->mdService.createFeed(day)));
+        }
         //根据交易日自动选择最长交易时间
         if ( null==marketTimes ) {
             for(var instrument:mdService.getSubscriptions()) {
+                mtService.setTimeZone(instrument.exchange().getZoneId());
                 ExchangeableTradingTimes tradingTimes = instrument.exchange().getTradingTimes(instrument, tradingDay);
                 LocalDateTime [] marketTimes2 = tradingTimes.getMarketTimes();
                 if ( null==marketTimes ) {
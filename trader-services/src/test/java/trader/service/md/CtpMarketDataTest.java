@@ -2,7 +2,10 @@ package trader.service.md;
 
 import static org.junit.Assert.assertTrue;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.time.LocalDate;
+import java.util.Objects;
 
 import org.junit.Test;
 
@@ -64,6 +67,28 @@ public class CtpMarketDataTest {
         System.out.println();
     }
 
+    @Test
+    public void testUnmarshallCSVDataSet() throws Exception {
+        //空值, N/A, DBL_MAX, x.0 格式的单元格
+        String text = csvText
+                +"20190902,SR001,,,5390.0,5364.00,,643320.00,5366.00,5403.00,5357.00,297800.0,1601833926.00,644542.00,N/A,1.7976931348623157E308,5579.00,5149.00,,0.00,09:00:01,500.0,5389.00,17,5390.00,5,1.7976931348623157E308,-,N/A,,0.00,0.0,, ,0.00,0,0.00,12.0,0.00,0,0.00,0,5379.00,20190902\n";
+        CtpCSVMarshallHelper helper = new CtpCSVMarshallHelper();
+        CSVDataSet ds = CSVUtil.parse(text);
+        int rows = 0;
+        while(ds.next()) {
+            CThostFtdcDepthMarketDataField tick = helper.unmarshall(ds);
+            CThostFtdcDepthMarketDataField tick0 = helper.unmarshall(ds.getRow());
+            for(Field field:CThostFtdcDepthMarketDataField.class.getFields()) {
+                if ( Modifier.isStatic(field.getModifiers()) ) {
+                    continue;
+                }
+                assertTrue(field.getName(), Objects.equals(field.get(tick), field.get(tick0)));
+            }
+            rows++;
+        }
+        assertTrue(rows==4);
+    }
+
     @Test
     public void testFromJson() {
 
@@ -0,0 +1,106 @@
+package trader.service.md;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.jctp.CThostFtdcDepthMarketDataField;
+import trader.common.util.CSVDataSet;
+import trader.common.util.CSVUtil;
+import trader.common.util.csv.CtpCSVMarshallHelper;
+import trader.service.md.ctp.CtpMarketData;
+
+public class MarketDataJournalTest {
+
+    @Test
+    public void testAppendAndRead() throws Exception
+    {
+        CtpCSVMarshallHelper helper = new CtpCSVMarshallHelper();
+        CSVDataSet ds = CSVUtil.parse(CtpMarketDataTest.csvText);
+        File file = File.createTempFile("marketData", ".journal");
+        file.delete();
+        file.deleteOnExit();
+
+        int count = 0;
+        try(MarketDataJournal.Writer journal = new MarketDataJournal.Writer(file, 1024, 0);){
+            while(ds.next()) {
+                CThostFtdcDepthMarketDataField field = helper.unmarshall(ds.getRow());
+                if ( count%2==0 ) {
+                    journal.append(new CtpMarketData("ctp", CtpMarketDataTest.SR001, field, CtpMarketDataTest.tradingDay), "ctp", MarketDataProducer.PROVIDER_CTP);
+                } else {
+                    journal.append(new CtpMarketData("sina", CtpMarketDataTest.SR001, field, CtpMarketDataTest.tradingDay), "sina", MarketDataProducer.PROVIDER_WEB);
+                }
+                count++;
+            }
+        }
+
+        ds = CSVUtil.parse(CtpMarketDataTest.csvText);
+        try(MarketDataJournal.Reader reader = new MarketDataJournal.Reader(file);){
+            int count2 = 0;
+            while(reader.next()) {
+                ds.next();
+                MarketDataJournal.Record record = reader.getRecord();
+                assertTrue(record.type==MarketDataJournal.TYPE_CTP);
+                if ( count2%2==0 ) {
+                    assertTrue(record.producerId.equals("ctp"));
+                    assertTrue(record.provider.equals(MarketDataProducer.PROVIDER_CTP));
+                } else {
+                    assertTrue(record.producerId.equals("sina"));
+                    assertTrue(record.provider.equals(MarketDataProducer.PROVIDER_WEB));
+                }
+                assertTrue(Arrays.equals(helper.marshall(record.field), helper.marshall(helper.unmarshall(ds.getRow()))));
+                count2++;
+            }
+            assertTrue(count==count2);
+            assertTrue(reader.getValidLength()==file.length());
+        }
+
+        //模拟写了一半的记录, 重新打开后截断
+        long length = file.length();
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw");){
+            raf.seek(length);
+            raf.writeInt(100);
+            raf.writeInt(0);
+        }
+        try(MarketDataJournal.Writer journal = new MarketDataJournal.Writer(file, 1024, 0);){
+        }
+        assertTrue(file.length()==length);
+    }
+
+    /**
+     * 版本1的日志继续按版本1格式追加, 读取时没有provider
+     */
+    @Test
+    public void testAppendVersion1() throws Exception
+    {
+        CtpCSVMarshallHelper helper = new CtpCSVMarshallHelper();
+        CSVDataSet ds = CSVUtil.parse(CtpMarketDataTest.csvText);
+        File file = File.createTempFile("marketData", ".journal");
+        file.deleteOnExit();
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw");){
+            raf.setLength(0);
+            raf.writeInt(MarketDataJournal.MAGIC);
+            raf.writeInt(1);
+        }
+        try(MarketDataJournal.Writer journal = new MarketDataJournal.Writer(file, 1024, 0);){
+            ds.next();
+            CThostFtdcDepthMarketDataField field = helper.unmarshall(ds.getRow());
+            journal.append(new CtpMarketData("ctp", CtpMarketDataTest.SR001, field, CtpMarketDataTest.tradingDay), "ctp", MarketDataProducer.PROVIDER_CTP);
+        }
+        try(MarketDataJournal.Reader reader = new MarketDataJournal.Reader(file);){
+            assertTrue(reader.getVersion()==1);
+            assertTrue(reader.next());
+            MarketDataJournal.Record record = reader.getRecord();
+            assertTrue(record.producerId.equals("ctp"));
+            assertTrue(record.provider==null);
+            assertTrue(record.instrument.equals(CtpMarketDataTest.SR001.toString()));
+            assertTrue(!reader.next());
+            assertTrue(reader.getValidLength()==file.length());
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package trader.service.ta;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import trader.common.exchangeable.Exchangeable;
+import trader.common.exchangeable.ExchangeableData;
+import trader.common.util.CSVDataSet;
+import trader.common.util.CSVUtil;
+import trader.common.util.FileUtil;
+
+public class ExchangeableDataSqlTest {
+
+    @Test
+    public void testMin1Range() throws Exception {
+        File dataDir = Files.createTempDirectory("testExchangeableDataSql").toFile();
+        System.setProperty(ExchangeableData.PROP_SQL_URL, "jdbc:h2:mem:"+dataDir.getName());
+        try (ExchangeableData data = new ExchangeableData(dataDir, false);){
+            Exchangeable e = Exchangeable.fromString("ru2101");
+            LocalDate day1 = LocalDate.of(2020, 11, 3), day2 = LocalDate.of(2020, 11, 4);
+            data.save(e, ExchangeableData.MIN1, day1, "Index,BeginTime,Close\n0,20201103 09:00:00,15000\n1,20201103 09:01:00,15010\n");
+            data.save(e, ExchangeableData.MIN1, day2, "Index,BeginTime,Close\n0,20201104 09:00:00,15020\n");
+            //重复保存覆盖原有数据
+            data.save(e, ExchangeableData.MIN1, day2, "Index,BeginTime,Close\n0,20201104 09:00:00,15030\n1,20201104 09:01:00,15040\n");
+
+            TreeMap<LocalDate, String> csvs = data.loadRange(e, ExchangeableData.MIN1, day1, day2);
+            assertTrue(csvs.size()==2);
+            CSVDataSet csv = CSVUtil.parse(csvs.get(day2));
+            assertTrue(csv.next() && csv.getLong("Close")==15030);
+            assertTrue(csv.next() && csv.getLong("Close")==15040);
+            assertTrue(!csv.next());
+            assertTrue(data.loadRange(e, ExchangeableData.MIN1, day2, day2).size()==1);
+
+            //没有启用SQL时修改的文件, 以文件为准
+            System.clearProperty(ExchangeableData.PROP_SQL_URL);
+            try (ExchangeableData fileData = new ExchangeableData(dataDir, false);){
+                fileData.save(e, ExchangeableData.MIN1, day2, "Index,BeginTime,Close\n0,20201104 09:00:00,15050\n");
+            }
+            csvs = data.loadRange(e, ExchangeableData.MIN1, day1, day2);
+            assertTrue(csvs.get(day2).equals(data.load(e, ExchangeableData.MIN1, day2)));
+            csv = CSVUtil.parse(csvs.get(day2));
+            assertTrue(csv.next() && csv.getLong("Close")==15050);
+            assertTrue(!csv.next());
+        }finally {
+            System.clearProperty(ExchangeableData.PROP_SQL_URL);
+            FileUtil.deleteDirectory(dataDir);
+        }
+    }
+
+}
@@ -2,9 +2,11 @@ package trader.service.trade;
 
 import static org.junit.Assert.assertTrue;
 
+import java.lang.reflect.Field;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Month;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -504,6 +506,119 @@ public class AccountTest implements TradeConstants {
             assertTrue(account.getMoney(AccMoney.FrozenCommission)==0);
         }
     }
+
+    /**
+     * 增量估值与全量估值对比: 同样的持仓(含昨仓)和行情, 中途修改昨结算价, 资金差异不超过 明细笔数*0.01
+     */
+    @Test
+    public void testIncrementalValuation() throws Exception
+    {
+        Map config = new HashMap<>();
+        String text =
+                "[connectionProps]\n"+
+                "initMoney=500000.00\n" +
+                "commissionsFile="+TraderHomeUtil.getTraderHome()+"/etc/sim-account1.commissions.json";
+        config.put("id", "sim-account2");
+        config.put("provider", TxnSession.PROVIDER_SIM);
+        config.put("valuation", "incremental");
+        config.put("text", text);
+        AccountImpl account2 = new AccountImpl(new TradeServiceTest(beansContainer), beansContainer, config);
+        assertTrue(!account.isIncrementalValuation() && account2.isIncrementalValuation());
+        mdService.addListener(account2);
+        SimTxnSession txnSession2 = (SimTxnSession)account2.getSession();
+        txnSession2.connect(account2.getConnectionProps());
+
+        //到9:01:00, 账户初始化完成
+        while(mtService.nextTimePiece()) {
+            LocalDateTime time = mtService.getMarketTime();
+            if ( time.getHour()==9 && time.getMinute()==1 ) {
+                break;
+            }
+        }
+        PositionImpl pos = createPosition(account);
+        PositionImpl pos2 = createPosition(account2);
+        long tolerance = 100*pos.getDetails().size();
+        long preBalance = account.getMoney(AccMoney.Balance);
+        assertTrue(preBalance==account2.getMoney(AccMoney.Balance));
+
+        int ticks = 0;
+        long ydDiff0 = 0;
+        boolean preSettlementChanged = false;
+        while(mtService.nextTimePiece()) {
+            LocalDateTime time = mtService.getMarketTime();
+            if ( time.getHour()==9 && time.getMinute()==30 ) {
+                break;
+            }
+            if ( pos.getMoney(PosMoney.UseMargin)==0 ) {
+                continue;
+            }
+            ticks++;
+            assertMoneyMatch(account, pos, account2, pos2, tolerance);
+            if ( !preSettlementChanged && time.getMinute()>=10 ) {
+                //修改昨结算价, 昨仓的当日盈亏随之变化
+                ydDiff0 = pos.getMoney(PosMoney.PositionProfit)-pos.getMoney(PosMoney.PositionProfitToday);
+                long preSettlementPrice = pos.getMoney(PosMoney.PreSettlementPrice)+PriceUtil.price2long(0.80);
+                pos.setMoney(PosMoney.PreSettlementPrice, preSettlementPrice);
+                pos2.setMoney(PosMoney.PreSettlementPrice, preSettlementPrice);
+                preSettlementChanged = true;
+            }
+        }
+        assertTrue(ticks>10);
+        assertTrue(preSettlementChanged);
+        //昨仓4手, 昨结算价上涨0.80, 多仓当日盈亏减少 4*0.80*1000
+        long ydDiff = pos.getMoney(PosMoney.PositionProfit)-pos.getMoney(PosMoney.PositionProfitToday);
+        long ydDiff2 = pos2.getMoney(PosMoney.PositionProfit)-pos2.getMoney(PosMoney.PositionProfitToday);
+        assertTrue(ydDiff-ydDiff0==PriceUtil.price2long(0.80)*4*1000);
+        assertTrue(ydDiff2==ydDiff);
+        //非持仓部分的资金完全相同
+        assertTrue(account.getMoney(AccMoney.Balance)-account.getMoney(AccMoney.PositionProfitToday)==preBalance);
+        assertTrue(account2.getMoney(AccMoney.Balance)-account2.getMoney(AccMoney.PositionProfitToday)==preBalance);
+    }
+
+    private void assertMoneyMatch(AccountImpl account, PositionImpl pos, AccountImpl account2, PositionImpl pos2, long tolerance) {
+        assertTrue(Math.abs(pos.getMoney(PosMoney.PositionProfit)-pos2.getMoney(PosMoney.PositionProfit))<=tolerance);
+        assertTrue(Math.abs(pos.getMoney(PosMoney.PositionProfitToday)-pos2.getMoney(PosMoney.PositionProfitToday))<=tolerance);
+        assertTrue(Math.abs(pos.getMoney(PosMoney.UseMargin)-pos2.getMoney(PosMoney.UseMargin))<=tolerance);
+        //增量累加的账户资金与持仓汇总完全一致
+        assertTrue(account2.getMoney(AccMoney.PositionProfit)==pos2.getMoney(PosMoney.PositionProfit));
+        assertTrue(account2.getMoney(AccMoney.PositionProfitToday)==pos2.getMoney(PosMoney.PositionProfitToday));
+        assertTrue(account2.getMoney(AccMoney.CurrMargin)==pos2.getMoney(PosMoney.UseMargin));
+        //与全量估值的账户资金对比
+        assertTrue(Math.abs(account.getMoney(AccMoney.PositionProfit)-account2.getMoney(AccMoney.PositionProfit))<=tolerance);
+        assertTrue(Math.abs(account.getMoney(AccMoney.PositionProfitToday)-account2.getMoney(AccMoney.PositionProfitToday))<=tolerance);
+        assertTrue(Math.abs(account.getMoney(AccMoney.CurrMargin)-account2.getMoney(AccMoney.CurrMargin))<=tolerance);
+        assertTrue(Math.abs(account.getMoney(AccMoney.Balance)-account2.getMoney(AccMoney.Balance))<=tolerance);
+        assertTrue(Math.abs(account.getMoney(AccMoney.Available)-account2.getMoney(AccMoney.Available))<=2*tolerance);
+    }
+
+    /**
+     * 创建包含昨仓, 今仓和锁仓明细的持仓, 并替换账户中的持仓
+     */
+    private PositionImpl createPosition(AccountImpl account) throws Exception {
+        LocalDateTime ydOpenDate = tradingDay.minusDays(1).atStartOfDay();
+        LocalDateTime openDate = tradingDay.atStartOfDay();
+        List<PositionDetailImpl> details = new ArrayList<>();
+        details.add(new PositionDetailImpl(PosDirection.Long, 3, PriceUtil.price2long(285.35), ydOpenDate, false));
+        details.add(new PositionDetailImpl(PosDirection.Long, 1, PriceUtil.price2long(286.05), ydOpenDate, false));
+        details.add(new PositionDetailImpl(PosDirection.Long, 2, PriceUtil.price2long(287.15), openDate, true));
+        details.add(new PositionDetailImpl(PosDirection.Short, 1, PriceUtil.price2long(287.45), openDate, true));
+        long[] money = new long[PosMoney.values().length];
+        money[PosMoney.PreSettlementPrice.ordinal()] = PriceUtil.price2long(286.00);
+        int[] volumes = new int[PosVolume.values().length];
+        volumes[PosVolume.Position.ordinal()] = 6;
+        volumes[PosVolume.LongPosition.ordinal()] = 6;
+        volumes[PosVolume.LongYdPosition.ordinal()] = 4;
+        volumes[PosVolume.LongTodayPosition.ordinal()] = 2;
+        volumes[PosVolume.ShortPosition.ordinal()] = 1;
+        volumes[PosVolume.ShortTodayPosition.ordinal()] = 1;
+        volumes[PosVolume.YdPosition.ordinal()] = 4;
+        volumes[PosVolume.TodayPosition.ordinal()] = 2;
+        PositionImpl pos = new PositionImpl(account, au1906, PosDirection.Long, money, volumes, details);
+        Field field = AccountImpl.class.getDeclaredField("positions");
+        field.setAccessible(true);
+        ((Map<Exchangeable, PositionImpl>)field.get(account)).put(au1906, pos);
+        return pos;
+    }
 }
 
 
@@ -558,6 +673,10 @@ class TradeServiceTest implements TradeService {
         //do nothing
     }
 
+    public void recordTxnLatency() {
+        //do nothing
+    }
+
     public ServiceState getState() {
         return ServiceState.Ready;
     }